@@ -0,0 +1,13 @@
+package com.ia.robot.ai.agent;
+
+/**
+ * Reponse d'ArchitectAgent accompagnee du chemin qui l'a produite.
+ *
+ * Permet au runner (logs, cache, metriques) de savoir si la reponse
+ * vient du mode LIVE, du ChatClient standard ou du cache.
+ */
+public record AgentAnswer(
+        String text,
+        AnswerPath path
+) {
+}
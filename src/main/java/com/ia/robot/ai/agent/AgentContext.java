@@ -1,5 +1,7 @@
 package com.ia.robot.ai.agent;
 
+import com.ia.robot.ai.trace.RequestTrace;
+
 import java.time.Instant;
 import java.util.Objects;
 import java.util.UUID;
@@ -34,6 +36,10 @@ import java.util.UUID;
  *                        (Mathematiques, Francais, Histoire-Geographie, etc.)
  *  - locale           : code langue/pays (par defaut "fr-GA")
  *  - channel          : canal d'acces (ex: "MOBILE", "WEB", "TABLETTE")
+ *
+ * Champs d'execution (exclus de equals/hashCode : ce ne sont pas des donnees metier) :
+ *  - deadline         : budget de temps de la requete (Deadline.none() par defaut).
+ *  - trace            : decoupage par etape de la requete (RequestTrace.none() par defaut).
  */
 public final class AgentContext {
 
@@ -53,6 +59,10 @@ public final class AgentContext {
     private final String locale;
     private final String channel;
 
+    // --- Champs d'execution ---
+    private final Deadline deadline;
+    private final RequestTrace trace;
+
     private AgentContext(Builder builder) {
         this.requestId = builder.requestId != null
                 ? builder.requestId
@@ -92,6 +102,14 @@ public final class AgentContext {
         this.channel = builder.channel != null
                 ? builder.channel
                 : "MOBILE";
+
+        this.deadline = builder.deadline != null
+                ? builder.deadline
+                : Deadline.none();
+
+        this.trace = builder.trace != null
+                ? builder.trace
+                : RequestTrace.none();
     }
 
     // -------------------
@@ -146,6 +164,44 @@ public final class AgentContext {
         return channel;
     }
 
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public RequestTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Copie de ce contexte avec un autre budget de temps.
+     */
+    public AgentContext withDeadline(Deadline deadline) {
+        return copy().deadline(deadline).trace(trace).build();
+    }
+
+    /**
+     * Copie de ce contexte rattachee a une trace (voir RequestTracer).
+     */
+    public AgentContext withTrace(RequestTrace trace) {
+        return copy().deadline(deadline).trace(trace).build();
+    }
+
+    private Builder copy() {
+        return AgentContext.builder()
+                .requestId(requestId)
+                .agentName(agentName)
+                .createdAt(createdAt)
+                .tenant(tenant)
+                .country(country)
+                .city(city)
+                .establishment(establishment)
+                .profileType(profileType)
+                .educationLevel(educationLevel)
+                .subject(subject)
+                .locale(locale)
+                .channel(channel);
+    }
+
     // -------------------
     // Helpers statiques EDU / GABON
     // -------------------
@@ -270,6 +326,9 @@ public final class AgentContext {
         private String locale;
         private String channel;
 
+        private Deadline deadline;
+        private RequestTrace trace;
+
         public Builder requestId(String requestId) {
             this.requestId = requestId;
             return this;
@@ -330,6 +389,16 @@ public final class AgentContext {
             return this;
         }
 
+        public Builder deadline(Deadline deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        public Builder trace(RequestTrace trace) {
+            this.trace = trace;
+            return this;
+        }
+
         public AgentContext build() {
             return new AgentContext(this);
         }
@@ -0,0 +1,18 @@
+package com.ia.robot.ai.agent;
+
+/**
+ * Chemin qui a effectivement produit une reponse /ask.
+ *
+ * - LIVE     : OrwellLiveClient (Responses API + web_search)
+ * - STANDARD : ChatClient, sans tentative LIVE
+ * - FALLBACK : ChatClient, apres echec (ou indisponibilite) du LIVE
+ * - CACHE    : reponse servie par AnswerCache, sans appel amont
+ * - COALESCED: reponse partagee avec un appel identique deja en cours
+ */
+public enum AnswerPath {
+    LIVE,
+    STANDARD,
+    FALLBACK,
+    CACHE,
+    COALESCED
+}
@@ -1,10 +1,55 @@
 package com.ia.robot.ai.agent;
 
+import com.ia.robot.ai.cache.AnswerCache;
+import com.ia.robot.ai.cache.AnswerCacheKey;
+import com.ia.robot.ai.cache.InFlightCoalescer;
 import com.ia.robot.ai.live.OrwellLiveClient;
+import com.ia.robot.ai.prompt.EducationContextBlocks;
+import com.ia.robot.ai.prompt.PromptLayout;
+import com.ia.robot.ai.prompt.PromptTemplate;
 import com.ia.robot.ai.prompt.SystemPrompts;
+import com.ia.robot.ai.resilience.CircuitBreaker;
+import com.ia.robot.ai.resilience.ConcurrencyLimiter;
+import com.ia.robot.ai.resilience.HedgingPolicy;
+import com.ia.robot.ai.tokens.TokenBudgets;
+import com.ia.robot.ai.tokens.TokenCounter;
+import com.ia.robot.ai.trace.RequestTrace;
+import com.ia.robot.ai.transport.UpstreamDeadline;
+import com.ia.robot.ai.usage.AgentMetrics;
+import com.ia.robot.ai.usage.PromptCacheStats;
+import com.ia.robot.ai.usage.TokenUsage;
+import com.ia.robot.config.ai.AgentExecutorConfig;
+import com.ia.robot.config.ai.ResilienceConfig;
+import com.ia.robot.exception.AgentTimeoutException;
+import com.ia.robot.exception.RateLimitedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Agent "Architect" / ORWELL - Mode Education Gabon.
@@ -32,23 +77,143 @@ import org.springframework.stereotype.Component;
  *   via ORWELL_WEB_ENABLED=true, les questions libres (/ask) peuvent
  *   etre enrichies par le web.
  * - Sinon, fallback 100% ChatClient standard.
+ * - Mode hedge optionnel (orwell.hedge.enabled=true) : si le LIVE tarde,
+ *   le ChatClient part en parallele et la premiere reponse gagne.
  *
  * Robustesse :
  * - SystemPrompts utilises de facon safe (fallback si null/blank).
- * - Toute erreur LIVE est ignoree pour ne jamais casser l'experience utilisateur.
+ * - Toute erreur LIVE est journalisee (WARN) puis contournee pour ne jamais
+ *   casser l'experience utilisateur.
+ * - Un circuit breaker (liveCircuitBreaker) coupe le LIVE quand il est degrade :
+ *   circuit ouvert = passage direct au ChatClient.
+ * - Limites adaptatives d'appels en cours (ConcurrencyLimiter), une pour le LIVE,
+ *   une pour le ChatClient : LIVE sature = passage direct au ChatClient ;
+ *   ChatClient sature = RateLimitedException (429) apres une courte attente.
+ *
+ * Cache (/ask) :
+ * - AnswerCache est consulte avant tout appel amont, sur la question normalisee
+ *   + profil / niveau / matiere / locale.
+ * - Les reponses LIVE sont mises en cache avec un TTL plus court.
+ * - Les questions identiques posees en meme temps ne declenchent qu'un seul
+ *   appel amont (InFlightCoalescer, meme cle que le cache).
+ *
+ * Budget de temps (AgentContext.getDeadline()) :
+ * - chaque appel amont (LIVE, ChatClient) ne recoit que le temps restant ;
+ * - le fallback ChatClient ne part que s'il reste au moins
+ *   orwell.request.min-fallback-ms ;
+ * - budget epuise : AgentTimeoutException (504 cote API).
+ *
+ * Prompts :
+ * - gabarits PromptTemplate compiles une fois ;
+ * - bloc de contexte education rendu une fois par tuple AgentContext
+ *   (EducationContextBlocks), puis reutilise ;
+ * - orwell.prompt.layout=prefix-cache (defaut) : system prompt + consignes de
+ *   l'endpoint forment un prefixe fixe, contexte et demande viennent en dernier
+ *   (cache de prefixe du fournisseur) ; legacy : ancienne disposition ;
+ * - usage de tokens de chaque appel (dont tokens en cache) -> PromptCacheStats ;
+ * - budgets de tokens par endpoint (TokenBudgets) : texte utilisateur tronque
+ *   ou requete rejetee (413) avant tout appel amont, sortie plafonnee.
+ *
+ * Trace (AgentContext.getTrace()) : assemblage du prompt, appel LIVE, appel
+ * ChatClient (standard ou fallback) et attente d'un appel coalesce sont notes
+ * comme etapes de la requete (RequestTracer).
  */
 @Component
 public class ArchitectAgent {
 
+    private static final Logger log = LoggerFactory.getLogger(ArchitectAgent.class);
+
+    // Consignes statiques par endpoint
+    private static final String PLAN_INSTRUCTIONS = """
+            Considere que ce module fait partie d'une plate-forme de digitalisation de l'education au Gabon.
+            Adapte ton plan a ce contexte (etablissements scolaires gabonais, contraintes locales, connectivite variable, etc.).""";
+
+    private static final String ASK_INSTRUCTIONS = """
+            Tu parles a un eleve, un enseignant, un parent ou un acteur de l'education au Gabon.
+            Explique de facon simple, progressive, avec des exemples realistes dans le contexte gabonais.
+            Si la notion est complexe, commence par une explication tres simple puis ajoute des details.""";
+
+    // Layout LEGACY : contexte, consignes, puis demande dans le message utilisateur
+    private static final PromptTemplate PLAN_PROMPT = PromptTemplate.compile(
+            "{{context}}\n" + PLAN_INSTRUCTIONS + "\n\nDemande detaillee :\n{{request}}");
+
+    private static final PromptTemplate ASK_PROMPT = PromptTemplate.compile(
+            "{{context}}\n" + ASK_INSTRUCTIONS + "\n\nQuestion utilisateur :\n{{question}}");
+
+    // Layout PREFIX_CACHE : system + consignes = prefixe fixe ; seul le message utilisateur varie
+    private static final String PLAN_SYSTEM_PREFIX = staticPrefix(SystemPrompts.ARCHITECT_PLAN_SYSTEM, PLAN_INSTRUCTIONS);
+    private static final String ASK_SYSTEM_PREFIX = staticPrefix(SystemPrompts.ARCHITECT_ASK_SYSTEM, ASK_INSTRUCTIONS);
+
+    private static final PromptTemplate PLAN_TAIL = PromptTemplate.compile(
+            "{{context}}\nDemande detaillee :\n{{request}}");
+
+    private static final PromptTemplate ASK_TAIL = PromptTemplate.compile(
+            "{{context}}\nQuestion utilisateur :\n{{question}}");
+
     private final ChatClient chatClient;
 
     // Injection optionnelle du client LIVE
     private final ObjectProvider<OrwellLiveClient> liveClientProvider;
 
+    private final AnswerCache answerCache;
+
+    private final InFlightCoalescer coalescer;
+
+    private final HedgingPolicy hedgingPolicy;
+
+    private final CircuitBreaker liveCircuitBreaker;
+
+    // Appels en cours vers le LIVE / le ChatClient, limites separement
+    private final ConcurrencyLimiter liveLimiter;
+    private final ConcurrencyLimiter standardLimiter;
+
+    private final EducationContextBlocks contextBlocks;
+
+    private final PromptCacheStats promptCacheStats;
+
+    private final TokenCounter tokenCounter;
+
+    private final TokenBudgets tokenBudgets;
+
+    private final AgentMetrics metrics;
+
+    // Appels bloquants (hedging, streaming) : threads virtuels si actives
+    private final ExecutorService agentExecutor;
+    private final Scheduler blockingScheduler;
+
+    // Budget minimal pour qu'un fallback ChatClient ait une chance d'aboutir
+    @Value("${orwell.request.min-fallback-ms:1000}")
+    private long minFallbackMs;
+
     public ArchitectAgent(ChatClient chatClient,
-                          ObjectProvider<OrwellLiveClient> liveClientProvider) {
+                          ObjectProvider<OrwellLiveClient> liveClientProvider,
+                          AnswerCache answerCache,
+                          InFlightCoalescer coalescer,
+                          HedgingPolicy hedgingPolicy,
+                          CircuitBreaker liveCircuitBreaker,
+                          @Qualifier(ResilienceConfig.LIVE_LIMITER) ConcurrencyLimiter liveLimiter,
+                          @Qualifier(ResilienceConfig.STANDARD_LIMITER) ConcurrencyLimiter standardLimiter,
+                          EducationContextBlocks contextBlocks,
+                          PromptCacheStats promptCacheStats,
+                          TokenCounter tokenCounter,
+                          TokenBudgets tokenBudgets,
+                          AgentMetrics metrics,
+                          @Qualifier(AgentExecutorConfig.AGENT_EXECUTOR) ExecutorService agentExecutor) {
         this.chatClient = chatClient;
         this.liveClientProvider = liveClientProvider;
+        this.answerCache = answerCache;
+        this.coalescer = coalescer;
+        this.hedgingPolicy = hedgingPolicy;
+        this.liveCircuitBreaker = liveCircuitBreaker;
+        this.liveLimiter = liveLimiter;
+        this.standardLimiter = standardLimiter;
+        this.contextBlocks = contextBlocks;
+        this.promptCacheStats = promptCacheStats;
+        this.tokenCounter = tokenCounter;
+        this.tokenBudgets = tokenBudgets;
+        this.metrics = metrics;
+        this.agentExecutor = agentExecutor;
+        this.blockingScheduler = Schedulers.fromExecutorService(agentExecutor, "orwell-agent");
     }
 
     // -------------------------------------------------
@@ -59,48 +224,18 @@ public class ArchitectAgent {
         return s != null && !s.trim().isEmpty();
     }
 
-    private String orDefault(String value, String def) {
-        return hasText(value) ? value.trim() : def;
+    private static Deadline deadlineOf(AgentContext ctx) {
+        return ctx != null ? ctx.getDeadline() : Deadline.none();
     }
 
     /**
-     * Construit un resume de contexte education / Gabon a injecter dans les prompts.
-     * Ce bloc permet a ORWELL de savoir a qui il parle et dans quel environnement.
+     * Leve AgentTimeoutException si le budget restant ne permet plus
+     * un appel ChatClient de secours.
      */
-    private String buildEducationContextBlock(AgentContext ctx) {
-        if (ctx == null) {
-            // Fallback ultra simple si aucun contexte n'est fourni
-            return """
-                    Contexte Gabon / Education:
-                    - Pays: Gabon
-                    - Niveau: inconnu
-                    - Profil: ELEVE
-                    - Ville: Libreville
-                    - Etablissement: non precise
-                    - Matiere: generale
-                    """;
+    private void ensureFallbackBudget(Deadline deadline) {
+        if (deadline.remainingMs() < minFallbackMs) {
+            throw deadline.expired("not enough budget left for the ChatClient fallback");
         }
-
-        String country = orDefault(ctx.getCountry(), "Gabon");
-        String tenant = orDefault(ctx.getTenant(), "GABON_EDU");
-        String city = orDefault(ctx.getCity(), "Libreville");
-        String establishment = orDefault(ctx.getEstablishment(), "Etablissement non precise");
-        String profileType = orDefault(ctx.getProfileType(), "ELEVE");
-        String educationLevel = orDefault(ctx.getEducationLevel(), "niveau non precise");
-        String subject = orDefault(ctx.getSubject(), "matiere generale");
-        String locale = orDefault(ctx.getLocale(), "fr-GA");
-        String channel = orDefault(ctx.getChannel(), "MOBILE");
-
-        return "Contexte Gabon / Education:\n"
-                + "- Tenant: " + tenant + "\n"
-                + "- Pays: " + country + "\n"
-                + "- Ville: " + city + "\n"
-                + "- Etablissement: " + establishment + "\n"
-                + "- Profil utilisateur: " + profileType + "\n"
-                + "- Niveau scolaire: " + educationLevel + "\n"
-                + "- Matiere: " + subject + "\n"
-                + "- Langue/Locale: " + locale + "\n"
-                + "- Canal: " + channel + "\n";
     }
 
     private OrwellLiveClient liveClientOrNull() {
@@ -115,6 +250,19 @@ public class ArchitectAgent {
                 """;
     }
 
+    /**
+     * System prompt des appels standard d'un endpoint (TokenBudgets.PLAN / ASK),
+     * tel qu'envoye au modele : trace d'audit. null = system par defaut du ChatClient.
+     */
+    public String systemPrompt(String endpoint) {
+        boolean plan = TokenBudgets.PLAN.equals(endpoint);
+        if (promptCacheStats.layout() == PromptLayout.PREFIX_CACHE) {
+            return plan ? PLAN_SYSTEM_PREFIX : ASK_SYSTEM_PREFIX;
+        }
+        String system = plan ? SystemPrompts.ARCHITECT_PLAN_SYSTEM : SystemPrompts.ARCHITECT_ASK_SYSTEM;
+        return hasText(system) ? system : null;
+    }
+
     // -------------------------------------------------
     // Generation de plan (endpoint /plan)
     // -------------------------------------------------
@@ -130,28 +278,19 @@ public class ArchitectAgent {
      */
     public String generatePlan(AgentContext context, String userPrompt) {
         try {
-            String ctxBlock = buildEducationContextBlock(context);
-
             // On enrichit le prompt utilisateur avec le contexte education / Gabon
-            String finalPrompt = ctxBlock + "\n"
-                    + "Considere que ce module fait partie d'une plate-forme de digitalisation de l'education au Gabon.\n"
-                    + "Adapte ton plan a ce contexte (etablissements scolaires gabonais, contraintes locales, connectivite variable, etc.).\n\n"
-                    + "Demande detaillee :\n"
-                    + userPrompt;
-
-            if (hasText(SystemPrompts.ARCHITECT_PLAN_SYSTEM)) {
-                return chatClient.prompt()
-                        .system(SystemPrompts.ARCHITECT_PLAN_SYSTEM)
-                        .user(finalPrompt)
-                        .call()
-                        .content();
-            }
-
-            // Fallback : system par defaut du ChatClient
-            return chatClient.prompt()
-                    .user(finalPrompt)
-                    .call()
-                    .content();
+            RequestTrace trace = context.getTrace();
+            ChatPrompt prompt = trace.span(RequestTrace.PROMPT, () -> planPrompt(context, userPrompt));
+
+            return callWithin(deadlineOf(context), "plan ChatClient call", () -> {
+                long start = System.nanoTime();
+                ChatResponse response = trace.span(RequestTrace.STANDARD, () -> limited(standardLimiter,
+                        deadlineOf(context), () -> requestSpec(prompt).call().chatResponse()));
+                promptCacheStats.record(PromptCacheStats.PLAN, TokenUsage.from(response), elapsedMs(start));
+                String plan = textOf(response);
+                tokenBudgets.recordAnswer(TokenBudgets.PLAN, plan);
+                return plan;
+            });
 
         } catch (Exception e) {
             // SimpleAgentRunner se charge d'envelopper proprement
@@ -159,6 +298,22 @@ public class ArchitectAgent {
         }
     }
 
+    /**
+     * Messages d'un plan tels que generatePlan les enverrait (budget de tokens
+     * d'entree applique) et plafond de sortie : soumission differee d'un plan
+     * via l'API batch du fournisseur (PlanBatchJob).
+     */
+    public PlanMessages planMessages(AgentContext context, String userPrompt) {
+        ChatPrompt prompt = planPrompt(context, userPrompt);
+        return new PlanMessages(prompt.system(), prompt.user(), tokenBudgets.maxOutputTokens(TokenBudgets.PLAN));
+    }
+
+    /**
+     * system null = system par defaut du ChatClient ; maxOutputTokens null = pas de plafond.
+     */
+    public record PlanMessages(String system, String user, Integer maxOutputTokens) {
+    }
+
     // -------------------------------------------------
     // Questions libres (endpoint /ask)
     // -------------------------------------------------
@@ -167,6 +322,8 @@ public class ArchitectAgent {
      * Repond a une question libre.
      *
      * Logique:
+     * 0) On consulte AnswerCache (question normalisee + contexte pedagogique),
+     *    puis on rejoint un appel identique deja en cours s'il existe (InFlightCoalescer)
      * 1) On construit un "contexte Gabon / Education" a partir d'AgentContext
      * 2) On tente le mode LIVE d'abord (si disponible et active)
      * 3) Si LIVE echoue ou n'est pas dispo, on bascule sur le ChatClient standard
@@ -177,48 +334,664 @@ public class ArchitectAgent {
      * - illustree par des exemples gabonais (noms de villes, situations locales, etc.)
      */
     public String answer(AgentContext context, String question) {
+        return respond(context, question).text();
+    }
+
+    /**
+     * Comme answer(...), mais indique aussi le chemin utilise
+     * (CACHE, COALESCED, LIVE, STANDARD, FALLBACK).
+     */
+    public AgentAnswer respond(AgentContext context, String question) {
+        AnswerCacheKey key = AnswerCacheKey.of(context, question);
+        Deadline deadline = deadlineOf(context);
+
+        String cached = answerCache.get(key);
+        if (cached != null) {
+            return new AgentAnswer(cached, AnswerPath.CACHE);
+        }
+
+        RequestTrace trace = context.getTrace();
+        long begin = trace.begin();
+        AgentAnswer answer = coalescer.execute(
+                key,
+                deadline.remainingMs(),
+                () -> {
+                    AgentAnswer fresh = answerUpstream(context, question, deadline);
+                    tokenBudgets.recordAnswer(TokenBudgets.ASK, fresh.text());
+                    boolean live = fresh.path() == AnswerPath.LIVE;
+                    if (!live || OrwellLiveClient.isUsableAnswer(fresh.text())) {
+                        answerCache.put(key, fresh.text(), live);
+                    }
+                    return fresh;
+                },
+                leaderAnswer -> new AgentAnswer(leaderAnswer.text(), AnswerPath.COALESCED)
+        );
+        if (answer.path() == AnswerPath.COALESCED) {
+            // Attente de l'appel identique deja en cours (ses etapes sont dans sa propre trace)
+            trace.end(RequestTrace.COALESCED, begin);
+        }
+        return answer;
+    }
+
+    private AgentAnswer answerUpstream(AgentContext context, String question, Deadline deadline) {
+        RequestTrace trace = context.getTrace();
+        ChatPrompt prompt = trace.span(RequestTrace.PROMPT, () -> askPrompt(context, question));
+
+        OrwellLiveClient live = liveClientOrNull();
+        if (live == null || !live.isEnabled()) {
+            return new AgentAnswer(trace.span(RequestTrace.STANDARD, () -> callStandard(prompt, deadline)),
+                    AnswerPath.STANDARD);
+        }
+
+        // Circuit ouvert : le LIVE est degrade, on ne l'attend pas
+        CircuitBreaker.Permission permission = liveCircuitBreaker.tryAcquire();
+        if (permission == null) {
+            return new AgentAnswer(trace.span(RequestTrace.FALLBACK, () -> callStandard(prompt, deadline)),
+                    AnswerPath.FALLBACK);
+        }
+
+        if (hedgingPolicy.isEnabled()) {
+            return answerHedged(live, permission, prompt, deadline, trace);
+        }
+
+        // 1) Tentative LIVE (bornee par le budget restant)
         try {
-            String ctxBlock = buildEducationContextBlock(context);
+            return new AgentAnswer(trace.span(RequestTrace.LIVE, () -> callLive(live, permission, prompt, deadline)),
+                    AnswerPath.LIVE);
+
+        } catch (Exception e) {
+            // On ignore toute erreur LIVE pour assurer un fallback propre
+            log.warn("[ORWELL][LIVE] Failed, falling back to ChatClient. error={}", e.getMessage());
+        }
 
-            String enrichedQuestion = ctxBlock + "\n"
-                    + "Tu parles a un eleve, un enseignant, un parent ou un acteur de l'education au Gabon.\n"
-                    + "Explique de facon simple, progressive, avec des exemples realistes dans le contexte gabonais.\n"
-                    + "Si la notion est complexe, commence par une explication tres simple puis ajoute des details.\n\n"
-                    + "Question utilisateur :\n"
-                    + question;
+        // 2) Mode standard ChatClient, seulement s'il reste du budget
+        ensureFallbackBudget(deadline);
+        return new AgentAnswer(trace.span(RequestTrace.FALLBACK, () -> callStandard(prompt, deadline)),
+                AnswerPath.FALLBACK);
+    }
 
-            // 1) Tentative LIVE (si active)
-            OrwellLiveClient live = liveClientOrNull();
-            if (live != null && live.isEnabled()) {
-                try {
-                    String system = hasText(SystemPrompts.ARCHITECT_ASK_SYSTEM)
-                            ? SystemPrompts.ARCHITECT_ASK_SYSTEM
-                            : liveAskSystemFallback();
+    /**
+     * Mode hedge (orwell.hedge.enabled=true) :
+     * - le LIVE part seul ;
+     * - s'il n'a pas repondu apres HedgingPolicy.hedgeDelayMs(), le ChatClient
+     *   standard part en parallele ;
+     * - la premiere reponse acceptable gagne, l'autre appel est annule
+     *   (interruption du thread qui l'execute) ; un LIVE coupe en cours compte
+     *   dans le percentile pour le temps deja ecoule (borne basse).
+     * Le tout reste borne par le budget de la requete : s'il ne reste pas de quoi
+     * lancer le standard, on attend seulement le LIVE.
+     */
+    private AgentAnswer answerHedged(OrwellLiveClient live, CircuitBreaker.Permission permission, ChatPrompt prompt,
+                                     Deadline deadline, RequestTrace trace) {
+        long start = System.nanoTime();
+        long delayMs = hedgingPolicy.hedgeDelayMs();
 
-                    return live.askLive(system, enrichedQuestion);
+        CompletableFuture<String> liveCall = submitCancellable(
+                () -> trace.span(RequestTrace.LIVE, () -> callLive(live, permission, prompt, deadline)));
+        AtomicLong liveFailedAtMs = new AtomicLong(-1);
+        liveCall.whenComplete((text, error) -> {
+            // Annule encore en file : callLive n'a pas rendu la permission
+            permission.release();
+            if (error != null && !liveCall.isCancelled()) {
+                liveFailedAtMs.set(elapsedMs(start));
+            }
+        });
 
-                } catch (Exception ignored) {
-                    // On ignore toute erreur LIVE pour assurer un fallback propre
+        // Phase 1 : LIVE seul pendant delayMs
+        // (callLive leve deja une exception si le texte est inexploitable)
+        try {
+            String text = liveCall.get(Math.min(delayMs, deadline.remainingMs()), TimeUnit.MILLISECONDS);
+            hedgingPolicy.onLiveWithoutHedge();
+            return new AgentAnswer(text, AnswerPath.LIVE);
+        } catch (ExecutionException e) {
+            hedgingPolicy.onLiveFailedBeforeHedge();
+            log.warn("[ORWELL][LIVE] Failed, falling back to ChatClient. error={}", e.getCause().getMessage());
+            ensureFallbackBudget(deadline);
+            return new AgentAnswer(trace.span(RequestTrace.FALLBACK, () -> callStandard(prompt, deadline)),
+                    AnswerPath.FALLBACK);
+        } catch (InterruptedException e) {
+            liveCall.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the LIVE answer.", e);
+        } catch (TimeoutException e) {
+            // LIVE trop lent : on lance le standard en parallele (si le budget le permet)
+        }
+
+        if (deadline.remainingMs() < minFallbackMs) {
+            return new AgentAnswer(await(liveCall, deadline, "LIVE call"), AnswerPath.LIVE);
+        }
+
+        // Phase 2 : course LIVE vs standard
+        hedgingPolicy.onHedgeStarted();
+        CompletableFuture<String> standardCall = submitCancellable(() -> trace.span(RequestTrace.FALLBACK,
+                () -> UpstreamDeadline.within(deadline, () -> callStandard(prompt))));
+
+        CompletableFuture<AgentAnswer> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<Throwable> standardError = new AtomicReference<>();
+
+        liveCall.whenComplete((text, error) -> {
+            if (error == null) {
+                winner.complete(new AgentAnswer(text, AnswerPath.LIVE));
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(standardError.get());
+            }
+        });
+        standardCall.whenComplete((text, error) -> {
+            if (error == null && hasText(text)) {
+                winner.complete(new AgentAnswer(text, AnswerPath.FALLBACK));
+                return;
+            }
+            standardError.set(error != null ? error : new IllegalStateException("Empty answer from ChatClient."));
+            if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(standardError.get());
+            }
+        });
+
+        try {
+            AgentAnswer answer = deadline.isBounded()
+                    ? winner.get(deadline.remainingMs(), TimeUnit.MILLISECONDS)
+                    : winner.get();
+            if (answer.path() == AnswerPath.LIVE) {
+                standardCall.cancel(true);
+                hedgingPolicy.onHedgedLiveWin();
+            } else {
+                liveCall.cancel(true);
+                long wonAtMs = elapsedMs(start);
+                long failedAtMs = liveFailedAtMs.get();
+                // Sequentiel = echec LIVE puis standard complet.
+                // LIVE encore en cours : il aurait pris plus que wonAtMs -> borne basse.
+                long savedMs = failedAtMs >= 0 ? failedAtMs - delayMs : wonAtMs - delayMs;
+                hedgingPolicy.onHedgedStandardWin(savedMs);
+                if (failedAtMs < 0) {
+                    hedgingPolicy.recordCensoredLiveLatency(Math.max(wonAtMs, delayMs));
                 }
             }
+            return answer;
+        } catch (ExecutionException e) {
+            hedgingPolicy.onHedgedBothFailed();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("LIVE and standard calls both failed.", cause);
+        } catch (TimeoutException e) {
+            liveCall.cancel(true);
+            standardCall.cancel(true);
+            if (liveFailedAtMs.get() < 0) {
+                hedgingPolicy.recordCensoredLiveLatency(Math.max(elapsedMs(start), delayMs));
+            }
+            throw deadline.expired("hedged LIVE / ChatClient calls");
+        } catch (InterruptedException e) {
+            liveCall.cancel(true);
+            standardCall.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a hedged answer.", e);
+        }
+    }
+
+    /**
+     * Appel LIVE protege par le circuit breaker (permission deja acquise, rendue ici).
+     * Une reponse inexploitable compte comme un echec ; un appel annule
+     * (perdant d'un hedge) n'est pas reproche au service, pas plus qu'un appel
+     * coupe parce que le budget de la requete etait plus court que le timeout LIVE.
+     * Limite LIVE atteinte : RateLimitedException sans attente, l'appelant
+     * bascule sur le ChatClient comme pour toute erreur LIVE.
+     */
+    private String callLive(OrwellLiveClient live, CircuitBreaker.Permission permission, ChatPrompt prompt,
+                            Deadline deadline) {
+        return callLive(live, permission, prompt, deadline, null);
+    }
+
+    /**
+     * @param onDelta si non null : appel LIVE streame, chaque morceau de texte
+     *                lui est transmis des son arrivee
+     */
+    private String callLive(OrwellLiveClient live, CircuitBreaker.Permission permission, ChatPrompt prompt,
+                            Deadline deadline, Consumer<String> onDelta) {
+        ConcurrencyLimiter.Permit permit;
+        try {
+            permit = liveLimiter.acquire(deadline.remainingMs());
+        } catch (RateLimitedException e) {
+            // Le LIVE n'a pas ete appele : permission du breaker rendue
+            permission.onIgnored(0L);
+            throw e;
+        }
 
-            // 2) Mode standard ChatClient
-            if (hasText(SystemPrompts.ARCHITECT_ASK_SYSTEM)) {
-                return chatClient.prompt()
-                        .system(SystemPrompts.ARCHITECT_ASK_SYSTEM)
-                        .user(enrichedQuestion)
-                        .call()
-                        .content();
+        long start = System.nanoTime();
+        boolean cutByCaller = deadline.remainingMs() < live.getRequestTimeoutMs();
+        String text;
+        try {
+            text = onDelta == null
+                    ? live.askLive(liveSystem(prompt), prompt.user(), deadline.remainingMs())
+                    : live.streamLive(liveSystem(prompt), prompt.user(), deadline.remainingMs(), onDelta);
+            permit.onSuccess();
+        } catch (RuntimeException e) {
+            if (isCancellation(e) || (cutByCaller && deadline.isExpired())) {
+                permission.onIgnored(elapsedMs(start));
+            } else {
+                permission.onFailure(elapsedMs(start));
+                permit.onDropped();
+                metrics.recordUpstreamError(AgentMetrics.LIVE, e);
             }
+            throw e;
+        } finally {
+            permit.release();
+        }
 
-            // Fallback system par defaut
-            return chatClient.prompt()
-                    .user(enrichedQuestion)
-                    .call()
-                    .content();
+        long ms = elapsedMs(start);
+        if (!OrwellLiveClient.isUsableAnswer(text)) {
+            permission.onFailure(ms);
+            IllegalStateException unusable = new IllegalStateException("LIVE mode returned no usable text.");
+            metrics.recordUpstreamError(AgentMetrics.LIVE, unusable);
+            throw unusable;
+        }
+        permission.onSuccess(ms);
+        hedgingPolicy.recordLiveLatency(ms);
+        return text;
+    }
 
-        } catch (Exception e) {
+    private static boolean isCancellation(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appel ChatClient borne par le budget restant (voir callWithin).
+     */
+    private String callStandard(ChatPrompt prompt, Deadline deadline) {
+        return callWithin(deadline, "ChatClient call", () -> callStandard(prompt));
+    }
+
+    private String callStandard(ChatPrompt prompt) {
+        long start = System.nanoTime();
+        ChatResponse response = limited(standardLimiter, Deadline.none(), () -> requestSpec(prompt).call().chatResponse());
+        promptCacheStats.record(PromptCacheStats.ASK, TokenUsage.from(response), elapsedMs(start));
+        return textOf(response);
+    }
+
+    /**
+     * Appel bloquant sous une place du limiteur : attente bornee par le budget
+     * restant (et par max-queue-wait-ms), RateLimitedException si aucune place.
+     * Erreur de l'appel = signal de surcharge ; annulation ou coupure a l'echeance
+     * de la requete = place rendue sans mesure.
+     */
+    private <T> T limited(ConcurrencyLimiter limiter, Deadline deadline, Supplier<T> call) {
+        ConcurrencyLimiter.Permit permit = limiter.acquire(deadline.remainingMs());
+        try {
+            T result = call.get();
+            permit.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            if (!isCancellation(e) && !UpstreamDeadline.current().isExpired()) {
+                permit.onDropped();
+                metrics.recordUpstreamError(AgentMetrics.STANDARD, e);
+            }
             throw e;
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Soumet une tache a l'executor agent.
+     * cancel(true) sur le future retourne interrompt le thread qui l'execute
+     * (ce que CompletableFuture.supplyAsync ne fait pas).
+     */
+    private <T> CompletableFuture<T> submitCancellable(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = agentExecutor.submit(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Execute call sur le thread appelant, borne par le temps restant :
+     * timeout HTTP de chaque tentative = temps restant (UpstreamDeadline),
+     * pas de relance Spring AI au-dela de l'echeance. Pas de passage par
+     * l'executor agent : un thread de requete n'en bloque pas un second.
+     * Echec une fois le budget epuise : AgentTimeoutException.
+     */
+    private <T> T callWithin(Deadline deadline, String stage, Supplier<T> call) {
+        if (!deadline.isBounded()) {
+            return call.get();
+        }
+        deadline.check(stage);
+        try {
+            return UpstreamDeadline.within(deadline, call);
+        } catch (AgentTimeoutException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (deadline.isExpired()) {
+                AgentTimeoutException timeout = deadline.expired(stage);
+                timeout.initCause(e);
+                throw timeout;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> call, Deadline deadline, String stage) {
+        try {
+            return deadline.isBounded()
+                    ? call.get(deadline.remainingMs(), TimeUnit.MILLISECONDS)
+                    : call.get();
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            throw deadline.expired(stage);
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the " + stage + ".", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new IllegalStateException(stage + " failed.", cause);
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    // -------------------------------------------------
+    // Questions libres en streaming (SSE)
+    // -------------------------------------------------
+
+    /**
+     * Variante streaming de answer(...), pour les clients SSE.
+     *
+     * - Cache : une reponse deja connue est emise en un seul morceau.
+     * - LIVE  : avec orwell.web.streaming=true, les morceaux de texte de l'API
+     *           Responses sont emis des leur arrivee ; sinon la reponse complete
+     *           est emise d'un bloc. Appel bloquant sur l'executor agent.
+     *           En cas d'erreur LIVE avant le premier morceau, bascule sur le
+     *           streaming ChatClient ; apres, le flux echoue (pas de reponse melangee).
+     * - Standard : ChatClient.stream(), les tokens sont emis des leur arrivee.
+     *
+     * Quand le flux se termine normalement, la reponse complete est ajoutee
+     * au cache comme pour answer(...).
+     *
+     * Budget : le flux complet est borne par la deadline du contexte ;
+     * a expiration il echoue avec AgentTimeoutException.
+     */
+    public Flux<String> streamAnswer(AgentContext context, String question) {
+        return streamAnswer(context, question, path -> { });
+    }
+
+    /**
+     * Comme streamAnswer(context, question) ; onPath recoit le chemin qui a servi
+     * la reponse (CACHE, LIVE, STANDARD, FALLBACK) quand le flux se termine normalement.
+     */
+    public Flux<String> streamAnswer(AgentContext context, String question, Consumer<AnswerPath> onPath) {
+        AnswerCacheKey key = AnswerCacheKey.of(context, question);
+        Deadline deadline = deadlineOf(context);
+
+        String cached = answerCache.get(key);
+        if (cached != null) {
+            return Flux.just(cached).doOnComplete(() -> onPath.accept(AnswerPath.CACHE));
+        }
+
+        return Flux.defer(() -> {
+            RequestTrace trace = context.getTrace();
+            ChatPrompt prompt = trace.span(RequestTrace.PROMPT, () -> askPrompt(context, question));
+            StringBuilder fullAnswer = new StringBuilder();
+            AtomicBoolean servedByLive = new AtomicBoolean(false);
+
+            OrwellLiveClient live = liveClientOrNull();
+            boolean liveEnabled = live != null && live.isEnabled();
+            Flux<String> standard = Flux.defer(() -> streamStandard(prompt, trace,
+                    liveEnabled ? RequestTrace.FALLBACK : RequestTrace.STANDARD));
+
+            Flux<String> upstream = standard;
+            CircuitBreaker.Permission permission = liveEnabled ? liveCircuitBreaker.tryAcquire() : null;
+            if (permission != null) {
+                AtomicBoolean liveEmitted = new AtomicBoolean(false);
+                Flux<String> liveAnswer = live.isStreaming()
+                        ? streamLive(live, permission, prompt, deadline, trace)
+                        : Mono.fromCallable(() -> trace.span(RequestTrace.LIVE,
+                                        () -> callLive(live, permission, prompt, deadline)))
+                                .subscribeOn(blockingScheduler)
+                                .flux();
+
+                upstream = liveAnswer
+                        // Desabonnement ou deadline avant le depart de l'appel : permission rendue
+                        .doFinally(signal -> permission.release())
+                        .doOnNext(chunk -> liveEmitted.set(true))
+                        .doOnComplete(() -> servedByLive.set(true))
+                        .onErrorResume(e -> {
+                            if (liveEmitted.get()) {
+                                // Reponse deja partiellement envoyee : pas de fallback
+                                return Flux.error(e);
+                            }
+                            // On ignore toute erreur LIVE pour assurer un fallback propre (si budget)
+                            log.warn("[ORWELL][LIVE] Stream failed, falling back to ChatClient. error={}", e.getMessage());
+                            return deadline.remainingMs() < minFallbackMs
+                                    ? Flux.error(deadline.expired("not enough budget left for the ChatClient fallback"))
+                                    : standard;
+                        });
+            }
+
+            return withinDeadline(upstream, deadline)
+                    .doOnNext(fullAnswer::append)
+                    .doOnComplete(() -> {
+                        tokenBudgets.recordAnswer(TokenBudgets.ASK, fullAnswer.toString());
+                        answerCache.put(key, fullAnswer.toString(), servedByLive.get());
+                        onPath.accept(servedByLive.get() ? AnswerPath.LIVE
+                                : liveEnabled ? AnswerPath.FALLBACK : AnswerPath.STANDARD);
+                    });
+        });
+    }
+
+    /**
+     * Borne la duree totale du flux (et pas seulement l'ecart entre deux tokens) :
+     * chaque delai d'attente est recalcule sur le temps restant.
+     */
+    private static Flux<String> withinDeadline(Flux<String> upstream, Deadline deadline) {
+        if (!deadline.isBounded()) {
+            return upstream;
+        }
+        Supplier<Mono<Long>> remaining = () -> Mono.delay(Duration.ofMillis(deadline.remainingMs()));
+        return upstream.timeout(
+                Mono.defer(remaining),
+                chunk -> Mono.defer(remaining),
+                Flux.<String>error(() -> deadline.expired("streamed answer"))
+        );
+    }
+
+    /**
+     * Appel LIVE streame : OrwellLiveClient lit le flux SSE sur un thread de
+     * l'executor agent et pousse chaque morceau dans le Flux.
+     * Desabonnement du client : le thread est interrompu, l'echange HTTP annule.
+     */
+    private Flux<String> streamLive(OrwellLiveClient live, CircuitBreaker.Permission permission, ChatPrompt prompt,
+                                    Deadline deadline, RequestTrace trace) {
+        return Flux.<String>create(sink -> {
+            Thread worker = Thread.currentThread();
+            AtomicBoolean running = new AtomicBoolean(true);
+            sink.onCancel(() -> {
+                if (running.get()) {
+                    worker.interrupt();
+                }
+            });
+            try {
+                trace.span(RequestTrace.LIVE, () -> callLive(live, permission, prompt, deadline, sink::next));
+                sink.complete();
+            } catch (RuntimeException e) {
+                sink.error(e);
+            } finally {
+                running.set(false);
+            }
+        }).subscribeOn(blockingScheduler);
+    }
+
+    /**
+     * Le dernier morceau du flux porte l'usage de tokens
+     * (spring.ai.openai.chat.options.stream-usage=true).
+     * Place du limiteur standard prise sans attente (thread reactif), rendue
+     * a la fin du flux, y compris sur desabonnement du client.
+     * L'etape stage de la trace couvre le flux entier (jusqu'au dernier token).
+     */
+    private Flux<String> streamStandard(ChatPrompt prompt, RequestTrace trace, String stage) {
+        return Flux.defer(() -> {
+            ConcurrencyLimiter.Permit permit = standardLimiter.acquire(0L);
+            long start = System.nanoTime();
+            long begin = trace.begin();
+            AtomicReference<TokenUsage> usage = new AtomicReference<>(TokenUsage.NONE);
+            return requestSpec(prompt)
+                    .stream()
+                    .chatResponse()
+                    .doOnNext(chunk -> {
+                        TokenUsage chunkUsage = TokenUsage.from(chunk);
+                        if (chunkUsage.isReported()) {
+                            usage.set(chunkUsage);
+                        }
+                    })
+                    .map(ArchitectAgent::textOf)
+                    .filter(text -> !text.isEmpty())
+                    .doOnComplete(() -> {
+                        permit.onSuccess();
+                        promptCacheStats.record(PromptCacheStats.ASK_STREAM, usage.get(), elapsedMs(start));
+                        trace.end(stage, begin);
+                    })
+                    .doOnError(e -> {
+                        permit.onDropped();
+                        metrics.recordUpstreamError(AgentMetrics.STANDARD, e);
+                        trace.fail(stage, begin, e);
+                    })
+                    .doOnCancel(() -> trace.record(stage, begin, RequestTrace.CANCELLED))
+                    .doFinally(signal -> permit.release());
+        });
+    }
+
+    /**
+     * System absent : le system par defaut du ChatClient s'applique.
+     * Plafond de sortie : orwell.tokens.<endpoint>.max-output-tokens.
+     */
+    private ChatClient.ChatClientRequestSpec requestSpec(ChatPrompt prompt) {
+        ChatClient.ChatClientRequestSpec spec = chatClient.prompt();
+        if (prompt.system() != null) {
+            spec = spec.system(prompt.system());
+        }
+        Integer maxOutputTokens = tokenBudgets.maxOutputTokens(prompt.endpoint());
+        if (maxOutputTokens != null) {
+            // Fusionne avec les options par defaut (modele, temperature, stream-usage)
+            spec = spec.options(OpenAiChatOptions.builder().maxCompletionTokens(maxOutputTokens).build());
+        }
+        return spec.user(prompt.user());
+    }
+
+    private static String textOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String text = response.getResult().getOutput().getText();
+        return text != null ? text : "";
+    }
+
+    // -------------------------------------------------
+    // Assemblage des prompts (/plan, /ask)
+    // -------------------------------------------------
+
+    /**
+     * Message system (null = system par defaut du ChatClient), message utilisateur
+     * et endpoint (budget de tokens de sortie).
+     */
+    private record ChatPrompt(String system, String user, String endpoint) {
+    }
+
+    private ChatPrompt planPrompt(AgentContext context, String userPrompt) {
+        String ctxBlock = contextBlocks.render(context);
+        if (promptCacheStats.layout() == PromptLayout.PREFIX_CACHE) {
+            return PLAN_SYSTEM_PREFIX != null
+                    ? assemble(TokenBudgets.PLAN, PLAN_SYSTEM_PREFIX, "", PLAN_TAIL, ctxBlock, userPrompt)
+                    : assemble(TokenBudgets.PLAN, null, PLAN_INSTRUCTIONS + "\n\n", PLAN_TAIL, ctxBlock, userPrompt);
+        }
+        return assemble(TokenBudgets.PLAN,
+                hasText(SystemPrompts.ARCHITECT_PLAN_SYSTEM) ? SystemPrompts.ARCHITECT_PLAN_SYSTEM : null,
+                "", PLAN_PROMPT, ctxBlock, userPrompt);
+    }
+
+    private ChatPrompt askPrompt(AgentContext context, String question) {
+        String ctxBlock = contextBlocks.render(context);
+        if (promptCacheStats.layout() == PromptLayout.PREFIX_CACHE) {
+            return ASK_SYSTEM_PREFIX != null
+                    ? assemble(TokenBudgets.ASK, ASK_SYSTEM_PREFIX, "", ASK_TAIL, ctxBlock, question)
+                    : assemble(TokenBudgets.ASK, null, ASK_INSTRUCTIONS + "\n\n", ASK_TAIL, ctxBlock, question);
+        }
+        return assemble(TokenBudgets.ASK,
+                hasText(SystemPrompts.ARCHITECT_ASK_SYSTEM) ? SystemPrompts.ARCHITECT_ASK_SYSTEM : null,
+                "", ASK_PROMPT, ctxBlock, question);
+    }
+
+    /**
+     * Assemble le prompt apres controle du budget de tokens d'entree :
+     * le texte utilisateur est tronque (ou la requete rejetee) avant tout appel amont.
+     */
+    private ChatPrompt assemble(String endpoint,
+                                String system,
+                                String userPrefix,
+                                PromptTemplate template,
+                                String ctxBlock,
+                                String userText) {
+        int fixedTokens = tokenCounter.countStatic(system)
+                + tokenCounter.countStatic(userPrefix)
+                + tokenCounter.countStatic(template.staticText())
+                + tokenCounter.count(ctxBlock);
+
+        TokenBudgets.FittedInput input = tokenBudgets.fitInput(endpoint, fixedTokens, userText);
+
+        if (log.isDebugEnabled()) {
+            log.debug("[ORWELL][TOKENS] endpoint={}, system={}, context={}, user={}, total={}, truncated={}",
+                    endpoint,
+                    tokenCounter.countStatic(system),
+                    tokenCounter.count(ctxBlock),
+                    input.userTokens(),
+                    input.totalTokens(),
+                    input.truncated());
+        }
+
+        String user = template.render(ctxBlock, input.userText());
+        return new ChatPrompt(system, userPrefix.isEmpty() ? user : userPrefix + user, endpoint);
+    }
+
+    /**
+     * Le mode LIVE n'a pas de system par defaut : fallback explicite.
+     */
+    private String liveSystem(ChatPrompt prompt) {
+        return prompt.system() != null ? prompt.system() : liveAskSystemFallback();
+    }
+
+    /**
+     * Prefixe statique d'un endpoint : system prompt puis consignes, identique
+     * d'une requete a l'autre. null si le system prompt est vide.
+     */
+    private static String staticPrefix(String system, String instructions) {
+        if (system == null || system.isBlank()) {
+            return null;
         }
+        return system.stripTrailing() + "\n\n" + instructions;
     }
 }
@@ -0,0 +1,442 @@
+package com.ia.robot.ai.agent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.config.ai.AgentExecutorConfig;
+import com.ia.robot.exception.AgentTimeoutException;
+import com.ia.robot.exception.PromptTooLargeException;
+import com.ia.robot.exception.RateLimitedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * /ask en masse : une question JSON par ligne (NDJSON), une reponse NDJSON par ligne.
+ *
+ * Ligne d'entree :
+ *   {"question": "...", "id": "q-12", "profile": "student|teacher|parent",
+ *    "city": "...", "establishment": "...", "educationLevel": "...",
+ *    "childEducationLevel": "...", "subject": "..."}
+ * Ligne de sortie (dans l'ordre de fin, pas d'entree) :
+ *   {"index": 0, "id": "q-12", "status": "ok|error|timeout|too_large|rate_limited|invalid",
+ *    "answer": "...", "error": "...", "durationMs": 812}
+ * Derniere ligne : {"summary": true, "lines": n, "ok": .., "failed": ..}
+ *
+ * - Au plus orwell.bulk.parallelism lignes en cours par requete : la lecture
+ *   de l'entree attend un permis, la memoire ne depend pas de la taille du fichier.
+ * - Chaque ligne a son propre budget (orwell.bulk.line-timeout-ms), borne par
+ *   celui de la requete ; une ligne lente ou en echec ne retient pas les autres.
+ * - Client deconnecte : lecture arretee, lignes en cours annulees.
+ * - Lecture sur agentExecutor, lignes sur bulkExecutor : la lecture attend
+ *   des lignes d'un autre pool, et une ligne (qui peut elle-meme passer par
+ *   agentExecutor : hedging) n'occupe jamais un thread dont elle attend la liberation.
+ *   Au plus orwell.bulk.max-requests lectures en cours (429 au-dela) : en mode
+ *   plateforme, elles ne prennent qu'une petite part de agentExecutor.
+ */
+@Component
+public class BulkAskRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkAskRunner.class);
+
+    private static final long BUSY_RETRY_AFTER_MS = 5_000L;
+
+    private static final TypeReference<Map<String, Object>> LINE_TYPE = new TypeReference<>() {
+    };
+
+    private final SimpleAgentRunner agentRunner;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService agentExecutor;
+    private final ExecutorService bulkExecutor;
+    private final int parallelism;
+    private final long lineTimeoutMs;
+    private final int maxLineChars;
+    private final int maxLines;
+    private final int maxRequests;
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder okLines = new LongAdder();
+    private final LongAdder failedLines = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    public BulkAskRunner(SimpleAgentRunner agentRunner,
+                         ObjectMapper objectMapper,
+                         @Qualifier(AgentExecutorConfig.AGENT_EXECUTOR) ExecutorService agentExecutor,
+                         @Qualifier(AgentExecutorConfig.BULK_EXECUTOR) ExecutorService bulkExecutor,
+                         @Value("${orwell.bulk.parallelism:4}") int parallelism,
+                         @Value("${orwell.bulk.line-timeout-ms:45000}") long lineTimeoutMs,
+                         @Value("${orwell.bulk.max-line-chars:20000}") int maxLineChars,
+                         @Value("${orwell.bulk.max-lines:10000}") int maxLines,
+                         @Value("${orwell.bulk.max-requests:8}") int maxRequests) {
+        this.agentRunner = agentRunner;
+        this.objectMapper = objectMapper;
+        this.agentExecutor = agentExecutor;
+        this.bulkExecutor = bulkExecutor;
+        this.parallelism = Math.max(1, parallelism);
+        this.lineTimeoutMs = Math.max(1, lineTimeoutMs);
+        this.maxLineChars = Math.max(1, maxLineChars);
+        this.maxLines = Math.max(1, maxLines);
+        this.maxRequests = Math.max(1, maxRequests);
+    }
+
+    /**
+     * Lance la lecture sur agentExecutor (thread virtuel ou pool plateforme
+     * selon spring.threads.virtual.enabled) et rend la main.
+     * RateLimitedException si orwell.bulk.max-requests lectures sont deja en cours.
+     */
+    public void start(InputStream input, ResponseBodyEmitter emitter, Deadline deadline) {
+        if (activeRequests.incrementAndGet() > maxRequests) {
+            activeRequests.decrementAndGet();
+            rejectedRequests.increment();
+            throw new RateLimitedException("Too many bulk requests in progress (max " + maxRequests + ").",
+                    "bulk", "requests", BUSY_RETRY_AFTER_MS);
+        }
+        try {
+            agentExecutor.execute(() -> run(input, emitter, deadline));
+        } catch (RuntimeException e) {
+            activeRequests.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Traite l'entree jusqu'a la fin puis termine l'emitter.
+     * Bloquant : tourne sur agentExecutor (start).
+     */
+    private void run(InputStream input, ResponseBodyEmitter emitter, Deadline deadline) {
+        Session session = new Session(emitter);
+        requests.increment();
+        try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+            LineReader lineReader = new LineReader(reader, maxLineChars);
+            int index = 0;
+            String line;
+            while (!session.cancelled && (line = lineReader.next()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (index >= maxLines) {
+                    session.emit(result(index, null, "invalid", null,
+                            "Too many lines (max " + maxLines + ")", 0));
+                    break;
+                }
+                int lineIndex = index++;
+                lines.increment();
+                if (lineReader.truncated()) {
+                    failedLines.increment();
+                    session.emit(result(lineIndex, null, "invalid", null,
+                            "Line too long (max " + maxLineChars + " chars)", 0));
+                    continue;
+                }
+                // Contre-pression : pas de lecture tant que "parallelism" lignes sont en cours
+                if (!acquire(session, 1)) {
+                    break;
+                }
+                submit(session, lineIndex, line, deadline);
+            }
+            // Attend la fin des lignes en cours
+            if (acquire(session, parallelism)) {
+                session.permits.release(parallelism);
+                session.emit(summary(session));
+            }
+            emitter.complete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            session.cancel();
+            emitter.complete();
+        } catch (IOException e) {
+            log.warn("[ORWELL][BULK] Input read failed: {}", e.getMessage());
+            session.cancel();
+            emitter.completeWithError(e);
+        } finally {
+            activeRequests.decrementAndGet();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("parallelism", parallelism);
+        payload.put("lineTimeoutMs", lineTimeoutMs);
+        payload.put("maxLines", maxLines);
+        payload.put("maxRequests", maxRequests);
+        payload.put("activeRequests", activeRequests.get());
+        payload.put("requests", requests.sum());
+        payload.put("rejectedRequests", rejectedRequests.sum());
+        payload.put("lines", lines.sum());
+        payload.put("ok", okLines.sum());
+        payload.put("failed", failedLines.sum());
+        payload.put("disconnects", disconnects.sum());
+        return payload;
+    }
+
+    // -------------------------------------------------
+    // Lignes
+    // -------------------------------------------------
+
+    private void submit(Session session, int index, String line, Deadline deadline) {
+        // Enregistree avant execution : cancel() voit toujours les lignes en cours
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                session.emit(process(index, line, deadline));
+            } finally {
+                session.running.remove(index);
+                session.permits.release();
+            }
+        }, null);
+        session.running.put(index, task);
+        try {
+            bulkExecutor.execute(task);
+        } catch (RuntimeException e) {
+            // Executor arrete ou sature : la ligne echoue, le lot continue
+            session.running.remove(index);
+            session.permits.release();
+            failedLines.increment();
+            session.emit(result(index, null, "error", null, "Executor rejected the line.", 0));
+        }
+    }
+
+    /*
+     * Permis de parallelisme, en surveillant l'annulation : une ligne annulee
+     * avant d'avoir demarre ne rendra jamais son permis.
+     */
+    private boolean acquire(Session session, int permits) throws InterruptedException {
+        while (!session.cancelled) {
+            if (session.permits.tryAcquire(permits, 200, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, Object> process(int index, String line, Deadline requestDeadline) {
+        long start = System.nanoTime();
+        Map<String, Object> body;
+        try {
+            body = objectMapper.readValue(line, LINE_TYPE);
+        } catch (JsonProcessingException e) {
+            failedLines.increment();
+            return result(index, null, "invalid", null, "Invalid JSON line.", 0);
+        }
+        String id = body.get("id") != null ? String.valueOf(body.get("id")) : null;
+        String question = text(body, "question");
+        if (question == null) {
+            failedLines.increment();
+            return result(index, id, "invalid", null, "Missing required field: question", 0);
+        }
+
+        Deadline deadline = Deadline.afterMillis(Math.min(lineTimeoutMs, requestDeadline.remainingMs()));
+        try {
+            String answer = agentRunner.runAsk(context(body), question, deadline);
+            okLines.increment();
+            return result(index, id, "ok", answer, null, elapsedMs(start));
+        } catch (AgentTimeoutException e) {
+            failedLines.increment();
+            return result(index, id, "timeout", null, e.getMessage(), elapsedMs(start));
+        } catch (PromptTooLargeException e) {
+            failedLines.increment();
+            return result(index, id, "too_large", null, e.getMessage(), elapsedMs(start));
+        } catch (RateLimitedException e) {
+            // Quota de l'etablissement epuise : la ligne peut etre renvoyee apres retryAfterMs
+            failedLines.increment();
+            Map<String, Object> limited = result(index, id, "rate_limited", null, e.getMessage(), elapsedMs(start));
+            limited.put("retryAfterMs", e.getRetryAfterMs());
+            return limited;
+        } catch (RuntimeException e) {
+            failedLines.increment();
+            log.warn("[ORWELL][BULK] Line failed. index={}, message={}", index, e.getMessage());
+            return result(index, id, "error", null,
+                    "ORWELL n'a pas pu repondre a cette question.", elapsedMs(start));
+        }
+    }
+
+    // Meme contexte et memes valeurs par defaut que /ask/student, /ask/teacher, /ask/parent
+    private AgentContext context(Map<String, Object> body) {
+        String profile = text(body, "profile");
+        if (profile == null) {
+            return null;
+        }
+        String city = orDefault(text(body, "city"), "Libreville");
+        String establishment = orDefault(text(body, "establishment"), "Etablissement non precise");
+        String subject = orDefault(text(body, "subject"), "matiere generale");
+        return switch (profile.toLowerCase(Locale.ROOT)) {
+            case "student" -> AgentContext.forGabonStudent(city, establishment,
+                    orDefault(text(body, "educationLevel"), "niveau non precise"), subject);
+            case "teacher" -> AgentContext.forGabonTeacher(city, establishment,
+                    orDefault(text(body, "educationLevel"), "niveau non precise"), subject);
+            case "parent" -> AgentContext.forGabonParent(city, establishment,
+                    orDefault(text(body, "childEducationLevel"), "niveau non precise"), subject);
+            default -> null;
+        };
+    }
+
+    private Map<String, Object> result(int index, String id, String status, String answer, String error,
+                                       long durationMs) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("index", index);
+        if (id != null) {
+            payload.put("id", id);
+        }
+        payload.put("status", status);
+        if (answer != null) {
+            payload.put("answer", answer);
+        }
+        if (error != null) {
+            payload.put("error", error);
+        }
+        payload.put("durationMs", durationMs);
+        return payload;
+    }
+
+    private Map<String, Object> summary(Session session) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("summary", true);
+        payload.put("lines", session.emitted.get());
+        payload.put("ok", session.ok.get());
+        payload.put("failed", session.emitted.get() - session.ok.get());
+        return payload;
+    }
+
+    private static String text(Map<String, Object> body, String key) {
+        Object value = body.get(key);
+        if (value == null) {
+            return null;
+        }
+        String s = String.valueOf(value).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    private static String orDefault(String value, String defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    /**
+     * Etat d'une requete bulk : permis de parallelisme, lignes en cours, ecriture serialisee.
+     */
+    private final class Session {
+
+        private final ResponseBodyEmitter emitter;
+        private final Semaphore permits = new Semaphore(parallelism);
+        private final Map<Integer, Future<?>> running = new ConcurrentHashMap<>();
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final AtomicInteger emitted = new AtomicInteger();
+        private final AtomicInteger ok = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        private Session(ResponseBodyEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onTimeout(this::cancel);
+            emitter.onError(e -> cancel());
+        }
+
+        private void emit(Map<String, Object> payload) {
+            if (cancelled) {
+                return;
+            }
+            writeLock.lock();
+            try {
+                emitter.send(objectMapper.writeValueAsString(payload) + "\n", MediaType.TEXT_PLAIN);
+                if (payload.containsKey("index")) {
+                    emitted.incrementAndGet();
+                    if ("ok".equals(payload.get("status"))) {
+                        ok.incrementAndGet();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client parti (ou emitter deja termine) : on arrete tout
+                disconnects.increment();
+                cancel();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            running.values().forEach(f -> f.cancel(true));
+        }
+    }
+
+    /**
+     * Lecteur de lignes a memoire bornee : au-dela de maxChars, la fin de la
+     * ligne est lue et ignoree (truncated() = true), sans jamais etre stockee.
+     */
+    private static final class LineReader {
+
+        private final Reader reader;
+        private final int maxChars;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        private boolean truncated;
+
+        private LineReader(Reader reader, int maxChars) {
+            this.reader = reader;
+            this.maxChars = maxChars;
+        }
+
+        private String next() throws IOException {
+            StringBuilder line = new StringBuilder();
+            truncated = false;
+            boolean any = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return any ? line.toString() : null;
+                    }
+                }
+                char c = buffer[position++];
+                any = true;
+                if (c == '\n') {
+                    int end = line.length();
+                    if (end > 0 && line.charAt(end - 1) == '\r') {
+                        line.setLength(end - 1);
+                    }
+                    return line.toString();
+                }
+                if (line.length() < maxChars) {
+                    line.append(c);
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+
+        private boolean truncated() {
+            return truncated;
+        }
+    }
+}
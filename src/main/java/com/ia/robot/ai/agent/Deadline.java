@@ -0,0 +1,88 @@
+package com.ia.robot.ai.agent;
+
+import com.ia.robot.exception.AgentTimeoutException;
+
+/**
+ * Budget de temps d'une requete, du controleur jusqu'aux appels amont.
+ *
+ * - Cree une seule fois a l'entree (AgentController), transporte par AgentContext.
+ * - Chaque appel amont (LIVE, ChatClient) ne recoit que le temps restant.
+ * - Deadline.none() : pas de limite (appels internes, tests, anciens chemins).
+ *
+ * Base sur System.nanoTime() : insensible aux changements d'horloge.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0L, -1L);
+
+    private final long startNanos;
+    private final long budgetMs;
+
+    private Deadline(long startNanos, long budgetMs) {
+        this.startNanos = startNanos;
+        this.budgetMs = budgetMs;
+    }
+
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public static Deadline afterMillis(long budgetMs) {
+        return new Deadline(System.nanoTime(), Math.max(0L, budgetMs));
+    }
+
+    public boolean isBounded() {
+        return budgetMs >= 0;
+    }
+
+    /**
+     * Budget initial en ms (-1 si non borne).
+     */
+    public long budgetMs() {
+        return budgetMs;
+    }
+
+    /**
+     * Temps restant en ms (>= 0), Long.MAX_VALUE si non borne.
+     */
+    public long remainingMs() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000L;
+        return Math.max(0L, budgetMs - elapsedMs);
+    }
+
+    /**
+     * Temps ecoule depuis la creation, en ns (0 si non borne).
+     */
+    public long elapsedNanos() {
+        return isBounded() ? System.nanoTime() - startNanos : 0L;
+    }
+
+    public boolean isExpired() {
+        return remainingMs() == 0L;
+    }
+
+    /**
+     * Leve AgentTimeoutException si le budget est epuise.
+     *
+     * @param stage etape en cours, pour le message (ex: "fallback ChatClient")
+     */
+    public void check(String stage) {
+        if (isExpired()) {
+            throw expired(stage);
+        }
+    }
+
+    public AgentTimeoutException expired(String stage) {
+        return new AgentTimeoutException("Request deadline of " + budgetMs + " ms exceeded (" + stage + ").");
+    }
+
+    @Override
+    public String toString() {
+        return isBounded()
+                ? "Deadline{budgetMs=" + budgetMs + ", remainingMs=" + remainingMs() + '}'
+                : "Deadline{none}";
+    }
+}
@@ -1,10 +1,30 @@
 package com.ia.robot.ai.agent;
 
+import com.ia.robot.ai.cache.PlanCache;
+import com.ia.robot.ai.cache.PlanCacheKey;
+import com.ia.robot.ai.resilience.AdmissionControl;
+import com.ia.robot.ai.resilience.AgentScheduler;
+import com.ia.robot.ai.tokens.TokenBudgets;
+import com.ia.robot.ai.trace.RequestTrace;
+import com.ia.robot.ai.trace.RequestTracer;
+import com.ia.robot.ai.usage.AgentMetrics;
 import com.ia.robot.exception.AgentExecutionException;
+import com.ia.robot.exception.AgentTimeoutException;
 import com.ia.robot.exception.BadRequestException;
+import com.ia.robot.exception.PromptTooLargeException;
+import com.ia.robot.exception.RateLimitedException;
+import com.ia.robot.service.audit.AgentRunRecord;
+import com.ia.robot.service.ports.AgentAuditService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SimpleAgentRunner – Orchestrateur central d’ORWELL (Education Gabon).
@@ -16,11 +36,25 @@ import org.springframework.stereotype.Component;
  *   - Le contexte Education / Gabon (via AgentContext).
  *   - La validation basique des entrées.
  *   - Le logging (durée, taille des prompts, contexte).
- *   - Le wrapping des erreurs dans AgentExecutionException.
+ *   - Le wrapping des erreurs dans AgentExecutionException
+ *     (sauf AgentTimeoutException, propagee telle quelle -> 504, et
+ *     RateLimitedException, quota ou limite d'appels amont atteinte -> 429).
+ *   - Le budget de temps de la requete (Deadline, porte par AgentContext).
+ *   - Le comptage des appels en cours (inFlight / peakInFlight).
+ *   - L'admission par quotas (AdmissionControl, HTTP 429) avant tout appel amont.
+ *   - L'ordre de passage (AgentScheduler) : files equitables ponderees par classe
+ *     d'appel (interactif, standard, arriere-plan, batch) et par etablissement.
+ *   - La trace d'audit de chaque appel (AgentAuditService.recordRun,
+ *     persistee en arriere-plan : aucun INSERT sur le thread de la requete).
+ *   - Les metriques Micrometer (AgentMetrics) : duree par endpoint / profil /
+ *     chemin / issue, tailles de prompt et de reponse.
+ *   - La trace par etape de chaque appel (RequestTracer, GET /api/ops/traces/{requestId}) :
+ *     admission, file d'attente, audit ici ; prompt, LIVE, ChatClient dans ArchitectAgent.
  *
  * Usage typique :
- * - runArchitectPlan(context, userPrompt)
- * - runAsk(context, question)
+ * - runArchitectPlan(context, userPrompt[, deadline[, planKey, forceRefresh]])
+ * - runAsk(context, question[, deadline])
+ * - runAskStream(context, question[, deadline]) (SSE)
  * - runAskForGabonStudent / runAskForGabonTeacher / runAskForGabonParent
  *
  * Objectif :
@@ -34,8 +68,48 @@ public class SimpleAgentRunner {
 
     private final ArchitectAgent architectAgent;
 
-    public SimpleAgentRunner(ArchitectAgent architectAgent) {
+    private final AgentAuditService auditService;
+
+    private final PlanCache planCache;
+
+    private final AdmissionControl admissionControl;
+
+    private final AgentScheduler scheduler;
+
+    private final AgentMetrics metrics;
+
+    private final RequestTracer tracer;
+
+    // Appels agent en cours (plan + ask + stream), pour mesurer la tenue en charge
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    public SimpleAgentRunner(ArchitectAgent architectAgent,
+                             AgentAuditService auditService,
+                             PlanCache planCache,
+                             AdmissionControl admissionControl,
+                             AgentScheduler scheduler,
+                             AgentMetrics metrics,
+                             RequestTracer tracer) {
         this.architectAgent = architectAgent;
+        this.auditService = auditService;
+        this.planCache = planCache;
+        this.admissionControl = admissionControl;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.tracer = tracer;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    public void resetPeakInFlight() {
+        peakInFlight.set(inFlight.get());
     }
 
     // ---------------------------------------------------------------------
@@ -76,12 +150,89 @@ public class SimpleAgentRunner {
         );
     }
 
+    private AgentContext withDeadline(AgentContext context, Deadline deadline) {
+        return deadline != null ? context.withDeadline(deadline) : context;
+    }
+
     private void validateNotBlank(String value, String fieldName) {
         if (safeTrim(value).isEmpty()) {
             throw new BadRequestException(fieldName + " must not be empty.");
         }
     }
 
+    // Seul un plan JSON complet merite d'etre servi depuis le cache
+    private static boolean isJsonObject(String plan) {
+        if (plan == null) {
+            return false;
+        }
+        String p = plan.strip();
+        return p.startsWith("{") && p.endsWith("}");
+    }
+
+    private String planSystem() {
+        return architectAgent.systemPrompt(TokenBudgets.PLAN);
+    }
+
+    private String askSystem() {
+        return architectAgent.systemPrompt(TokenBudgets.ASK);
+    }
+
+    // L'audit ne doit jamais faire echouer la requete
+    private void audit(AgentContext context, AgentRunRecord record) {
+        RequestTrace trace = context.getTrace();
+        long begin = trace.begin();
+        try {
+            auditService.recordRun(record);
+            trace.end(RequestTrace.AUDIT, begin);
+        } catch (RuntimeException e) {
+            trace.fail(RequestTrace.AUDIT, begin, e);
+            log.warn("[ORWELL][AUDIT] Record skipped. requestId={}, error={}", record.requestId(), e.getMessage());
+        }
+    }
+
+    // Resultat d'un job hors ligne : l'echec de l'ecriture est propage
+    private void auditDurably(AgentContext context, AgentRunRecord record) {
+        RequestTrace trace = context.getTrace();
+        long begin = trace.begin();
+        try {
+            auditService.recordRunDurably(record);
+            trace.end(RequestTrace.AUDIT, begin);
+        } catch (RuntimeException e) {
+            trace.fail(RequestTrace.AUDIT, begin, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Admission (quotas) puis place dans l'ordonnanceur ; un refus est compte
+     * dans les metriques (path=none) et termine la trace avant d'etre propage.
+     */
+    private AgentScheduler.Ticket admit(AgentContext context, String endpoint, String metricsEndpoint,
+                                        String text, long requestStart) {
+        RequestTrace trace = context.getTrace();
+        try {
+            trace.span(RequestTrace.ADMISSION, () -> {
+                admissionControl.admit(context, endpoint, text);
+                return null;
+            });
+            return trace.span(RequestTrace.QUEUE, () -> scheduler.acquire(context, endpoint));
+        } catch (RuntimeException e) {
+            String outcome = AgentMetrics.outcomeOf(e);
+            metrics.recordRequest(metricsEndpoint, context, AgentMetrics.PATH_NONE, outcome,
+                    System.nanoTime() - requestStart);
+            tracer.finish(trace, outcome);
+            throw e;
+        }
+    }
+
+    private void enter() {
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    }
+
+    private void leave() {
+        inFlight.decrementAndGet();
+    }
+
     // ---------------------------------------------------------------------
     // PLAN D’ARCHITECTURE (endpoint /plan)
     // ---------------------------------------------------------------------
@@ -90,11 +241,70 @@ public class SimpleAgentRunner {
      * Execute la generation d’un plan d’architecture.
      */
     public String runArchitectPlan(AgentContext context, String userPrompt) {
-        AgentContext effectiveCtx = ensureContextForPlan(context);
+        return runArchitectPlan(context, userPrompt, null);
+    }
+
+    /**
+     * Comme runArchitectPlan(context, userPrompt), borne par deadline
+     * (null = garder celle du contexte).
+     */
+    public String runArchitectPlan(AgentContext context, String userPrompt, Deadline deadline) {
+        return runArchitectPlan(context, userPrompt, deadline, null, false);
+    }
+
+    /**
+     * Comme runArchitectPlan(context, userPrompt, deadline), avec le cache de plans :
+     * - planKey : identite canonique de la demande (null = pas de cache) ;
+     * - forceRefresh : ignore l'entree en cache et la remplace par un plan neuf.
+     */
+    public String runArchitectPlan(AgentContext context,
+                                   String userPrompt,
+                                   Deadline deadline,
+                                   PlanCacheKey planKey,
+                                   boolean forceRefresh) {
+        long requestStart = System.nanoTime();
         String prompt = safeTrim(userPrompt);
         validateNotBlank(prompt, "Plan prompt");
+        AgentContext effectiveCtx = tracer.join(withDeadline(ensureContextForPlan(context), deadline), AgentRunRecord.PLAN);
+
+        String cacheKey = planKey != null ? planKey.hash() : null;
+        if (cacheKey != null) {
+            if (forceRefresh) {
+                planCache.recordRefresh();
+            } else {
+                String cached = planCache.get(cacheKey);
+                if (cached != null) {
+                    log.info("[ORWELL][PLAN] Cache hit. requestId={}, domain={}",
+                            effectiveCtx.getRequestId(), planKey.domain());
+                    if (AgentScheduler.CHANNEL_BATCH.equals(effectiveCtx.getChannel())) {
+                        // Meme garantie qu'un plan neuf : la ligne attend sa copie en base
+                        try {
+                            auditDurably(effectiveCtx, AgentRunRecord.success(effectiveCtx, AgentRunRecord.PLAN,
+                                    planSystem(), prompt, cached, Instant.now()).withCacheKey(cacheKey));
+                        } catch (RuntimeException e) {
+                            String outcome = AgentMetrics.outcomeOf(e);
+                            metrics.recordRequest(AgentRunRecord.PLAN, effectiveCtx, "cache", outcome,
+                                    System.nanoTime() - requestStart);
+                            tracer.finish(effectiveCtx.getTrace(), outcome);
+                            throw e;
+                        }
+                    }
+                    metrics.recordRequest(AgentRunRecord.PLAN, effectiveCtx, "cache", AgentMetrics.SUCCESS,
+                            System.nanoTime() - requestStart);
+                    tracer.finish(effectiveCtx.getTrace(), AgentMetrics.SUCCESS);
+                    return cached;
+                }
+            }
+        }
+
+        // Plan en cache servi sans quota ; au-dela, 429 avant tout appel amont
+        AgentScheduler.Ticket ticket = admit(effectiveCtx, TokenBudgets.PLAN, AgentRunRecord.PLAN, prompt, requestStart);
+        metrics.recordPromptSize(AgentRunRecord.PLAN, prompt.length());
 
         long start = System.nanoTime();
+        Instant startedAt = Instant.now();
+        String outcome = AgentMetrics.ERROR;
+        enter();
         try {
             log.info(
                     "[ORWELL][PLAN] Start. requestId={}, agentName={}, tenant={}, country={}, city={}, level={}, subject={}, promptSize={}",
@@ -109,6 +319,19 @@ public class SimpleAgentRunner {
             );
 
             String result = architectAgent.generatePlan(effectiveCtx, prompt);
+            metrics.recordAnswerSize(AgentRunRecord.PLAN, result != null ? result.length() : 0);
+            AgentRunRecord record = AgentRunRecord.success(effectiveCtx, AgentRunRecord.PLAN, planSystem(), prompt,
+                    result, startedAt).withCacheKey(cacheKey);
+            if (AgentScheduler.CHANNEL_BATCH.equals(effectiveCtx.getChannel())) {
+                // PlanBatchJob : la ligne n'est terminee qu'une fois le plan en base
+                auditDurably(effectiveCtx, record);
+            } else {
+                audit(effectiveCtx, record);
+            }
+            if (cacheKey != null && isJsonObject(result)) {
+                planCache.put(cacheKey, result);
+            }
+            outcome = AgentMetrics.SUCCESS;
 
             long durationMs = (System.nanoTime() - start) / 1_000_000L;
             log.info(
@@ -118,7 +341,37 @@ public class SimpleAgentRunner {
             );
 
             return result;
+        } catch (PromptTooLargeException e) {
+            outcome = AgentMetrics.REJECTED;
+            audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.PLAN, planSystem(), prompt, e, startedAt));
+            log.warn(
+                    "[ORWELL][PLAN] Prompt too large. requestId={}, inputTokens={}, maxInputTokens={}",
+                    effectiveCtx.getRequestId(),
+                    e.getInputTokens(),
+                    e.getMaxInputTokens()
+            );
+            throw e;
+        } catch (RateLimitedException e) {
+            outcome = AgentMetrics.REJECTED;
+            audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.PLAN, planSystem(), prompt, e, startedAt));
+            log.warn(
+                    "[ORWELL][PLAN] Upstream saturated. requestId={}, message={}",
+                    effectiveCtx.getRequestId(),
+                    e.getMessage()
+            );
+            throw e;
+        } catch (AgentTimeoutException e) {
+            outcome = AgentMetrics.TIMEOUT;
+            audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.PLAN, planSystem(), prompt, e, startedAt));
+            log.warn(
+                    "[ORWELL][PLAN] Timeout. requestId={}, durationMs={}, budgetMs={}",
+                    effectiveCtx.getRequestId(),
+                    (System.nanoTime() - start) / 1_000_000L,
+                    effectiveCtx.getDeadline().budgetMs()
+            );
+            throw e;
         } catch (Exception e) {
+            audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.PLAN, planSystem(), prompt, e, startedAt));
             long durationMs = (System.nanoTime() - start) / 1_000_000L;
             log.error(
                     "[ORWELL][PLAN] Failed. requestId={}, agentName={}, durationMs={}, error={}",
@@ -129,6 +382,38 @@ public class SimpleAgentRunner {
                     e
             );
             throw new AgentExecutionException("ArchitectAgent plan execution failed.", e);
+        } finally {
+            leave();
+            ticket.release();
+            metrics.recordRequest(AgentRunRecord.PLAN, effectiveCtx, "standard", outcome, System.nanoTime() - requestStart);
+            tracer.finish(effectiveCtx.getTrace(), outcome);
+        }
+    }
+
+    /**
+     * Messages d'un plan prets a etre soumis hors ligne (API batch du fournisseur),
+     * sans appel au modele ni trace d'audit.
+     */
+    public ArchitectAgent.PlanMessages planMessages(AgentContext context, String userPrompt) {
+        String prompt = safeTrim(userPrompt);
+        validateNotBlank(prompt, "Plan prompt");
+        return architectAgent.planMessages(ensureContextForPlan(context), prompt);
+    }
+
+    /**
+     * Plan obtenu hors ligne : meme trace d'audit (et snapshot) qu'un plan genere
+     * ici, et mise en cache si le plan est un objet JSON complet.
+     * Ecriture synchrone : au retour, le plan est en base ; sinon exception
+     * (l'appelant ne doit pas considerer la ligne comme terminee).
+     */
+    public void recordOfflinePlan(AgentContext context, String system, String userPrompt, String plan,
+                                  PlanCacheKey planKey, Instant startedAt) {
+        AgentContext effectiveCtx = ensureContextForPlan(context);
+        String cacheKey = planKey != null ? planKey.hash() : null;
+        auditDurably(effectiveCtx, AgentRunRecord.success(effectiveCtx, AgentRunRecord.PLAN, system,
+                safeTrim(userPrompt), plan, startedAt).withCacheKey(cacheKey));
+        if (cacheKey != null && isJsonObject(plan)) {
+            planCache.put(cacheKey, plan);
         }
     }
 
@@ -140,11 +425,26 @@ public class SimpleAgentRunner {
      * Execute une question libre vers ORWELL.
      */
     public String runAsk(AgentContext context, String question) {
-        AgentContext effectiveCtx = ensureContextForAsk(context);
+        return runAsk(context, question, null);
+    }
+
+    /**
+     * Comme runAsk(context, question), borne par deadline
+     * (null = garder celle du contexte).
+     */
+    public String runAsk(AgentContext context, String question, Deadline deadline) {
+        long requestStart = System.nanoTime();
         String q = safeTrim(question);
         validateNotBlank(q, "Question");
+        AgentContext effectiveCtx = tracer.join(withDeadline(ensureContextForAsk(context), deadline), AgentRunRecord.ASK);
+        AgentScheduler.Ticket ticket = admit(effectiveCtx, TokenBudgets.ASK, AgentRunRecord.ASK, q, requestStart);
+        metrics.recordPromptSize(AgentRunRecord.ASK, q.length());
 
         long start = System.nanoTime();
+        Instant startedAt = Instant.now();
+        String path = AgentMetrics.PATH_NONE;
+        String outcome = AgentMetrics.ERROR;
+        enter();
         try {
             log.info(
                     "[ORWELL][ASK] Start. requestId={}, agentName={}, tenant={}, country={}, city={}, profileType={}, level={}, subject={}, questionSize={}",
@@ -159,17 +459,52 @@ public class SimpleAgentRunner {
                     q.length()
             );
 
-            String answer = architectAgent.answer(effectiveCtx, q);
+            AgentAnswer answer = architectAgent.respond(effectiveCtx, q);
+            path = AgentMetrics.pathTag(answer.path());
+            outcome = AgentMetrics.SUCCESS;
+            metrics.recordAnswerSize(AgentRunRecord.ASK, answer.text() != null ? answer.text().length() : 0);
+            audit(effectiveCtx, AgentRunRecord.success(effectiveCtx, AgentRunRecord.ASK, askSystem(), q, answer.text(), startedAt));
 
             long durationMs = (System.nanoTime() - start) / 1_000_000L;
             log.info(
-                    "[ORWELL][ASK] Success. requestId={}, durationMs={}",
+                    "[ORWELL][ASK] Success. requestId={}, durationMs={}, path={}",
                     effectiveCtx.getRequestId(),
-                    durationMs
+                    durationMs,
+                    answer.path()
             );
 
-            return answer;
+            return answer.text();
+        } catch (PromptTooLargeException e) {
+            outcome = AgentMetrics.REJECTED;
+            audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.ASK, askSystem(), q, e, startedAt));
+            log.warn(
+                    "[ORWELL][ASK] Prompt too large. requestId={}, inputTokens={}, maxInputTokens={}",
+                    effectiveCtx.getRequestId(),
+                    e.getInputTokens(),
+                    e.getMaxInputTokens()
+            );
+            throw e;
+        } catch (RateLimitedException e) {
+            outcome = AgentMetrics.REJECTED;
+            audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.ASK, askSystem(), q, e, startedAt));
+            log.warn(
+                    "[ORWELL][ASK] Upstream saturated. requestId={}, message={}",
+                    effectiveCtx.getRequestId(),
+                    e.getMessage()
+            );
+            throw e;
+        } catch (AgentTimeoutException e) {
+            outcome = AgentMetrics.TIMEOUT;
+            audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.ASK, askSystem(), q, e, startedAt));
+            log.warn(
+                    "[ORWELL][ASK] Timeout. requestId={}, durationMs={}, budgetMs={}",
+                    effectiveCtx.getRequestId(),
+                    (System.nanoTime() - start) / 1_000_000L,
+                    effectiveCtx.getDeadline().budgetMs()
+            );
+            throw e;
         } catch (Exception e) {
+            audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.ASK, askSystem(), q, e, startedAt));
             long durationMs = (System.nanoTime() - start) / 1_000_000L;
             log.error(
                     "[ORWELL][ASK] Failed. requestId={}, agentName={}, durationMs={}, error={}",
@@ -180,9 +515,144 @@ public class SimpleAgentRunner {
                     e
             );
             throw new AgentExecutionException("ArchitectAgent ask execution failed.", e);
+        } finally {
+            leave();
+            ticket.release();
+            metrics.recordRequest(AgentRunRecord.ASK, effectiveCtx, path, outcome, System.nanoTime() - requestStart);
+            tracer.finish(effectiveCtx.getTrace(), outcome);
         }
     }
 
+    /**
+     * Variante streaming de runAsk, pour les endpoints SSE.
+     *
+     * La validation est faite immediatement (avant abonnement) ; l'admission et
+     * l'attente d'une place (AgentScheduler) le sont a l'abonnement (Flux.defer),
+     * et rendues quand le flux se termine.
+     * Les logs Success/Failed et la duree sont produits une seule fois,
+     * quand le flux se termine (ou echoue), comme pour runAsk.
+     */
+    public Flux<String> runAskStream(AgentContext context, String question) {
+        return runAskStream(context, question, null);
+    }
+
+    /**
+     * Comme runAskStream(context, question), borne par deadline
+     * (null = garder celle du contexte).
+     */
+    public Flux<String> runAskStream(AgentContext context, String question, Deadline deadline) {
+        long requestStart = System.nanoTime();
+        String q = safeTrim(question);
+        validateNotBlank(q, "Question");
+        AgentContext baseCtx = withDeadline(ensureContextForAsk(context), deadline);
+
+        // Admission et place prises a l'abonnement, rendues dans doFinally :
+        // un Flux jamais souscrit ne garde rien. Un refus est emis comme
+        // RateLimitedException, pendant subscribe() (AgentController en fait un 429).
+        return Flux.defer(() -> {
+            AgentContext effectiveCtx = tracer.join(baseCtx, AgentRunRecord.ASK_STREAM);
+            AgentScheduler.Ticket ticket = admit(effectiveCtx, TokenBudgets.ASK, AgentRunRecord.ASK_STREAM, q, requestStart);
+            metrics.recordPromptSize(AgentRunRecord.ASK_STREAM, q.length());
+
+            long start = System.nanoTime();
+            Instant startedAt = Instant.now();
+            AtomicLong answerSize = new AtomicLong();
+            StringBuilder fullAnswer = new StringBuilder();
+            AtomicReference<String> path = new AtomicReference<>(AgentMetrics.PATH_NONE);
+            AtomicReference<String> outcome = new AtomicReference<>(AgentMetrics.CANCELLED);
+            enter();
+
+            log.info(
+                    "[ORWELL][ASK_STREAM] Start. requestId={}, agentName={}, tenant={}, country={}, city={}, profileType={}, level={}, subject={}, questionSize={}",
+                    effectiveCtx.getRequestId(),
+                    effectiveCtx.getAgentName(),
+                    effectiveCtx.getTenant(),
+                    effectiveCtx.getCountry(),
+                    effectiveCtx.getCity(),
+                    effectiveCtx.getProfileType(),
+                    effectiveCtx.getEducationLevel(),
+                    effectiveCtx.getSubject(),
+                    q.length()
+            );
+
+            return architectAgent.streamAnswer(effectiveCtx, q, answerPath -> path.set(AgentMetrics.pathTag(answerPath)))
+                    .doOnNext(chunk -> {
+                        answerSize.addAndGet(chunk.length());
+                        fullAnswer.append(chunk);
+                    })
+                    .doOnComplete(() -> {
+                        outcome.set(AgentMetrics.SUCCESS);
+                        metrics.recordAnswerSize(AgentRunRecord.ASK_STREAM, (int) answerSize.get());
+                        log.info(
+                                "[ORWELL][ASK_STREAM] Success. requestId={}, durationMs={}, answerSize={}",
+                                effectiveCtx.getRequestId(),
+                                (System.nanoTime() - start) / 1_000_000L,
+                                answerSize.get()
+                        );
+                        audit(effectiveCtx, AgentRunRecord.success(effectiveCtx, AgentRunRecord.ASK_STREAM, askSystem(), q,
+                                fullAnswer.toString(), startedAt));
+                    })
+                    .doOnCancel(() -> {
+                        log.info(
+                                "[ORWELL][ASK_STREAM] Cancelled by client. requestId={}, durationMs={}, answerSize={}",
+                                effectiveCtx.getRequestId(),
+                                (System.nanoTime() - start) / 1_000_000L,
+                                answerSize.get()
+                        );
+                        audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.ASK_STREAM, askSystem(), q,
+                                new CancellationException("Cancelled by client"), startedAt));
+                    })
+                    .doOnError(e -> {
+                        outcome.set(AgentMetrics.outcomeOf(e));
+                        audit(effectiveCtx, AgentRunRecord.failure(effectiveCtx, AgentRunRecord.ASK_STREAM, askSystem(), q, e, startedAt));
+                    })
+                    .onErrorMap(e -> {
+                        if (e instanceof PromptTooLargeException) {
+                            log.warn(
+                                    "[ORWELL][ASK_STREAM] Prompt too large. requestId={}, message={}",
+                                    effectiveCtx.getRequestId(),
+                                    e.getMessage()
+                            );
+                            return e;
+                        }
+                        if (e instanceof RateLimitedException) {
+                            log.warn(
+                                    "[ORWELL][ASK_STREAM] Upstream saturated. requestId={}, message={}",
+                                    effectiveCtx.getRequestId(),
+                                    e.getMessage()
+                            );
+                            return e;
+                        }
+                        if (e instanceof AgentTimeoutException) {
+                            log.warn(
+                                    "[ORWELL][ASK_STREAM] Timeout. requestId={}, durationMs={}, budgetMs={}, answerSize={}",
+                                    effectiveCtx.getRequestId(),
+                                    (System.nanoTime() - start) / 1_000_000L,
+                                    effectiveCtx.getDeadline().budgetMs(),
+                                    answerSize.get()
+                            );
+                            return e;
+                        }
+                        log.error(
+                                "[ORWELL][ASK_STREAM] Failed. requestId={}, agentName={}, durationMs={}, error={}",
+                                effectiveCtx.getRequestId(),
+                                effectiveCtx.getAgentName(),
+                                (System.nanoTime() - start) / 1_000_000L,
+                                e.getMessage(),
+                                e
+                        );
+                        return new AgentExecutionException("ArchitectAgent ask stream execution failed.", e);
+                    })
+                    .doFinally(signal -> {
+                        leave();
+                        ticket.release();
+                        metrics.recordRequest(AgentRunRecord.ASK_STREAM, effectiveCtx, path.get(), outcome.get(),
+                                System.nanoTime() - requestStart);
+                        tracer.finish(effectiveCtx.getTrace(), outcome.get());
+                    });
+        });
+    }
+
     // ---------------------------------------------------------------------
     // SURCHARGES CONVENIENCE POUR L’EDUCATION AU GABON
     // ---------------------------------------------------------------------
@@ -0,0 +1,251 @@
+package com.ia.robot.ai.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache memoire des reponses /ask, place devant ArchitectAgent.answer.
+ *
+ * Contexte :
+ * - En periode de revision, des milliers d'eleves du meme niveau posent
+ *   quasiment la meme question sur la meme matiere.
+ * - Chaque appel amont (ChatClient ou LIVE) coute plusieurs secondes.
+ *
+ * Strategie :
+ * - Taille bornee (orwell.cache.answer.max-entries).
+ * - Eviction LRU + admission "TinyLFU" : une nouvelle entree ne remplace
+ *   la plus ancienne que si elle est demandee plus souvent qu'elle.
+ *   Une question posee une seule fois ne chasse donc pas une question
+ *   tres demandee.
+ * - TTL standard pour les reponses ChatClient, TTL plus court pour les
+ *   reponses issues du mode LIVE (web_search), qui vieillissent plus vite.
+ *
+ * Les compteurs (hits, misses, evictions, ...) sont exposes via
+ * snapshot() pour pouvoir dimensionner le cache.
+ */
+@Component
+public class AnswerCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long liveTtlNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<AnswerCacheKey, Entry> entries;
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public AnswerCache(@Value("${orwell.cache.answer.enabled:true}") boolean enabled,
+                       @Value("${orwell.cache.answer.max-entries:5000}") int maxEntries,
+                       @Value("${orwell.cache.answer.ttl-seconds:21600}") long ttlSeconds,
+                       @Value("${orwell.cache.answer.live-ttl-seconds:900}") long liveTtlSeconds) {
+        this.enabled = enabled && maxEntries > 0;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.liveTtlNanos = liveTtlSeconds * 1_000_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(this.maxEntries);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Retourne la reponse en cache, ou null (absente, expiree, cache desactive).
+     */
+    public String get(AnswerCacheKey key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (now - entry.expiresAtNanos >= 0) {
+                entries.remove(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.answer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ajoute une reponse.
+     *
+     * @param live true si la reponse vient du mode LIVE (TTL court).
+     */
+    public void put(AnswerCacheKey key, String answer, boolean live) {
+        if (!enabled || answer == null || answer.isBlank()) {
+            return;
+        }
+        long ttl = live ? liveTtlNanos : ttlNanos;
+        if (ttl <= 0) {
+            return;
+        }
+        Entry entry = new Entry(answer, System.nanoTime() + ttl);
+        lock.lock();
+        try {
+            if (entries.containsKey(key) || entries.size() < maxEntries) {
+                entries.put(key, entry);
+                puts.increment();
+                return;
+            }
+
+            Iterator<Map.Entry<AnswerCacheKey, Entry>> it = entries.entrySet().iterator();
+            Map.Entry<AnswerCacheKey, Entry> victim = it.next();
+
+            // Une entree deja expiree part sans condition
+            boolean victimExpired = System.nanoTime() - victim.getValue().expiresAtNanos >= 0;
+            if (!victimExpired && sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+                rejections.increment();
+                return;
+            }
+
+            it.remove();
+            if (victimExpired) {
+                expirations.increment();
+            } else {
+                evictions.increment();
+            }
+            entries.put(key, entry);
+            puts.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compteurs pour le dimensionnement (exposes par AgentOpsController).
+     */
+    public Map<String, Object> snapshot() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("size", size());
+        payload.put("maxEntries", maxEntries);
+        payload.put("ttlSeconds", ttlNanos / 1_000_000_000L);
+        payload.put("liveTtlSeconds", liveTtlNanos / 1_000_000_000L);
+        payload.put("hits", h);
+        payload.put("misses", m);
+        payload.put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        payload.put("puts", puts.sum());
+        payload.put("evictions", evictions.sum());
+        payload.put("expirations", expirations.sum());
+        payload.put("admissionRejections", rejections.sum());
+        return payload;
+    }
+
+    private record Entry(String answer, long expiresAtNanos) {
+    }
+
+    /**
+     * Count-min sketch (4 lignes) avec vieillissement periodique :
+     * apres ~10 x capacite increments, tous les compteurs sont divises par 2
+     * pour que les questions "d'hier" ne restent pas prioritaires.
+     *
+     * Acces sous le verrou du cache.
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final int[][] table;
+        private final int mask;
+        private final int resetThreshold;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(64, capacity * 2) - 1) << 1;
+            this.table = new int[DEPTH][width];
+            this.mask = width - 1;
+            this.resetThreshold = Math.max(1_000, capacity * 10);
+        }
+
+        void increment(Object key) {
+            int h = spread(key.hashCode());
+            for (int i = 0; i < DEPTH; i++) {
+                int idx = index(h, i);
+                if (table[i][idx] < Integer.MAX_VALUE) {
+                    table[i][idx]++;
+                }
+            }
+            if (++additions >= resetThreshold) {
+                halve();
+            }
+        }
+
+        int frequency(Object key) {
+            int h = spread(key.hashCode());
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, table[i][index(h, i)]);
+            }
+            return min;
+        }
+
+        private void halve() {
+            for (int[] row : table) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] >>>= 1;
+                }
+            }
+            additions = 0;
+        }
+
+        private int index(int h, int row) {
+            int x = h * SEEDS[row];
+            return (x ^ (x >>> 16)) & mask;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 17;
+            h *= 0xED5AD4BB;
+            h ^= h >>> 11;
+            return h;
+        }
+    }
+}
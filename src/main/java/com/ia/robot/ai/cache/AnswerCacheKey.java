@@ -0,0 +1,79 @@
+package com.ia.robot.ai.cache;
+
+import com.ia.robot.ai.agent.AgentContext;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Identite d'une question /ask pour le cache de reponses.
+ *
+ * On ne garde que ce qui change reellement la reponse :
+ * - la question normalisee (casse, accents, espaces, ponctuation finale)
+ * - profileType, educationLevel, subject, locale
+ *
+ * Les champs purement techniques (requestId, createdAt, ville,
+ * etablissement, canal) sont volontairement exclus pour que des eleves
+ * de meme niveau posant la meme question partagent la meme entree.
+ *
+ * Un champ absent prend la valeur par defaut du prompt (EducationContextBlocks) :
+ * sans profil, la question est posee comme par un eleve, et partage donc
+ * l'entree de profileType=ELEVE.
+ */
+public record AnswerCacheKey(
+        String question,
+        String profileType,
+        String educationLevel,
+        String subject,
+        String locale
+) {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?!.;:…]+$");
+
+    // Memes valeurs par defaut que EducationContextBlocks
+    static final String DEFAULT_PROFILE = "ELEVE";
+    static final String DEFAULT_LEVEL = "niveau non precise";
+    static final String DEFAULT_SUBJECT = "matiere generale";
+    static final String DEFAULT_LOCALE = "fr-GA";
+
+    public static AnswerCacheKey of(AgentContext ctx, String question) {
+        return new AnswerCacheKey(
+                normalizeQuestion(question),
+                normalizeField(ctx != null ? ctx.getProfileType() : null, DEFAULT_PROFILE),
+                normalizeField(ctx != null ? ctx.getEducationLevel() : null, DEFAULT_LEVEL),
+                normalizeField(ctx != null ? ctx.getSubject() : null, DEFAULT_SUBJECT),
+                normalizeField(ctx != null ? ctx.getLocale() : null, DEFAULT_LOCALE)
+        );
+    }
+
+    /**
+     * "  Qu’est-ce qu'une FRACTION ?? " -> "qu'est-ce qu'une fraction"
+     */
+    static String normalizeQuestion(String question) {
+        if (question == null) {
+            return "";
+        }
+        String s = stripAccents(question)
+                .replace('’', '\'')
+                .replace('`', '\'')
+                .toLowerCase(Locale.ROOT);
+        s = SPACES.matcher(s).replaceAll(" ").trim();
+        return TRAILING_PUNCTUATION.matcher(s).replaceAll("");
+    }
+
+    static String normalizeField(String value) {
+        return normalizeField(value, "");
+    }
+
+    static String normalizeField(String value, String defaultValue) {
+        String v = value == null || value.isBlank() ? defaultValue : value;
+        return SPACES.matcher(stripAccents(v).toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static String stripAccents(String s) {
+        return MARKS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+    }
+}
@@ -0,0 +1,125 @@
+package com.ia.robot.ai.cache;
+
+import com.ia.robot.exception.AgentTimeoutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * "Single-flight" : fusion des appels identiques en cours.
+ *
+ * Cas typique : un enseignant projette une question, 40 eleves la tapent
+ * en meme temps. Sans fusion, 40 appels amont identiques partent.
+ *
+ * Fonctionnement :
+ * - Le premier appelant pour une cle (le "leader") execute l'appel.
+ * - Les appelants concurrents sur la meme cle attendent le resultat du leader
+ *   et recoivent la meme reponse, ou la meme exception.
+ * - La cle est retiree des que le leader termine : les appels suivants
+ *   passent par le cache (alimente par le leader) ou repartent en amont.
+ * - Chaque appelant fusionne attend au plus son propre budget (maxWaitMs) :
+ *   un leader lent ne bloque pas un client qui a un delai plus court.
+ */
+@Component
+public class InFlightCoalescer {
+
+    private final boolean enabled;
+
+    private final ConcurrentHashMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public InFlightCoalescer(@Value("${orwell.coalesce.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Execute call() une seule fois pour tous les appelants concurrents de la meme cle.
+     *
+     * @param onFollower transformation appliquee au resultat recu par un appelant fusionne
+     *                   (ex: marquer le chemin "COALESCED")
+     */
+    public <T> T execute(Object key, Supplier<T> call, UnaryOperator<T> onFollower) {
+        return execute(key, Long.MAX_VALUE, call, onFollower);
+    }
+
+    /**
+     * Variante avec attente bornee pour les appelants fusionnes.
+     *
+     * @param maxWaitMs attente max d'un appelant fusionne (Long.MAX_VALUE = sans limite) ;
+     *                  au-dela : AgentTimeoutException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, long maxWaitMs, Supplier<T> call, UnaryOperator<T> onFollower) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalesced.increment();
+            return onFollower.apply((T) await(existing, maxWaitMs));
+        }
+
+        leaders.increment();
+        try {
+            T result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Object await(CompletableFuture<Object> leader, long maxWaitMs) {
+        try {
+            return maxWaitMs == Long.MAX_VALUE
+                    ? leader.get()
+                    : leader.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Le leader continue : sa reponse alimentera le cache pour les suivants
+            throw new AgentTimeoutException("Timed out after " + maxWaitMs + " ms waiting for a coalesced call.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced call.", e);
+        } catch (ExecutionException e) {
+            // Meme semantique d'erreur que le leader : on relance sa propre exception
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        long l = leaders.sum();
+        long c = coalesced.sum();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("inFlightKeys", inFlight.size());
+        payload.put("upstreamCalls", l);
+        payload.put("coalescedCalls", c);
+        payload.put("savedRatio", (l + c) == 0 ? 0.0 : (double) c / (l + c));
+        return payload;
+    }
+}
@@ -0,0 +1,203 @@
+package com.ia.robot.ai.cache;
+
+import com.ia.robot.ai.resilience.LatencyTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache memoire des plans /plan, cle = PlanCacheKey.hash().
+ *
+ * - Un meme domaine + jeu de contraintes + option mobile ne regenere
+ *   pas un plan complet (plusieurs secondes, ~3000 tokens de sortie).
+ * - Taille bornee (orwell.cache.plan.max-entries), eviction LRU.
+ * - Age mesure depuis la creation du plan (horloge murale) : les entrees
+ *   rechargees depuis agent_plan_snapshots (PlanCacheWarmer) gardent leur
+ *   age reel et expirent apres orwell.cache.plan.ttl-hours comme les autres.
+ * - forceRefresh cote appelant : le cache est ignore en lecture, puis
+ *   remplace par le nouveau plan.
+ *
+ * Compteurs (hitRatio, age des entrees servies) : GET /api/ops/cache/plans
+ */
+@Component
+public class PlanCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Duration ttl;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder warmLoaded = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder warmHits = new LongAdder();
+
+    // Age (ms) des entrees servies
+    private final LatencyTracker servedAges = new LatencyTracker(512);
+
+    public PlanCache(@Value("${orwell.cache.plan.enabled:true}") boolean enabled,
+                     @Value("${orwell.cache.plan.max-entries:500}") int maxEntries,
+                     @Value("${orwell.cache.plan.ttl-hours:168}") long ttlHours) {
+        this.enabled = enabled && maxEntries > 0 && ttlHours > 0;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttl = Duration.ofHours(Math.max(0, ttlHours));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Plan en cache, ou null (absent, expire, cache desactive).
+     */
+    public String get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        Instant now = Instant.now();
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (isExpired(entry, now)) {
+                entries.remove(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            if (entry.warm) {
+                warmHits.increment();
+            }
+            servedAges.record(Duration.between(entry.createdAt, now).toMillis());
+            return entry.plan;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lecture ignoree a la demande de l'appelant (forceRefresh).
+     */
+    public void recordRefresh() {
+        refreshes.increment();
+    }
+
+    public void put(String key, String plan) {
+        if (!enabled || plan == null || plan.isBlank()) {
+            return;
+        }
+        store(key, new Entry(plan, Instant.now(), false));
+        puts.increment();
+    }
+
+    /**
+     * Demarrage a chaud : n'ecrase jamais une entree plus recente.
+     *
+     * @return true si l'entree a ete chargee
+     */
+    public boolean warm(String key, String plan, Instant createdAt) {
+        if (!enabled || plan == null || plan.isBlank()
+                || createdAt == null || isExpired(new Entry(plan, createdAt, true), Instant.now())) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (entries.containsKey(key) || entries.size() >= maxEntries) {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        store(key, new Entry(plan, createdAt, true));
+        warmLoaded.increment();
+        return true;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("size", size());
+        payload.put("maxEntries", maxEntries);
+        payload.put("ttlHours", ttl.toHours());
+        payload.put("hits", h);
+        payload.put("misses", m);
+        payload.put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        payload.put("forcedRefreshes", refreshes.sum());
+        payload.put("puts", puts.sum());
+        payload.put("warmLoaded", warmLoaded.sum());
+        payload.put("warmHits", warmHits.sum());
+        payload.put("evictions", evictions.sum());
+        payload.put("expirations", expirations.sum());
+        payload.put("servedAgeP50Seconds", seconds(servedAges.percentile(50)));
+        payload.put("servedAgeP90Seconds", seconds(servedAges.percentile(90)));
+        payload.put("servedAgeMaxSeconds", seconds(servedAges.percentile(100)));
+        return payload;
+    }
+
+    private void store(String key, Entry entry) {
+        lock.lock();
+        try {
+            if (!entries.containsKey(key) && entries.size() >= maxEntries) {
+                Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+            entries.put(key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isExpired(Entry entry, Instant now) {
+        return entry.createdAt.plus(ttl).isBefore(now);
+    }
+
+    private static long seconds(long millis) {
+        return millis < 0 ? -1 : millis / 1000;
+    }
+
+    private record Entry(String plan, Instant createdAt, boolean warm) {
+    }
+}
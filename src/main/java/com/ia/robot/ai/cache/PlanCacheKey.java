@@ -0,0 +1,48 @@
+package com.ia.robot.ai.cache;
+
+import com.ia.robot.util.HashUtils;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Identite d'une demande /plan pour le cache de plans.
+ *
+ * Forme canonique :
+ * - domaine normalise (casse, accents, espaces) ;
+ * - contraintes normalisees, dedoublonnees et triees :
+ *   ["MySQL", "Java 21", "mysql"] == ["Java 21", "MySQL"] ;
+ * - option mobile.
+ *
+ * hash() (SHA-256 de la forme canonique) sert de cle au cache et
+ * est stocke dans agent_plan_snapshots.cache_key pour le demarrage a chaud.
+ */
+public record PlanCacheKey(String domain, List<String> constraints, boolean mobile) {
+
+    public PlanCacheKey {
+        Objects.requireNonNull(domain, "domain");
+        constraints = constraints == null ? List.of() : List.copyOf(constraints);
+    }
+
+    public static PlanCacheKey of(String domain, List<String> constraints, boolean mobile) {
+        TreeSet<String> canonical = new TreeSet<>();
+        if (constraints != null) {
+            for (String constraint : constraints) {
+                String c = AnswerCacheKey.normalizeField(constraint);
+                if (!c.isEmpty()) {
+                    canonical.add(c);
+                }
+            }
+        }
+        return new PlanCacheKey(AnswerCacheKey.normalizeField(domain), List.copyOf(canonical), mobile);
+    }
+
+    public String canonical() {
+        return domain + "\n" + String.join(",", constraints) + "\n" + (mobile ? "mobile" : "backend");
+    }
+
+    public String hash() {
+        return HashUtils.sha256Hex(canonical());
+    }
+}
@@ -2,17 +2,31 @@ package com.ia.robot.ai.live;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.ai.transport.UpstreamHttpTransport;
+import com.ia.robot.ai.usage.PromptCacheStats;
+import com.ia.robot.ai.usage.TokenUsage;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * ===CLE-MODIF-ORWELL===
@@ -29,14 +43,31 @@ import java.util.Map;
  *     OPENAI_WEB_MODEL=gpt-5.1-codex-max (ou un autre modèle compatible web_search)
  * - Effort de reasoning configurable:
  *     ORWELL_WEB_REASONING=low|medium|high|none (selon modèle)
+ * - Timeouts:
+ *     orwell.web.timeout-seconds             : duree max d'un appel complet
+ *     orwell.upstream.connect-timeout-seconds : etablissement de connexion (transport partage)
+ *   L'appelant peut reduire le delai a son budget restant (askLive(..., budgetMs)).
+ * - Streaming (orwell.web.streaming=true, defaut):
+ *     la requete demande un flux SSE ("stream": true), lu au fil de l'eau par
+ *     ResponsesEventStreamParser ; streamLive(...) transmet chaque morceau de
+ *     texte des son arrivee. Plus de corps complet en memoire ni d'arbre JsonNode.
+ * - URL de base configurable (orwell.web.base-url), ex: serveur de test local.
+ * - Transport: UpstreamHttpTransport, le HttpClient HTTP/2 partage avec le ChatClient.
+ * - Usage de tokens (dont tokens servis par le cache de prefixe) enregistre
+ *   dans PromptCacheStats sous l'endpoint "live".
  */
 @Component
 public class OrwellLiveClient {
 
-    private static final String RESPONSES_URL = "https://api.openai.com/v1/responses";
+    /**
+     * Reponse "soft" renvoyee quand aucun texte n'a pu etre extrait.
+     */
+    public static final String NO_TEXT_ANSWER = "Je n'ai pas pu extraire une réponse textuelle claire du mode LIVE.";
 
     private final ObjectMapper objectMapper;
+    private final ResponsesEventStreamParser eventStreamParser;
     private final HttpClient http;
+    private final PromptCacheStats promptCacheStats;
 
     @Value("${orwell.web.enabled:false}")
     private boolean enabled;
@@ -47,67 +78,93 @@ public class OrwellLiveClient {
     @Value("${orwell.web.reasoning:low}")
     private String reasoningEffort;
 
-    public OrwellLiveClient(ObjectMapper objectMapper) {
+    @Value("${orwell.web.base-url:https://api.openai.com/v1}")
+    private String baseUrl;
+
+    @Value("${orwell.web.streaming:true}")
+    private boolean streaming;
+
+    // Plafond de tokens de sortie (raisonnement compris) ; 0 = aucun
+    @Value("${orwell.tokens.live.max-output-tokens:4000}")
+    private int maxOutputTokens;
+
+    // Meme cle que le ChatClient ; a defaut, variable d'env OPENAI_API_KEY
+    @Value("${spring.ai.openai.api-key:}")
+    private String apiKey;
+
+    private final long requestTimeoutMs;
+
+    public OrwellLiveClient(ObjectMapper objectMapper,
+                            UpstreamHttpTransport upstreamHttpTransport,
+                            PromptCacheStats promptCacheStats,
+                            @Value("${orwell.web.timeout-seconds:20}") long timeoutSeconds) {
         this.objectMapper = objectMapper;
-        this.http = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(15))
-                .build();
+        this.eventStreamParser = new ResponsesEventStreamParser(objectMapper.getFactory());
+        this.requestTimeoutMs = Math.max(1L, timeoutSeconds) * 1000L;
+        // Transport partage (UpstreamHttpConfig) : HTTP/2, executor dedie, connexions pre-ouvertes
+        this.http = upstreamHttpTransport;
+        this.promptCacheStats = promptCacheStats;
     }
 
     public boolean isEnabled() {
         return enabled;
     }
 
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * true si la reponse LIVE est exploitable (non vide, pas la reponse "soft").
+     */
+    public static boolean isUsableAnswer(String text) {
+        return text != null && !text.isBlank() && !NO_TEXT_ANSWER.equals(text);
+    }
+
+    /**
+     * Delai max d'un appel LIVE (orwell.web.timeout-seconds), en ms.
+     */
+    public long getRequestTimeoutMs() {
+        return requestTimeoutMs;
+    }
+
     /**
      * Appel LIVE avec web_search.
      * Retourne une réponse texte robuste (extraction tolérante).
      */
     public String askLive(String systemPrompt, String userQuestion) {
-        String apiKey = System.getenv("OPENAI_API_KEY");
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("OPENAI_API_KEY is not set for LIVE mode.");
-        }
-
-        try {
-            Map<String, Object> payload = new LinkedHashMap<>();
-            payload.put("model", model);
-
-            // Input style "messages"
-            payload.put("input", List.of(
-                    Map.of("role", "system", "content", systemPrompt),
-                    Map.of("role", "user", "content", userQuestion)
-            ));
-
-            // Outil de recherche web (si supporté par le modèle)
-            payload.put("tools", List.of(
-                    Map.of("type", "web_search")
-            ));
+        return askLive(systemPrompt, userQuestion, Long.MAX_VALUE);
+    }
 
-            // Reasoning option (tolérant selon modèles)
-            payload.put("reasoning", Map.of("effort", reasoningEffort));
+    /**
+     * Comme askLive(system, question), avec un budget appelant :
+     * le delai effectif est min(budgetMs, orwell.web.timeout-seconds).
+     */
+    public String askLive(String systemPrompt, String userQuestion, long budgetMs) {
+        if (streaming) {
+            return streamLive(systemPrompt, userQuestion, budgetMs, delta -> { });
+        }
 
-            String json = objectMapper.writeValueAsString(payload);
+        long timeoutMs = effectiveTimeoutMs(budgetMs);
+        String key = requireApiKey();
+        long start = System.nanoTime();
 
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(RESPONSES_URL))
-                    .timeout(Duration.ofSeconds(60))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(json))
-                    .build();
+        try {
+            HttpRequest req = buildRequest(key, buildPayload(systemPrompt, userQuestion, false), timeoutMs, false);
 
-            HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> res = send(req, HttpResponse.BodyHandlers.ofString(), timeoutMs);
 
             if (res.statusCode() >= 400) {
                 throw new IllegalStateException("LIVE mode HTTP error: " + res.statusCode() + " - " + res.body());
             }
 
             JsonNode root = objectMapper.readTree(res.body());
+            promptCacheStats.record(PromptCacheStats.LIVE, extractUsage(root), elapsedMs(start));
             String text = extractText(root);
 
             if (text == null || text.isBlank()) {
                 // fallback soft: renvoyer une version courte
-                return "Je n'ai pas pu extraire une réponse textuelle claire du mode LIVE.";
+                return NO_TEXT_ANSWER;
             }
 
             return text;
@@ -117,6 +174,171 @@ public class OrwellLiveClient {
         }
     }
 
+    /**
+     * Appel LIVE en streaming SSE : chaque morceau de texte est passe a onDelta
+     * des sa reception (sur le thread appelant).
+     *
+     * @return le texte complet, ou NO_TEXT_ANSWER si le flux n'en contenait pas
+     */
+    public String streamLive(String systemPrompt, String userQuestion, long budgetMs, Consumer<String> onDelta) {
+        long timeoutMs = effectiveTimeoutMs(budgetMs);
+        String key = requireApiKey();
+        long start = System.nanoTime();
+
+        try {
+            HttpRequest req = buildRequest(key, buildPayload(systemPrompt, userQuestion, true), timeoutMs, true);
+
+            HttpResponse<InputStream> res = send(req, HttpResponse.BodyHandlers.ofInputStream(), timeoutMs);
+
+            try (InputStream body = res.body()) {
+                if (res.statusCode() >= 400) {
+                    String error = new String(body.readNBytes(4096), StandardCharsets.UTF_8);
+                    throw new IllegalStateException("LIVE mode HTTP error: " + res.statusCode() + " - " + error);
+                }
+
+                // Lecture du corps bornee au temps restant : a expiration le flux est ferme
+                long leftMs = Math.max(1L, timeoutMs - (System.nanoTime() - start) / 1_000_000L);
+                AtomicBoolean timedOut = new AtomicBoolean(false);
+                CompletableFuture<Void> watchdog = CompletableFuture.runAsync(
+                        () -> {
+                            timedOut.set(true);
+                            closeQuietly(body);
+                        },
+                        CompletableFuture.delayedExecutor(leftMs, TimeUnit.MILLISECONDS)
+                );
+                try {
+                    AtomicReference<TokenUsage> usage = new AtomicReference<>(TokenUsage.NONE);
+                    String text = eventStreamParser.parse(body, onDelta, usage::set);
+                    promptCacheStats.record(PromptCacheStats.LIVE, usage.get(), elapsedMs(start));
+                    return text.isBlank() ? NO_TEXT_ANSWER : text;
+                } catch (IOException e) {
+                    if (timedOut.get()) {
+                        throw new HttpTimeoutException("LIVE mode timed out after " + timeoutMs + " ms");
+                    }
+                    throw e;
+                } finally {
+                    watchdog.cancel(false);
+                }
+            }
+
+        } catch (Exception e) {
+            throw new IllegalStateException("LIVE mode failed: " + e.getMessage(), e);
+        }
+    }
+
+    private long effectiveTimeoutMs(long budgetMs) {
+        long timeoutMs = Math.min(budgetMs, requestTimeoutMs);
+        if (timeoutMs <= 0) {
+            throw new IllegalStateException("LIVE mode skipped: no time budget left.");
+        }
+        return timeoutMs;
+    }
+
+    private String requireApiKey() {
+        String key = (apiKey != null && !apiKey.isBlank()) ? apiKey : System.getenv("OPENAI_API_KEY");
+        if (key == null || key.isBlank()) {
+            throw new IllegalStateException("OPENAI_API_KEY is not set for LIVE mode.");
+        }
+        return key;
+    }
+
+    private String buildPayload(String systemPrompt, String userQuestion, boolean stream) throws IOException {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("model", model);
+
+        // Input style "messages"
+        payload.put("input", List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", userQuestion)
+        ));
+
+        // Outil de recherche web (si supporté par le modèle)
+        payload.put("tools", List.of(
+                Map.of("type", "web_search")
+        ));
+
+        // Reasoning option (tolérant selon modèles)
+        payload.put("reasoning", Map.of("effort", reasoningEffort));
+
+        if (maxOutputTokens > 0) {
+            payload.put("max_output_tokens", maxOutputTokens);
+        }
+
+        if (stream) {
+            payload.put("stream", true);
+        }
+
+        return objectMapper.writeValueAsString(payload);
+    }
+
+    private HttpRequest buildRequest(String key, String json, long timeoutMs, boolean stream) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/responses"))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Content-Type", "application/json")
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .header("Authorization", "Bearer " + key)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // deja ferme
+        }
+    }
+
+    /**
+     * HttpRequest.timeout ne couvre que l'attente des en-tetes :
+     * on borne ici l'echange (corps compris pour ofString) au meme delai.
+     * Expiration ou interruption : l'echange HTTP est annule.
+     */
+    private <T> HttpResponse<T> send(HttpRequest req,
+                                     HttpResponse.BodyHandler<T> bodyHandler,
+                                     long timeoutMs) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> pending = http.sendAsync(req, bodyHandler);
+        try {
+            return pending.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            pending.cancel(true);
+            throw new HttpTimeoutException("LIVE mode timed out after " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            pending.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * usage.input_tokens / input_tokens_details.cached_tokens / output_tokens
+     */
+    private static TokenUsage extractUsage(JsonNode root) {
+        JsonNode usage = root != null ? root.path("usage") : null;
+        if (usage == null || !usage.isObject()) {
+            return TokenUsage.NONE;
+        }
+        return new TokenUsage(
+                usage.path("input_tokens").asLong(0),
+                usage.path("input_tokens_details").path("cached_tokens").asLong(0),
+                usage.path("output_tokens").asLong(0)
+        );
+    }
+
     /**
      * Extraction tolérante:
      * - Essaie output_text direct
@@ -0,0 +1,263 @@
+package com.ia.robot.ai.live;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.ia.robot.ai.usage.TokenUsage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Lecture incrementale d'un flux SSE de l'API Responses ("stream": true).
+ *
+ * Principe :
+ * - Le flux est lu ligne par ligne ; chaque evenement (lignes "data:" jusqu'a
+ *   une ligne vide) est analyse avec le JsonParser de Jackson, sans arbre JsonNode.
+ * - Seuls les champs utiles sont lus ("type", "delta", "text", message d'erreur) ;
+ *   les gros sous-objets (response, item, annotations web_search) sont sautes
+ *   avec skipChildren(), donc jamais materialises.
+ *
+ * Evenements exploites :
+ * - response.output_text.delta : morceau de texte -> onDelta
+ * - response.output_text.done  : texte complet (utilise seulement si aucun delta recu)
+ * - response.failed / error    : IllegalStateException avec le message amont
+ * - response.completed / response.incomplete / [DONE] : fin du flux
+ *   (response.usage, dont input_tokens_details.cached_tokens -> onUsage)
+ *
+ * Sans etat partage : une instance peut servir a tous les appels.
+ */
+public final class ResponsesEventStreamParser {
+
+    private static final String TEXT_DELTA = "response.output_text.delta";
+    private static final String TEXT_DONE = "response.output_text.done";
+    private static final String COMPLETED = "response.completed";
+    private static final String INCOMPLETE = "response.incomplete";
+    private static final String FAILED = "response.failed";
+    private static final String ERROR = "error";
+
+    private final JsonFactory jsonFactory;
+
+    public ResponsesEventStreamParser(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Consomme le flux jusqu'a la fin de la reponse.
+     *
+     * @param onDelta recoit chaque morceau de texte des son arrivee
+     * @return le texte complet (concatenation des morceaux), "" si aucun texte
+     */
+    public String parse(InputStream body, Consumer<String> onDelta) throws IOException {
+        return parse(body, onDelta, usage -> { });
+    }
+
+    /**
+     * @param onUsage recoit l'usage de tokens rapporte en fin de reponse (si present)
+     */
+    public String parse(InputStream body, Consumer<String> onDelta, Consumer<TokenUsage> onUsage) throws IOException {
+        StringBuilder fullText = new StringBuilder();
+        StringBuilder data = new StringBuilder();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    if (data.length() > 0 && dispatch(data.toString(), fullText, onDelta, onUsage)) {
+                        return fullText.toString();
+                    }
+                    data.setLength(0);
+                    continue;
+                }
+                if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+                }
+                // "event:", "id:", "retry:" et commentaires ":" : le type est aussi dans le JSON
+            }
+            // Flux coupe sans ligne vide finale
+            if (data.length() > 0) {
+                dispatch(data.toString(), fullText, onDelta, onUsage);
+            }
+        }
+        return fullText.toString();
+    }
+
+    /**
+     * @return true si l'evenement termine la reponse
+     */
+    private boolean dispatch(String data,
+                             StringBuilder fullText,
+                             Consumer<String> onDelta,
+                             Consumer<TokenUsage> onUsage) throws IOException {
+        if ("[DONE]".equals(data)) {
+            return true;
+        }
+
+        Event event = readEvent(data);
+        if (event.type == null) {
+            return false;
+        }
+
+        switch (event.type) {
+            case TEXT_DELTA -> {
+                if (event.delta != null && !event.delta.isEmpty()) {
+                    fullText.append(event.delta);
+                    onDelta.accept(event.delta);
+                }
+                return false;
+            }
+            case TEXT_DONE -> {
+                // Serveur qui n'envoie pas de deltas : on prend le texte final d'un bloc
+                if (fullText.length() == 0 && event.text != null && !event.text.isEmpty()) {
+                    fullText.append(event.text);
+                    onDelta.accept(event.text);
+                }
+                return false;
+            }
+            case COMPLETED, INCOMPLETE -> {
+                if (event.usage != null) {
+                    onUsage.accept(event.usage);
+                }
+                return true;
+            }
+            case FAILED, ERROR -> throw new IllegalStateException("LIVE stream error: "
+                    + (event.errorMessage != null ? event.errorMessage : event.type));
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private Event readEvent(String data) throws IOException {
+        Event event = new Event();
+        try (JsonParser p = jsonFactory.createParser(data)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return event;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "type" -> event.type = p.getValueAsString();
+                    case "delta" -> event.delta = value == JsonToken.VALUE_STRING ? p.getText() : null;
+                    case "text" -> event.text = value == JsonToken.VALUE_STRING ? p.getText() : null;
+                    case "message" -> event.errorMessage = value == JsonToken.VALUE_STRING ? p.getText() : null;
+                    // {"type":"response.failed","response":{..."error":{"message":...}}}
+                    // {"type":"response.completed","response":{..."usage":{...}}}
+                    case "response" -> readResponse(p, event);
+                    case "error" -> {
+                        String nested = findMessage(p);
+                        if (nested != null) {
+                            event.errorMessage = nested;
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Sous-objet "response" : seuls le message d'erreur et l'usage sont lus,
+     * le reste (output, tools, annotations) est saute.
+     */
+    private void readResponse(JsonParser p, Event event) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("message".equals(field) && value == JsonToken.VALUE_STRING) {
+                event.errorMessage = p.getText();
+            } else if ("error".equals(field) && value == JsonToken.START_OBJECT) {
+                String nested = findMessage(p);
+                if (nested != null) {
+                    event.errorMessage = nested;
+                }
+            } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                event.usage = readUsage(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * {"input_tokens":..,"input_tokens_details":{"cached_tokens":..},"output_tokens":..}
+     */
+    private TokenUsage readUsage(JsonParser p) throws IOException {
+        long input = 0;
+        long cached = 0;
+        long output = 0;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "input_tokens" -> input = value.isNumeric() ? p.getLongValue() : 0;
+                case "output_tokens" -> output = value.isNumeric() ? p.getLongValue() : 0;
+                case "input_tokens_details" -> {
+                    if (value != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String detail = p.currentName();
+                        JsonToken detailValue = p.nextToken();
+                        if ("cached_tokens".equals(detail) && detailValue.isNumeric()) {
+                            cached = p.getLongValue();
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return new TokenUsage(input, cached, output);
+    }
+
+    /**
+     * Cherche un champ "error.message" (ou "message" directement sous "error")
+     * dans le sous-objet courant, en sautant tout le reste.
+     */
+    private String findMessage(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        String found = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("message".equals(field) && value == JsonToken.VALUE_STRING) {
+                found = p.getText();
+            } else if ("error".equals(field) && value == JsonToken.START_OBJECT) {
+                String nested = findMessage(p);
+                if (nested != null) {
+                    found = nested;
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return found;
+    }
+
+    private static final class Event {
+        private String type;
+        private String delta;
+        private String text;
+        private String errorMessage;
+        private TokenUsage usage;
+    }
+}
@@ -0,0 +1,141 @@
+package com.ia.robot.ai.prompt;
+
+import com.ia.robot.ai.agent.AgentContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloc "Contexte Gabon / Education" injecte en tete des prompts /plan et /ask.
+ *
+ * Le bloc ne depend que de 9 champs de l'AgentContext (tenant, pays, ville,
+ * etablissement, profil, niveau, matiere, locale, canal) : pour un meme
+ * tuple, le texte rendu est reutilise au lieu d'etre reconstruit a chaque
+ * requete (requestId, createdAt et deadline n'entrent pas dans la cle).
+ *
+ * Cache borne (orwell.prompt.context-cache.max-entries) : une fois plein,
+ * il est vide d'un coup ; reconstruire un bloc ne coute qu'un rendu de gabarit.
+ * Compteurs : GET /api/ops/prompts
+ */
+@Component
+public class EducationContextBlocks {
+
+    private static final PromptTemplate BLOCK = PromptTemplate.compile("""
+            Contexte Gabon / Education:
+            - Tenant: {{tenant}}
+            - Pays: {{country}}
+            - Ville: {{city}}
+            - Etablissement: {{establishment}}
+            - Profil utilisateur: {{profileType}}
+            - Niveau scolaire: {{educationLevel}}
+            - Matiere: {{subject}}
+            - Langue/Locale: {{locale}}
+            - Canal: {{channel}}
+            """);
+
+    // Fallback ultra simple si aucun contexte n'est fourni
+    private static final String NO_CONTEXT_BLOCK = """
+            Contexte Gabon / Education:
+            - Pays: Gabon
+            - Niveau: inconnu
+            - Profil: ELEVE
+            - Ville: Libreville
+            - Etablissement: non precise
+            - Matiere: generale
+            """;
+
+    private final int maxEntries;
+    private final Map<Key, String> blocks = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    public EducationContextBlocks(@Value("${orwell.prompt.context-cache.max-entries:1024}") int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+    }
+
+    /**
+     * Resume de contexte education / Gabon : permet a ORWELL de savoir
+     * a qui il parle et dans quel environnement.
+     */
+    public String render(AgentContext ctx) {
+        if (ctx == null) {
+            return NO_CONTEXT_BLOCK;
+        }
+
+        Key key = new Key(
+                orDefault(ctx.getTenant(), "GABON_EDU"),
+                orDefault(ctx.getCountry(), "Gabon"),
+                orDefault(ctx.getCity(), "Libreville"),
+                orDefault(ctx.getEstablishment(), "Etablissement non precise"),
+                orDefault(ctx.getProfileType(), "ELEVE"),
+                orDefault(ctx.getEducationLevel(), "niveau non precise"),
+                orDefault(ctx.getSubject(), "matiere generale"),
+                orDefault(ctx.getLocale(), "fr-GA"),
+                orDefault(ctx.getChannel(), "MOBILE")
+        );
+
+        if (maxEntries == 0) {
+            misses.increment();
+            return key.render();
+        }
+
+        String block = blocks.get(key);
+        if (block != null) {
+            hits.increment();
+            return block;
+        }
+
+        misses.increment();
+        block = key.render();
+        if (blocks.size() >= maxEntries) {
+            blocks.clear();
+            resets.increment();
+        }
+        blocks.put(key, block);
+        return block;
+    }
+
+    public Map<String, Object> snapshot() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("contextBlocks", blocks.size());
+        payload.put("maxEntries", maxEntries);
+        payload.put("hits", h);
+        payload.put("misses", m);
+        payload.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        payload.put("resets", resets.sum());
+        payload.put("templateStaticChars", BLOCK.staticLength());
+        return payload;
+    }
+
+    private static String orDefault(String value, String def) {
+        if (value == null) {
+            return def;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? def : trimmed;
+    }
+
+    private record Key(String tenant,
+                       String country,
+                       String city,
+                       String establishment,
+                       String profileType,
+                       String educationLevel,
+                       String subject,
+                       String locale,
+                       String channel) {
+
+        String render() {
+            return BLOCK.render(tenant, country, city, establishment, profileType,
+                    educationLevel, subject, locale, channel);
+        }
+    }
+}
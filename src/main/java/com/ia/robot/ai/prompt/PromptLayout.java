@@ -0,0 +1,42 @@
+package com.ia.robot.ai.prompt;
+
+/**
+ * Disposition des prompts envoyes au modele (orwell.prompt.layout).
+ *
+ * - LEGACY       : bloc de contexte en tete du message utilisateur, suivi des
+ *                  consignes de l'endpoint puis de la demande.
+ * - PREFIX_CACHE : tout le texte statique d'un endpoint (system prompt + consignes)
+ *                  forme un prefixe identique octet pour octet d'une requete a
+ *                  l'autre ; contexte et demande sont places a la fin. Le cache de
+ *                  prefixe du fournisseur peut alors reutiliser ce prefixe.
+ */
+public enum PromptLayout {
+
+    LEGACY("legacy"),
+    PREFIX_CACHE("prefix-cache");
+
+    private final String propertyValue;
+
+    PromptLayout(String propertyValue) {
+        this.propertyValue = propertyValue;
+    }
+
+    public String propertyValue() {
+        return propertyValue;
+    }
+
+    /**
+     * Valeur inconnue ou vide : PREFIX_CACHE.
+     */
+    public static PromptLayout from(String value) {
+        if (value != null) {
+            String v = value.trim();
+            for (PromptLayout layout : values()) {
+                if (layout.propertyValue.equalsIgnoreCase(v) || layout.name().equalsIgnoreCase(v)) {
+                    return layout;
+                }
+            }
+        }
+        return PREFIX_CACHE;
+    }
+}
@@ -0,0 +1,134 @@
+package com.ia.robot.ai.prompt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Gabarit de prompt precompile.
+ *
+ * Le texte source contient des emplacements {{nom}} :
+ * - compile(...) decoupe une seule fois le texte en segments statiques
+ *   et emplacements (a la creation des constantes, donc au demarrage) ;
+ * - render(...) ne fait qu'enchainer segments et valeurs : le String final
+ *   est alloue une seule fois, a sa taille exacte (pas de StringBuilder
+ *   qui grossit, pas de copie intermediaire).
+ *
+ * Les valeurs sont passees dans l'ordre de premiere apparition des
+ * emplacements (voir slotNames()). Un meme nom peut apparaitre plusieurs
+ * fois. Les valeurs ne sont jamais re-analysees : une question contenant
+ * "{{...}}" est inseree telle quelle.
+ */
+public final class PromptTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // segments[i] precede l'emplacement slotAt[i] ; le dernier segment termine le texte
+    private final String[] segments;
+    private final int[] slotAt;
+    private final List<String> slotNames;
+    private final int staticLength;
+    private final String staticText;
+
+    private PromptTemplate(String[] segments, int[] slotAt, List<String> slotNames) {
+        this.segments = segments;
+        this.slotAt = slotAt;
+        this.slotNames = slotNames;
+        int length = 0;
+        for (String segment : segments) {
+            length += segment.length();
+        }
+        this.staticLength = length;
+        this.staticText = String.join("", segments);
+    }
+
+    public static PromptTemplate compile(String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Template source is null.");
+        }
+
+        List<String> segments = new ArrayList<>();
+        List<Integer> slotAt = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        int from = 0;
+        int open;
+        while ((open = source.indexOf(OPEN, from)) >= 0) {
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed slot at index " + open + ".");
+            }
+            String name = source.substring(open + OPEN.length(), close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Empty slot name at index " + open + ".");
+            }
+            int index = names.indexOf(name);
+            if (index < 0) {
+                index = names.size();
+                names.add(name);
+            }
+            segments.add(source.substring(from, open));
+            slotAt.add(index);
+            from = close + CLOSE.length();
+        }
+        segments.add(source.substring(from));
+
+        return new PromptTemplate(
+                segments.toArray(String[]::new),
+                slotAt.stream().mapToInt(Integer::intValue).toArray(),
+                Collections.unmodifiableList(names)
+        );
+    }
+
+    public List<String> slotNames() {
+        return slotNames;
+    }
+
+    /**
+     * Longueur du texte statique (hors valeurs).
+     */
+    public int staticLength() {
+        return staticLength;
+    }
+
+    /**
+     * Texte statique seul (segments concatenes, sans valeurs) : comptage de tokens.
+     */
+    public String staticText() {
+        return staticText;
+    }
+
+    public String render(String... values) {
+        checkArity(values);
+        String[] parts = new String[segments.length + slotAt.length];
+        int p = 0;
+        for (int i = 0; i < slotAt.length; i++) {
+            parts[p++] = segments[i];
+            parts[p++] = values[slotAt[i]];
+        }
+        parts[p] = segments[segments.length - 1];
+        // String.join calcule la taille exacte et remplit directement le tableau
+        // du String final (pas de copie StringBuilder -> String)
+        return String.join("", parts);
+    }
+
+    /**
+     * Variante sans String intermediaire, pour composer plusieurs gabarits
+     * dans un meme StringBuilder.
+     */
+    public StringBuilder appendTo(StringBuilder target, String... values) {
+        checkArity(values);
+        for (int i = 0; i < slotAt.length; i++) {
+            target.append(segments[i]).append(values[slotAt[i]]);
+        }
+        return target.append(segments[segments.length - 1]);
+    }
+
+    private void checkArity(String[] values) {
+        if (values.length != slotNames.size()) {
+            throw new IllegalArgumentException("Template expects " + slotNames.size()
+                    + " values " + slotNames + ", got " + values.length + ".");
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.ia.robot.ai.resilience;
+
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.tokens.TokenBudgets;
+import com.ia.robot.ai.tokens.TokenCounter;
+import com.ia.robot.exception.RateLimitedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission des appels agent par quotas (seaux a jetons sans verrou, TokenBucket).
+ *
+ * Trois niveaux, verifies du plus precis au plus large :
+ * - user          : utilisateur authentifie (SecurityContext du thread), si present ;
+ * - establishment : tenant + etablissement de l'AgentContext ;
+ * - tenant        : tenant de l'AgentContext.
+ * Chaque cle a deux seaux : requetes / seconde (rafale = burst-seconds) et
+ * tokens estimes / minute (texte utilisateur compte en memoire + sortie moyenne
+ * de l'endpoint). 0 = pas de limite.
+ *
+ * Refus : RateLimitedException (HTTP 429, Retry-After = attente exacte du seau
+ * refusant), avant tout appel amont ; les jetons deja pris aux autres niveaux
+ * sont rendus.
+ *
+ * Limites par tenant / etablissement : orwell.admission.*.overrides,
+ * "nom=rps:tpm;nom2=rps:tpm".
+ */
+@Component
+public class AdmissionControl {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    public static final String USER = "user";
+    public static final String ESTABLISHMENT = "establishment";
+    public static final String TENANT = "tenant";
+
+    public record Limits(double requestsPerSecond, long tokensPerMinute) {
+
+        boolean isUnlimited() {
+            return requestsPerSecond <= 0 && tokensPerMinute <= 0;
+        }
+    }
+
+    private final TokenCounter tokenCounter;
+    private final boolean enabled;
+    private final double burstSeconds;
+    private final int planOutputTokens;
+    private final int askOutputTokens;
+    private final int maxKeys;
+    private final List<String> unknownEstablishments;
+
+    private final Map<String, Limits> defaults = new HashMap<>();
+    private final Map<String, Map<String, Limits>> overrides = new HashMap<>();
+
+    // "scope|cle" -> seaux
+    private final Map<String, Buckets> buckets = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> admitted = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> rejected = new ConcurrentHashMap<>();
+    private final LongAdder evictions = new LongAdder();
+
+    public AdmissionControl(TokenCounter tokenCounter,
+                            @Value("${orwell.admission.enabled:true}") boolean enabled,
+                            @Value("${orwell.admission.burst-seconds:2}") double burstSeconds,
+                            @Value("${orwell.admission.output-tokens.plan:1500}") int planOutputTokens,
+                            @Value("${orwell.admission.output-tokens.ask:500}") int askOutputTokens,
+                            @Value("${orwell.admission.max-keys:10000}") int maxKeys,
+                            @Value("${orwell.admission.unknown-establishments:Etablissement non precise}") List<String> unknownEstablishments,
+                            @Value("${orwell.admission.tenant.requests-per-second:50}") double tenantRps,
+                            @Value("${orwell.admission.tenant.tokens-per-minute:2000000}") long tenantTpm,
+                            @Value("${orwell.admission.tenant.overrides:}") String tenantOverrides,
+                            @Value("${orwell.admission.establishment.requests-per-second:5}") double establishmentRps,
+                            @Value("${orwell.admission.establishment.tokens-per-minute:150000}") long establishmentTpm,
+                            @Value("${orwell.admission.establishment.overrides:}") String establishmentOverrides,
+                            @Value("${orwell.admission.user.requests-per-second:1}") double userRps,
+                            @Value("${orwell.admission.user.tokens-per-minute:30000}") long userTpm) {
+        this.tokenCounter = tokenCounter;
+        this.enabled = enabled;
+        this.burstSeconds = Math.max(0.001, burstSeconds);
+        this.planOutputTokens = Math.max(0, planOutputTokens);
+        this.askOutputTokens = Math.max(0, askOutputTokens);
+        this.maxKeys = Math.max(100, maxKeys);
+        this.unknownEstablishments = unknownEstablishments.stream()
+                .map(s -> s.trim().toLowerCase(Locale.ROOT))
+                .toList();
+
+        defaults.put(TENANT, new Limits(tenantRps, tenantTpm));
+        defaults.put(ESTABLISHMENT, new Limits(establishmentRps, establishmentTpm));
+        defaults.put(USER, new Limits(userRps, userTpm));
+        overrides.put(TENANT, parseOverrides(tenantOverrides));
+        overrides.put(ESTABLISHMENT, parseOverrides(establishmentOverrides));
+        overrides.put(USER, Map.of());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Admet l'appel ou leve RateLimitedException.
+     *
+     * @param endpoint TokenBudgets.PLAN / ASK (estimation de la sortie)
+     * @param userText texte envoye par l'appelant (estimation de l'entree)
+     */
+    public void admit(AgentContext context, String endpoint, String userText) {
+        if (!enabled || context == null) {
+            return;
+        }
+        long tokens = estimateTokens(endpoint, userText);
+        long now = System.nanoTime();
+
+        List<String[]> levels = levels(context);
+        List<Buckets> taken = new ArrayList<>(3);
+        for (String[] level : levels) {
+            String scope = level[0];
+            String key = level[1];
+            Buckets b = bucketsFor(scope, key, now);
+            if (b == null) {
+                continue;
+            }
+            long wait = b.tryAcquire(tokens, now);
+            if (wait > 0) {
+                taken.forEach(t -> t.refund(tokens));
+                counter(rejected, scope).increment();
+                long retryAfterMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+                log.warn("[ORWELL][ADMISSION] Rejected. requestId={}, scope={}, key={}, estimatedTokens={}, retryAfterMs={}",
+                        context.getRequestId(), scope, key, tokens, retryAfterMs);
+                throw new RateLimitedException("Quota exceeded for " + scope + " '" + key
+                        + "'. Retry in " + retryAfterMs + " ms.", scope, key, retryAfterMs);
+            }
+            taken.add(b);
+        }
+        for (String[] level : levels) {
+            counter(admitted, level[0]).increment();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        long now = System.nanoTime();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("burstSeconds", burstSeconds);
+        payload.put("estimatedOutputTokens", Map.of(TokenBudgets.PLAN, planOutputTokens, TokenBudgets.ASK, askOutputTokens));
+        Map<String, Object> limits = new LinkedHashMap<>();
+        for (String scope : List.of(USER, ESTABLISHMENT, TENANT)) {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("default", defaults.get(scope));
+            s.put("overrides", overrides.get(scope));
+            s.put("admitted", counter(admitted, scope).sum());
+            s.put("rejected", counter(rejected, scope).sum());
+            limits.put(scope, s);
+        }
+        payload.put("scopes", limits);
+        payload.put("keys", buckets.size());
+        payload.put("evictions", evictions.sum());
+
+        // Seaux les plus entames d'abord
+        List<Map<String, Object>> levels = new ArrayList<>();
+        buckets.forEach((id, b) -> levels.add(b.view(id, now)));
+        levels.sort(Comparator.comparingDouble(m -> (double) m.get("fill")));
+        payload.put("buckets", levels.size() > 50 ? levels.subList(0, 50) : levels);
+        return payload;
+    }
+
+    // -------------------------------------------------
+    // Interne
+    // -------------------------------------------------
+
+    private List<String[]> levels(AgentContext context) {
+        List<String[]> levels = new ArrayList<>(3);
+        String user = currentUser();
+        if (user != null) {
+            levels.add(new String[]{USER, user});
+        }
+        String tenant = context.getTenant();
+        String establishment = context.getEstablishment();
+        if (establishment != null && !establishment.isBlank()
+                && !unknownEstablishments.contains(establishment.trim().toLowerCase(Locale.ROOT))) {
+            levels.add(new String[]{ESTABLISHMENT, tenant + "/" + establishment.trim()});
+        }
+        if (tenant != null) {
+            levels.add(new String[]{TENANT, tenant});
+        }
+        return levels;
+    }
+
+    private Buckets bucketsFor(String scope, String key, long now) {
+        String id = scope + "|" + key;
+        Buckets existing = buckets.get(id);
+        if (existing != null) {
+            return existing.unlimited ? null : existing;
+        }
+        if (buckets.size() >= maxKeys) {
+            evictFull(now);
+        }
+        String name = ESTABLISHMENT.equals(scope) ? key.substring(key.indexOf('/') + 1) : key;
+        Limits limits = overrides.get(scope).getOrDefault(name, defaults.get(scope));
+        Buckets created = buckets.computeIfAbsent(id, k -> new Buckets(limits));
+        return created.unlimited ? null : created;
+    }
+
+    // Un seau plein ne porte aucune information : le recreer plus tard est sans effet
+    private void evictFull(long now) {
+        buckets.entrySet().removeIf(e -> {
+            boolean full = e.getValue().isFull(now);
+            if (full) {
+                evictions.increment();
+            }
+            return full;
+        });
+    }
+
+    private long estimateTokens(String endpoint, String userText) {
+        int output = TokenBudgets.PLAN.equals(endpoint) ? planOutputTokens : askOutputTokens;
+        return tokenCounter.count(userText) + (long) output;
+    }
+
+    private static String currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return auth.getName();
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counters, String scope) {
+        return counters.computeIfAbsent(scope, k -> new LongAdder());
+    }
+
+    private static Map<String, Limits> parseOverrides(String spec) {
+        Map<String, Limits> parsed = new LinkedHashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return parsed;
+        }
+        for (String entry : spec.split(";")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int eq = entry.lastIndexOf('=');
+            String[] values = eq > 0 ? entry.substring(eq + 1).split(":") : new String[0];
+            if (values.length != 2) {
+                throw new IllegalArgumentException("Invalid admission override (expected name=rps:tpm): " + entry);
+            }
+            parsed.put(entry.substring(0, eq).trim(),
+                    new Limits(Double.parseDouble(values[0].trim()), Long.parseLong(values[1].trim())));
+        }
+        return parsed;
+    }
+
+    /**
+     * Seaux d'une cle (requetes, tokens) ; seau null = dimension sans limite.
+     */
+    private final class Buckets {
+
+        private final Limits limits;
+        private final TokenBucket requests;
+        private final TokenBucket tokens;
+        private final boolean unlimited;
+
+        private Buckets(Limits limits) {
+            this.limits = limits;
+            this.unlimited = limits.isUnlimited();
+            this.requests = limits.requestsPerSecond() > 0
+                    ? new TokenBucket(limits.requestsPerSecond(),
+                    (long) Math.ceil(limits.requestsPerSecond() * burstSeconds))
+                    : null;
+            this.tokens = limits.tokensPerMinute() > 0
+                    ? new TokenBucket(limits.tokensPerMinute() / 60d, limits.tokensPerMinute())
+                    : null;
+        }
+
+        private long tryAcquire(long cost, long now) {
+            long wait = requests != null ? requests.tryAcquire(1, now) : 0;
+            if (wait > 0) {
+                return wait;
+            }
+            wait = tokens != null ? tokens.tryAcquire(cost, now) : 0;
+            if (wait > 0 && requests != null) {
+                requests.refund(1);
+            }
+            return wait;
+        }
+
+        private void refund(long cost) {
+            if (requests != null) {
+                requests.refund(1);
+            }
+            if (tokens != null) {
+                tokens.refund(cost);
+            }
+        }
+
+        private boolean isFull(long now) {
+            return (requests == null || requests.isFull(now)) && (tokens == null || tokens.isFull(now));
+        }
+
+        private Map<String, Object> view(String id, long now) {
+            Map<String, Object> v = new LinkedHashMap<>();
+            v.put("key", id);
+            v.put("limits", limits);
+            double fill = 1.0;
+            if (requests != null) {
+                double available = requests.available(now);
+                v.put("requestsAvailable", Math.round(available * 100) / 100.0);
+                v.put("requestsCapacity", requests.capacity());
+                fill = Math.min(fill, available / requests.capacity());
+            }
+            if (tokens != null) {
+                double available = tokens.available(now);
+                v.put("tokensAvailable", Math.round(available));
+                v.put("tokensCapacity", tokens.capacity());
+                fill = Math.min(fill, available / tokens.capacity());
+            }
+            v.put("fill", Math.round(fill * 1000) / 1000.0);
+            return v;
+        }
+    }
+}
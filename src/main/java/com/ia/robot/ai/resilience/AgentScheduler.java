@@ -0,0 +1,432 @@
+package com.ia.robot.ai.resilience;
+
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.agent.Deadline;
+import com.ia.robot.ai.tokens.TokenBudgets;
+import com.ia.robot.exception.RateLimitedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ordonnancement equitable pondere des appels agent (devant SimpleAgentRunner).
+ *
+ * Chaque appel est classe selon l'endpoint, AgentContext.profileType et channel :
+ * - interactive : /ask d'un ELEVE, ENSEIGNANT ou PARENT sur MOBILE / WEB / TABLETTE ;
+ * - background  : canal BACKEND ou profil ADMIN (ex: /plan) ;
+ * - batch       : canal BATCH (PlanBatchJob) ;
+ * - standard    : le reste (plans hors BACKEND, profils AUTRE, contexte incomplet).
+ *
+ * maxConcurrent places au total. Chaque classe a un poids et une part maximale
+ * des places (orwell.scheduler.classes, "nom=poids:part%") : une rafale de plans
+ * ne peut pas occuper les places des questions des eleves.
+ * Quand une place se libere, la classe servie est celle de plus petit "pass"
+ * (stride scheduling : pass += 1 / poids a chaque appel servi), donc chaque classe
+ * en attente recoit des places en proportion de son poids. Dans une classe, les
+ * etablissements (tenant/etablissement) sont servis a tour de role.
+ *
+ * Attente bornee par le budget de la requete et max-queue-wait-ms :
+ * budget epuise -> AgentTimeoutException (504) ; sinon RateLimitedException (429).
+ *
+ * Usage :
+ *   AgentScheduler.Ticket ticket = scheduler.acquire(ctx, TokenBudgets.ASK);
+ *   try { ... } finally { ticket.release(); }
+ */
+@Component
+public class AgentScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(AgentScheduler.class);
+
+    public static final String INTERACTIVE = "interactive";
+    public static final String STANDARD = "standard";
+    public static final String BACKGROUND = "background";
+    public static final String BATCH = "batch";
+
+    public static final String CHANNEL_BATCH = "BATCH";
+
+    private static final Set<String> INTERACTIVE_PROFILES = Set.of("ELEVE", "ENSEIGNANT", "PARENT");
+    private static final Set<String> INTERACTIVE_CHANNELS = Set.of("MOBILE", "WEB", "TABLETTE");
+    private static final long STRIDE = 1_000_000L;
+
+    private static final Ticket NO_TICKET = new Ticket(null);
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final long maxQueueWaitMs;
+    private final int maxQueuedPerClass;
+
+    // --- Etat (protege par lock) ---
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, WorkClass> classes = new LinkedHashMap<>();
+    private int inFlight;
+    private long virtualTime;
+
+    public AgentScheduler(@Value("${orwell.scheduler.enabled:true}") boolean enabled,
+                          @Value("${orwell.scheduler.max-concurrent:64}") int maxConcurrent,
+                          @Value("${orwell.scheduler.max-queue-wait-ms:10000}") long maxQueueWaitMs,
+                          @Value("${orwell.scheduler.max-queued-per-class:500}") int maxQueuedPerClass,
+                          @Value("${orwell.scheduler.classes:interactive=8:100;standard=4:75;background=2:50;batch=1:25}") String classSpec) {
+        this.enabled = enabled;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueueWaitMs = Math.max(0, maxQueueWaitMs);
+        this.maxQueuedPerClass = Math.max(0, maxQueuedPerClass);
+        parseClasses(classSpec);
+        for (String name : new String[]{INTERACTIVE, STANDARD, BACKGROUND, BATCH}) {
+            if (!classes.containsKey(name)) {
+                throw new IllegalArgumentException("Missing scheduler class '" + name + "' in orwell.scheduler.classes");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Classe d'un appel (voir la doc de la classe).
+     *
+     * @param endpoint TokenBudgets.PLAN / ASK
+     */
+    public static String classify(AgentContext context, String endpoint) {
+        String channel = upper(context != null ? context.getChannel() : null);
+        String profile = upper(context != null ? context.getProfileType() : null);
+        if (CHANNEL_BATCH.equals(channel)) {
+            return BATCH;
+        }
+        if ("BACKEND".equals(channel) || "ADMIN".equals(profile)) {
+            return BACKGROUND;
+        }
+        if (TokenBudgets.ASK.equals(endpoint)
+                && INTERACTIVE_PROFILES.contains(profile)
+                && INTERACTIVE_CHANNELS.contains(channel)) {
+            return INTERACTIVE;
+        }
+        return STANDARD;
+    }
+
+    /**
+     * Prend une place pour l'appel, en attendant son tour si besoin.
+     * Le ticket rendu doit etre libere (release) a la fin de l'appel.
+     *
+     * @throws RateLimitedException file de la classe pleine, ou attente > max-queue-wait-ms
+     * @throws com.ia.robot.exception.AgentTimeoutException budget de la requete epuise en file
+     */
+    public Ticket acquire(AgentContext context, String endpoint) {
+        if (!enabled) {
+            return NO_TICKET;
+        }
+        WorkClass wc = classes.get(classify(context, endpoint));
+        Deadline deadline = context != null ? context.getDeadline() : Deadline.none();
+        long enqueuedAt = System.nanoTime();
+
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (wc.queued == 0 && canStart(wc)) {
+                return start(wc, enqueuedAt);
+            }
+            if (wc.queued >= maxQueuedPerClass) {
+                wc.rejected.increment();
+                throw rejected(wc, "queue full");
+            }
+            if (wc.queued == 0) {
+                // Classe qui se reveille : pas de credit accumule pendant son inactivite
+                wc.pass = Math.max(wc.pass, virtualTime);
+            }
+            waiter = new Waiter(establishmentKey(context), enqueuedAt);
+            wc.waiters.computeIfAbsent(waiter.key, k -> new ArrayDeque<>()).addLast(waiter);
+            wc.queued++;
+            wc.queuedCalls.increment();
+        } finally {
+            lock.unlock();
+        }
+
+        long waitMs = Math.min(maxQueueWaitMs, deadline.remainingMs());
+        try {
+            return waiter.granted.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Ticket late = abandon(wc, waiter);
+            if (late != null) {
+                return late;
+            }
+            wc.timeouts.increment();
+            if (deadline.isExpired()) {
+                throw deadline.expired("agent scheduler queue (" + wc.name + ")");
+            }
+            throw rejected(wc, "queue wait exceeded " + maxQueueWaitMs + " ms");
+        } catch (InterruptedException e) {
+            Ticket late = abandon(wc, waiter);
+            if (late != null) {
+                late.release();
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting in the agent scheduler.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Agent scheduler failure.", e.getCause());
+        }
+    }
+
+    /**
+     * Noms des classes, dans l'ordre de orwell.scheduler.classes.
+     */
+    public List<String> workClasses() {
+        return List.copyOf(classes.keySet());
+    }
+
+    public int queued(String workClass) {
+        lock.lock();
+        try {
+            WorkClass wc = classes.get(workClass);
+            return wc != null ? wc.queued : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight(String workClass) {
+        lock.lock();
+        try {
+            WorkClass wc = classes.get(workClass);
+            return wc != null ? wc.inFlight : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("maxConcurrent", maxConcurrent);
+        payload.put("maxQueueWaitMs", maxQueueWaitMs);
+        Map<String, Object> perClass = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            payload.put("inFlight", inFlight);
+            for (WorkClass wc : classes.values()) {
+                Map<String, Object> c = new LinkedHashMap<>();
+                c.put("weight", wc.weight);
+                c.put("maxConcurrent", wc.cap);
+                c.put("inFlight", wc.inFlight);
+                c.put("queued", wc.queued);
+                c.put("queuedEstablishments", wc.waiters.size());
+                c.put("dispatched", wc.dispatched.sum());
+                c.put("queuedCalls", wc.queuedCalls.sum());
+                c.put("rejected", wc.rejected.sum());
+                c.put("timeouts", wc.timeouts.sum());
+                c.put("queueWaitP50Ms", wc.queueWait.percentile(50));
+                c.put("queueWaitP95Ms", wc.queueWait.percentile(95));
+                c.put("queueWaitP99Ms", wc.queueWait.percentile(99));
+                c.put("queueWaitMaxMs", wc.maxQueueWaitMs);
+                perClass.put(wc.name, c);
+            }
+        } finally {
+            lock.unlock();
+        }
+        payload.put("classes", perClass);
+        return payload;
+    }
+
+    // -------------------------------------------------
+    // Interne (sous lock)
+    // -------------------------------------------------
+
+    private boolean canStart(WorkClass wc) {
+        return inFlight < maxConcurrent && wc.inFlight < wc.cap;
+    }
+
+    private Ticket start(WorkClass wc, long enqueuedAt) {
+        inFlight++;
+        wc.inFlight++;
+        wc.pass += wc.stride;
+        virtualTime = Math.max(virtualTime, wc.pass - wc.stride);
+        wc.dispatched.increment();
+        long waitedMs = (System.nanoTime() - enqueuedAt) / 1_000_000L;
+        wc.queueWait.record(waitedMs);
+        wc.maxQueueWaitMs = Math.max(wc.maxQueueWaitMs, waitedMs);
+        return new Ticket(wc);
+    }
+
+    private void finish(WorkClass wc) {
+        lock.lock();
+        try {
+            inFlight--;
+            wc.inFlight--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Donne les places libres aux classes en attente, plus petit pass d'abord.
+     */
+    private void dispatch() {
+        while (inFlight < maxConcurrent) {
+            WorkClass next = null;
+            for (WorkClass wc : classes.values()) {
+                if (wc.queued > 0 && wc.inFlight < wc.cap && (next == null || wc.pass < next.pass)) {
+                    next = wc;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = next.pollRoundRobin();
+            if (!waiter.granted.complete(start(next, waiter.enqueuedAt))) {
+                // Ne devrait pas arriver : un waiter abandonne est retire de la file
+                log.warn("[ORWELL][SCHEDULER] Ticket granted to a cancelled waiter. class={}", next.name);
+            }
+        }
+    }
+
+    /**
+     * Retire un waiter arrive au bout de son attente. Si une place lui a ete
+     * donnee entre-temps, la retourne (l'appel peut partir).
+     */
+    private Ticket abandon(WorkClass wc, Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiter.granted.isDone()) {
+                return waiter.granted.join();
+            }
+            ArrayDeque<Waiter> queue = wc.waiters.get(waiter.key);
+            if (queue != null && queue.remove(waiter)) {
+                wc.queued--;
+                if (queue.isEmpty()) {
+                    wc.waiters.remove(waiter.key);
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static RateLimitedException rejected(WorkClass wc, String reason) {
+        return new RateLimitedException("Agent scheduler: " + reason + " for class '" + wc.name + "'.",
+                "scheduler", wc.name, 1000L);
+    }
+
+    private static String establishmentKey(AgentContext context) {
+        if (context == null) {
+            return "";
+        }
+        String establishment = context.getEstablishment();
+        return context.getTenant() + "/" + (establishment != null ? establishment.trim() : "");
+    }
+
+    private static String upper(String s) {
+        return s == null ? "" : s.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private void parseClasses(String spec) {
+        for (String entry : spec.split(";")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int eq = entry.lastIndexOf('=');
+            String[] values = eq > 0 ? entry.substring(eq + 1).split(":") : new String[0];
+            if (values.length != 2) {
+                throw new IllegalArgumentException("Invalid scheduler class (expected name=weight:share%): " + entry);
+            }
+            String name = entry.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+            int weight = Math.max(1, Integer.parseInt(values[0].trim()));
+            double share = Math.min(100.0, Math.max(1.0, Double.parseDouble(values[1].trim())));
+            int cap = Math.max(1, (int) Math.ceil(maxConcurrent * share / 100.0));
+            classes.put(name, new WorkClass(name, weight, cap));
+        }
+    }
+
+    /**
+     * Place occupee par un appel ; release() est idempotent.
+     */
+    public static final class Ticket {
+
+        private final WorkClass workClass;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(WorkClass workClass) {
+            this.workClass = workClass;
+        }
+
+        public String workClass() {
+            return workClass != null ? workClass.name : null;
+        }
+
+        public void release() {
+            if (workClass != null && released.compareAndSet(false, true)) {
+                workClass.owner.finish(workClass);
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        private final String key;
+        private final long enqueuedAt;
+        private final CompletableFuture<Ticket> granted = new CompletableFuture<>();
+
+        private Waiter(String key, long enqueuedAt) {
+            this.key = key;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final class WorkClass {
+
+        private final AgentScheduler owner = AgentScheduler.this;
+        private final String name;
+        private final int weight;
+        private final long stride;
+        private final int cap;
+
+        // etablissement -> appels en attente ; l'ordre des cles donne le tour de role
+        private final LinkedHashMap<String, ArrayDeque<Waiter>> waiters = new LinkedHashMap<>();
+        private int queued;
+        private int inFlight;
+        private long pass;
+        private long maxQueueWaitMs;
+
+        private final LatencyTracker queueWait = new LatencyTracker(1024);
+        private final LongAdder dispatched = new LongAdder();
+        private final LongAdder queuedCalls = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        private WorkClass(String name, int weight, int cap) {
+            this.name = name;
+            this.weight = weight;
+            this.stride = STRIDE / weight;
+            this.cap = cap;
+        }
+
+        private Waiter pollRoundRobin() {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> it = waiters.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> first = it.next();
+            Waiter waiter = first.getValue().pollFirst();
+            it.remove();
+            if (!first.getValue().isEmpty()) {
+                // Etablissement remis en fin de tour
+                waiters.put(first.getKey(), first.getValue());
+            }
+            queued--;
+            return waiter;
+        }
+    }
+}
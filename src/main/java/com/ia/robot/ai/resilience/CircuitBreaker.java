@@ -0,0 +1,306 @@
+package com.ia.robot.ai.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker minimal (CLOSED / OPEN / HALF_OPEN), sans dependance.
+ *
+ * Fenetre glissante "par nombre d'appels" (les N derniers resultats) :
+ * - taux d'echec  >= failureRateThreshold  -> OPEN
+ * - taux d'appels lents (>= slowCallDurationMs) >= slowCallRateThreshold -> OPEN
+ * (evalue seulement a partir de minimumCalls resultats dans la fenetre)
+ *
+ * OPEN      : aucun appel autorise pendant waitInOpenMs.
+ * HALF_OPEN : permittedCallsInHalfOpen appels d'essai ; selon leurs resultats,
+ *             retour en CLOSED ou de nouveau OPEN.
+ *
+ * Usage :
+ *   if (breaker.tryAcquirePermission()) {
+ *       try { ...; breaker.onSuccess(ms); } catch (...) { breaker.onFailure(ms); }
+ *   }
+ * ou, quand l'appel peut etre annule avant de partir (file d'executor, flux) :
+ *   CircuitBreaker.Permission permission = breaker.tryAcquire();
+ *   ... permission.onSuccess(ms) / onFailure(ms) ; permission.release() sur annulation.
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        SLOW_SUCCESS,
+        FAILURE,
+        SLOW_FAILURE
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDurationMs;
+    private final long waitInOpenMs;
+    private final int permittedCallsInHalfOpen;
+
+    // --- Etat (protege par "this") ---
+    private State state = State.CLOSED;
+    private final Outcome[] window;
+    private int windowCursor;
+    private int windowCount;
+    private long openUntilMillis;
+    private int halfOpenPermitsGiven;
+    private int halfOpenResults;
+    private int halfOpenFailures;
+    private int halfOpenSlow;
+
+    // --- Compteurs operateurs ---
+    private final Map<String, LongAdder> transitions = new ConcurrentHashMap<>();
+    private final LongAdder notPermitted = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+
+    public CircuitBreaker(String name,
+                          int windowSize,
+                          int minimumCalls,
+                          double failureRateThreshold,
+                          double slowCallRateThreshold,
+                          long slowCallDurationMs,
+                          long waitInOpenMs,
+                          int permittedCallsInHalfOpen) {
+        this.name = name;
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationMs = slowCallDurationMs;
+        this.waitInOpenMs = waitInOpenMs;
+        this.permittedCallsInHalfOpen = Math.max(1, permittedCallsInHalfOpen);
+        this.window = new Outcome[this.windowSize];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntilMillis) {
+            transitionTo(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    /**
+     * true si l'appel protege peut partir. Chaque permission accordee doit
+     * etre suivie d'un onSuccess / onFailure / onIgnored.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        State current = getState();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.HALF_OPEN && halfOpenPermitsGiven < permittedCallsInHalfOpen) {
+            halfOpenPermitsGiven++;
+            return true;
+        }
+        notPermitted.increment();
+        return false;
+    }
+
+    /**
+     * Comme tryAcquirePermission(), sous forme de permission a usage unique ;
+     * null si l'appel est refuse.
+     */
+    public Permission tryAcquire() {
+        return tryAcquirePermission() ? new Permission() : null;
+    }
+
+    public void onSuccess(long durationMs) {
+        successes.increment();
+        record(durationMs >= slowCallDurationMs ? Outcome.SLOW_SUCCESS : Outcome.SUCCESS);
+    }
+
+    public void onFailure(long durationMs) {
+        failures.increment();
+        record(durationMs >= slowCallDurationMs ? Outcome.SLOW_FAILURE : Outcome.FAILURE);
+    }
+
+    /**
+     * Appel abandonne par l'appelant (ex: perdant d'un hedge) : ce n'est pas
+     * un echec du service. Compte comme appel lent s'il a deja depasse le seuil,
+     * sinon libere simplement la permission.
+     */
+    public void onIgnored(long durationMs) {
+        if (durationMs >= slowCallDurationMs) {
+            record(Outcome.SLOW_SUCCESS);
+            return;
+        }
+        synchronized (this) {
+            if (state == State.HALF_OPEN && halfOpenPermitsGiven > 0) {
+                halfOpenPermitsGiven--;
+            }
+        }
+    }
+
+    private synchronized void record(Outcome outcome) {
+        if (outcome == Outcome.SLOW_SUCCESS || outcome == Outcome.SLOW_FAILURE) {
+            slowCalls.increment();
+        }
+
+        if (state == State.HALF_OPEN) {
+            halfOpenResults++;
+            if (isFailure(outcome)) halfOpenFailures++;
+            if (isSlow(outcome)) halfOpenSlow++;
+            if (halfOpenResults >= permittedCallsInHalfOpen) {
+                boolean tooManyFailures = rate(halfOpenFailures, halfOpenResults) >= failureRateThreshold;
+                boolean tooSlow = rate(halfOpenSlow, halfOpenResults) >= slowCallRateThreshold;
+                transitionTo(tooManyFailures || tooSlow ? State.OPEN : State.CLOSED);
+            }
+            return;
+        }
+
+        if (state == State.OPEN) {
+            // Resultat tardif d'un appel parti avant l'ouverture : ignore
+            return;
+        }
+
+        window[windowCursor] = outcome;
+        windowCursor = (windowCursor + 1) % windowSize;
+        windowCount = Math.min(windowCount + 1, windowSize);
+
+        if (windowCount < minimumCalls) {
+            return;
+        }
+        int failed = 0;
+        int slow = 0;
+        for (int i = 0; i < windowCount; i++) {
+            if (isFailure(window[i])) failed++;
+            if (isSlow(window[i])) slow++;
+        }
+        if (rate(failed, windowCount) >= failureRateThreshold
+                || rate(slow, windowCount) >= slowCallRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State next) {
+        State previous = state;
+        if (previous == next) {
+            return;
+        }
+        state = next;
+        transitions.computeIfAbsent(previous + "_TO_" + next, k -> new LongAdder()).increment();
+
+        if (next == State.OPEN) {
+            openUntilMillis = System.currentTimeMillis() + waitInOpenMs;
+        }
+        if (next == State.HALF_OPEN || next == State.OPEN) {
+            halfOpenPermitsGiven = 0;
+            halfOpenResults = 0;
+            halfOpenFailures = 0;
+            halfOpenSlow = 0;
+        }
+        if (next == State.CLOSED) {
+            windowCount = 0;
+            windowCursor = 0;
+        }
+
+        if (next == State.OPEN) {
+            log.warn("[ORWELL][BREAKER] {} {} -> {} (no calls for {} ms)", name, previous, next, waitInOpenMs);
+        } else {
+            log.info("[ORWELL][BREAKER] {} {} -> {}", name, previous, next);
+        }
+    }
+
+    private static boolean isFailure(Outcome o) {
+        return o == Outcome.FAILURE || o == Outcome.SLOW_FAILURE;
+    }
+
+    private static boolean isSlow(Outcome o) {
+        return o == Outcome.SLOW_SUCCESS || o == Outcome.SLOW_FAILURE;
+    }
+
+    private static double rate(int part, int total) {
+        return total == 0 ? 0.0 : 100.0 * part / total;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        int failed = 0;
+        int slow = 0;
+        for (int i = 0; i < windowCount; i++) {
+            if (isFailure(window[i])) failed++;
+            if (isSlow(window[i])) slow++;
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("name", name);
+        payload.put("state", getState().name());
+        payload.put("windowCalls", windowCount);
+        payload.put("failureRatePercent", rate(failed, windowCount));
+        payload.put("slowCallRatePercent", rate(slow, windowCount));
+        payload.put("failureRateThreshold", failureRateThreshold);
+        payload.put("slowCallRateThreshold", slowCallRateThreshold);
+        payload.put("slowCallDurationMs", slowCallDurationMs);
+        payload.put("waitInOpenMs", waitInOpenMs);
+        payload.put("successes", successes.sum());
+        payload.put("failures", failures.sum());
+        payload.put("slowCalls", slowCalls.sum());
+        payload.put("notPermittedCalls", notPermitted.sum());
+        Map<String, Long> t = new LinkedHashMap<>();
+        transitions.forEach((k, v) -> t.put(k, v.sum()));
+        payload.put("transitions", t);
+        return payload;
+    }
+
+    /**
+     * Permission accordee par tryAcquire(). Seul le premier signal compte :
+     * onSuccess / onFailure / onIgnored par l'appel, release() depuis un chemin
+     * d'annulation (sans effet si l'appel a deja rendu la permission).
+     * Une permission HALF_OPEN annulee avant l'appel est ainsi rendue, pas perdue.
+     */
+    public final class Permission {
+
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Permission() {
+        }
+
+        public void onSuccess(long durationMs) {
+            if (done.compareAndSet(false, true)) {
+                CircuitBreaker.this.onSuccess(durationMs);
+            }
+        }
+
+        public void onFailure(long durationMs) {
+            if (done.compareAndSet(false, true)) {
+                CircuitBreaker.this.onFailure(durationMs);
+            }
+        }
+
+        public void onIgnored(long durationMs) {
+            if (done.compareAndSet(false, true)) {
+                CircuitBreaker.this.onIgnored(durationMs);
+            }
+        }
+
+        /**
+         * Appel annule ou abandonne : onIgnored(temps ecoule depuis l'acquisition).
+         */
+        public void release() {
+            onIgnored((System.nanoTime() - startNanos) / 1_000_000L);
+        }
+    }
+}
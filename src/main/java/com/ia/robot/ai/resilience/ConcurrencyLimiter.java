@@ -0,0 +1,288 @@
+package com.ia.robot.ai.resilience;
+
+import com.ia.robot.exception.RateLimitedException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limite adaptative du nombre d'appels amont en cours (style gradient / Vegas,
+ * avec retrait multiplicatif AIMD sur erreur).
+ *
+ * A chaque appel termine, la latence observee (rtt) est comparee a la latence
+ * de base (minimum sur une fenetre glissante, rotation toutes les baselineWindowMs) :
+ *   gradient = clamp(tolerance * base / rtt, 0.5, 1)
+ *   cible    = limit * gradient + sqrt(limit)
+ *   limit    = lisse vers la cible (smoothing), borne dans [minLimit, maxLimit]
+ * Tant que le service n'est pas sature (rtt ~ base), la limite monte de sqrt(limit) ;
+ * des que la file d'attente amont allonge les latences, elle redescend vers le "genou".
+ * Erreur de l'appel (429, 5xx, timeout de lecture) : limit *= backoffRatio.
+ * Sous-utilisation (moins de limit / 2 appels en cours au depart) : pas de hausse.
+ *
+ * Depassement : attente au plus maxQueueWaitMs (et maxQueued appelants en attente),
+ * puis RateLimitedException, au lieu de laisser l'appel partir et expirer.
+ *
+ * Usage :
+ *   Permit permit = limiter.acquire(deadline.remainingMs());
+ *   try { ...; permit.onSuccess(); } catch (...) { permit.onDropped(); } finally { permit.release(); }
+ */
+public class ConcurrencyLimiter {
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final String name;
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final long maxQueueWaitMs;
+    private final int maxQueued;
+    private final long baselineWindowNanos;
+
+    // --- Etat (protege par lock) ---
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long previousBaselineNanos = Long.MAX_VALUE;
+    private long baselineRotatedAt = System.nanoTime();
+    private double smoothedRttNanos;
+
+    // --- Compteurs operateurs ---
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder queuedCalls = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder ignored = new LongAdder();
+
+    public ConcurrencyLimiter(String name,
+                              boolean enabled,
+                              int initialLimit,
+                              int minLimit,
+                              int maxLimit,
+                              double tolerance,
+                              double smoothing,
+                              double backoffRatio,
+                              long maxQueueWaitMs,
+                              int maxQueued,
+                              long baselineWindowMs) {
+        this.name = name;
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1.0, tolerance);
+        this.smoothing = Math.min(1.0, Math.max(0.01, smoothing));
+        this.backoffRatio = Math.min(0.99, Math.max(0.1, backoffRatio));
+        this.maxQueueWaitMs = Math.max(0, maxQueueWaitMs);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.baselineWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, baselineWindowMs));
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prend une place, en attendant au plus min(maxWaitMs, maxQueueWaitMs).
+     * maxWaitMs = 0 : pas d'attente (flux reactifs, dont le thread ne doit pas bloquer).
+     *
+     * @throws RateLimitedException limite atteinte et aucune place liberee a temps
+     */
+    public Permit acquire(long maxWaitMs) {
+        lock.lock();
+        try {
+            if (!enabled || inFlight < (int) limit) {
+                return grant();
+            }
+            long waitNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(Math.max(0, maxWaitMs), maxQueueWaitMs));
+            if (waitNanos == 0 || queued >= maxQueued) {
+                throw reject();
+            }
+            queued++;
+            queuedCalls.increment();
+            try {
+                while (inFlight >= (int) limit) {
+                    if (waitNanos <= 0) {
+                        throw reject();
+                    }
+                    waitNanos = slotFreed.awaitNanos(waitNanos);
+                }
+                return grant();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an upstream slot (" + name + ").", e);
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit grant() {
+        inFlight++;
+        accepted.increment();
+        return new Permit(inFlight);
+    }
+
+    private RateLimitedException reject() {
+        rejected.increment();
+        // Une place se libere en moyenne toutes les rtt / limit
+        long retryAfterMs = Math.max(1L, Math.round(smoothedRttNanos / limit / 1_000_000d));
+        return new RateLimitedException("Upstream concurrency limit reached (" + name + ", limit="
+                + (int) limit + ").", "upstream", name, retryAfterMs);
+    }
+
+    private void complete(long rttNanos, int inFlightAtStart, Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+            int before = (int) limit;
+            if (enabled && outcome != Outcome.IGNORED) {
+                update(rttNanos, inFlightAtStart, outcome == Outcome.DROPPED);
+            }
+            int freed = 1 + Math.max(0, (int) limit - before);
+            for (int i = 0; i < freed && queued > 0; i++) {
+                slotFreed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long rttNanos, int inFlightAtStart, boolean drop) {
+        if (drop) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (now - baselineRotatedAt >= baselineWindowNanos) {
+            // Deux fenetres : la base suit une remontee durable, pas un pic isole
+            previousBaselineNanos = baselineNanos;
+            baselineNanos = Long.MAX_VALUE;
+            baselineRotatedAt = now;
+        }
+        long rtt = Math.max(1L, rttNanos);
+        baselineNanos = Math.min(baselineNanos, rtt);
+        smoothedRttNanos = smoothedRttNanos == 0 ? rtt : smoothedRttNanos * 0.9 + rtt * 0.1;
+
+        long base = Math.min(baselineNanos, previousBaselineNanos);
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * base / rtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        if (target > limit && inFlightAtStart < limit / 2) {
+            // Service sous-utilise : la latence ne dit rien d'une limite plus haute
+            return;
+        }
+        double next = limit * (1 - smoothing) + target * smoothing;
+        limit = Math.min(maxLimit, Math.max(minLimit, next));
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            long base = Math.min(baselineNanos, previousBaselineNanos);
+            payload.put("name", name);
+            payload.put("enabled", enabled);
+            payload.put("limit", (int) limit);
+            payload.put("inFlight", inFlight);
+            payload.put("queued", queued);
+            payload.put("baselineRttMs", base == Long.MAX_VALUE ? null : base / 1_000_000L);
+            payload.put("smoothedRttMs", Math.round(smoothedRttNanos / 1_000_000d));
+        } finally {
+            lock.unlock();
+        }
+        payload.put("minLimit", minLimit);
+        payload.put("maxLimit", maxLimit);
+        payload.put("tolerance", tolerance);
+        payload.put("maxQueueWaitMs", maxQueueWaitMs);
+        payload.put("accepted", accepted.sum());
+        payload.put("queuedCalls", queuedCalls.sum());
+        payload.put("rejected", rejected.sum());
+        payload.put("successes", successes.sum());
+        payload.put("dropped", dropped.sum());
+        payload.put("ignored", ignored.sum());
+        return payload;
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        DROPPED,
+        IGNORED
+    }
+
+    /**
+     * Place prise par acquire(...). Seul le premier signal compte :
+     * onSuccess / onDropped apres l'appel, release() en finally (sans effet si deja rendu).
+     */
+    public final class Permit {
+
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Appel termine normalement : sa latence ajuste la limite.
+         */
+        public void onSuccess() {
+            if (done.compareAndSet(false, true)) {
+                successes.increment();
+                complete(System.nanoTime() - startNanos, inFlightAtStart, Outcome.SUCCESS);
+            }
+        }
+
+        /**
+         * Appel en erreur (surcharge probable) : retrait multiplicatif.
+         */
+        public void onDropped() {
+            if (done.compareAndSet(false, true)) {
+                dropped.increment();
+                complete(System.nanoTime() - startNanos, inFlightAtStart, Outcome.DROPPED);
+            }
+        }
+
+        /**
+         * Rend la place sans mesure (appel annule, perdant d'un hedge).
+         */
+        public void release() {
+            if (done.compareAndSet(false, true)) {
+                ignored.increment();
+                complete(0L, inFlightAtStart, Outcome.IGNORED);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.ia.robot.ai.resilience;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Politique d'execution "hedgee" LIVE vs ChatClient standard.
+ *
+ * Probleme :
+ * - Sans hedging, ArchitectAgent attend l'echec du LIVE (jusqu'au timeout HTTP)
+ *   avant de basculer sur le ChatClient : le pire cas est la somme des deux.
+ *
+ * Principe :
+ * - Le LIVE part seul.
+ * - S'il n'a pas repondu apres un delai calcule sur le percentile observe
+ *   des latences LIVE (orwell.hedge.percentile), le ChatClient standard
+ *   part en parallele.
+ * - La premiere reponse acceptable gagne, l'autre appel est annule.
+ *
+ * Cette classe porte la configuration, l'historique des latences LIVE
+ * et les compteurs (taux de victoire par chemin, latence economisee).
+ */
+@Component
+public class HedgingPolicy {
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMs;
+    private final long maxDelayMs;
+    private final long defaultDelayMs;
+    private final int minSamples;
+
+    private final LatencyTracker liveLatencies;
+
+    private final LongAdder liveOnly = new LongAdder();
+    private final LongAdder liveFailedBeforeHedge = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgedLiveWins = new LongAdder();
+    private final LongAdder hedgedStandardWins = new LongAdder();
+    private final LongAdder hedgedBothFailed = new LongAdder();
+    private final LongAdder savedMs = new LongAdder();
+    private final LongAdder censoredLiveSamples = new LongAdder();
+
+    public HedgingPolicy(@Value("${orwell.hedge.enabled:false}") boolean enabled,
+                         @Value("${orwell.hedge.percentile:90}") double percentile,
+                         @Value("${orwell.hedge.min-delay-ms:500}") long minDelayMs,
+                         @Value("${orwell.hedge.max-delay-ms:20000}") long maxDelayMs,
+                         @Value("${orwell.hedge.default-delay-ms:5000}") long defaultDelayMs,
+                         @Value("${orwell.hedge.min-samples:20}") int minSamples,
+                         @Value("${orwell.hedge.window-size:512}") int windowSize) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMs = Math.max(0, minDelayMs);
+        this.maxDelayMs = Math.max(this.minDelayMs, maxDelayMs);
+        this.defaultDelayMs = defaultDelayMs;
+        this.minSamples = Math.max(1, minSamples);
+        this.liveLatencies = new LatencyTracker(windowSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Delai avant de lancer l'appel standard en parallele.
+     * Valeur par defaut tant qu'il n'y a pas assez d'echantillons LIVE.
+     */
+    public long hedgeDelayMs() {
+        long observed = liveLatencies.count() >= minSamples
+                ? liveLatencies.percentile(percentile)
+                : defaultDelayMs;
+        return Math.max(minDelayMs, Math.min(maxDelayMs, observed));
+    }
+
+    /**
+     * Latence d'une reponse LIVE reussie (alimente le percentile).
+     */
+    public void recordLiveLatency(long latencyMs) {
+        liveLatencies.record(latencyMs);
+    }
+
+    /**
+     * LIVE annule avant de repondre (standard gagnant ou budget epuise) :
+     * sa latence reelle est au moins elapsedMs. Sans cette borne basse, seuls
+     * les LIVE rapides alimenteraient le percentile et le delai baisserait
+     * a chaque hedge gagne par le standard.
+     */
+    public void recordCensoredLiveLatency(long elapsedMs) {
+        liveLatencies.record(elapsedMs);
+        censoredLiveSamples.increment();
+    }
+
+    // ------------------------------------------------------------------
+    // Issues d'un appel
+    // ------------------------------------------------------------------
+
+    /** Le LIVE a repondu avant le delai : pas de hedge. */
+    public void onLiveWithoutHedge() {
+        liveOnly.increment();
+    }
+
+    /** Le LIVE a echoue avant le delai : bascule classique. */
+    public void onLiveFailedBeforeHedge() {
+        liveFailedBeforeHedge.increment();
+    }
+
+    public void onHedgeStarted() {
+        hedged.increment();
+    }
+
+    public void onHedgedLiveWin() {
+        hedgedLiveWins.increment();
+    }
+
+    /**
+     * Le standard a gagne.
+     *
+     * @param estimatedSavedMs latence economisee par rapport a l'enchainement
+     *                         sequentiel LIVE puis standard (borne basse, >= 0)
+     */
+    public void onHedgedStandardWin(long estimatedSavedMs) {
+        hedgedStandardWins.increment();
+        savedMs.add(Math.max(0, estimatedSavedMs));
+    }
+
+    public void onHedgedBothFailed() {
+        hedgedBothFailed.increment();
+    }
+
+    public Map<String, Object> snapshot() {
+        long h = hedged.sum();
+        long lw = hedgedLiveWins.sum();
+        long sw = hedgedStandardWins.sum();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("percentile", percentile);
+        payload.put("currentHedgeDelayMs", hedgeDelayMs());
+        payload.put("liveSamples", liveLatencies.count());
+        payload.put("censoredLiveSamples", censoredLiveSamples.sum());
+        payload.put("liveP50Ms", liveLatencies.percentile(50));
+        payload.put("liveP90Ms", liveLatencies.percentile(90));
+        payload.put("liveAnsweredBeforeHedge", liveOnly.sum());
+        payload.put("liveFailedBeforeHedge", liveFailedBeforeHedge.sum());
+        payload.put("hedgedCalls", h);
+        payload.put("hedgedLiveWins", lw);
+        payload.put("hedgedStandardWins", sw);
+        payload.put("hedgedBothFailed", hedgedBothFailed.sum());
+        payload.put("liveWinRate", h == 0 ? 0.0 : (double) lw / h);
+        payload.put("standardWinRate", h == 0 ? 0.0 : (double) sw / h);
+        payload.put("estimatedSavedMsTotal", savedMs.sum());
+        payload.put("estimatedSavedMsAvgPerStandardWin", sw == 0 ? 0.0 : (double) savedMs.sum() / sw);
+        return payload;
+    }
+}
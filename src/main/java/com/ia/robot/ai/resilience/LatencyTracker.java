@@ -0,0 +1,49 @@
+package com.ia.robot.ai.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fenetre glissante des N dernieres latences (ms), sans verrou en ecriture.
+ *
+ * Suffisant pour estimer un percentile "recent" (p50, p90, p99)
+ * sans dependance de metriques : la lecture copie et trie la fenetre.
+ */
+public final class LatencyTracker {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong cursor = new AtomicLong();
+
+    public LatencyTracker(int windowSize) {
+        this.samples = new AtomicLongArray(Math.max(1, windowSize));
+    }
+
+    public void record(long latencyMs) {
+        long i = cursor.getAndIncrement();
+        samples.set((int) (i % samples.length()), Math.max(0, latencyMs));
+    }
+
+    public int count() {
+        return (int) Math.min(cursor.get(), samples.length());
+    }
+
+    /**
+     * @param percentile entre 0 et 100
+     * @return latence au percentile demande, ou -1 si aucun echantillon
+     */
+    public long percentile(double percentile) {
+        int n = count();
+        if (n == 0) {
+            return -1;
+        }
+        long[] copy = new long[n];
+        for (int i = 0; i < n; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        double p = Math.min(100.0, Math.max(0.0, percentile));
+        int idx = (int) Math.ceil(p / 100.0 * n) - 1;
+        return copy[Math.max(0, Math.min(n - 1, idx))];
+    }
+}
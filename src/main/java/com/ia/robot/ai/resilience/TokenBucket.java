@@ -0,0 +1,73 @@
+package com.ia.robot.ai.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seau a jetons sans verrou (algorithme GCRA : un seul AtomicLong).
+ *
+ * L'etat est l'instant theorique ou le seau redevient plein (tat, en nanos) :
+ * - prendre n jetons = avancer tat de n * nanosPerToken ;
+ * - refus si tat depasserait now + capacity * nanosPerToken ; le depassement
+ *   est exactement le delai d'attente (Retry-After).
+ * Un compareAndSet par appel, pas de thread de recharge.
+ */
+public final class TokenBucket {
+
+    private final long capacity;
+    private final long nanosPerToken;
+    private final long tolerance;
+    private final AtomicLong tat;
+
+    /**
+     * @param tokensPerSecond debit de recharge (> 0)
+     * @param capacity        jetons disponibles en rafale (>= 1)
+     */
+    public TokenBucket(double tokensPerSecond, long capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.nanosPerToken = Math.max(1L, Math.round(1_000_000_000d / tokensPerSecond));
+        this.tolerance = this.capacity * nanosPerToken;
+        // Seau plein a la creation
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Prend cost jetons si possible.
+     * Un cout superieur a la capacite est ramene a la capacite (il passe seau plein).
+     *
+     * @return 0 si accepte, sinon l'attente en nanos avant que cost jetons soient disponibles
+     */
+    public long tryAcquire(long cost, long nowNanos) {
+        long increment = Math.min(Math.max(cost, 0), capacity) * nanosPerToken;
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, nowNanos) + increment;
+            long wait = next - nowNanos - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Rend des jetons pris par tryAcquire (requete refusee par un autre seau).
+     */
+    public void refund(long cost) {
+        tat.addAndGet(-Math.min(Math.max(cost, 0), capacity) * nanosPerToken);
+    }
+
+    public double available(long nowNanos) {
+        long debt = Math.max(0, tat.get() - nowNanos);
+        return Math.max(0, tolerance - debt) / (double) nanosPerToken;
+    }
+
+    public boolean isFull(long nowNanos) {
+        return tat.get() <= nowNanos;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+}
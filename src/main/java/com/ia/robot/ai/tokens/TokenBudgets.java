@@ -0,0 +1,187 @@
+package com.ia.robot.ai.tokens;
+
+import com.ia.robot.exception.PromptTooLargeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Budgets de tokens par endpoint (/plan, /ask), appliques avant tout appel amont.
+ *
+ * Entree (orwell.tokens.<endpoint>.max-input-tokens) :
+ * - system prompt + bloc de contexte + consignes = partie fixe ;
+ * - le texte utilisateur (question, demande de plan) recoit le reste ;
+ * - depassement : troncature du texte utilisateur avec mention explicite
+ *   (orwell.tokens.overflow=truncate, defaut) ou PromptTooLargeException (reject, 413).
+ *
+ * Sortie (orwell.tokens.<endpoint>.max-output-tokens) : plafond transmis au modele
+ * (max_completion_tokens). 0 = pas de plafond.
+ *
+ * Compteurs : GET /api/ops/tokens
+ */
+@Component
+public class TokenBudgets {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenBudgets.class);
+
+    public static final String PLAN = "plan";
+    public static final String ASK = "ask";
+
+    private static final String TRUNCATION_NOTE =
+            "\n[... texte tronque : trop long pour etre traite en une seule fois ...]";
+
+    private final TokenCounter tokenCounter;
+    private final boolean reject;
+    private final Map<String, Budget> budgets;
+
+    public TokenBudgets(TokenCounter tokenCounter,
+                        @Value("${orwell.tokens.overflow:truncate}") String overflow,
+                        @Value("${orwell.tokens.plan.max-input-tokens:12000}") int planMaxInput,
+                        @Value("${orwell.tokens.plan.max-output-tokens:3000}") int planMaxOutput,
+                        @Value("${orwell.tokens.ask.max-input-tokens:6000}") int askMaxInput,
+                        @Value("${orwell.tokens.ask.max-output-tokens:1500}") int askMaxOutput) {
+        this.tokenCounter = tokenCounter;
+        this.reject = "reject".equalsIgnoreCase(overflow == null ? "" : overflow.trim());
+        Map<String, Budget> map = new LinkedHashMap<>();
+        map.put(PLAN, new Budget(planMaxInput, planMaxOutput));
+        map.put(ASK, new Budget(askMaxInput, askMaxOutput));
+        this.budgets = map;
+    }
+
+    /**
+     * Decompte d'un prompt pret a partir : partie fixe + texte utilisateur eventuellement tronque.
+     */
+    public record FittedInput(String userText, int fixedTokens, int userTokens, boolean truncated) {
+
+        public int totalTokens() {
+            return fixedTokens + userTokens;
+        }
+    }
+
+    /**
+     * @param fixedTokens tokens du system prompt, du bloc de contexte et des parties fixes du gabarit
+     * @throws PromptTooLargeException en mode reject, ou si la partie fixe depasse deja le budget
+     */
+    public FittedInput fitInput(String endpoint, int fixedTokens, String userText) {
+        Budget budget = budget(endpoint);
+        long start = System.nanoTime();
+        int userTokens = tokenCounter.count(userText);
+        budget.tokenizeNanos.add(System.nanoTime() - start);
+        budget.prompts.increment();
+
+        int max = budget.maxInputTokens;
+        int total = fixedTokens + userTokens;
+        if (max <= 0 || total <= max) {
+            budget.record(total);
+            return new FittedInput(userText, fixedTokens, userTokens, false);
+        }
+
+        int room = max - fixedTokens - tokenCounter.countStatic(TRUNCATION_NOTE);
+        if (reject || room <= 0) {
+            budget.rejected.increment();
+            log.warn("[ORWELL][TOKENS] Prompt rejected. endpoint={}, inputTokens={}, maxInputTokens={}",
+                    endpoint, total, max);
+            throw new PromptTooLargeException("Prompt too large for /" + endpoint + ": " + total
+                    + " tokens, limit is " + max + ". Shorten the text or split it.", total, max);
+        }
+
+        start = System.nanoTime();
+        String head = tokenCounter.truncate(userText, room) + TRUNCATION_NOTE;
+        int headTokens = tokenCounter.count(head);
+        budget.tokenizeNanos.add(System.nanoTime() - start);
+
+        budget.truncated.increment();
+        budget.record(fixedTokens + headTokens);
+        log.info("[ORWELL][TOKENS] User text truncated. endpoint={}, userTokens={} -> {}, maxInputTokens={}",
+                endpoint, userTokens, headTokens, max);
+        return new FittedInput(head, fixedTokens, headTokens, true);
+    }
+
+    /**
+     * Plafond de tokens de sortie, ou null si aucun.
+     */
+    public Integer maxOutputTokens(String endpoint) {
+        int max = budget(endpoint).maxOutputTokens;
+        return max > 0 ? max : null;
+    }
+
+    /**
+     * Compte (et retourne) les tokens de la reponse, pour le suivi.
+     */
+    public int recordAnswer(String endpoint, String answer) {
+        Budget budget = budget(endpoint);
+        int n = tokenCounter.count(answer);
+        budget.answers.increment();
+        budget.answerTokens.add(n);
+        budget.maxAnswerTokens.accumulate(n);
+        return n;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("encoding", tokenCounter.encodingName());
+        payload.put("overflow", reject ? "reject" : "truncate");
+        Map<String, Object> perEndpoint = new LinkedHashMap<>();
+        budgets.forEach((name, budget) -> perEndpoint.put(name, budget.snapshot()));
+        payload.put("endpoints", perEndpoint);
+        return payload;
+    }
+
+    private Budget budget(String endpoint) {
+        Budget budget = budgets.get(endpoint);
+        if (budget == null) {
+            throw new IllegalArgumentException("Unknown token budget endpoint: " + endpoint);
+        }
+        return budget;
+    }
+
+    private static final class Budget {
+        private final int maxInputTokens;
+        private final int maxOutputTokens;
+
+        private final LongAdder prompts = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAccumulator maxInputSeen = new LongAccumulator(Math::max, 0);
+        private final LongAdder truncated = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder answers = new LongAdder();
+        private final LongAdder answerTokens = new LongAdder();
+        private final LongAccumulator maxAnswerTokens = new LongAccumulator(Math::max, 0);
+        private final LongAdder tokenizeNanos = new LongAdder();
+
+        private Budget(int maxInputTokens, int maxOutputTokens) {
+            this.maxInputTokens = maxInputTokens;
+            this.maxOutputTokens = maxOutputTokens;
+        }
+
+        private void record(int totalTokens) {
+            inputTokens.add(totalTokens);
+            maxInputSeen.accumulate(totalTokens);
+        }
+
+        private Map<String, Object> snapshot() {
+            long p = prompts.sum();
+            long accepted = p - rejected.sum();
+            long a = answers.sum();
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("maxInputTokens", maxInputTokens);
+            payload.put("maxOutputTokens", maxOutputTokens);
+            payload.put("prompts", p);
+            payload.put("truncated", truncated.sum());
+            payload.put("rejected", rejected.sum());
+            payload.put("avgInputTokens", accepted == 0 ? 0.0 : (double) inputTokens.sum() / accepted);
+            payload.put("maxInputTokensSeen", maxInputSeen.get());
+            payload.put("answers", a);
+            payload.put("avgAnswerTokens", a == 0 ? 0.0 : (double) answerTokens.sum() / a);
+            payload.put("maxAnswerTokensSeen", maxAnswerTokens.get());
+            payload.put("avgTokenizeMicros", p == 0 ? 0.0 : tokenizeNanos.sum() / 1_000.0 / p);
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ia.robot.ai.tokens;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Comptage de tokens en memoire (tokenizer BPE jtokkit), sans appel reseau.
+ *
+ * Encodage choisi d'apres le modele ChatClient (spring.ai.openai.chat.options.model) :
+ * - gpt-4o, gpt-4o-mini, gpt-4.1, o1/o3/o4, gpt-5 : o200k_base
+ * - gpt-4, gpt-3.5-turbo                           : cl100k_base
+ * - modele inconnu                                 : o200k_base
+ * Le modele LIVE (orwell.web.model) est de la meme famille dans les configurations
+ * supportees ; un ecart est signale au demarrage.
+ *
+ * Les textes sont encodes en mode "ordinaire" : un "<|endoftext|>" colle par
+ * un utilisateur est compte comme du texte, sans exception.
+ *
+ * countStatic(...) memorise le compte des textes fixes (system prompts, gabarits)
+ * pour ne les encoder qu'une fois.
+ */
+@Component
+public class TokenCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenCounter.class);
+
+    // Textes fixes uniquement : quelques entrees par endpoint et layout
+    private static final int MAX_STATIC_ENTRIES = 64;
+
+    private final Encoding encoding;
+    private final Map<String, Integer> staticCounts = new ConcurrentHashMap<>();
+
+    public TokenCounter(@Value("${spring.ai.openai.chat.options.model:gpt-4o-mini}") String chatModel,
+                        @Value("${orwell.web.model:gpt-4o}") String liveModel) {
+        EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
+        this.encoding = encodingFor(registry, chatModel);
+
+        Encoding liveEncoding = encodingFor(registry, liveModel);
+        if (!liveEncoding.getName().equals(encoding.getName())) {
+            log.warn("[ORWELL][TOKENS] LIVE model {} uses {}, counts are based on {} ({}).",
+                    liveModel, liveEncoding.getName(), encoding.getName(), chatModel);
+        }
+        log.info("[ORWELL][TOKENS] Tokenizer {} for model {}", encoding.getName(), chatModel);
+    }
+
+    private static Encoding encodingFor(EncodingRegistry registry, String model) {
+        String name = model == null ? "" : model.trim();
+        return registry.getEncodingForModel(name)
+                .orElseGet(() -> registry.getEncoding(EncodingType.O200K_BASE));
+    }
+
+    public String encodingName() {
+        return encoding.getName();
+    }
+
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return encoding.countTokensOrdinary(text);
+    }
+
+    /**
+     * Compte memorise, pour les textes constants (system prompts, parties fixes des gabarits).
+     */
+    public int countStatic(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        Integer known = staticCounts.get(text);
+        if (known != null) {
+            return known;
+        }
+        int n = count(text);
+        if (staticCounts.size() < MAX_STATIC_ENTRIES) {
+            staticCounts.put(text, n);
+        }
+        return n;
+    }
+
+    /**
+     * Debut du texte tenant en maxTokens tokens (texte inchange s'il tient deja).
+     */
+    public String truncate(String text, int maxTokens) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        if (maxTokens <= 0) {
+            return "";
+        }
+        EncodingResult result = encoding.encodeOrdinary(text, maxTokens);
+        if (!result.isTruncated()) {
+            return text;
+        }
+        String head = encoding.decode(result.getTokens());
+        // Un caractere multi-octets coupe en fin de decoupe donne U+FFFD
+        int end = head.length();
+        while (end > 0 && head.charAt(end - 1) == '\uFFFD') {
+            end--;
+        }
+        return head.substring(0, end);
+    }
+}
@@ -0,0 +1,255 @@
+package com.ia.robot.ai.trace;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Decoupage en etapes (spans) d'une requete agent, rattache a AgentContext.requestId.
+ *
+ * - Cree par RequestTracer, transporte par AgentContext (comme Deadline).
+ * - Chaque etape note son debut (relatif au debut de la requete), sa duree
+ *   et l'exception eventuelle. Ecriture sans verrou : les etapes d'un hedge
+ *   (LIVE et ChatClient en parallele) peuvent etre notees depuis deux threads.
+ * - Au plus MAX_SPANS etapes ; au-dela, elles sont seulement comptees.
+ * - RequestTrace.none() : trace desactivee, toutes les methodes sont sans effet
+ *   (pas meme un appel a System.nanoTime()).
+ *
+ * Usage :
+ *   long begin = trace.begin();
+ *   ... ;
+ *   trace.end(RequestTrace.PROMPT, begin);
+ * ou : String text = trace.span(RequestTrace.LIVE, () -> callLive(...));
+ */
+public final class RequestTrace {
+
+    // --- Etapes ---
+    public static final String CONTROLLER = "controller";
+    public static final String ADMISSION = "admission";
+    public static final String QUEUE = "queue";
+    public static final String PROMPT = "prompt";
+    public static final String COALESCED = "coalesced";
+    public static final String LIVE = "live";
+    public static final String STANDARD = "standard";
+    public static final String FALLBACK = "fallback";
+    public static final String JSON_PARSE = "json-parse";
+    public static final String AUDIT = "audit";
+
+    public static final String CANCELLED = "Cancelled";
+
+    static final int MAX_SPANS = 32;
+
+    private static final RequestTrace NONE = new RequestTrace(null, null, 0L);
+
+    private final String requestId;
+    private final String endpoint;
+    private final long startNanos;
+    private final Instant startedAt;
+
+    private final AtomicReferenceArray<Span> spans;
+    private final AtomicInteger spanCount = new AtomicInteger();
+
+    // Appelants imbriques (service -> runner) : publiee quand le dernier a termine
+    private final AtomicInteger depth = new AtomicInteger(1);
+    private volatile long durationNanos = -1L;
+    private volatile String outcome;
+
+    RequestTrace(String requestId, String endpoint, long startNanos) {
+        this.requestId = requestId;
+        this.endpoint = endpoint;
+        this.startNanos = startNanos;
+        this.startedAt = requestId != null
+                ? Instant.now().minusNanos(System.nanoTime() - startNanos)
+                : null;
+        this.spans = requestId != null ? new AtomicReferenceArray<>(MAX_SPANS) : null;
+    }
+
+    public static RequestTrace none() {
+        return NONE;
+    }
+
+    public boolean isRecording() {
+        return this != NONE;
+    }
+
+    public String requestId() {
+        return requestId;
+    }
+
+    public String endpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Debut d'une etape (0 si la trace est desactivee).
+     */
+    public long begin() {
+        return this != NONE ? System.nanoTime() : 0L;
+    }
+
+    public void end(String stage, long beginNanos) {
+        record(stage, beginNanos, null);
+    }
+
+    public void fail(String stage, long beginNanos, Throwable error) {
+        record(stage, beginNanos, error != null ? error.getClass().getSimpleName() : "Unknown");
+    }
+
+    /**
+     * Termine une etape ; error = null si elle a abouti, sinon un libelle court
+     * (nom simple de l'exception, CANCELLED).
+     */
+    public void record(String stage, long beginNanos, String error) {
+        if (this == NONE) {
+            return;
+        }
+        long now = System.nanoTime();
+        int index = spanCount.getAndIncrement();
+        if (index < MAX_SPANS) {
+            spans.set(index, new Span(stage, beginNanos - startNanos, now - beginNanos, error));
+        }
+    }
+
+    /**
+     * Execute call comme une etape : duree notee, exception notee puis propagee.
+     */
+    public <T> T span(String stage, Supplier<T> call) {
+        if (this == NONE) {
+            return call.get();
+        }
+        long begin = System.nanoTime();
+        try {
+            T result = call.get();
+            end(stage, begin);
+            return result;
+        } catch (RuntimeException | Error e) {
+            fail(stage, begin, e);
+            throw e;
+        }
+    }
+
+    void join() {
+        depth.incrementAndGet();
+    }
+
+    /**
+     * Fin d'un appelant ; true quand la requete est terminee (dernier appelant).
+     * L'issue retenue est celle du premier appelant a terminer (le plus interne).
+     */
+    boolean finish(String outcome) {
+        if (this.outcome == null) {
+            this.outcome = outcome;
+        }
+        if (depth.decrementAndGet() != 0) {
+            return false;
+        }
+        durationNanos = System.nanoTime() - startNanos;
+        return true;
+    }
+
+    public boolean isFinished() {
+        return durationNanos >= 0;
+    }
+
+    /**
+     * Duree totale (ou ecoulee si la requete est en cours), en ns.
+     */
+    public long durationNanos() {
+        long d = durationNanos;
+        return d >= 0 ? d : System.nanoTime() - startNanos;
+    }
+
+    public List<Span> spans() {
+        int count = Math.min(spanCount.get(), MAX_SPANS);
+        List<Span> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Span span = spans.get(i);
+            // Index reserve mais etape pas encore ecrite : ignoree
+            if (span != null) {
+                list.add(span);
+            }
+        }
+        list.sort((a, b) -> Long.compare(a.offsetNanos(), b.offsetNanos()));
+        return list;
+    }
+
+    /**
+     * Ligne courte pour les logs : "controller=2 queue=0 prompt=1 live=4120(SocketTimeoutException) ...".
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Span span : spans()) {
+            if (!sb.isEmpty()) {
+                sb.append(' ');
+            }
+            sb.append(span.stage()).append('=').append(span.durationNanos() / 1_000_000L);
+            if (span.error() != null) {
+                sb.append('(').append(span.error()).append(')');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Vue courte pour les listes (GET /api/ops/traces).
+     */
+    public Map<String, Object> toSummaryMap() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("requestId", requestId);
+        payload.put("endpoint", endpoint);
+        payload.put("startedAt", startedAt != null ? startedAt.toString() : null);
+        payload.put("durationMs", millis(durationNanos()));
+        payload.put("finished", isFinished());
+        payload.put("outcome", outcome);
+        payload.put("stages", summary());
+        return payload;
+    }
+
+    /**
+     * Decoupage complet (GET /api/ops/traces/{requestId}) : etapes dans l'ordre
+     * de debut, total par etape, et temps non couvert par une etape
+     * (attente, code entre deux etapes ; negatif si des etapes se chevauchent).
+     */
+    public Map<String, Object> toMap() {
+        List<Span> list = spans();
+        long total = durationNanos();
+
+        List<Map<String, Object>> spanMaps = new ArrayList<>(list.size());
+        Map<String, Double> byStage = new LinkedHashMap<>();
+        long covered = 0L;
+        for (Span span : list) {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("stage", span.stage());
+            s.put("startMs", millis(span.offsetNanos()));
+            s.put("durationMs", millis(span.durationNanos()));
+            s.put("error", span.error());
+            spanMaps.add(s);
+            byStage.merge(span.stage(), millis(span.durationNanos()), Double::sum);
+            covered += span.durationNanos();
+        }
+
+        Map<String, Object> payload = toSummaryMap();
+        payload.remove("stages");
+        payload.put("stagesMs", byStage);
+        payload.put("unaccountedMs", millis(total - covered));
+        payload.put("droppedSpans", Math.max(0, spanCount.get() - MAX_SPANS));
+        payload.put("spans", spanMaps);
+        return payload;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000d) / 100d;
+    }
+
+    /**
+     * Etape terminee : debut relatif au debut de la requete, duree (ns),
+     * error = null si elle a abouti.
+     */
+    public record Span(String stage, long offsetNanos, long durationNanos, String error) {
+    }
+}
@@ -0,0 +1,198 @@
+package com.ia.robot.ai.trace;
+
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.agent.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traces par etape des requetes agent, gardees en memoire.
+ *
+ * - start / join : trace de la requete, portee ensuite par AgentContext.withTrace ;
+ *   l'etape "controller" couvre le temps entre la creation de la Deadline
+ *   (entree dans AgentController) et l'entree dans le runner.
+ * - finish : la trace terminee entre dans un anneau des capacity dernieres
+ *   requetes ; au-dela de slow-threshold-ms, elle est aussi gardee dans un
+ *   anneau des requetes lentes (pour ne pas etre chassee par le trafic rapide)
+ *   et son decoupage est logue.
+ *
+ * Anneaux sans verrou : un curseur atomique choisit la case, la trace la plus
+ * ancienne est ecrasee. Cout par requete : quelques System.nanoTime() et
+ * une petite allocation par etape ; orwell.trace.enabled=false le ramene a zero.
+ *
+ * Lecture : GET /api/ops/traces, GET /api/ops/traces/{requestId}.
+ */
+@Component
+public class RequestTracer {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestTracer.class);
+
+    private final boolean enabled;
+    private final long slowThresholdNanos;
+
+    private final Ring recent;
+    private final Ring slow;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder finished = new LongAdder();
+    private final LongAdder slowCount = new LongAdder();
+
+    public RequestTracer(@Value("${orwell.trace.enabled:true}") boolean enabled,
+                         @Value("${orwell.trace.capacity:1024}") int capacity,
+                         @Value("${orwell.trace.slow-capacity:256}") int slowCapacity,
+                         @Value("${orwell.trace.slow-threshold-ms:5000}") long slowThresholdMs) {
+        this.enabled = enabled;
+        this.slowThresholdNanos = Math.max(0L, slowThresholdMs) * 1_000_000L;
+        this.recent = new Ring(capacity);
+        this.slow = new Ring(slowCapacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Contexte porteur d'une trace pour endpoint : celle du contexte si un appelant
+     * l'a deja ouverte (elle sera publiee quand il la terminera), sinon une nouvelle.
+     * Chaque join doit etre suivi d'un finish.
+     */
+    public AgentContext join(AgentContext context, String endpoint) {
+        RequestTrace current = context.getTrace();
+        if (current.isRecording()) {
+            current.join();
+            return context;
+        }
+        return enabled ? context.withTrace(start(context, endpoint)) : context;
+    }
+
+    private RequestTrace start(AgentContext context, String endpoint) {
+        long now = System.nanoTime();
+        Deadline deadline = context.getDeadline();
+        long entryNanos = deadline.isBounded() ? now - deadline.elapsedNanos() : now;
+
+        RequestTrace trace = new RequestTrace(context.getRequestId(), endpoint, entryNanos);
+        if (entryNanos < now) {
+            trace.end(RequestTrace.CONTROLLER, entryNanos);
+        }
+        started.increment();
+        return trace;
+    }
+
+    /**
+     * Fin d'un appelant de la trace (voir join) ; la derniere publie la trace.
+     *
+     * @param outcome issue de la requete (AgentMetrics.SUCCESS, ERROR, ...)
+     */
+    public void finish(RequestTrace trace, String outcome) {
+        if (!trace.isRecording() || !trace.finish(outcome)) {
+            return;
+        }
+        finished.increment();
+        recent.add(trace);
+        if (trace.durationNanos() >= slowThresholdNanos) {
+            slowCount.increment();
+            slow.add(trace);
+            log.warn("[ORWELL][TRACE] Slow request. requestId={}, endpoint={}, durationMs={}, outcome={}, stages={}",
+                    trace.requestId(),
+                    trace.endpoint(),
+                    trace.durationNanos() / 1_000_000L,
+                    outcome,
+                    trace.summary());
+        }
+    }
+
+    /**
+     * Trace d'une requete terminee, tant qu'elle est encore dans un des anneaux.
+     */
+    public Optional<RequestTrace> find(String requestId) {
+        if (requestId == null) {
+            return Optional.empty();
+        }
+        RequestTrace found = recent.find(requestId);
+        return Optional.ofNullable(found != null ? found : slow.find(requestId));
+    }
+
+    /**
+     * Compteurs et dernieres requetes (lentes et toutes), les plus recentes d'abord.
+     */
+    public Map<String, Object> snapshot(int limit) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("capacity", recent.capacity());
+        payload.put("slowCapacity", slow.capacity());
+        payload.put("slowThresholdMs", slowThresholdNanos / 1_000_000L);
+        payload.put("started", started.sum());
+        payload.put("finished", finished.sum());
+        payload.put("slow", slowCount.sum());
+        payload.put("recentSlow", summaries(slow.latest(limit)));
+        payload.put("recent", summaries(recent.latest(limit)));
+        return payload;
+    }
+
+    private static List<Map<String, Object>> summaries(List<RequestTrace> traces) {
+        List<Map<String, Object>> list = new ArrayList<>(traces.size());
+        for (RequestTrace trace : traces) {
+            list.add(trace.toSummaryMap());
+        }
+        return list;
+    }
+
+    /**
+     * Anneau a ecriture concurrente : capacite arrondie a une puissance de 2.
+     */
+    private static final class Ring {
+
+        private final AtomicReferenceArray<RequestTrace> slots;
+        private final int mask;
+        private final AtomicLong cursor = new AtomicLong();
+
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(1, Math.min(capacity, 1 << 16)) * 2 - 1);
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        int capacity() {
+            return slots.length();
+        }
+
+        void add(RequestTrace trace) {
+            slots.set((int) (cursor.getAndIncrement() & mask), trace);
+        }
+
+        RequestTrace find(String requestId) {
+            long end = cursor.get();
+            for (long i = end - 1; i >= Math.max(0L, end - slots.length()); i--) {
+                RequestTrace trace = slots.get((int) (i & mask));
+                if (trace != null && requestId.equals(trace.requestId())) {
+                    return trace;
+                }
+            }
+            return null;
+        }
+
+        List<RequestTrace> latest(int limit) {
+            long end = cursor.get();
+            int count = (int) Math.min(Math.max(0, limit), Math.min(end, slots.length()));
+            List<RequestTrace> list = new ArrayList<>(count);
+            for (long i = end - 1; i >= end - count; i--) {
+                RequestTrace trace = slots.get((int) (i & mask));
+                if (trace != null) {
+                    list.add(trace);
+                }
+            }
+            return list;
+        }
+    }
+}
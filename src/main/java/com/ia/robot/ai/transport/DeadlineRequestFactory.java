@@ -0,0 +1,56 @@
+package com.ia.robot.ai.transport;
+
+import com.ia.robot.ai.agent.Deadline;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Fabrique de requetes du RestClient amont (ChatClient .call()).
+ *
+ * Timeout de lecture de chaque requete = min(orwell.upstream.read-timeout-seconds,
+ * temps restant de UpstreamDeadline.current()) : l'appel reste sur le thread
+ * de la requete et s'arrete de lui-meme a l'echeance, sans thread tiers qui attend.
+ * Budget deja epuise : AgentTimeoutException, la requete ne part pas
+ * (ni la premiere tentative, ni une relance Spring AI).
+ */
+public class DeadlineRequestFactory implements ClientHttpRequestFactory {
+
+    private static final String STAGE = "upstream HTTP call";
+
+    private final HttpClient httpClient;
+    private final JdkClientHttpRequestFactory unbounded;
+    private final Duration readTimeout;
+
+    public DeadlineRequestFactory(HttpClient httpClient, Duration readTimeout) {
+        this.httpClient = httpClient;
+        this.readTimeout = readTimeout;
+        this.unbounded = timed(readTimeout);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        Deadline deadline = UpstreamDeadline.current();
+        if (!deadline.isBounded()) {
+            return unbounded.createRequest(uri, httpMethod);
+        }
+        deadline.check(STAGE);
+        long remainingMs = deadline.remainingMs();
+        if (remainingMs >= readTimeout.toMillis()) {
+            return unbounded.createRequest(uri, httpMethod);
+        }
+        return timed(Duration.ofMillis(remainingMs)).createRequest(uri, httpMethod);
+    }
+
+    private JdkClientHttpRequestFactory timed(Duration timeout) {
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(timeout);
+        return factory;
+    }
+}
@@ -0,0 +1,50 @@
+package com.ia.robot.ai.transport;
+
+import com.ia.robot.ai.agent.Deadline;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+
+import java.time.Duration;
+
+/**
+ * Listener ajoute au RetryTemplate de Spring AI (relances ChatClient sur erreur
+ * transitoire, backoff exponentiel spring.ai.retry.backoff.*).
+ *
+ * Sous un budget (UpstreamDeadline) : si l'attente avant la prochaine tentative
+ * atteint le temps restant, les relances s'arretent et la derniere erreur remonte
+ * tout de suite, au lieu de dormir sur le thread de la requete au-dela de l'echeance.
+ * Sans budget : comportement Spring AI inchange.
+ */
+public class DeadlineRetryListener implements RetryListener {
+
+    private final long initialIntervalMs;
+    private final int multiplier;
+    private final long maxIntervalMs;
+
+    public DeadlineRetryListener(Duration initialInterval, int multiplier, Duration maxInterval) {
+        this.initialIntervalMs = Math.max(0L, initialInterval.toMillis());
+        this.multiplier = Math.max(1, multiplier);
+        this.maxIntervalMs = Math.max(initialIntervalMs, maxInterval.toMillis());
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
+                                                 Throwable throwable) {
+        Deadline deadline = UpstreamDeadline.current();
+        if (deadline.isBounded() && deadline.remainingMs() <= backOffMs(context.getRetryCount())) {
+            context.setExhaustedOnly();
+        }
+    }
+
+    /**
+     * Attente avant la tentative suivante, apres failedAttempts echecs.
+     */
+    long backOffMs(int failedAttempts) {
+        long interval = initialIntervalMs;
+        for (int i = 1; i < failedAttempts && interval < maxIntervalMs; i++) {
+            interval *= multiplier;
+        }
+        return Math.min(interval, maxIntervalMs);
+    }
+}
@@ -0,0 +1,46 @@
+package com.ia.robot.ai.transport;
+
+import com.ia.robot.ai.agent.Deadline;
+
+import java.util.function.Supplier;
+
+/**
+ * Budget de la requete pour les appels HTTP amont bloquants (ChatClient .call()),
+ * porte par le thread qui fait l'appel.
+ *
+ * - within(deadline, call) : pose le budget le temps de call ;
+ * - DeadlineRequestFactory : timeout HTTP de chaque tentative = temps restant,
+ *   aucune tentative ne part apres l'echeance ;
+ * - DeadlineRetryListener : pas de relance Spring AI dont l'attente depasse l'echeance.
+ *
+ * Le budget suit le thread : un appel lance sur un autre thread doit poser le sien.
+ */
+public final class UpstreamDeadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private UpstreamDeadline() {
+    }
+
+    public static <T> T within(Deadline deadline, Supplier<T> call) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Budget du thread courant, Deadline.none() hors de within(...).
+     */
+    public static Deadline current() {
+        Deadline deadline = CURRENT.get();
+        return deadline != null ? deadline : Deadline.none();
+    }
+}
@@ -0,0 +1,278 @@
+package com.ia.robot.ai.transport;
+
+import com.ia.robot.ai.resilience.LatencyTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport HTTP amont unique d'ORWELL (API OpenAI : ChatClient + mode LIVE).
+ *
+ * C'est un HttpClient JDK (HTTP/2 prefere, executor dedie) enveloppe :
+ * - un seul pool de connexions pour tout le processus : en HTTP/2, les appels
+ *   concurrents vers la meme origine sont multiplexes sur une connexion TLS ;
+ * - compteurs : requetes en cours / pic, version negociee (HTTP/2 vs 1.1),
+ *   echecs, annulations, latence jusqu'aux en-tetes ;
+ * - warmUp(...) : etablit les connexions TLS au demarrage, avant le premier
+ *   appel utilisateur.
+ *
+ * Le HttpClient JDK n'expose pas l'etat interne de son pool : la version
+ * negociee et la latence jusqu'aux en-tetes sont les indicateurs observables
+ * (une latence qui chute apres le warm-up = connexion reutilisee).
+ */
+public class UpstreamHttpTransport extends HttpClient {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamHttpTransport.class);
+
+    private final HttpClient delegate;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder http2Responses = new LongAdder();
+    private final LongAdder http1Responses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LatencyTracker timeToHeaders = new LatencyTracker(1024);
+
+    // origine -> resultat du dernier warm-up
+    private final Map<String, String> warmups = new ConcurrentHashMap<>();
+
+    public UpstreamHttpTransport(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    // ------------------------------------------------------------------
+    // Envoi (instrumente)
+    // ------------------------------------------------------------------
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        long start = enter();
+        try {
+            HttpResponse<T> response = delegate.send(request, responseBodyHandler);
+            onResponse(response, start);
+            return response;
+        } catch (InterruptedException e) {
+            cancellations.increment();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            leave();
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> responseBodyHandler) {
+        return sendAsync(request, responseBodyHandler, null);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        long start = enter();
+        CompletableFuture<HttpResponse<T>> pending;
+        try {
+            pending = delegate.sendAsync(request, responseBodyHandler, pushPromiseHandler);
+        } catch (RuntimeException e) {
+            failures.increment();
+            leave();
+            throw e;
+        }
+        // On rend le future d'origine : cancel() doit continuer d'annuler l'echange HTTP
+        pending.whenComplete((response, error) -> {
+            leave();
+            if (error == null) {
+                onResponse(response, start);
+            } else if (pending.isCancelled()) {
+                cancellations.increment();
+            } else {
+                failures.increment();
+            }
+        });
+        return pending;
+    }
+
+    private long enter() {
+        requests.increment();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return System.nanoTime();
+    }
+
+    private void leave() {
+        inFlight.decrementAndGet();
+    }
+
+    private void onResponse(HttpResponse<?> response, long startNanos) {
+        timeToHeaders.record((System.nanoTime() - startNanos) / 1_000_000L);
+        if (response.version() == Version.HTTP_2) {
+            http2Responses.increment();
+        } else {
+            http1Responses.increment();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Warm-up
+    // ------------------------------------------------------------------
+
+    /**
+     * Ouvre (en asynchrone) une connexion vers chaque origine : resolution DNS,
+     * handshake TLS et negociation HTTP/2 sont faits avant le premier appel reel.
+     * Une reponse 401/404 est normale (requete HEAD sans cle) : seule la connexion compte.
+     */
+    public CompletableFuture<Void> warmUp(Collection<URI> origins, Duration timeout) {
+        CompletableFuture<?>[] calls = origins.stream()
+                .map(origin -> warmUp(origin, timeout))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(calls);
+    }
+
+    private CompletableFuture<Void> warmUp(URI origin, Duration timeout) {
+        long start = System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder(origin)
+                .timeout(timeout)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+
+        return delegate.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    long ms = (System.nanoTime() - start) / 1_000_000L;
+                    String result = error == null
+                            ? response.version() + " status=" + response.statusCode() + " in " + ms + " ms"
+                            : "FAILED in " + ms + " ms: " + error.getMessage();
+                    warmups.put(origin.toString(), result);
+                    if (error == null) {
+                        log.info("[ORWELL][TRANSPORT] Warm-up {} -> {}", origin, result);
+                    } else {
+                        log.warn("[ORWELL][TRANSPORT] Warm-up {} -> {}", origin, result);
+                    }
+                    return null;
+                });
+    }
+
+    // ------------------------------------------------------------------
+    // Compteurs
+    // ------------------------------------------------------------------
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("preferredVersion", delegate.version().name());
+        payload.put("connectTimeoutMs", delegate.connectTimeout().map(Duration::toMillis).orElse(-1L));
+        payload.put("requests", requests.sum());
+        payload.put("inFlight", inFlight.get());
+        payload.put("peakInFlight", peakInFlight.get());
+        payload.put("http2Responses", http2Responses.sum());
+        payload.put("http1Responses", http1Responses.sum());
+        payload.put("failures", failures.sum());
+        payload.put("cancellations", cancellations.sum());
+        payload.put("timeToHeadersP50Ms", timeToHeaders.percentile(50));
+        payload.put("timeToHeadersP90Ms", timeToHeaders.percentile(90));
+        payload.put("timeToHeadersP99Ms", timeToHeaders.percentile(99));
+        payload.put("warmups", new LinkedHashMap<>(warmups));
+        return payload;
+    }
+
+    public void resetPeakInFlight() {
+        peakInFlight.set(inFlight.get());
+    }
+
+    // ------------------------------------------------------------------
+    // Delegation pure
+    // ------------------------------------------------------------------
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return delegate.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public boolean awaitTermination(Duration duration) throws InterruptedException {
+        return delegate.awaitTermination(duration);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public void shutdownNow() {
+        delegate.shutdownNow();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.ia.robot.ai.usage;
+
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.agent.AnswerPath;
+import com.ia.robot.exception.AgentTimeoutException;
+import com.ia.robot.exception.PromptTooLargeException;
+import com.ia.robot.exception.RateLimitedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metriques Micrometer du pipeline agent (export Prometheus : /actuator/prometheus).
+ *
+ * - orwell.agent.requests (timer, histogramme de percentiles) :
+ *   endpoint (plan, ask, ask-stream), profile, path, outcome ;
+ * - orwell.upstream.errors (compteur) : upstream (live, standard), exception ;
+ * - orwell.agent.prompt.size / orwell.agent.answer.size (caracteres) : endpoint ;
+ * - jauges d'appels en cours : voir MetricsConfig.
+ *
+ * Cardinalite bornee : profile est ramene a une liste fermee (OTHER sinon),
+ * path et outcome sont des enums, exception est le nom simple d'une classe.
+ * Jamais d'etablissement, de requestId ni de texte en tag.
+ */
+@Component
+public class AgentMetrics {
+
+    public static final String LIVE = "live";
+    public static final String STANDARD = "standard";
+
+    // Chemin d'un plan (pas d'AnswerPath) ou d'un appel refuse avant tout chemin
+    public static final String PATH_NONE = "none";
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String TIMEOUT = "timeout";
+    public static final String REJECTED = "rejected";
+    public static final String CANCELLED = "cancelled";
+
+    private static final Set<String> PROFILES = Set.of("ELEVE", "ENSEIGNANT", "PARENT", "ADMIN", "AUTRE");
+
+    private final MeterRegistry registry;
+
+    // Meters deja enregistres, par combinaison de tags (bornee)
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errors = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> sizes = new ConcurrentHashMap<>();
+
+    public AgentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Duree totale d'un appel agent, vue du runner.
+     *
+     * @param path AnswerPath en minuscules, "cache" pour un plan en cache,
+     *             "standard" pour un plan genere, PATH_NONE si inconnu
+     */
+    public void recordRequest(String endpoint, AgentContext context, String path, String outcome, long durationNanos) {
+        String profile = profileTag(context);
+        String key = endpoint + '|' + profile + '|' + path + '|' + outcome;
+        timers.computeIfAbsent(key, k -> Timer.builder("orwell.agent.requests")
+                        .description("Agent call duration, from admission to answer")
+                        .tag("endpoint", endpoint)
+                        .tag("profile", profile)
+                        .tag("path", path)
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(5))
+                        .maximumExpectedValue(Duration.ofMinutes(3))
+                        .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUpstreamError(String upstream, Throwable error) {
+        String exception = error != null ? error.getClass().getSimpleName() : "Unknown";
+        String key = upstream + '|' + exception;
+        errors.computeIfAbsent(key, k -> Counter.builder("orwell.upstream.errors")
+                        .description("Failed upstream model calls")
+                        .tag("upstream", upstream)
+                        .tag("exception", exception.isEmpty() ? "Anonymous" : exception)
+                        .register(registry))
+                .increment();
+    }
+
+    public void recordPromptSize(String endpoint, int chars) {
+        size("orwell.agent.prompt.size", "User prompt size sent to the agent", endpoint).record(chars);
+    }
+
+    public void recordAnswerSize(String endpoint, int chars) {
+        size("orwell.agent.answer.size", "Answer size returned by the agent", endpoint).record(chars);
+    }
+
+    public static String pathTag(AnswerPath path) {
+        return path != null ? path.name().toLowerCase(Locale.ROOT) : PATH_NONE;
+    }
+
+    public static String outcomeOf(Throwable error) {
+        if (error instanceof AgentTimeoutException) {
+            return TIMEOUT;
+        }
+        if (error instanceof RateLimitedException || error instanceof PromptTooLargeException) {
+            return REJECTED;
+        }
+        return ERROR;
+    }
+
+    static String profileTag(AgentContext context) {
+        String profile = context != null ? context.getProfileType() : null;
+        if (profile == null || profile.isBlank()) {
+            return "NONE";
+        }
+        String normalized = profile.trim().toUpperCase(Locale.ROOT);
+        return PROFILES.contains(normalized) ? normalized : "OTHER";
+    }
+
+    private DistributionSummary size(String name, String description, String endpoint) {
+        return sizes.computeIfAbsent(name + '|' + endpoint, k -> DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("characters")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(10.0)
+                .maximumExpectedValue(200_000.0)
+                .register(registry));
+    }
+}
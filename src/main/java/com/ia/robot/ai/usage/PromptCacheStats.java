@@ -0,0 +1,130 @@
+package com.ia.robot.ai.usage;
+
+import com.ia.robot.ai.prompt.PromptLayout;
+import com.ia.robot.ai.resilience.LatencyTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Suivi du cache de prefixe du fournisseur (tokens d'entree deja vus).
+ *
+ * Pour chaque appel amont, on enregistre l'usage rapporte (TokenUsage) par
+ * "endpoint" : plan, ask, ask-stream (ChatClient) et live (Responses API).
+ *
+ * Indicateurs :
+ * - cachedTokenRatio : part des tokens d'entree servis depuis le cache ;
+ * - cacheHitCallRate : part des appels avec au moins un token en cache ;
+ * - latence p50/p90 des appels avec et sans cache ;
+ * - cout estime, cout sans cache, economie (tarifs orwell.prompt.cost.*,
+ *   en USD par million de tokens : estimation, pas une facture).
+ *
+ * A comparer entre orwell.prompt.layout=legacy et prefix-cache.
+ * Compteurs : GET /api/ops/prompt-cache
+ */
+@Component
+public class PromptCacheStats {
+
+    public static final String PLAN = "plan";
+    public static final String ASK = "ask";
+    public static final String ASK_STREAM = "ask-stream";
+    public static final String LIVE = "live";
+
+    private final PromptLayout layout;
+    private final Prices standardPrices;
+    private final Prices livePrices;
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    public PromptCacheStats(@Value("${orwell.prompt.layout:prefix-cache}") String layout,
+                            @Value("${orwell.prompt.cost.input-per-million:0.15}") double inputPrice,
+                            @Value("${orwell.prompt.cost.cached-input-per-million:0.075}") double cachedInputPrice,
+                            @Value("${orwell.prompt.cost.output-per-million:0.60}") double outputPrice,
+                            @Value("${orwell.prompt.cost.live.input-per-million:2.50}") double liveInputPrice,
+                            @Value("${orwell.prompt.cost.live.cached-input-per-million:1.25}") double liveCachedInputPrice,
+                            @Value("${orwell.prompt.cost.live.output-per-million:10.00}") double liveOutputPrice) {
+        this.layout = PromptLayout.from(layout);
+        this.standardPrices = new Prices(inputPrice, cachedInputPrice, outputPrice);
+        this.livePrices = new Prices(liveInputPrice, liveCachedInputPrice, liveOutputPrice);
+    }
+
+    public PromptLayout layout() {
+        return layout;
+    }
+
+    public void record(String endpoint, TokenUsage usage, long latencyMs) {
+        EndpointStats stats = endpoints.computeIfAbsent(endpoint, e -> new EndpointStats());
+        stats.calls.increment();
+
+        if (usage == null || !usage.isReported()) {
+            stats.callsWithoutUsage.increment();
+            return;
+        }
+
+        stats.inputTokens.add(usage.inputTokens());
+        stats.cachedInputTokens.add(usage.cachedInputTokens());
+        stats.outputTokens.add(usage.outputTokens());
+        if (usage.cachedInputTokens() > 0) {
+            stats.cacheHitCalls.increment();
+            stats.hitLatencies.record(latencyMs);
+        } else {
+            stats.missLatencies.record(latencyMs);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("layout", layout.propertyValue());
+        Map<String, Object> perEndpoint = new LinkedHashMap<>();
+        new TreeMap<>(endpoints).forEach((name, stats) ->
+                perEndpoint.put(name, stats.snapshot(LIVE.equals(name) ? livePrices : standardPrices)));
+        payload.put("endpoints", perEndpoint);
+        return payload;
+    }
+
+    private record Prices(double input, double cachedInput, double output) {
+    }
+
+    private static final class EndpointStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder callsWithoutUsage = new LongAdder();
+        private final LongAdder cacheHitCalls = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder cachedInputTokens = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+        private final LatencyTracker hitLatencies = new LatencyTracker(512);
+        private final LatencyTracker missLatencies = new LatencyTracker(512);
+
+        private Map<String, Object> snapshot(Prices prices) {
+            long reported = calls.sum() - callsWithoutUsage.sum();
+            long in = inputTokens.sum();
+            long cached = cachedInputTokens.sum();
+            long out = outputTokens.sum();
+
+            double costWithoutCache = (in * prices.input() + out * prices.output()) / 1_000_000d;
+            double cost = ((in - cached) * prices.input() + cached * prices.cachedInput() + out * prices.output()) / 1_000_000d;
+
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("calls", calls.sum());
+            payload.put("callsWithoutUsage", callsWithoutUsage.sum());
+            payload.put("inputTokens", in);
+            payload.put("cachedInputTokens", cached);
+            payload.put("outputTokens", out);
+            payload.put("cachedTokenRatio", in == 0 ? 0.0 : (double) cached / in);
+            payload.put("cacheHitCallRate", reported == 0 ? 0.0 : (double) cacheHitCalls.sum() / reported);
+            payload.put("hitP50Ms", hitLatencies.percentile(50));
+            payload.put("hitP90Ms", hitLatencies.percentile(90));
+            payload.put("missP50Ms", missLatencies.percentile(50));
+            payload.put("missP90Ms", missLatencies.percentile(90));
+            payload.put("estimatedCostUsd", cost);
+            payload.put("estimatedCostWithoutCacheUsd", costWithoutCache);
+            payload.put("estimatedSavedUsd", costWithoutCache - cost);
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.ia.robot.ai.usage;
+
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.api.OpenAiApi;
+
+/**
+ * Consommation de tokens d'un appel amont, telle que rapportee par le fournisseur.
+ *
+ * cachedInputTokens : part de inputTokens servie par le cache de prefixe
+ * du fournisseur (facturee moins cher, traitee plus vite).
+ * - Chat Completions : usage.prompt_tokens_details.cached_tokens
+ * - Responses API    : usage.input_tokens_details.cached_tokens
+ */
+public record TokenUsage(long inputTokens, long cachedInputTokens, long outputTokens) {
+
+    public static final TokenUsage NONE = new TokenUsage(0, 0, 0);
+
+    /**
+     * false si le fournisseur n'a rien rapporte (ex: flux sans stream-usage).
+     */
+    public boolean isReported() {
+        return inputTokens > 0 || outputTokens > 0;
+    }
+
+    /**
+     * Usage d'une reponse ChatClient (Spring AI). NONE si absent.
+     */
+    public static TokenUsage from(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return NONE;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null) {
+            return NONE;
+        }
+
+        long cached = 0;
+        if (usage.getNativeUsage() instanceof OpenAiApi.Usage openAi
+                && openAi.promptTokensDetails() != null
+                && openAi.promptTokensDetails().cachedTokens() != null) {
+            cached = openAi.promptTokensDetails().cachedTokens();
+        }
+
+        return new TokenUsage(
+                orZero(usage.getPromptTokens()),
+                cached,
+                orZero(usage.getCompletionTokens())
+        );
+    }
+
+    private static long orZero(Integer value) {
+        return value != null ? value : 0L;
+    }
+}
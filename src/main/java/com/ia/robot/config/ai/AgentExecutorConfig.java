@@ -0,0 +1,92 @@
+package com.ia.robot.config.ai;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor partage pour le travail bloquant d'ORWELL qui doit quitter le thread
+ * de la requete (hedging LIVE / ChatClient, streaming, SSE).
+ * Les I/O HTTP elles-memes tournent sur l'executor du transport amont
+ * (UpstreamHttpConfig.UPSTREAM_EXECUTOR).
+ *
+ * Un appel ChatClient simple sous budget n'y passe pas : il reste sur le thread
+ * de la requete avec un timeout HTTP egal au temps restant (UpstreamDeadline).
+ * En mode plateforme, la capacite n'est donc pas plafonnee par la taille du pool
+ * et aucune requete n'attend en file sans le savoir.
+ *
+ * Deux modes, pilotes par le meme interrupteur que Tomcat :
+ *   spring.threads.virtual.enabled=true
+ *
+ * - Virtual threads (Java 21) : un thread virtuel par tache. Un appel
+ *   ChatClient ou HttpClient.send qui attend plusieurs secondes ne
+ *   monopolise plus un thread plateforme.
+ * - Sinon : pool fixe de threads plateforme (orwell.executor.platform-pool-size).
+ *
+ * Mesure des deux modes : AgentExecutorBenchmarkTest (-Dorwell.bench=true).
+ *
+ * Les deux executors recopient le SecurityContext du thread qui soumet la tache :
+ * l'utilisateur authentifie suit la requete jusqu'a AdmissionControl (seau "user"),
+ * y compris pour les lignes de /ask/bulk (agentExecutor puis bulkExecutor).
+ *
+ * Note JDBC :
+ * - mysql-connector-j 9.x (gere par Spring Boot 3.5) n'utilise plus de blocs
+ *   synchronized sur les I/O, donc l'audit JPA ne "pin" pas les carrier threads.
+ * - Le pool Hikari reste la vraie limite de concurrence cote base.
+ */
+@Configuration
+public class AgentExecutorConfig {
+
+    public static final String AGENT_EXECUTOR = "agentExecutor";
+    public static final String BULK_EXECUTOR = "bulkExecutor";
+
+    @Bean(name = AGENT_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService agentExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${orwell.executor.platform-pool-size:64}") int platformPoolSize) {
+
+        if (virtualThreads) {
+            return withSecurityContext(Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("orwell-vt-", 0).factory()
+            ));
+        }
+
+        return withSecurityContext(Executors.newFixedThreadPool(
+                Math.max(1, platformPoolSize),
+                Thread.ofPlatform().name("orwell-agent-", 0).daemon(true).factory()
+        ));
+    }
+
+    /**
+     * Lignes de /ask/bulk (BulkAskRunner) : pool distinct de agentExecutor,
+     * qui porte la lecture de l'entree et les appels hedges / streames des lignes.
+     * Aucune tache n'y attend une autre tache du meme pool.
+     * Meme interrupteur que agentExecutor ; en mode plateforme,
+     * orwell.bulk.executor-threads lignes au plus en cours, toutes requetes confondues.
+     */
+    @Bean(name = BULK_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService bulkExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${orwell.bulk.executor-threads:16}") int executorThreads) {
+
+        if (virtualThreads) {
+            return withSecurityContext(Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("orwell-bulk-vt-", 0).factory()
+            ));
+        }
+
+        return withSecurityContext(Executors.newFixedThreadPool(
+                Math.max(1, executorThreads),
+                Thread.ofPlatform().name("orwell-bulk-", 0).daemon(true).factory()
+        ));
+    }
+
+    // Contexte capture a la soumission de chaque tache, vide a la fin de la tache
+    private static ExecutorService withSecurityContext(ExecutorService delegate) {
+        return new DelegatingSecurityContextExecutorService(delegate);
+    }
+}
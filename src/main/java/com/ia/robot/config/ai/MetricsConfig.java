@@ -0,0 +1,64 @@
+package com.ia.robot.config.ai;
+
+import com.ia.robot.ai.agent.SimpleAgentRunner;
+import com.ia.robot.ai.resilience.AgentScheduler;
+import com.ia.robot.ai.resilience.ConcurrencyLimiter;
+import com.ia.robot.ai.usage.AgentMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Jauges Micrometer des appels en cours (exportees avec AgentMetrics sur
+ * /actuator/prometheus) :
+ * - orwell.agent.in.flight : appels agent en cours (SimpleAgentRunner) ;
+ * - orwell.upstream.in.flight / orwell.upstream.concurrency.limit : par upstream
+ *   (live, standard), appels en cours et limite adaptative (ConcurrencyLimiter) ;
+ * - orwell.scheduler.in.flight / orwell.scheduler.queued : par classe AgentScheduler.
+ * Lues a chaque scrape, aucun cout sur le chemin des requetes.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder agentMeterBinder(SimpleAgentRunner agentRunner,
+                                        @Qualifier(ResilienceConfig.LIVE_LIMITER) ConcurrencyLimiter liveLimiter,
+                                        @Qualifier(ResilienceConfig.STANDARD_LIMITER) ConcurrencyLimiter standardLimiter,
+                                        AgentScheduler scheduler) {
+        return registry -> {
+            Gauge.builder("orwell.agent.in.flight", agentRunner, SimpleAgentRunner::inFlight)
+                    .description("Agent calls in progress")
+                    .register(registry);
+
+            bindLimiter(registry, AgentMetrics.LIVE, liveLimiter);
+            bindLimiter(registry, AgentMetrics.STANDARD, standardLimiter);
+
+            for (String workClass : scheduler.workClasses()) {
+                Gauge.builder("orwell.scheduler.in.flight", scheduler, s -> s.inFlight(workClass))
+                        .description("Agent calls running, per scheduler class")
+                        .tag("class", workClass)
+                        .register(registry);
+                Gauge.builder("orwell.scheduler.queued", scheduler, s -> s.queued(workClass))
+                        .description("Agent calls waiting for a place, per scheduler class")
+                        .tag("class", workClass)
+                        .register(registry);
+            }
+        };
+    }
+
+    private static void bindLimiter(MeterRegistry registry,
+                                    String upstream,
+                                    ConcurrencyLimiter limiter) {
+        Gauge.builder("orwell.upstream.in.flight", limiter, ConcurrencyLimiter::inFlight)
+                .description("Upstream model calls in progress")
+                .tag("upstream", upstream)
+                .register(registry);
+        Gauge.builder("orwell.upstream.concurrency.limit", limiter, ConcurrencyLimiter::limit)
+                .description("Adaptive concurrency limit of the upstream path")
+                .tag("upstream", upstream)
+                .register(registry);
+    }
+}
@@ -0,0 +1,80 @@
+package com.ia.robot.config.ai;
+
+import com.ia.robot.ai.resilience.CircuitBreaker;
+import com.ia.robot.ai.resilience.ConcurrencyLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Protections autour des appels amont d'ORWELL.
+ *
+ * - liveCircuitBreaker : coupe le mode LIVE (Responses API) quand il est degrade.
+ *   Tant que le circuit est ouvert, ArchitectAgent passe directement
+ *   au ChatClient standard au lieu d'attendre une erreur ou un timeout.
+ * - liveConcurrencyLimiter / standardConcurrencyLimiter : nombre d'appels en cours
+ *   vers le LIVE et vers le ChatClient, ajuste selon les latences observees.
+ *   Limites distinctes : les deux chemins n'ont ni la meme latence ni le meme quota.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    public static final String LIVE_LIMITER = "liveConcurrencyLimiter";
+    public static final String STANDARD_LIMITER = "standardConcurrencyLimiter";
+
+    @Bean
+    public CircuitBreaker liveCircuitBreaker(
+            @Value("${orwell.web.breaker.window-size:20}") int windowSize,
+            @Value("${orwell.web.breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${orwell.web.breaker.failure-rate-threshold:50}") double failureRateThreshold,
+            @Value("${orwell.web.breaker.slow-call-rate-threshold:80}") double slowCallRateThreshold,
+            @Value("${orwell.web.breaker.slow-call-duration-ms:15000}") long slowCallDurationMs,
+            @Value("${orwell.web.breaker.wait-in-open-ms:30000}") long waitInOpenMs,
+            @Value("${orwell.web.breaker.permitted-calls-in-half-open:3}") int permittedCallsInHalfOpen) {
+
+        return new CircuitBreaker(
+                "orwell-live",
+                windowSize,
+                minimumCalls,
+                failureRateThreshold,
+                slowCallRateThreshold,
+                slowCallDurationMs,
+                waitInOpenMs,
+                permittedCallsInHalfOpen
+        );
+    }
+
+    @Bean(LIVE_LIMITER)
+    public ConcurrencyLimiter liveConcurrencyLimiter(
+            @Value("${orwell.upstream.limiter.enabled:true}") boolean enabled,
+            @Value("${orwell.upstream.limiter.live.initial-limit:20}") int initialLimit,
+            @Value("${orwell.upstream.limiter.live.max-limit:200}") int maxLimit,
+            @Value("${orwell.upstream.limiter.live.max-queue-wait-ms:0}") long maxQueueWaitMs,
+            @Value("${orwell.upstream.limiter.min-limit:2}") int minLimit,
+            @Value("${orwell.upstream.limiter.tolerance:2.0}") double tolerance,
+            @Value("${orwell.upstream.limiter.smoothing:0.2}") double smoothing,
+            @Value("${orwell.upstream.limiter.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${orwell.upstream.limiter.max-queued:100}") int maxQueued,
+            @Value("${orwell.upstream.limiter.baseline-window-ms:600000}") long baselineWindowMs) {
+
+        return new ConcurrencyLimiter("orwell-live", enabled, initialLimit, minLimit, maxLimit,
+                tolerance, smoothing, backoffRatio, maxQueueWaitMs, maxQueued, baselineWindowMs);
+    }
+
+    @Bean(STANDARD_LIMITER)
+    public ConcurrencyLimiter standardConcurrencyLimiter(
+            @Value("${orwell.upstream.limiter.enabled:true}") boolean enabled,
+            @Value("${orwell.upstream.limiter.standard.initial-limit:20}") int initialLimit,
+            @Value("${orwell.upstream.limiter.standard.max-limit:200}") int maxLimit,
+            @Value("${orwell.upstream.limiter.standard.max-queue-wait-ms:500}") long maxQueueWaitMs,
+            @Value("${orwell.upstream.limiter.min-limit:2}") int minLimit,
+            @Value("${orwell.upstream.limiter.tolerance:2.0}") double tolerance,
+            @Value("${orwell.upstream.limiter.smoothing:0.2}") double smoothing,
+            @Value("${orwell.upstream.limiter.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${orwell.upstream.limiter.max-queued:100}") int maxQueued,
+            @Value("${orwell.upstream.limiter.baseline-window-ms:600000}") long baselineWindowMs) {
+
+        return new ConcurrencyLimiter("orwell-standard", enabled, initialLimit, minLimit, maxLimit,
+                tolerance, smoothing, backoffRatio, maxQueueWaitMs, maxQueued, baselineWindowMs);
+    }
+}
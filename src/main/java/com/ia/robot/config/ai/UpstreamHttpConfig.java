@@ -0,0 +1,168 @@
+package com.ia.robot.config.ai;
+
+import com.ia.robot.ai.transport.DeadlineRequestFactory;
+import com.ia.robot.ai.transport.DeadlineRetryListener;
+import com.ia.robot.ai.transport.UpstreamHttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.retry.autoconfigure.SpringAiRetryProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.retry.support.RetryTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Transport HTTP amont partage (UpstreamHttpTransport).
+ *
+ * Un seul HttpClient JDK pour tous les appels vers l'API OpenAI :
+ * - OrwellLiveClient (Responses API) l'utilise directement ;
+ * - le ChatClient Spring AI l'utilise via le RestClient.Builder (appels
+ *   bloquants) et le WebClient.Builder (streaming) auto-configures par Boot,
+ *   grace aux customizers ci-dessous.
+ *
+ * HTTP/2 par defaut (orwell.upstream.http2) : les appels concurrents vers
+ * api.openai.com partagent une connexion TLS multiplexee au lieu d'ouvrir
+ * une connexion (et un handshake) par appel.
+ *
+ * Executor dedie (upstreamHttpExecutor) pour les I/O et callbacks du client :
+ * separe de agentExecutor, qui porte les appels bloquants des agents.
+ *
+ * Appels bloquants sous budget (UpstreamDeadline) : timeout HTTP = temps restant
+ * (DeadlineRequestFactory) et relances Spring AI arretees avant l'echeance
+ * (DeadlineRetryListener) ; l'appel reste sur le thread de la requete.
+ *
+ * Au demarrage (ApplicationReadyEvent), les connexions vers les origines
+ * configurees sont ouvertes a l'avance (orwell.upstream.warmup.enabled).
+ * Compteurs : GET /api/ops/transport
+ */
+@Configuration
+public class UpstreamHttpConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamHttpConfig.class);
+
+    public static final String UPSTREAM_EXECUTOR = "upstreamHttpExecutor";
+
+    @Bean(name = UPSTREAM_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService upstreamHttpExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${orwell.upstream.executor-threads:8}") int executorThreads) {
+
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("orwell-http-vt-", 0).factory()
+            );
+        }
+
+        return Executors.newFixedThreadPool(
+                Math.max(1, executorThreads),
+                Thread.ofPlatform().name("orwell-http-", 0).daemon(true).factory()
+        );
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public UpstreamHttpTransport upstreamHttpTransport(
+            @Qualifier(UPSTREAM_EXECUTOR) ExecutorService upstreamHttpExecutor,
+            @Value("${orwell.upstream.http2:true}") boolean http2,
+            @Value("${orwell.upstream.connect-timeout-seconds:10}") long connectTimeoutSeconds) {
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(Math.max(1L, connectTimeoutSeconds)))
+                .executor(upstreamHttpExecutor)
+                .build();
+
+        return new UpstreamHttpTransport(client);
+    }
+
+    /**
+     * RestClient (appels ChatClient .call()) : meme HttpClient que le mode LIVE,
+     * timeout de lecture reduit au temps restant de la requete.
+     */
+    @Bean
+    public RestClientCustomizer upstreamRestClientCustomizer(
+            UpstreamHttpTransport transport,
+            @Value("${orwell.upstream.read-timeout-seconds:120}") long readTimeoutSeconds) {
+
+        DeadlineRequestFactory requestFactory =
+                new DeadlineRequestFactory(transport, Duration.ofSeconds(Math.max(1L, readTimeoutSeconds)));
+        return builder -> builder.requestFactory(requestFactory);
+    }
+
+    /**
+     * Ajoute DeadlineRetryListener au RetryTemplate auto-configure par Spring AI,
+     * avec le meme backoff (spring.ai.retry.backoff.*).
+     */
+    @Bean
+    public static BeanPostProcessor upstreamRetryDeadline(ObjectProvider<SpringAiRetryProperties> retryProperties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof RetryTemplate retryTemplate)) {
+                    return bean;
+                }
+                SpringAiRetryProperties properties = retryProperties.getIfAvailable();
+                if (properties != null) {
+                    SpringAiRetryProperties.Backoff backoff = properties.getBackoff();
+                    retryTemplate.registerListener(new DeadlineRetryListener(
+                            backoff.getInitialInterval(), backoff.getMultiplier(), backoff.getMaxInterval()));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * WebClient (appels ChatClient .stream()) : meme HttpClient que le mode LIVE.
+     */
+    @Bean
+    public WebClientCustomizer upstreamWebClientCustomizer(UpstreamHttpTransport transport) {
+        return builder -> builder.clientConnector(new JdkClientHttpConnector(transport));
+    }
+
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> upstreamWarmUp(
+            UpstreamHttpTransport transport,
+            @Value("${orwell.upstream.warmup.enabled:true}") boolean enabled,
+            @Value("${orwell.upstream.warmup.timeout-seconds:10}") long timeoutSeconds,
+            @Value("${spring.ai.openai.base-url:https://api.openai.com}") String chatBaseUrl,
+            @Value("${orwell.web.base-url:https://api.openai.com/v1}") String liveBaseUrl) {
+
+        return event -> {
+            if (!enabled) {
+                return;
+            }
+            Set<URI> origins = new LinkedHashSet<>();
+            addOrigin(origins, chatBaseUrl);
+            addOrigin(origins, liveBaseUrl);
+            // Asynchrone : ne retarde pas le demarrage
+            transport.warmUp(origins, Duration.ofSeconds(Math.max(1L, timeoutSeconds)));
+        };
+    }
+
+    private static void addOrigin(Set<URI> origins, String baseUrl) {
+        try {
+            URI uri = URI.create(baseUrl.trim());
+            if (uri.getScheme() != null && uri.getAuthority() != null) {
+                origins.add(URI.create(uri.getScheme() + "://" + uri.getAuthority() + "/"));
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("[ORWELL][TRANSPORT] Ignoring invalid base URL for warm-up: {}", baseUrl);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ia.robot.config.persistence;
+
+import com.ia.robot.util.TextCompression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Codec des colonnes compressees de l'audit (AgentRun, AgentPromptLog, AgentPlanSnapshot).
+ *
+ * Les entites JPA ne sont pas des beans : la configuration est posee une fois
+ * au demarrage dans TextCompression (statique), comme l'horloge de ClockUtils.
+ *
+ *   orwell.audit.compression.codec     = deflate | gzip | none
+ *   orwell.audit.compression.level     = -1 (defaut zlib) .. 9
+ *   orwell.audit.compression.min-bytes = en dessous, texte stocke brut
+ */
+@Configuration
+public class AuditCompressionConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditCompressionConfig.class);
+
+    public AuditCompressionConfig(@Value("${orwell.audit.compression.codec:deflate}") String codec,
+                                  @Value("${orwell.audit.compression.level:-1}") int level,
+                                  @Value("${orwell.audit.compression.min-bytes:256}") int minBytes) {
+        TextCompression.use(TextCompression.Codec.from(codec), level, minBytes);
+        log.info("[ORWELL][AUDIT] Column compression. codec={}, level={}, minBytes={}",
+                TextCompression.codec(), level, minBytes);
+    }
+}
@@ -58,6 +58,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         // Health
                         .requestMatchers(HttpMethod.GET, "/api/health/**").permitAll()
+                        // Sondes et scrape Prometheus (reseau interne)
+                        .requestMatchers(HttpMethod.GET, "/actuator/health/**", "/actuator/prometheus").permitAll()
 
                         // Agent APIs - protégées quand securityEnabled=true
                         .requestMatchers("/api/agent/**").authenticated()
@@ -1,9 +1,13 @@
 package com.ia.robot.controller.advice;
 
 import com.ia.robot.exception.AgentExecutionException;
+import com.ia.robot.exception.AgentTimeoutException;
 import com.ia.robot.exception.BadRequestException;
 import com.ia.robot.exception.NotFoundException;
+import com.ia.robot.exception.PromptTooLargeException;
+import com.ia.robot.exception.RateLimitedException;
 import com.ia.robot.exception.ToolInvocationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -42,6 +46,29 @@ public class GlobalExceptionHandler {
         return build(HttpStatus.INTERNAL_SERVER_ERROR, "AGENT_ERROR", ex.getMessage());
     }
 
+    @ExceptionHandler(AgentTimeoutException.class)
+    public ResponseEntity<Map<String, Object>> handleAgentTimeout(AgentTimeoutException ex) {
+        return build(HttpStatus.GATEWAY_TIMEOUT, "AGENT_TIMEOUT", ex.getMessage());
+    }
+
+    @ExceptionHandler(PromptTooLargeException.class)
+    public ResponseEntity<Map<String, Object>> handlePromptTooLarge(PromptTooLargeException ex) {
+        return build(HttpStatus.PAYLOAD_TOO_LARGE, "PROMPT_TOO_LARGE", ex.getMessage());
+    }
+
+    @ExceptionHandler(RateLimitedException.class)
+    public ResponseEntity<Map<String, Object>> handleRateLimited(RateLimitedException ex) {
+        Map<String, Object> payload = build(HttpStatus.TOO_MANY_REQUESTS, "RATE_LIMITED", ex.getMessage()).getBody();
+        payload.put("scope", ex.getScope());
+        payload.put("retryAfterMs", ex.getRetryAfterMs());
+
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(payload);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, Object>> handleIllegalArgument(IllegalArgumentException ex) {
         return build(HttpStatus.BAD_REQUEST, "ILLEGAL_ARGUMENT", ex.getMessage());
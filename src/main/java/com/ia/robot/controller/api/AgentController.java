@@ -1,17 +1,34 @@
 package com.ia.robot.controller.api;
 
 import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.agent.BulkAskRunner;
+import com.ia.robot.ai.agent.Deadline;
 import com.ia.robot.ai.agent.SimpleAgentRunner;
+import com.ia.robot.ai.cache.PlanCacheKey;
+import com.ia.robot.ai.prompt.PromptTemplate;
+import com.ia.robot.exception.AgentTimeoutException;
 import com.ia.robot.exception.BadRequestException;
+import com.ia.robot.exception.PromptTooLargeException;
+import com.ia.robot.exception.RateLimitedException;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.StringJoiner;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/agent")
@@ -19,13 +36,45 @@ public class AgentController {
 
     private static final Logger log = LoggerFactory.getLogger(AgentController.class);
 
+    /*===CLE-MODIF-ORWELL: budget de temps demande par le client (ms), optionnel ===*/
+    public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
     private final SimpleAgentRunner agentRunner;
 
+    private final BulkAskRunner bulkAskRunner;
+
+    @Value("${orwell.stream.timeout-ms:120000}")
+    private long streamTimeoutMs;
+
+    @Value("${orwell.bulk.timeout-ms:1800000}")
+    private long bulkTimeoutMs;
+
+    @Value("${orwell.request.timeout-ms:45000}")
+    private long requestTimeoutMs;
+
+    @Value("${orwell.request.max-timeout-ms:120000}")
+    private long maxRequestTimeoutMs;
+
     /*===CLE-MODIF-ORWELL: nom d'agent cohérent partout ===*/
     private static final String ARCHITECT_AGENT_NAME = "ArchitectAgent";
 
-    public AgentController(SimpleAgentRunner agentRunner) {
+    /*===CLE-MODIF-ORWELL: prompt /plan precompile, seuls domaine / contraintes / mobile varient ===*/
+    private static final String DEFAULT_TECHNICAL_CONSTRAINTS = "Java 21, Spring Boot, MySQL, Hibernate";
+
+    private static final String PLAN_MOBILE_LINE =
+            "Propose aussi les ecrans mobiles minimaux (React Native) utiles aux eleves, enseignants ou parents au Gabon.\n";
+
+    private static final PromptTemplate PLAN_PROMPT = PromptTemplate.compile("""
+            Tu es ORWELL, un assistant d'architecture pour l'education au Gabon.
+            Concentre-toi sur des modules en Java 21 / Spring Boot pour les etablissements scolaires gabonais.
+            Domaine fonctionnel a structurer : {{domain}}.
+            Contraintes techniques : {{constraints}}.
+            Respecte une architecture propre: controller/api, dto/request, dto/response, service/ports, service/impl, model/entity, repository.
+            {{mobile}}Reponds de maniere professionnelle, claire et exploitable par une equipe Java au Gabon.""");
+
+    public AgentController(SimpleAgentRunner agentRunner, BulkAskRunner bulkAskRunner) {
         this.agentRunner = agentRunner;
+        this.bulkAskRunner = bulkAskRunner;
     }
 
     // ---------------------------------------------------------------------
@@ -41,6 +90,36 @@ public class AgentController {
         return v.isEmpty() ? defaultValue : v;
     }
 
+    /**
+     * Budget de temps de la requete : en-tete X-Request-Timeout-Ms si present
+     * (plafonne a maxMs), sinon defaultMs. Demarre des l'entree dans le controleur.
+     */
+    private Deadline requestDeadline(String timeoutHeader, long defaultMs, long maxMs) {
+        String v = safeTrim(timeoutHeader);
+        if (v.isEmpty()) {
+            return Deadline.afterMillis(defaultMs);
+        }
+        long ms;
+        try {
+            ms = Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid header " + REQUEST_TIMEOUT_HEADER + ": " + v);
+        }
+        if (ms <= 0) {
+            throw new BadRequestException("Header " + REQUEST_TIMEOUT_HEADER + " must be > 0.");
+        }
+        return Deadline.afterMillis(Math.min(ms, maxMs));
+    }
+
+    private Deadline requestDeadline(String timeoutHeader) {
+        return requestDeadline(timeoutHeader, requestTimeoutMs, maxRequestTimeoutMs);
+    }
+
+    private Deadline streamDeadline(String timeoutHeader) {
+        // Un flux ne peut pas durer plus longtemps que son SseEmitter
+        return requestDeadline(timeoutHeader, streamTimeoutMs, streamTimeoutMs);
+    }
+
     // ---------------------------------------------------------------------
     // 1) PLAN D’ARCHITECTURE (toujours disponible pour structurer les modules)
     // ---------------------------------------------------------------------
@@ -59,18 +138,28 @@ public class AgentController {
      * {
      *   "domain": "Gestion des eleves",
      *   "constraints": ["Java 21", "Spring Boot", "MySQL", "Hibernate"],
-     *   "mobile": true
+     *   "mobile": true,
+     *   "forceRefresh": false
      * }
+     *
+     * Plans en cache (PlanCache) : meme domaine + memes contraintes (ordre et
+     * doublons ignores) + meme option mobile = plan deja genere.
+     * "forceRefresh": true ou l'en-tete "Cache-Control: no-cache" regenerent le plan.
      */
     @PostMapping(
             value = "/plan",
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public String plan(@RequestBody Map<String, Object> body) {
+    public String plan(@RequestBody Map<String, Object> body,
+                       @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader,
+                       @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl) {
+        Deadline deadline = requestDeadline(timeoutHeader);
         String domain = readString(body, "domain", true);
         List<String> constraints = readStringList(body, "constraints");
         boolean mobile = readBoolean(body, "mobile", false);
+        boolean forceRefresh = readBoolean(body, "forceRefresh", false)
+                || (cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-cache"));
 
         String userPrompt = buildPlanPrompt(domain, constraints, mobile);
 
@@ -87,7 +176,8 @@ public class AgentController {
                 .channel("BACKEND")
                 .build();
 
-        return agentRunner.runArchitectPlan(context, userPrompt);
+        return agentRunner.runArchitectPlan(context, userPrompt, deadline,
+                PlanCacheKey.of(domain, constraints, mobile), forceRefresh);
     }
 
     // ---------------------------------------------------------------------
@@ -110,7 +200,9 @@ public class AgentController {
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.TEXT_PLAIN_VALUE
     )
-    public String ask(@RequestBody Map<String, Object> body) {
+    public String ask(@RequestBody Map<String, Object> body,
+                      @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader) {
+        Deadline deadline = requestDeadline(timeoutHeader);
         String question = readString(body, "question", true);
         String q = safeTrim(question);
 
@@ -122,7 +214,10 @@ public class AgentController {
         try {
             // Contexte null -> SimpleAgentRunner applique le fallback
             // AgentContext.forGabonStudent(...) generique.
-            return agentRunner.runAsk(null, q);
+            return agentRunner.runAsk(null, q, deadline);
+        } catch (AgentTimeoutException | PromptTooLargeException | RateLimitedException ex) {
+            // Reponse typee 504 / 413 / 429 (GlobalExceptionHandler), pas de texte de secours
+            throw ex;
         } catch (Exception ex) {
             log.error("[AGENT_ASK_ERROR] generic /ask failed. questionSize={}, message={}",
                     q.length(),
@@ -156,7 +251,9 @@ public class AgentController {
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.TEXT_PLAIN_VALUE
     )
-    public String askForStudent(@RequestBody Map<String, Object> body) {
+    public String askForStudent(@RequestBody Map<String, Object> body,
+                                @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader) {
+        Deadline deadline = requestDeadline(timeoutHeader);
         String question = readString(body, "question", true);
         String city = defaultIfBlank(readString(body, "city", false), "Libreville");
         String establishment = defaultIfBlank(readString(body, "establishment", false), "Etablissement non precise");
@@ -164,13 +261,15 @@ public class AgentController {
         String subject = defaultIfBlank(readString(body, "subject", false), "matiere generale");
 
         try {
-            return agentRunner.runAskForGabonStudent(
+            AgentContext ctx = AgentContext.forGabonStudent(
                     city,
                     establishment,
                     educationLevel,
-                    subject,
-                    question
+                    subject
             );
+            return agentRunner.runAsk(ctx, question, deadline);
+        } catch (AgentTimeoutException | PromptTooLargeException | RateLimitedException ex) {
+            throw ex;
         } catch (Exception ex) {
             log.error("[AGENT_ASK_STUDENT_ERROR] city={}, establishment={}, level={}, subject={}, message={}",
                     city,
@@ -201,7 +300,9 @@ public class AgentController {
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.TEXT_PLAIN_VALUE
     )
-    public String askForTeacher(@RequestBody Map<String, Object> body) {
+    public String askForTeacher(@RequestBody Map<String, Object> body,
+                                @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader) {
+        Deadline deadline = requestDeadline(timeoutHeader);
         String question = readString(body, "question", true);
         String city = defaultIfBlank(readString(body, "city", false), "Libreville");
         String establishment = defaultIfBlank(readString(body, "establishment", false), "Etablissement non precise");
@@ -209,13 +310,15 @@ public class AgentController {
         String subject = defaultIfBlank(readString(body, "subject", false), "matiere generale");
 
         try {
-            return agentRunner.runAskForGabonTeacher(
+            AgentContext ctx = AgentContext.forGabonTeacher(
                     city,
                     establishment,
                     educationLevel,
-                    subject,
-                    question
+                    subject
             );
+            return agentRunner.runAsk(ctx, question, deadline);
+        } catch (AgentTimeoutException | PromptTooLargeException | RateLimitedException ex) {
+            throw ex;
         } catch (Exception ex) {
             log.error("[AGENT_ASK_TEACHER_ERROR] city={}, establishment={}, level={}, subject={}, message={}",
                     city,
@@ -246,7 +349,9 @@ public class AgentController {
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.TEXT_PLAIN_VALUE
     )
-    public String askForParent(@RequestBody Map<String, Object> body) {
+    public String askForParent(@RequestBody Map<String, Object> body,
+                                @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader) {
+        Deadline deadline = requestDeadline(timeoutHeader);
         String question = readString(body, "question", true);
         String city = defaultIfBlank(readString(body, "city", false), "Libreville");
         String establishment = defaultIfBlank(readString(body, "establishment", false), "Etablissement non precise");
@@ -254,13 +359,15 @@ public class AgentController {
         String subject = defaultIfBlank(readString(body, "subject", false), "matiere generale");
 
         try {
-            return agentRunner.runAskForGabonParent(
+            AgentContext ctx = AgentContext.forGabonParent(
                     city,
                     establishment,
                     childEducationLevel,
-                    subject,
-                    question
+                    subject
             );
+            return agentRunner.runAsk(ctx, question, deadline);
+        } catch (AgentTimeoutException | PromptTooLargeException | RateLimitedException ex) {
+            throw ex;
         } catch (Exception ex) {
             log.error("[AGENT_ASK_PARENT_ERROR] city={}, establishment={}, childLevel={}, subject={}, message={}",
                     city,
@@ -275,31 +382,210 @@ public class AgentController {
     }
 
     // ---------------------------------------------------------------------
-    // Prompt builder pour /plan (version EDU Gabon)
+    // 4) STREAMING SSE (/ask/**/stream, text/event-stream)
     // ---------------------------------------------------------------------
 
-    private String buildPlanPrompt(String domain, List<String> constraints, boolean mobile) {
-        StringJoiner joiner = new StringJoiner("\n");
+    /*
+     * Memes payloads que les endpoints /ask ci-dessus, suffixe "/stream".
+     * (Chemins distincts : sur le meme chemin, un client sans Accept precis
+     * rendrait le choix text/plain vs text/event-stream ambigu.)
+     *
+     * Evenements emis :
+     * - "token" : morceau de reponse (a concatener cote client)
+     * - "error" : message lisible si ORWELL n'a pas pu repondre
+     * - "timeout" : budget de temps epuise (en-tete X-Request-Timeout-Ms ou
+     *               orwell.stream.timeout-ms), la reponse est incomplete
+     * - "done"  : fin de reponse
+     */
 
-        joiner.add("Tu es ORWELL, un assistant d'architecture pour l'education au Gabon.");
-        joiner.add("Concentre-toi sur des modules en Java 21 / Spring Boot pour les etablissements scolaires gabonais.");
-        joiner.add("Domaine fonctionnel a structurer : " + domain + ".");
+    @PostMapping(
+            value = "/ask/stream",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public SseEmitter askStream(@RequestBody Map<String, Object> body,
+                                @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader) {
+        Deadline deadline = streamDeadline(timeoutHeader);
+        String q = safeTrim(readString(body, "question", true));
 
-        if (constraints != null && !constraints.isEmpty()) {
-            joiner.add("Contraintes techniques : " + String.join(", ", constraints) + ".");
-        } else {
-            joiner.add("Contraintes techniques : Java 21, Spring Boot, MySQL, Hibernate.");
+        if ("ping".equalsIgnoreCase(q)) {
+            return streamSingle("Pong ! ORWELL est en ligne pour t'aider a reviser au Gabon.");
         }
 
-        joiner.add("Respecte une architecture propre: controller/api, dto/request, dto/response, service/ports, service/impl, model/entity, repository.");
+        return streamAnswer(null, q, deadline,
+                "ORWELL n'a pas pu repondre pour le moment. " +
+                        "Verifie la configuration de la cle OPENAI_API_KEY, du modele et les logs serveur.");
+    }
 
-        if (mobile) {
-            joiner.add("Propose aussi les ecrans mobiles minimaux (React Native) utiles aux eleves, enseignants ou parents au Gabon.");
+    @PostMapping(
+            value = "/ask/student/stream",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public SseEmitter askForStudentStream(@RequestBody Map<String, Object> body,
+                                          @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader) {
+        Deadline deadline = streamDeadline(timeoutHeader);
+        String question = readString(body, "question", true);
+        AgentContext ctx = AgentContext.forGabonStudent(
+                defaultIfBlank(readString(body, "city", false), "Libreville"),
+                defaultIfBlank(readString(body, "establishment", false), "Etablissement non precise"),
+                defaultIfBlank(readString(body, "educationLevel", false), "niveau non precise"),
+                defaultIfBlank(readString(body, "subject", false), "matiere generale")
+        );
+        return streamAnswer(ctx, question, deadline,
+                "ORWELL n'a pas pu repondre pour l'eleve. Consulte les logs serveur pour le detail.");
+    }
+
+    @PostMapping(
+            value = "/ask/teacher/stream",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public SseEmitter askForTeacherStream(@RequestBody Map<String, Object> body,
+                                          @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader) {
+        Deadline deadline = streamDeadline(timeoutHeader);
+        String question = readString(body, "question", true);
+        AgentContext ctx = AgentContext.forGabonTeacher(
+                defaultIfBlank(readString(body, "city", false), "Libreville"),
+                defaultIfBlank(readString(body, "establishment", false), "Etablissement non precise"),
+                defaultIfBlank(readString(body, "educationLevel", false), "niveau non precise"),
+                defaultIfBlank(readString(body, "subject", false), "matiere generale")
+        );
+        return streamAnswer(ctx, question, deadline,
+                "ORWELL n'a pas pu repondre pour l'enseignant. Consulte les logs serveur pour le detail.");
+    }
+
+    @PostMapping(
+            value = "/ask/parent/stream",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public SseEmitter askForParentStream(@RequestBody Map<String, Object> body,
+                                          @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader) {
+        Deadline deadline = streamDeadline(timeoutHeader);
+        String question = readString(body, "question", true);
+        AgentContext ctx = AgentContext.forGabonParent(
+                defaultIfBlank(readString(body, "city", false), "Libreville"),
+                defaultIfBlank(readString(body, "establishment", false), "Etablissement non precise"),
+                defaultIfBlank(readString(body, "childEducationLevel", false), "niveau non precise"),
+                defaultIfBlank(readString(body, "subject", false), "matiere generale")
+        );
+        return streamAnswer(ctx, question, deadline,
+                "ORWELL n'a pas pu repondre pour le parent. Consulte les logs serveur pour le detail.");
+    }
+
+    private SseEmitter streamAnswer(AgentContext context, String question, Deadline deadline, String errorMessage) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        // Refus d'admission : emis pendant subscribe(), avant l'envoi des en-tetes,
+        // il est relance ici pour repondre 429 plutot qu'un evenement SSE
+        AtomicReference<Object> rejection = new AtomicReference<>();
+
+        Disposable subscription = agentRunner.runAskStream(context, question, deadline)
+                .subscribe(
+                        chunk -> {
+                            try {
+                                emitter.send(SseEmitter.event().name("token").data(chunk, MediaType.TEXT_PLAIN));
+                            } catch (IOException e) {
+                                // Client parti : on coupe le flux amont
+                                throw new UncheckedIOException(e);
+                            }
+                        },
+                        error -> {
+                            if (error instanceof RateLimitedException && rejection.compareAndSet(null, error)) {
+                                return;
+                            }
+                            log.error("[AGENT_ASK_STREAM_ERROR] questionSize={}, message={}",
+                                    question.length(),
+                                    error.getMessage()
+                            );
+                            boolean timeout = error instanceof AgentTimeoutException;
+                            String message = timeout
+                                    ? "ORWELL n'a pas pu terminer sa reponse dans le delai imparti."
+                                    : error instanceof PromptTooLargeException
+                                            ? "Texte trop long pour ORWELL : raccourcis-le ou envoie-le en plusieurs parties."
+                                            : errorMessage;
+                            try {
+                                emitter.send(SseEmitter.event()
+                                        .name(timeout ? "timeout" : "error")
+                                        .data(message, MediaType.TEXT_PLAIN));
+                                emitter.complete();
+                            } catch (Exception sendFailure) {
+                                emitter.completeWithError(error);
+                            }
+                        },
+                        () -> {
+                            try {
+                                emitter.send(SseEmitter.event().name("done").data("", MediaType.TEXT_PLAIN));
+                                emitter.complete();
+                            } catch (IOException e) {
+                                emitter.completeWithError(e);
+                            }
+                        }
+                );
+
+        if (!rejection.compareAndSet(null, emitter)) {
+            throw (RateLimitedException) rejection.get();
+        }
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+        emitter.onCompletion(subscription::dispose);
+        return emitter;
+    }
+
+    private SseEmitter streamSingle(String message) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        try {
+            emitter.send(SseEmitter.event().name("token").data(message, MediaType.TEXT_PLAIN));
+            emitter.send(SseEmitter.event().name("done").data("", MediaType.TEXT_PLAIN));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
         }
+        return emitter;
+    }
+
+    // ---------------------------------------------------------------------
+    // 5) QUESTIONS EN MASSE (NDJSON)
+    // ---------------------------------------------------------------------
+
+    /**
+     * /ask/bulk : liste de questions exportee d'un LMS, une question JSON par ligne.
+     *
+     * Exemple d'entree (application/x-ndjson) :
+     * {"id": "q1", "question": "Qu'est-ce qu'une fraction ?"}
+     * {"id": "q2", "profile": "student", "educationLevel": "CM2", "subject": "Mathematiques", "question": "..."}
+     *
+     * Chaque reponse est renvoyee des qu'elle est prete, sur sa propre ligne,
+     * avec l'index de la ligne d'entree (voir BulkAskRunner pour le format).
+     * Budget total : en-tete X-Request-Timeout-Ms, plafonne a orwell.bulk.timeout-ms.
+     */
+    @PostMapping(
+            value = "/ask/bulk",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public ResponseBodyEmitter askBulk(HttpServletRequest request,
+                                       @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) String timeoutHeader)
+            throws IOException {
+        Deadline deadline = requestDeadline(timeoutHeader, bulkTimeoutMs, bulkTimeoutMs);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(bulkTimeoutMs);
+        InputStream input = request.getInputStream();
+
+        // Lecture de l'entree hors du thread Tomcat : elle attend surtout les permis de parallelisme
+        bulkAskRunner.start(input, emitter, deadline);
+        return emitter;
+    }
 
-        joiner.add("Reponds de maniere professionnelle, claire et exploitable par une equipe Java au Gabon.");
+    // ---------------------------------------------------------------------
+    // Prompt builder pour /plan (version EDU Gabon)
+    // ---------------------------------------------------------------------
+
+    private String buildPlanPrompt(String domain, List<String> constraints, boolean mobile) {
+        String technical = constraints != null && !constraints.isEmpty()
+                ? String.join(", ", constraints)
+                : DEFAULT_TECHNICAL_CONSTRAINTS;
 
-        return joiner.toString();
+        return PLAN_PROMPT.render(domain, technical, mobile ? PLAN_MOBILE_LINE : "");
     }
 
     // ---------------------------------------------------------------------
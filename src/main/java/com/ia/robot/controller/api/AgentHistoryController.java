@@ -0,0 +1,63 @@
+package com.ia.robot.controller.api;
+
+import com.ia.robot.dto.response.AgentPromptLogView;
+import com.ia.robot.dto.response.AgentRunSummary;
+import com.ia.robot.dto.response.AgentRunView;
+import com.ia.robot.dto.response.HistoryPage;
+import com.ia.robot.model.enums.RunStatus;
+import com.ia.robot.service.ports.AgentHistoryService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+
+/**
+ * Historique des runs d'agent (audit).
+ *
+ * Exemples :
+ * GET /api/history/runs?agentName=ArchitectAgent&status=FAILED&from=2026-01-01T00:00:00Z&limit=100
+ * GET /api/history/runs?cursor=...            (page suivante : nextCursor de la page precedente)
+ * GET /api/history/runs/42?includeText=true
+ * GET /api/history/runs/42/prompt-logs?includeText=true
+ *
+ * Les listes ne lisent jamais les colonnes LOB ; includeText=true charge les textes.
+ */
+@RestController
+@RequestMapping("/api/history")
+public class AgentHistoryController {
+
+    private final AgentHistoryService historyService;
+
+    public AgentHistoryController(AgentHistoryService historyService) {
+        this.historyService = historyService;
+    }
+
+    @GetMapping("/runs")
+    public HistoryPage<AgentRunSummary> runs(
+            @RequestParam(required = false) String agentName,
+            @RequestParam(required = false) RunStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return historyService.findRuns(agentName, status, from, to, cursor, limit);
+    }
+
+    @GetMapping("/runs/{id}")
+    public AgentRunView run(@PathVariable Long id,
+                            @RequestParam(defaultValue = "false") boolean includeText) {
+        return historyService.getRun(id, includeText);
+    }
+
+    @GetMapping("/runs/{id}/prompt-logs")
+    public HistoryPage<AgentPromptLogView> promptLogs(@PathVariable Long id,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestParam(defaultValue = "false") boolean includeText) {
+        return historyService.findPromptLogs(id, cursor, limit, includeText);
+    }
+}
@@ -0,0 +1,346 @@
+package com.ia.robot.controller.api;
+
+import com.ia.robot.ai.agent.BulkAskRunner;
+import com.ia.robot.ai.agent.SimpleAgentRunner;
+import com.ia.robot.ai.cache.AnswerCache;
+import com.ia.robot.ai.cache.InFlightCoalescer;
+import com.ia.robot.ai.cache.PlanCache;
+import com.ia.robot.ai.prompt.EducationContextBlocks;
+import com.ia.robot.ai.resilience.AdmissionControl;
+import com.ia.robot.ai.resilience.AgentScheduler;
+import com.ia.robot.ai.resilience.CircuitBreaker;
+import com.ia.robot.ai.resilience.ConcurrencyLimiter;
+import com.ia.robot.ai.resilience.HedgingPolicy;
+import com.ia.robot.ai.tokens.TokenBudgets;
+import com.ia.robot.ai.trace.RequestTrace;
+import com.ia.robot.ai.trace.RequestTracer;
+import com.ia.robot.ai.transport.UpstreamHttpTransport;
+import com.ia.robot.ai.usage.PromptCacheStats;
+import com.ia.robot.config.ai.ResilienceConfig;
+import com.ia.robot.service.archive.ArchivedRun;
+import com.ia.robot.service.archive.AuditArchive;
+import com.ia.robot.service.archive.AuditArchiver;
+import com.ia.robot.service.audit.AuditBatchWriter;
+import com.ia.robot.service.audit.ContentBlobStore;
+import com.ia.robot.service.batch.PlanBatchJob;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Endpoints d'exploitation pour les operateurs (compteurs, etat interne).
+ *
+ * Expose les compteurs internes d'ORWELL (cache, etc.)
+ * sans ajouter de dependance de monitoring.
+ */
+@RestController
+@RequestMapping("/api/ops")
+public class AgentOpsController {
+
+    private final AnswerCache answerCache;
+    private final PlanCache planCache;
+    private final SimpleAgentRunner agentRunner;
+    private final InFlightCoalescer coalescer;
+    private final HedgingPolicy hedgingPolicy;
+    private final CircuitBreaker liveCircuitBreaker;
+    private final UpstreamHttpTransport upstreamHttpTransport;
+    private final EducationContextBlocks contextBlocks;
+    private final PromptCacheStats promptCacheStats;
+    private final TokenBudgets tokenBudgets;
+    private final AuditBatchWriter auditBatchWriter;
+    private final ContentBlobStore contentBlobStore;
+    private final AuditArchive auditArchive;
+    private final AuditArchiver auditArchiver;
+    private final BulkAskRunner bulkAskRunner;
+    private final PlanBatchJob planBatchJob;
+    private final AdmissionControl admissionControl;
+    private final ConcurrencyLimiter liveLimiter;
+    private final ConcurrencyLimiter standardLimiter;
+    private final AgentScheduler scheduler;
+    private final RequestTracer tracer;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    public AgentOpsController(AnswerCache answerCache,
+                              PlanCache planCache,
+                              SimpleAgentRunner agentRunner,
+                              InFlightCoalescer coalescer,
+                              HedgingPolicy hedgingPolicy,
+                              CircuitBreaker liveCircuitBreaker,
+                              UpstreamHttpTransport upstreamHttpTransport,
+                              EducationContextBlocks contextBlocks,
+                              PromptCacheStats promptCacheStats,
+                              TokenBudgets tokenBudgets,
+                              AuditBatchWriter auditBatchWriter,
+                              ContentBlobStore contentBlobStore,
+                              AuditArchive auditArchive,
+                              AuditArchiver auditArchiver,
+                              BulkAskRunner bulkAskRunner,
+                              PlanBatchJob planBatchJob,
+                              AdmissionControl admissionControl,
+                              @Qualifier(ResilienceConfig.LIVE_LIMITER) ConcurrencyLimiter liveLimiter,
+                              @Qualifier(ResilienceConfig.STANDARD_LIMITER) ConcurrencyLimiter standardLimiter,
+                              AgentScheduler scheduler,
+                              RequestTracer tracer) {
+        this.answerCache = answerCache;
+        this.planCache = planCache;
+        this.agentRunner = agentRunner;
+        this.coalescer = coalescer;
+        this.hedgingPolicy = hedgingPolicy;
+        this.liveCircuitBreaker = liveCircuitBreaker;
+        this.upstreamHttpTransport = upstreamHttpTransport;
+        this.contextBlocks = contextBlocks;
+        this.promptCacheStats = promptCacheStats;
+        this.tokenBudgets = tokenBudgets;
+        this.auditBatchWriter = auditBatchWriter;
+        this.contentBlobStore = contentBlobStore;
+        this.auditArchive = auditArchive;
+        this.auditArchiver = auditArchiver;
+        this.bulkAskRunner = bulkAskRunner;
+        this.planBatchJob = planBatchJob;
+        this.admissionControl = admissionControl;
+        this.liveLimiter = liveLimiter;
+        this.standardLimiter = standardLimiter;
+        this.scheduler = scheduler;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Tenue en charge du noeud : appels agent en cours et pic observe.
+     * A lire pendant un test de charge, avec et sans threads virtuels.
+     */
+    @GetMapping("/runtime")
+    public Map<String, Object> runtime() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("virtualThreads", virtualThreads);
+        stats.put("inFlightAgentCalls", agentRunner.inFlight());
+        stats.put("peakInFlightAgentCalls", agentRunner.peakInFlight());
+        stats.put("platformThreads", ManagementFactory.getThreadMXBean().getThreadCount());
+        stats.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        return withTimestamp(stats);
+    }
+
+    @PostMapping("/runtime/reset-peak")
+    public Map<String, Object> resetPeak() {
+        agentRunner.resetPeakInFlight();
+        return runtime();
+    }
+
+    @GetMapping("/cache/answers")
+    public Map<String, Object> answerCache() {
+        return withTimestamp(answerCache.snapshot());
+    }
+
+    /**
+     * Cache de plans /plan : hitRatio, age des plans servis, demarrage a chaud.
+     */
+    @GetMapping("/cache/plans")
+    public Map<String, Object> planCache() {
+        return withTimestamp(planCache.snapshot());
+    }
+
+    /**
+     * /ask/bulk : requetes en cours, lignes traitees, deconnexions.
+     */
+    @GetMapping("/bulk")
+    public Map<String, Object> bulk() {
+        return withTimestamp(bulkAskRunner.snapshot());
+    }
+
+    /**
+     * Job de plans hors ligne : position, lignes ok / en echec, lot fournisseur en attente.
+     */
+    @GetMapping("/batch/plans")
+    public Map<String, Object> planBatch() {
+        return withTimestamp(planBatchJob.snapshot());
+    }
+
+    /**
+     * Lance (ou reprend depuis son point de reprise) un job de plans sur un fichier JSON Lines
+     * du serveur, sous orwell.batch.plans.dir (400 hors de ce dossier).
+     * mode : online | provider ; restart=true ignore le point de reprise.
+     */
+    @PostMapping("/batch/plans/start")
+    public Map<String, Object> startPlanBatch(@RequestParam String input,
+                                              @RequestParam(defaultValue = PlanBatchJob.ONLINE) String mode,
+                                              @RequestParam(defaultValue = "false") boolean restart) {
+        return withTimestamp(planBatchJob.start(input, mode, restart));
+    }
+
+    @PostMapping("/batch/plans/stop")
+    public Map<String, Object> stopPlanBatch() {
+        boolean stopping = planBatchJob.stop();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("stopping", stopping);
+        payload.putAll(planBatchJob.snapshot());
+        return withTimestamp(payload);
+    }
+
+    /**
+     * Quotas par tenant / etablissement / utilisateur : limites, admis / refuses (429),
+     * niveau actuel des seaux les plus entames.
+     */
+    @GetMapping("/admission")
+    public Map<String, Object> admission() {
+        return withTimestamp(admissionControl.snapshot());
+    }
+
+    /**
+     * Files ponderees par classe d'appel (interactive, standard, background, batch) :
+     * places occupees, appels en attente, attente p50 / p95 / p99.
+     */
+    @GetMapping("/scheduler")
+    public Map<String, Object> scheduler() {
+        return withTimestamp(scheduler.snapshot());
+    }
+
+    /**
+     * Traces par etape : compteurs, dernieres requetes lentes et dernieres requetes
+     * (les plus recentes d'abord, limit par liste).
+     */
+    @GetMapping("/traces")
+    public Map<String, Object> traces(@RequestParam(defaultValue = "20") int limit) {
+        return withTimestamp(tracer.snapshot(limit));
+    }
+
+    /**
+     * Decoupage complet d'une requete (requestId des logs) : controleur, admission,
+     * file, prompt, LIVE, ChatClient, parsing JSON, audit. 404 si elle n'est plus en memoire.
+     */
+    @GetMapping("/traces/{requestId}")
+    public ResponseEntity<Map<String, Object>> trace(@PathVariable String requestId) {
+        return ResponseEntity.of(tracer.find(requestId).map(RequestTrace::toMap));
+    }
+
+    @GetMapping("/coalescing")
+    public Map<String, Object> coalescing() {
+        return withTimestamp(coalescer.snapshot());
+    }
+
+    @GetMapping("/hedging")
+    public Map<String, Object> hedging() {
+        return withTimestamp(hedgingPolicy.snapshot());
+    }
+
+    @GetMapping("/breakers/live")
+    public Map<String, Object> liveBreaker() {
+        return withTimestamp(liveCircuitBreaker.snapshot());
+    }
+
+    /**
+     * Limites adaptatives d'appels amont en cours (LIVE, ChatClient) :
+     * limite courante, latence de base, appels mis en attente / refuses.
+     */
+    @GetMapping("/limiters")
+    public Map<String, Object> limiters() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("live", liveLimiter.snapshot());
+        stats.put("standard", standardLimiter.snapshot());
+        return withTimestamp(stats);
+    }
+
+    /**
+     * Transport HTTP amont partage (ChatClient + LIVE) : version negociee,
+     * requetes en cours, latence jusqu'aux en-tetes, resultat du warm-up.
+     */
+    @GetMapping("/transport")
+    public Map<String, Object> transport() {
+        return withTimestamp(upstreamHttpTransport.snapshot());
+    }
+
+    @PostMapping("/transport/reset-peak")
+    public Map<String, Object> resetTransportPeak() {
+        upstreamHttpTransport.resetPeakInFlight();
+        return transport();
+    }
+
+    /**
+     * Blocs de contexte education reutilises d'une requete a l'autre.
+     */
+    @GetMapping("/prompts")
+    public Map<String, Object> prompts() {
+        return withTimestamp(contextBlocks.snapshot());
+    }
+
+    /**
+     * Cache de prefixe du fournisseur : tokens d'entree servis depuis le cache,
+     * latence avec / sans cache, cout estime, par endpoint (plan, ask, ask-stream, live).
+     */
+    @GetMapping("/prompt-cache")
+    public Map<String, Object> promptCache() {
+        return withTimestamp(promptCacheStats.snapshot());
+    }
+
+    /**
+     * Budgets de tokens par endpoint : tailles des prompts et reponses,
+     * troncatures, rejets (413), cout moyen du comptage en memoire.
+     */
+    @GetMapping("/tokens")
+    public Map<String, Object> tokens() {
+        return withTimestamp(tokenBudgets.snapshot());
+    }
+
+    /**
+     * Audit asynchrone : profondeur de file, taille et latence des lots,
+     * enregistrements abandonnes ou deverses sur disque.
+     */
+    @GetMapping("/audit")
+    public Map<String, Object> audit() {
+        return withTimestamp(auditBatchWriter.snapshot());
+    }
+
+    /**
+     * Supprime les textes d'audit qui ne sont plus references (ref_count <= 0).
+     */
+    @PostMapping("/audit/blobs/purge")
+    public Map<String, Object> purgeAuditBlobs() {
+        int purged = contentBlobStore.purgeUnreferenced();
+        return withTimestamp(Map.of("purged", purged));
+    }
+
+    /**
+     * Archive locale des vieux runs : passes, runs archives, segments.
+     */
+    @GetMapping("/archive")
+    public Map<String, Object> archive() {
+        return withTimestamp(auditArchiver.snapshot());
+    }
+
+    /**
+     * Lance une passe d'archivage tout de suite (archived = -1 si une passe est en cours).
+     */
+    @PostMapping("/archive/run")
+    public Map<String, Object> runArchive() {
+        long archived = auditArchiver.runOnce();
+        return withTimestamp(Map.of("archived", archived));
+    }
+
+    @GetMapping("/archive/runs/{id}")
+    public ResponseEntity<ArchivedRun> archivedRun(@PathVariable long id) {
+        return ResponseEntity.of(auditArchive.findRun(id));
+    }
+
+    @GetMapping("/archive/requests/{requestId}")
+    public ResponseEntity<ArchivedRun> archivedRequest(@PathVariable String requestId) {
+        return ResponseEntity.of(auditArchive.findByRequestId(requestId));
+    }
+
+    private Map<String, Object> withTimestamp(Map<String, Object> stats) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("timestamp", Instant.now().toString());
+        payload.putAll(stats);
+        return payload;
+    }
+}
@@ -8,10 +8,12 @@ import java.util.List;
  * V0:
  * - Simple, stable, sans dépendance validation pour éviter
  *   d'ajouter un starter supplémentaire.
+ * - forceRefresh : ignore le cache de plans et régénère.
  */
 public record AgentPlanRequest(
         String domain,
         List<String> constraints,
-        boolean mobile
+        boolean mobile,
+        boolean forceRefresh
 ) {
 }
@@ -0,0 +1,25 @@
+package com.ia.robot.dto.response;
+
+import java.time.Instant;
+
+/**
+ * Entree du journal de prompts d'un run.
+ *
+ * content n'est rempli qu'avec includeText=true (sinon null, colonne non lue).
+ */
+public record AgentPromptLogView(
+        Long id,
+        String role,
+        Integer tokenEstimate,
+        Instant createdAt,
+        String content
+) {
+
+    public AgentPromptLogView(Long id, String role, Integer tokenEstimate, Instant createdAt) {
+        this(id, role, tokenEstimate, createdAt, null);
+    }
+
+    public AgentPromptLogView withContent(String text) {
+        return new AgentPromptLogView(id, role, tokenEstimate, createdAt, text);
+    }
+}
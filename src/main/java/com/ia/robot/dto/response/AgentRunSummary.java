@@ -0,0 +1,27 @@
+package com.ia.robot.dto.response;
+
+import com.ia.robot.model.enums.AgentType;
+import com.ia.robot.model.enums.OutputFormat;
+import com.ia.robot.model.enums.RunStatus;
+
+import java.time.Instant;
+
+/**
+ * Ligne d'historique d'un run, sans colonne LOB (prompt, sortie, erreur).
+ *
+ * Construite directement par la requete JPQL (select new ...) :
+ * les colonnes LONGBLOB / LONGTEXT ne sont jamais lues pour une liste.
+ */
+public record AgentRunSummary(
+        Long id,
+        String requestId,
+        String agentName,
+        AgentType agentType,
+        OutputFormat outputFormat,
+        RunStatus status,
+        String domain,
+        Instant startedAt,
+        Instant finishedAt,
+        Instant createdAt
+) {
+}
@@ -0,0 +1,16 @@
+package com.ia.robot.dto.response;
+
+/**
+ * Detail d'un run : resume + textes.
+ *
+ * inputPrompt / outputRaw ne sont remplis qu'avec includeText=true.
+ * archived=true : run lu dans l'archive locale (plus en base).
+ */
+public record AgentRunView(
+        AgentRunSummary run,
+        String inputPrompt,
+        String outputRaw,
+        String errorMessage,
+        boolean archived
+) {
+}
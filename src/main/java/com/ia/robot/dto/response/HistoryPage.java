@@ -0,0 +1,15 @@
+package com.ia.robot.dto.response;
+
+import java.util.List;
+
+/**
+ * Page d'historique paginee par cle (keyset).
+ *
+ * nextCursor : a renvoyer tel quel (parametre cursor) pour la page suivante ;
+ * null = derniere page. Pas de total : un COUNT(*) ne tient pas a des millions de lignes.
+ */
+public record HistoryPage<T>(
+        List<T> items,
+        String nextCursor
+) {
+}
@@ -0,0 +1,23 @@
+package com.ia.robot.exception;
+
+/**
+ * Exception 504 - budget de temps de la requete epuise.
+ *
+ * Utilisation typique:
+ * - le delai porte par AgentContext (Deadline) expire avant la reponse amont
+ * - plus assez de budget pour lancer le fallback ChatClient
+ */
+public class AgentTimeoutException extends RuntimeException {
+
+    public AgentTimeoutException() {
+        super("Agent request timed out.");
+    }
+
+    public AgentTimeoutException(String message) {
+        super(message);
+    }
+
+    public AgentTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
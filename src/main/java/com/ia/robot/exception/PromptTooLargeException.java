@@ -0,0 +1,28 @@
+package com.ia.robot.exception;
+
+/**
+ * Exception 413 - prompt au-dela du budget de tokens d'entree de l'endpoint.
+ *
+ * Utilisation typique:
+ * - orwell.tokens.overflow=reject et texte colle trop long
+ * - levee avant tout appel amont (aucun cout fournisseur)
+ */
+public class PromptTooLargeException extends RuntimeException {
+
+    private final int inputTokens;
+    private final int maxInputTokens;
+
+    public PromptTooLargeException(String message, int inputTokens, int maxInputTokens) {
+        super(message);
+        this.inputTokens = inputTokens;
+        this.maxInputTokens = maxInputTokens;
+    }
+
+    public int getInputTokens() {
+        return inputTokens;
+    }
+
+    public int getMaxInputTokens() {
+        return maxInputTokens;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ia.robot.exception;
+
+/**
+ * Exception 429 - quota de l'appelant epuise (AdmissionControl).
+ *
+ * Utilisation typique:
+ * - un etablissement (ou un tenant, un utilisateur) depasse ses requetes / seconde
+ *   ou ses tokens estimes / minute
+ * - levee avant tout appel amont ; retryAfterMs alimente l'en-tete Retry-After
+ */
+public class RateLimitedException extends RuntimeException {
+
+    private final String scope;
+    private final String key;
+    private final long retryAfterMs;
+
+    public RateLimitedException(String message, String scope, String key, long retryAfterMs) {
+        super(message);
+        this.scope = scope;
+        this.key = key;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * Valeur de l'en-tete Retry-After (secondes entieres, arrondi superieur, >= 1).
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterMs + 999) / 1000);
+    }
+}
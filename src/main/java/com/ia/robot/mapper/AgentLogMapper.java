@@ -1,18 +1,29 @@
 package com.ia.robot.mapper;
 
 import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.tokens.TokenCounter;
 import com.ia.robot.dto.request.AgentAskRequest;
 import com.ia.robot.dto.request.AgentPlanRequest;
 import com.ia.robot.model.entity.AgentPromptLog;
 import com.ia.robot.model.entity.AgentRun;
 import com.ia.robot.model.enums.AgentType;
 import com.ia.robot.model.enums.OutputFormat;
+import com.ia.robot.service.audit.AgentRunRecord;
 
 import org.springframework.stereotype.Component;
 
 @Component
 public class AgentLogMapper {
 
+    // Longueur de la colonne agent_runs.domain
+    private static final int DOMAIN_MAX_LENGTH = 120;
+
+    private final TokenCounter tokenCounter;
+
+    public AgentLogMapper(TokenCounter tokenCounter) {
+        this.tokenCounter = tokenCounter;
+    }
+
     public AgentRun toRun(AgentContext ctx, String domain, String prompt) {
         AgentRun run = new AgentRun();
         run.setRequestId(ctx.getRequestId());
@@ -24,16 +35,49 @@ public class AgentLogMapper {
         return run;
     }
 
+    // Run depuis la file d'audit (AuditBatchWriter) ; textes poses par l'appelant
+    // (inline compresse ou hash du blob store)
+    public AgentRun toRun(AgentRunRecord record) {
+        AgentRun run = new AgentRun();
+        run.setRequestId(record.requestId());
+        run.setAgentName(record.agentName());
+        run.setAgentType(AgentType.ARCHITECT);
+        run.setOutputFormat(AgentRunRecord.PLAN.equals(record.kind()) ? OutputFormat.JSON : OutputFormat.TEXT);
+        run.setStatus(record.status());
+        run.setDomain(truncate(record.domain(), DOMAIN_MAX_LENGTH));
+        run.setErrorMessage(record.error());
+        run.setStartedAt(record.startedAt());
+        run.setFinishedAt(record.finishedAt());
+        return run;
+    }
+
     public AgentPromptLog toUserPrompt(AgentRun run, String content) {
-        return new AgentPromptLog(run, "user", content);
+        return withTokens(new AgentPromptLog(run, "user", content), content);
     }
 
     public AgentPromptLog toSystemPrompt(AgentRun run, String content) {
-        return new AgentPromptLog(run, "system", content);
+        return withTokens(new AgentPromptLog(run, "system", content), content);
     }
 
     public AgentPromptLog toAssistantOutput(AgentRun run, String content) {
-        return new AgentPromptLog(run, "assistant", content);
+        return withTokens(new AgentPromptLog(run, "assistant", content), content);
+    }
+
+    // Contenu dans le blob store : la ligne ne garde que le hash
+    public AgentPromptLog toPromptLogRef(AgentRun run, String role, String contentHash, String content) {
+        AgentPromptLog log = new AgentPromptLog(run, role, null);
+        log.setContentHash(contentHash);
+        return withTokens(log, content);
+    }
+
+    // Decompte reel (tokenizer du modele), plus une estimation
+    private AgentPromptLog withTokens(AgentPromptLog log, String content) {
+        log.setTokenEstimate(tokenCounter.count(content));
+        return log;
+    }
+
+    private static String truncate(String value, int max) {
+        return value == null || value.length() <= max ? value : value.substring(0, max);
     }
 
     // Helpers V0 pour audit facile
@@ -1,5 +1,6 @@
 package com.ia.robot.model.entity;
 
+import com.ia.robot.util.TextCompression;
 import jakarta.persistence.*;
 
 import java.time.Instant;
@@ -13,12 +14,20 @@ import java.time.Instant;
 @Table(name = "agent_plan_snapshots",
         indexes = {
                 @Index(name = "idx_plan_snapshots_run_id", columnList = "run_id"),
-                @Index(name = "idx_plan_snapshots_domain", columnList = "domain")
+                @Index(name = "idx_plan_snapshots_domain", columnList = "domain"),
+                @Index(name = "idx_plan_snapshots_cache_key", columnList = "cache_key, created_at")
         })
 public class AgentPlanSnapshot {
 
+    // Meme generateur par table que AgentRun (INSERT groupes)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "agent_plan_snapshots_id")
+    @TableGenerator(name = "agent_plan_snapshots_id",
+            table = "orwell_id_sequences",
+            pkColumnName = "sequence_name",
+            valueColumnName = "next_val",
+            pkColumnValue = "agent_plan_snapshots",
+            allocationSize = 50)
     private Long id;
 
     /**
@@ -32,10 +41,28 @@ public class AgentPlanSnapshot {
     private String domain;
 
     /**
-     * JSON normalisé du plan.
+     * PlanCacheKey.hash() de la demande : rechargement du cache de plans au demarrage.
      */
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    /**
+     * JSON normalisé du plan, compressé (TextCompression).
+     */
+    @Lob
+    @Column(name = "plan_json_z", columnDefinition = "LONGBLOB")
+    private byte[] planJsonData;
+
+    // Plan dans le blob store (ContentBlob) : un plan identique n'est stocké qu'une fois
+    @Column(name = "plan_hash", length = 64)
+    private String planHash;
+
+    // Lignes pas encore migrées
     @Lob
-    @Column(name = "plan_json", columnDefinition = "LONGTEXT", nullable = false)
+    @Column(name = "plan_json", columnDefinition = "LONGTEXT")
+    private String legacyPlanJson;
+
+    @Transient
     private String planJson;
 
     @Column(name = "created_at", nullable = false, updatable = false)
@@ -47,7 +74,7 @@ public class AgentPlanSnapshot {
     public AgentPlanSnapshot(AgentRun run, String domain, String planJson) {
         this.run = run;
         this.domain = domain;
-        this.planJson = planJson;
+        setPlanJson(planJson);
     }
 
     // -------------------------
@@ -74,12 +101,33 @@ public class AgentPlanSnapshot {
         this.domain = domain;
     }
 
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
     public String getPlanJson() {
+        if (planJson == null) {
+            planJson = planJsonData != null ? TextCompression.decompress(planJsonData) : legacyPlanJson;
+        }
         return planJson;
     }
 
     public void setPlanJson(String planJson) {
         this.planJson = planJson;
+        this.planJsonData = TextCompression.compress(planJson);
+        this.legacyPlanJson = null;
+    }
+
+    public String getPlanHash() {
+        return planHash;
+    }
+
+    public void setPlanHash(String planHash) {
+        this.planHash = planHash;
     }
 
     public Instant getCreatedAt() {
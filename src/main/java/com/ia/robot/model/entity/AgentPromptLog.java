@@ -1,5 +1,6 @@
 package com.ia.robot.model.entity;
 
+import com.ia.robot.util.TextCompression;
 import jakarta.persistence.*;
 
 import java.time.Instant;
@@ -20,8 +21,15 @@ import java.time.Instant;
         })
 public class AgentPromptLog {
 
+    // Meme generateur par table que AgentRun (INSERT groupes)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "agent_prompt_logs_id")
+    @TableGenerator(name = "agent_prompt_logs_id",
+            table = "orwell_id_sequences",
+            pkColumnName = "sequence_name",
+            valueColumnName = "next_val",
+            pkColumnValue = "agent_prompt_logs",
+            allocationSize = 50)
     private Long id;
 
     /**
@@ -37,8 +45,22 @@ public class AgentPromptLog {
     @Column(name = "role", length = 30, nullable = false)
     private String role;
 
+    /**
+     * Contenu compresse (TextCompression) ; voir AgentRun pour la colonne legacy.
+     */
+    @Lob
+    @Column(name = "content_z", columnDefinition = "LONGBLOB")
+    private byte[] contentData;
+
+    // Contenu dans le blob store (ContentBlob) : seul le hash est sur la ligne
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Lob
-    @Column(name = "content", columnDefinition = "LONGTEXT", nullable = false)
+    @Column(name = "content", columnDefinition = "LONGTEXT")
+    private String legacyContent;
+
+    @Transient
     private String content;
 
     @Column(name = "token_estimate")
@@ -53,7 +75,7 @@ public class AgentPromptLog {
     public AgentPromptLog(AgentRun run, String role, String content) {
         this.run = run;
         this.role = role;
-        this.content = content;
+        setContent(content);
     }
 
     // -------------------------
@@ -81,11 +103,24 @@ public class AgentPromptLog {
     }
 
     public String getContent() {
+        if (content == null) {
+            content = contentData != null ? TextCompression.decompress(contentData) : legacyContent;
+        }
         return content;
     }
 
     public void setContent(String content) {
         this.content = content;
+        this.contentData = TextCompression.compress(content);
+        this.legacyContent = null;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
     }
 
     public Integer getTokenEstimate() {
@@ -3,6 +3,7 @@ package com.ia.robot.model.entity;
 import com.ia.robot.model.enums.AgentType;
 import com.ia.robot.model.enums.OutputFormat;
 import com.ia.robot.model.enums.RunStatus;
+import com.ia.robot.util.TextCompression;
 import jakarta.persistence.*;
 
 import java.time.Instant;
@@ -21,12 +22,28 @@ import java.time.Instant;
         indexes = {
                 @Index(name = "idx_agent_runs_request_id", columnList = "request_id"),
                 @Index(name = "idx_agent_runs_status", columnList = "status"),
-                @Index(name = "idx_agent_runs_agent_name", columnList = "agent_name")
+                @Index(name = "idx_agent_runs_agent_name", columnList = "agent_name"),
+                @Index(name = "idx_agent_runs_created_at", columnList = "created_at"),
+                // Historique (AgentRunHistoryRepository) : filtre d'egalite puis created_at ;
+                // InnoDB ajoute l'id a chaque index, d'ou le tri (created_at, id) sans filesort
+                @Index(name = "idx_agent_runs_agent_created", columnList = "agent_name, created_at"),
+                @Index(name = "idx_agent_runs_status_created", columnList = "status, created_at"),
+                @Index(name = "idx_agent_runs_agent_status_created", columnList = "agent_name, status, created_at")
         })
 public class AgentRun {
 
+    /**
+     * Ids alloues par blocs (table orwell_id_sequences) : contrairement a IDENTITY,
+     * Hibernate peut grouper les INSERT en batch JDBC (audit asynchrone).
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "agent_runs_id")
+    @TableGenerator(name = "agent_runs_id",
+            table = "orwell_id_sequences",
+            pkColumnName = "sequence_name",
+            valueColumnName = "next_val",
+            pkColumnValue = "agent_runs",
+            allocationSize = 50)
     private Long id;
 
     @Column(name = "request_id", length = 80, nullable = false)
@@ -50,12 +67,42 @@ public class AgentRun {
     @Column(name = "domain", length = 120)
     private String domain;
 
+    /**
+     * Prompt et sortie brute compresses (TextCompression, LONGBLOB).
+     * Decompresses au premier get, pas au chargement de l'entite.
+     * Les colonnes LONGTEXT d'origine ne servent plus qu'aux lignes
+     * pas encore migrees (AuditCompressionMigrator).
+     */
+    @Lob
+    @Column(name = "input_prompt_z", columnDefinition = "LONGBLOB")
+    private byte[] inputPromptData;
+
+    @Lob
+    @Column(name = "output_raw_z", columnDefinition = "LONGBLOB")
+    private byte[] outputRawData;
+
+    /**
+     * Textes dans le blob store (ContentBlob) : seul le hash est sur la ligne.
+     * get*Prompt / getOutputRaw renvoient alors null : lire via ContentBlobStore.text(hash).
+     */
+    @Column(name = "input_hash", length = 64)
+    private String inputPromptHash;
+
+    @Column(name = "output_hash", length = 64)
+    private String outputRawHash;
+
     @Lob
     @Column(name = "input_prompt", columnDefinition = "LONGTEXT")
-    private String inputPrompt;
+    private String legacyInputPrompt;
 
     @Lob
     @Column(name = "output_raw", columnDefinition = "LONGTEXT")
+    private String legacyOutputRaw;
+
+    @Transient
+    private String inputPrompt;
+
+    @Transient
     private String outputRaw;
 
     @Lob
@@ -97,7 +144,7 @@ public class AgentRun {
 
     public void markSuccess(String outputRaw) {
         this.status = RunStatus.SUCCESS;
-        this.outputRaw = outputRaw;
+        setOutputRaw(outputRaw);
         this.finishedAt = Instant.now();
     }
 
@@ -164,19 +211,45 @@ public class AgentRun {
     }
 
     public String getInputPrompt() {
+        if (inputPrompt == null) {
+            inputPrompt = inputPromptData != null ? TextCompression.decompress(inputPromptData) : legacyInputPrompt;
+        }
         return inputPrompt;
     }
 
     public void setInputPrompt(String inputPrompt) {
         this.inputPrompt = inputPrompt;
+        this.inputPromptData = TextCompression.compress(inputPrompt);
+        this.legacyInputPrompt = null;
     }
 
     public String getOutputRaw() {
+        if (outputRaw == null) {
+            outputRaw = outputRawData != null ? TextCompression.decompress(outputRawData) : legacyOutputRaw;
+        }
         return outputRaw;
     }
 
     public void setOutputRaw(String outputRaw) {
         this.outputRaw = outputRaw;
+        this.outputRawData = TextCompression.compress(outputRaw);
+        this.legacyOutputRaw = null;
+    }
+
+    public String getInputPromptHash() {
+        return inputPromptHash;
+    }
+
+    public void setInputPromptHash(String inputPromptHash) {
+        this.inputPromptHash = inputPromptHash;
+    }
+
+    public String getOutputRawHash() {
+        return outputRawHash;
+    }
+
+    public void setOutputRawHash(String outputRawHash) {
+        this.outputRawHash = outputRawHash;
     }
 
     public String getErrorMessage() {
@@ -0,0 +1,117 @@
+package com.ia.robot.model.entity;
+
+import com.ia.robot.util.TextCompression;
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Texte d'audit stocke une seule fois, adresse par son contenu.
+ *
+ * - hash : SHA-256 (hex) du texte UTF-8, cle primaire ;
+ * - data : texte compresse (TextCompression) ;
+ * - ref_count : nombre de lignes d'audit qui pointent sur ce hash.
+ *   A 0, le blob peut etre purge (ContentBlobStore.purgeUnreferenced).
+ *
+ * Les system prompts, identiques d'un appel a l'autre, ne sont ainsi
+ * ecrits qu'une fois au lieu d'une fois par run.
+ */
+@Entity
+@Table(name = "content_blobs",
+        indexes = {
+                @Index(name = "idx_content_blobs_ref_count", columnList = "ref_count")
+        })
+public class ContentBlob implements Persistable<String> {
+
+    @Id
+    @Column(name = "hash", length = 64, nullable = false, updatable = false)
+    private String hash;
+
+    @Lob
+    @Column(name = "data", columnDefinition = "LONGBLOB", nullable = false)
+    private byte[] data;
+
+    // Taille du texte non compresse (octets UTF-8)
+    @Column(name = "raw_size", nullable = false)
+    private int rawSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "last_referenced_at", nullable = false)
+    private Instant lastReferencedAt = Instant.now();
+
+    // Cle assignee : sans ce drapeau, save() ferait un SELECT (merge) avant chaque INSERT
+    @Transient
+    private boolean isNew;
+
+    @Transient
+    private String text;
+
+    public ContentBlob() {
+    }
+
+    public ContentBlob(String hash, String text, int rawSize, long refCount) {
+        this.hash = hash;
+        this.text = text;
+        this.data = TextCompression.compress(text);
+        this.rawSize = rawSize;
+        this.refCount = refCount;
+        this.isNew = true;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    // -------------------------
+    // Getters
+    // -------------------------
+
+    @Override
+    public String getId() {
+        return hash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getText() {
+        if (text == null && data != null) {
+            text = TextCompression.decompress(data);
+        }
+        return text;
+    }
+
+    public int getStoredSize() {
+        return data == null ? 0 : data.length;
+    }
+
+    public int getRawSize() {
+        return rawSize;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getLastReferencedAt() {
+        return lastReferencedAt;
+    }
+}
@@ -1,9 +1,26 @@
 package com.ia.robot.repository;
 
 import com.ia.robot.model.entity.AgentPlanSnapshot;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface AgentPlanSnapshotRepository extends JpaRepository<AgentPlanSnapshot, Long> {
+
+    // Plans les plus recents ayant une cle de cache (demarrage a chaud du PlanCache)
+    List<AgentPlanSnapshot> findByCacheKeyIsNotNullOrderByCreatedAtDesc(Pageable pageable);
+
+    @Query("select s from AgentPlanSnapshot s where s.run.id in :runIds order by s.id")
+    List<AgentPlanSnapshot> findByRunIds(@Param("runIds") Collection<Long> runIds);
+
+    @Modifying
+    @Query("delete from AgentPlanSnapshot s where s.run.id in :runIds")
+    int deleteByRunIds(@Param("runIds") Collection<Long> runIds);
 }
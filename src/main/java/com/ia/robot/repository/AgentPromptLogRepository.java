@@ -1,9 +1,38 @@
 package com.ia.robot.repository;
 
+import com.ia.robot.dto.response.AgentPromptLogView;
 import com.ia.robot.model.entity.AgentPromptLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface AgentPromptLogRepository extends JpaRepository<AgentPromptLog, Long> {
+
+    /*
+     * Journal d'un run par id croissant, apres afterId (pagination par cle).
+     * Servi par idx_prompt_logs_run_id : InnoDB y ajoute la cle primaire, (run_id, id).
+     */
+    @Query("select new com.ia.robot.dto.response.AgentPromptLogView(l.id, l.role, l.tokenEstimate, l.createdAt) "
+            + "from AgentPromptLog l where l.run.id = :runId and l.id > :afterId order by l.id")
+    List<AgentPromptLogView> findViewsByRunId(@Param("runId") Long runId, @Param("afterId") long afterId,
+                                              Pageable pageable);
+
+    // Meme page, entites completes (includeText=true)
+    @Query("select l from AgentPromptLog l where l.run.id = :runId and l.id > :afterId order by l.id")
+    List<AgentPromptLog> findByRunIdAfter(@Param("runId") Long runId, @Param("afterId") long afterId,
+                                          Pageable pageable);
+
+    @Query("select l from AgentPromptLog l where l.run.id in :runIds order by l.id")
+    List<AgentPromptLog> findByRunIds(@Param("runIds") Collection<Long> runIds);
+
+    @Modifying
+    @Query("delete from AgentPromptLog l where l.run.id in :runIds")
+    int deleteByRunIds(@Param("runIds") Collection<Long> runIds);
 }
@@ -0,0 +1,28 @@
+package com.ia.robot.repository;
+
+import com.ia.robot.dto.response.AgentRunSummary;
+import com.ia.robot.model.enums.RunStatus;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Historique des runs : filtres optionnels + pagination par cle (created_at desc, id desc).
+ *
+ * Fragment Spring Data (implementation : AgentRunHistoryRepositoryImpl) : la requete
+ * ne contient que les filtres fournis, pour que MySQL choisisse l'index composite adapte.
+ */
+public interface AgentRunHistoryRepository {
+
+    /**
+     * @param agentName     filtre exact (null = tous)
+     * @param status        filtre exact (null = tous)
+     * @param from          created_at >= from (null = sans borne)
+     * @param to            created_at < to (null = sans borne)
+     * @param seekCreatedAt created_at de la derniere ligne de la page precedente (null = premiere page)
+     * @param seekId        id de la derniere ligne de la page precedente
+     * @param limit         nombre maximum de lignes
+     */
+    List<AgentRunSummary> findSummaries(String agentName, RunStatus status, Instant from, Instant to,
+                                        Instant seekCreatedAt, Long seekId, int limit);
+}
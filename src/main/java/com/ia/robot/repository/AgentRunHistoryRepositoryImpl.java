@@ -0,0 +1,58 @@
+package com.ia.robot.repository;
+
+import com.ia.robot.dto.response.AgentRunSummary;
+import com.ia.robot.model.enums.RunStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class AgentRunHistoryRepositoryImpl implements AgentRunHistoryRepository {
+
+    private static final String SELECT_SUMMARY = "select new com.ia.robot.dto.response.AgentRunSummary("
+            + "r.id, r.requestId, r.agentName, r.agentType, r.outputFormat, r.status, r.domain, "
+            + "r.startedAt, r.finishedAt, r.createdAt) from AgentRun r where 1 = 1";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AgentRunSummary> findSummaries(String agentName, RunStatus status, Instant from, Instant to,
+                                               Instant seekCreatedAt, Long seekId, int limit) {
+        StringBuilder jpql = new StringBuilder(SELECT_SUMMARY);
+        Map<String, Object> params = new LinkedHashMap<>();
+
+        if (agentName != null) {
+            jpql.append(" and r.agentName = :agentName");
+            params.put("agentName", agentName);
+        }
+        if (status != null) {
+            jpql.append(" and r.status = :status");
+            params.put("status", status);
+        }
+        if (from != null) {
+            jpql.append(" and r.createdAt >= :from");
+            params.put("from", from);
+        }
+        if (to != null) {
+            jpql.append(" and r.createdAt < :to");
+            params.put("to", to);
+        }
+        if (seekCreatedAt != null && seekId != null) {
+            // Forme "borne + departage" plutot que (a, b) < (x, y) : MySQL en tire une plage sur l'index
+            jpql.append(" and r.createdAt <= :seekCreatedAt"
+                    + " and (r.createdAt < :seekCreatedAt or r.id < :seekId)");
+            params.put("seekCreatedAt", seekCreatedAt);
+            params.put("seekId", seekId);
+        }
+        jpql.append(" order by r.createdAt desc, r.id desc");
+
+        TypedQuery<AgentRunSummary> query = entityManager.createQuery(jpql.toString(), AgentRunSummary.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -1,9 +1,31 @@
 package com.ia.robot.repository;
 
+import com.ia.robot.dto.response.AgentRunSummary;
 import com.ia.robot.model.entity.AgentRun;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface AgentRunRepository extends JpaRepository<AgentRun, Long> {
+public interface AgentRunRepository extends JpaRepository<AgentRun, Long>, AgentRunHistoryRepository {
+
+    @Query("select new com.ia.robot.dto.response.AgentRunSummary("
+            + "r.id, r.requestId, r.agentName, r.agentType, r.outputFormat, r.status, r.domain, "
+            + "r.startedAt, r.finishedAt, r.createdAt) from AgentRun r where r.id = :id")
+    Optional<AgentRunSummary> findSummaryById(@Param("id") Long id);
+
+    // Runs a archiver (plus vieux que cutoff), par id croissant
+    List<AgentRun> findByCreatedAtBeforeOrderByIdAsc(Instant cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("delete from AgentRun r where r.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
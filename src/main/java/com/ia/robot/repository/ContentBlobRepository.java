@@ -0,0 +1,27 @@
+package com.ia.robot.repository;
+
+import com.ia.robot.model.entity.ContentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    @Query("select b.hash from ContentBlob b where b.hash in :hashes")
+    List<String> findExistingHashes(@Param("hashes") Collection<String> hashes);
+
+    @Modifying
+    @Query("update ContentBlob b set b.refCount = b.refCount + :delta, b.lastReferencedAt = :now where b.hash = :hash")
+    int addReferences(@Param("hash") String hash, @Param("delta") long delta, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from ContentBlob b where b.refCount <= 0")
+    int deleteUnreferenced();
+}
@@ -0,0 +1,33 @@
+package com.ia.robot.service.archive;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Run d'audit archive : AgentRun + ses AgentPromptLog + ses AgentPlanSnapshot,
+ * textes resolus (colonnes compressees ou blob store). Un enregistrement JSON
+ * par run dans les segments d'archive.
+ */
+public record ArchivedRun(long id,
+                          String requestId,
+                          String agentName,
+                          String agentType,
+                          String outputFormat,
+                          String status,
+                          String domain,
+                          String inputPrompt,
+                          String outputRaw,
+                          String errorMessage,
+                          Instant startedAt,
+                          Instant finishedAt,
+                          Instant createdAt,
+                          List<PromptLog> promptLogs,
+                          List<PlanSnapshot> planSnapshots,
+                          Instant archivedAt) {
+
+    public record PromptLog(long id, String role, String content, Integer tokenEstimate, Instant createdAt) {
+    }
+
+    public record PlanSnapshot(long id, String domain, String cacheKey, String planJson, Instant createdAt) {
+    }
+}
@@ -0,0 +1,376 @@
+package com.ia.robot.service.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.util.TextCompression;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Archive locale des runs d'audit : segments append-only + petit index.
+ *
+ * Disposition (orwell.archive.dir) :
+ * - segment-000001.seg, segment-000002.seg, ... : en-tete "ORWSEG1\n" puis,
+ *   par run, [longueur int32][JSON compresse (TextCompression)].
+ *   Un segment est ferme des qu'il depasse orwell.archive.segment-max-mb
+ *   (plafonne a MAX_SEGMENT_MB : un segment est mappe d'un bloc et lu par offset int,
+ *   FileChannel.map et MappedByteBuffer s'arretent a 2 Go).
+ * - archive.idx : en-tete "ORWIDX1\n" puis une entree de 32 octets par run
+ *   [runId int64][cle requestId int64][segment int32][offset int64][longueur int32].
+ *
+ * Ecriture : enregistrements du lot, force() du segment, puis entrees d'index,
+ * force() de l'index. Un run n'est supprime de MySQL qu'apres (AuditArchiver).
+ * Un run deja indexe n'est pas reecrit (reprise apres arret entre index et DELETE).
+ *
+ * Lecture : index en memoire (runId / requestId -> position), segments
+ * mappes en memoire (MappedByteBuffer, lecture seule) a la premiere lecture.
+ */
+@Component
+public class AuditArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditArchive.class);
+
+    private static final byte[] SEGMENT_MAGIC = "ORWSEG1\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INDEX_MAGIC = "ORWIDX1\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int INDEX_ENTRY_BYTES = 32;
+    private static final String INDEX_FILE = "archive.idx";
+    static final long MAX_SEGMENT_MB = 1024;
+
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final long segmentMaxBytes;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Position> byRunId = new HashMap<>();
+    private final Map<Long, Long> runIdByRequestKey = new HashMap<>();
+    private final Map<Integer, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+    private int activeSegment;
+    private FileChannel segmentChannel;
+    private FileChannel indexChannel;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder appendedBytes = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+
+    public AuditArchive(ObjectMapper objectMapper,
+                        @Value("${orwell.archive.dir:data/archive}") String dir,
+                        @Value("${orwell.archive.segment-max-mb:64}") long segmentMaxMb) {
+        this.objectMapper = objectMapper;
+        this.dir = Path.of(dir);
+        if (segmentMaxMb > MAX_SEGMENT_MB) {
+            log.warn("[ORWELL][ARCHIVE] orwell.archive.segment-max-mb={} above the {} MB limit, clamped.",
+                    segmentMaxMb, MAX_SEGMENT_MB);
+        }
+        this.segmentMaxBytes = Math.max(1, Math.min(segmentMaxMb, MAX_SEGMENT_MB)) * 1024L * 1024L;
+    }
+
+    private record Position(int segment, long offset, int length) {
+    }
+
+    public boolean contains(long runId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return byRunId.containsKey(runId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ajoute les runs au segment actif ; les runs deja indexes sont ignores.
+     * Au retour, segment et index sont sur disque (force).
+     *
+     * @return nombre de runs ajoutes
+     */
+    public int append(List<ArchivedRun> runs) throws IOException {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            ByteBuffer index = ByteBuffer.allocate(runs.size() * INDEX_ENTRY_BYTES);
+            Map<Long, Position> added = new LinkedHashMap<>();
+            Map<Long, Long> requestKeys = new HashMap<>();
+
+            for (ArchivedRun run : runs) {
+                if (byRunId.containsKey(run.id()) || added.containsKey(run.id())) {
+                    continue;
+                }
+                byte[] payload = TextCompression.compress(objectMapper.writeValueAsString(run));
+                FileChannel channel = segmentFor(payload.length + 4);
+                long offset = channel.size();
+                ByteBuffer record = ByteBuffer.allocate(4 + payload.length);
+                record.putInt(payload.length).put(payload).flip();
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                Position position = new Position(activeSegment, offset + 4, payload.length);
+                long requestKey = requestKey(run.requestId());
+                index.putLong(run.id())
+                        .putLong(requestKey)
+                        .putInt(position.segment())
+                        .putLong(position.offset())
+                        .putInt(position.length());
+                added.put(run.id(), position);
+                requestKeys.put(requestKey, run.id());
+                appendedBytes.add(4 + payload.length);
+            }
+            if (added.isEmpty()) {
+                return 0;
+            }
+
+            // Segment d'abord : une entree d'index ne pointe jamais sur des octets absents
+            segmentChannel.force(false);
+            index.flip();
+            while (index.hasRemaining()) {
+                indexChannel.write(index);
+            }
+            indexChannel.force(false);
+
+            byRunId.putAll(added);
+            requestKeys.forEach(runIdByRequestKey::putIfAbsent);
+            appended.add(added.size());
+            return added.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<ArchivedRun> findRun(long runId) {
+        ensureLoaded();
+        Position position;
+        lock.readLock().lock();
+        try {
+            position = byRunId.get(runId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return position == null ? Optional.empty() : Optional.of(read(position));
+    }
+
+    public Optional<ArchivedRun> findByRequestId(String requestId) {
+        ensureLoaded();
+        Long runId;
+        lock.readLock().lock();
+        try {
+            runId = runIdByRequestKey.get(requestKey(requestId));
+        } finally {
+            lock.readLock().unlock();
+        }
+        // La cle est une empreinte 64 bits : on verifie le requestId lu
+        return runId == null
+                ? Optional.empty()
+                : findRun(runId).filter(run -> requestId.equals(run.requestId()));
+    }
+
+    public Map<String, Object> snapshot() {
+        ensureLoaded();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            payload.put("dir", dir.toAbsolutePath().toString());
+            payload.put("archivedRuns", byRunId.size());
+            payload.put("segments", activeSegment);
+            payload.put("segmentMaxBytes", segmentMaxBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        payload.put("mappedSegments", mapped.size());
+        payload.put("appendedSinceStart", appended.sum());
+        payload.put("appendedBytesSinceStart", appendedBytes.sum());
+        payload.put("reads", reads.sum());
+        return payload;
+    }
+
+    @PreDestroy
+    void close() {
+        lock.writeLock().lock();
+        try {
+            closeQuietly(segmentChannel);
+            closeQuietly(indexChannel);
+            segmentChannel = null;
+            indexChannel = null;
+            mapped.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // -------------------------------------------------
+    // Lecture
+    // -------------------------------------------------
+
+    private ArchivedRun read(Position position) {
+        MappedByteBuffer buffer = mapped.get(position.segment());
+        if (buffer == null || buffer.capacity() < position.offset() + position.length()) {
+            // Segment actif agrandi depuis le dernier mapping : on le remappe
+            buffer = map(position.segment());
+        }
+        byte[] payload = new byte[position.length()];
+        // get absolu : pas de position partagee, lecture concurrente sans verrou
+        buffer.get((int) position.offset(), payload);
+        reads.increment();
+        try {
+            return objectMapper.readValue(TextCompression.decompress(payload), ArchivedRun.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted archive record in segment " + position.segment(), e);
+        }
+    }
+
+    private MappedByteBuffer map(int segment) {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.put(segment, buffer);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map archive segment " + segment, e);
+        }
+    }
+
+    // -------------------------------------------------
+    // Ecriture / chargement
+    // -------------------------------------------------
+
+    private FileChannel segmentFor(int recordBytes) throws IOException {
+        if (segmentChannel != null && segmentChannel.size() + recordBytes <= segmentMaxBytes) {
+            return segmentChannel;
+        }
+        if (segmentChannel != null && segmentChannel.size() == SEGMENT_MAGIC.length) {
+            // Segment vide : un enregistrement plus gros que la limite y va quand meme
+            return segmentChannel;
+        }
+        if (segmentChannel != null) {
+            segmentChannel.force(false);
+            segmentChannel.close();
+        }
+        activeSegment++;
+        segmentChannel = FileChannel.open(segmentPath(activeSegment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentChannel.write(ByteBuffer.wrap(SEGMENT_MAGIC));
+        log.info("[ORWELL][ARCHIVE] New segment. segment={}", activeSegment);
+        return segmentChannel;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            Files.createDirectories(dir);
+            loadIndex();
+            openActiveSegment();
+            loaded = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audit archive in " + dir, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        Path indexPath = dir.resolve(INDEX_FILE);
+        indexChannel = FileChannel.open(indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = indexChannel.size();
+        if (size == 0) {
+            indexChannel.write(ByteBuffer.wrap(INDEX_MAGIC));
+            indexChannel.force(false);
+            return;
+        }
+        ByteBuffer magic = ByteBuffer.allocate(INDEX_MAGIC.length);
+        indexChannel.read(magic, 0);
+        if (!Arrays.equals(magic.array(), INDEX_MAGIC)) {
+            throw new IOException("Not an ORWELL archive index: " + indexPath);
+        }
+
+        // Une entree incomplete (arret pendant l'ecriture) est ignoree puis ecrasee
+        long entries = (size - INDEX_MAGIC.length) / INDEX_ENTRY_BYTES;
+        long end = INDEX_MAGIC.length + entries * INDEX_ENTRY_BYTES;
+        MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_ONLY, INDEX_MAGIC.length,
+                entries * INDEX_ENTRY_BYTES);
+        for (long i = 0; i < entries; i++) {
+            long runId = index.getLong();
+            long requestKey = index.getLong();
+            int segment = index.getInt();
+            long offset = index.getLong();
+            int length = index.getInt();
+            byRunId.putIfAbsent(runId, new Position(segment, offset, length));
+            runIdByRequestKey.putIfAbsent(requestKey, runId);
+        }
+        if (end < size) {
+            indexChannel.truncate(end);
+        }
+        indexChannel.position(end);
+        log.info("[ORWELL][ARCHIVE] Index loaded. runs={}", byRunId.size());
+    }
+
+    private void openActiveSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            activeSegment = files
+                    .map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith("segment-") && name.endsWith(".seg"))
+                    .mapToInt(name -> Integer.parseInt(name.substring(8, name.length() - 4)))
+                    .max()
+                    .orElse(0);
+        }
+        if (activeSegment > 0) {
+            segmentChannel = FileChannel.open(segmentPath(activeSegment),
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return dir.resolve(String.format("segment-%06d.seg", segment));
+    }
+
+    // FNV-1a 64 bits du requestId (UTF-8)
+    private static long requestKey(String requestId) {
+        long hash = 0xcbf29ce484222325L;
+        if (requestId != null) {
+            for (byte b : requestId.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= (b & 0xff);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.debug("[ORWELL][ARCHIVE] Close failed: {}", e.getMessage());
+        }
+    }
+}
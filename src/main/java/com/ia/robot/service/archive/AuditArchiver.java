@@ -0,0 +1,299 @@
+package com.ia.robot.service.archive;
+
+import com.ia.robot.model.entity.AgentPlanSnapshot;
+import com.ia.robot.model.entity.AgentPromptLog;
+import com.ia.robot.model.entity.AgentRun;
+import com.ia.robot.repository.AgentPlanSnapshotRepository;
+import com.ia.robot.repository.AgentPromptLogRepository;
+import com.ia.robot.repository.AgentRunRepository;
+import com.ia.robot.service.audit.ContentBlobStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Archivage des vieux runs d'audit vers AuditArchive.
+ *
+ * Toutes les orwell.archive.interval-minutes, les runs crees il y a plus de
+ * orwell.archive.max-age-days sont traites par lots (orwell.archive.batch-size) :
+ * 1. lecture (transaction en lecture seule) : runs, prompt logs, plan snapshots,
+ *    textes resolus (colonnes compressees ou blob store) ;
+ * 2. ecriture dans les segments d'archive (force sur disque) ;
+ * 3. suppression MySQL (une transaction : logs, snapshots puis runs) ;
+ * 4. une reference de moins par hash dans le blob store.
+ *
+ * Un arret entre 2 et 3 est sans perte : le lot suivant relit les memes runs,
+ * AuditArchive ignore ceux deja indexes et la suppression reprend.
+ *
+ * Pas de @EnableScheduling dans l'application : un thread dedie suffit.
+ */
+@Component
+public class AuditArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditArchiver.class);
+
+    private final AuditArchive archive;
+    private final AgentRunRepository runRepository;
+    private final AgentPromptLogRepository promptLogRepository;
+    private final AgentPlanSnapshotRepository snapshotRepository;
+    private final ContentBlobStore blobStore;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final long intervalMinutes;
+    private final int batchSize;
+
+    private final ReentrantLock running = new ReentrantLock();
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder archivedRuns = new LongAdder();
+    private final LongAdder archivedLogs = new LongAdder();
+    private final LongAdder archivedSnapshots = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile Instant lastPassAt;
+    private volatile long lastPassRuns;
+    private volatile String lastError;
+
+    public AuditArchiver(AuditArchive archive,
+                         AgentRunRepository runRepository,
+                         AgentPromptLogRepository promptLogRepository,
+                         AgentPlanSnapshotRepository snapshotRepository,
+                         ContentBlobStore blobStore,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${orwell.archive.enabled:false}") boolean enabled,
+                         @Value("${orwell.archive.max-age-days:30}") long maxAgeDays,
+                         @Value("${orwell.archive.interval-minutes:60}") long intervalMinutes,
+                         @Value("${orwell.archive.batch-size:200}") int batchSize) {
+        this.archive = archive;
+        this.runRepository = runRepository;
+        this.promptLogRepository = promptLogRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.blobStore = blobStore;
+        this.readTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.enabled = enabled;
+        this.maxAge = Duration.ofDays(Math.max(1, maxAgeDays));
+        this.intervalMinutes = Math.max(1, intervalMinutes);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> Thread.ofPlatform()
+                .name("orwell-audit-archiver")
+                .daemon(true)
+                .unstarted(r));
+        scheduler.scheduleWithFixedDelay(this::runQuietly, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        log.info("[ORWELL][ARCHIVE] Archiver started. maxAgeDays={}, intervalMinutes={}, batchSize={}",
+                maxAge.toDays(), intervalMinutes, batchSize);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Une passe complete (tous les lots eligibles).
+     *
+     * @return nombre de runs archives, -1 si une passe est deja en cours
+     */
+    public long runOnce() {
+        if (!running.tryLock()) {
+            return -1;
+        }
+        try {
+            Instant cutoff = Instant.now().minus(maxAge);
+            long start = System.nanoTime();
+            long runs = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                int n = archiveBatch(cutoff);
+                runs += n;
+                if (n < batchSize) {
+                    break;
+                }
+            }
+            passes.increment();
+            lastPassAt = Instant.now();
+            lastPassRuns = runs;
+            lastError = null;
+            if (runs > 0) {
+                log.info("[ORWELL][ARCHIVE] Pass done. runs={}, cutoff={}, durationMs={}",
+                        runs, cutoff, (System.nanoTime() - start) / 1_000_000L);
+            }
+            return runs;
+        } finally {
+            running.unlock();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("maxAgeDays", maxAge.toDays());
+        payload.put("intervalMinutes", intervalMinutes);
+        payload.put("batchSize", batchSize);
+        payload.put("running", running.isLocked());
+        payload.put("passes", passes.sum());
+        payload.put("archivedRuns", archivedRuns.sum());
+        payload.put("archivedPromptLogs", archivedLogs.sum());
+        payload.put("archivedPlanSnapshots", archivedSnapshots.sum());
+        payload.put("failures", failures.sum());
+        payload.put("lastPassAt", lastPassAt);
+        payload.put("lastPassRuns", lastPassRuns);
+        payload.put("lastError", lastError);
+        payload.put("archive", archive.snapshot());
+        return payload;
+    }
+
+    // -------------------------------------------------
+    // Internes
+    // -------------------------------------------------
+
+    private void runQuietly() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            failures.increment();
+            lastError = e.getMessage();
+            log.warn("[ORWELL][ARCHIVE] Pass failed: {}", e.getMessage());
+        }
+    }
+
+    private record Batch(List<ArchivedRun> runs, List<Long> runIds, List<String> hashes) {
+    }
+
+    private int archiveBatch(Instant cutoff) {
+        Batch batch = readTransaction.execute(status -> load(cutoff));
+        if (batch == null || batch.runIds().isEmpty()) {
+            return 0;
+        }
+
+        try {
+            archive.append(batch.runs());
+        } catch (IOException e) {
+            // Rien n'est supprime tant que l'archive n'est pas sur disque
+            throw new IllegalStateException("Archive write failed: " + e.getMessage(), e);
+        }
+
+        writeTransaction.executeWithoutResult(status -> {
+            promptLogRepository.deleteByRunIds(batch.runIds());
+            snapshotRepository.deleteByRunIds(batch.runIds());
+            runRepository.deleteByIds(batch.runIds());
+        });
+        blobStore.release(batch.hashes());
+
+        archivedRuns.add(batch.runIds().size());
+        for (ArchivedRun run : batch.runs()) {
+            archivedLogs.add(run.promptLogs().size());
+            archivedSnapshots.add(run.planSnapshots().size());
+        }
+        return batch.runIds().size();
+    }
+
+    private Batch load(Instant cutoff) {
+        // Toujours la premiere page : les lots precedents ont ete supprimes
+        List<AgentRun> runs = runRepository.findByCreatedAtBeforeOrderByIdAsc(cutoff, PageRequest.of(0, batchSize));
+        if (runs.isEmpty()) {
+            return null;
+        }
+        List<Long> runIds = runs.stream().map(AgentRun::getId).toList();
+        List<AgentPromptLog> logs = promptLogRepository.findByRunIds(runIds);
+        List<AgentPlanSnapshot> snapshots = snapshotRepository.findByRunIds(runIds);
+
+        // Textes du blob store lus en une requete ; chaque hash reference est libere apres suppression
+        List<String> hashes = new ArrayList<>();
+        for (AgentRun run : runs) {
+            addIfPresent(hashes, run.getInputPromptHash());
+            addIfPresent(hashes, run.getOutputRawHash());
+        }
+        for (AgentPromptLog promptLog : logs) {
+            addIfPresent(hashes, promptLog.getContentHash());
+        }
+        for (AgentPlanSnapshot snapshot : snapshots) {
+            addIfPresent(hashes, snapshot.getPlanHash());
+        }
+        Set<String> distinct = new HashSet<>(hashes);
+        Map<String, String> blobs = distinct.isEmpty() ? Map.of() : blobStore.texts(distinct);
+
+        Map<Long, List<ArchivedRun.PromptLog>> logsByRun = new HashMap<>();
+        for (AgentPromptLog promptLog : logs) {
+            logsByRun.computeIfAbsent(promptLog.getRun().getId(), id -> new ArrayList<>())
+                    .add(new ArchivedRun.PromptLog(promptLog.getId(), promptLog.getRole(),
+                            text(promptLog.getContentHash(), promptLog.getContent(), blobs),
+                            promptLog.getTokenEstimate(), promptLog.getCreatedAt()));
+        }
+        Map<Long, List<ArchivedRun.PlanSnapshot>> snapshotsByRun = new HashMap<>();
+        for (AgentPlanSnapshot snapshot : snapshots) {
+            snapshotsByRun.computeIfAbsent(snapshot.getRun().getId(), id -> new ArrayList<>())
+                    .add(new ArchivedRun.PlanSnapshot(snapshot.getId(), snapshot.getDomain(),
+                            snapshot.getCacheKey(),
+                            text(snapshot.getPlanHash(), snapshot.getPlanJson(), blobs),
+                            snapshot.getCreatedAt()));
+        }
+
+        Instant archivedAt = Instant.now();
+        List<ArchivedRun> archived = new ArrayList<>(runs.size());
+        for (AgentRun run : runs) {
+            archived.add(new ArchivedRun(
+                    run.getId(),
+                    run.getRequestId(),
+                    run.getAgentName(),
+                    run.getAgentType() != null ? run.getAgentType().name() : null,
+                    run.getOutputFormat() != null ? run.getOutputFormat().name() : null,
+                    run.getStatus() != null ? run.getStatus().name() : null,
+                    run.getDomain(),
+                    text(run.getInputPromptHash(), run.getInputPrompt(), blobs),
+                    text(run.getOutputRawHash(), run.getOutputRaw(), blobs),
+                    run.getErrorMessage(),
+                    run.getStartedAt(),
+                    run.getFinishedAt(),
+                    run.getCreatedAt(),
+                    logsByRun.getOrDefault(run.getId(), List.of()),
+                    snapshotsByRun.getOrDefault(run.getId(), List.of()),
+                    archivedAt));
+        }
+        return new Batch(archived, runIds, hashes);
+    }
+
+    private static String text(String hash, String inline, Map<String, String> blobs) {
+        return hash != null ? blobs.get(hash) : inline;
+    }
+
+    private static void addIfPresent(List<String> hashes, String hash) {
+        if (hash != null) {
+            hashes.add(hash);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.ia.robot.service.audit;
+
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.model.enums.RunStatus;
+
+import java.time.Instant;
+
+/**
+ * Trace d'un appel agent termine, en attente de persistance.
+ *
+ * Objet plat et immuable : il ne retient ni AgentContext ni entite JPA,
+ * traverse la file d'audit sans verrou et se serialise tel quel en JSON
+ * (fichier de debordement, orwell.audit.overflow=spill).
+ *
+ * kind : plan | ask | ask-stream
+ * system : system prompt envoye au modele (null = system par defaut du ChatClient)
+ * cacheKey : PlanCacheKey.hash() pour un plan (null sinon)
+ */
+public record AgentRunRecord(String requestId,
+                             String agentName,
+                             String kind,
+                             String domain,
+                             RunStatus status,
+                             String system,
+                             String input,
+                             String output,
+                             String error,
+                             Instant startedAt,
+                             Instant finishedAt,
+                             String cacheKey) {
+
+    public static final String PLAN = "plan";
+    public static final String ASK = "ask";
+    public static final String ASK_STREAM = "ask-stream";
+
+    public static AgentRunRecord success(AgentContext ctx, String kind, String system, String input,
+                                         String output, Instant startedAt) {
+        return new AgentRunRecord(ctx.getRequestId(), ctx.getAgentName(), kind, ctx.getSubject(),
+                RunStatus.SUCCESS, system, input, output, null, startedAt, Instant.now(), null);
+    }
+
+    public static AgentRunRecord failure(AgentContext ctx, String kind, String system, String input,
+                                         Throwable error, Instant startedAt) {
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        return new AgentRunRecord(ctx.getRequestId(), ctx.getAgentName(), kind, ctx.getSubject(),
+                RunStatus.FAILED, system, input, null, message, startedAt, Instant.now(), null);
+    }
+
+    public AgentRunRecord withCacheKey(String key) {
+        return new AgentRunRecord(requestId, agentName, kind, domain, status, system, input, output, error,
+                startedAt, finishedAt, key);
+    }
+}
@@ -0,0 +1,535 @@
+package com.ia.robot.service.audit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.ai.resilience.LatencyTracker;
+import com.ia.robot.mapper.AgentLogMapper;
+import com.ia.robot.model.entity.AgentPlanSnapshot;
+import com.ia.robot.model.entity.AgentPromptLog;
+import com.ia.robot.model.entity.AgentRun;
+import com.ia.robot.model.enums.RunStatus;
+import com.ia.robot.repository.AgentPlanSnapshotRepository;
+import com.ia.robot.repository.AgentPromptLogRepository;
+import com.ia.robot.repository.AgentRunRepository;
+import com.ia.robot.util.TextCompression;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistance differee de l'audit (AgentRun, AgentPromptLog, AgentPlanSnapshot).
+ *
+ * Le thread de la requete ne fait qu'un offer() non bloquant dans une file
+ * bornee (orwell.audit.queue-capacity). Un thread dedie vide la file par lots :
+ * - un lot part des qu'il atteint orwell.audit.batch-size enregistrements,
+ *   ou au plus tard orwell.audit.flush-interval-ms apres son premier element ;
+ * - un lot = une transaction, saveAll par table ; ids alloues par TableGenerator
+ *   (allocationSize 50) + hibernate.jdbc.batch_size : INSERT groupes, sans aller-retour
+ *   par ligne (IDENTITY desactive le batching JDBC).
+ *
+ * File pleine (base lente ou indisponible), selon orwell.audit.overflow :
+ * - drop  (defaut) : l'enregistrement est abandonne et compte ;
+ * - spill : il est ajoute en JSON Lines a orwell.audit.spill-file, puis rejoue
+ *   par le thread d'ecriture quand la file est vide.
+ * Dans les deux cas, la requete n'attend jamais la base.
+ *
+ * Un lot en echec est abandonne (drop) ou deverse (spill), jamais rejoue en boucle.
+ * write(...) : ecriture immediate et synchrone, hors file, pour les resultats
+ * qui n'existent nulle part ailleurs (PlanBatchJob).
+ * Les textes sont compresses (TextCompression) ici, sur le thread d'ecriture,
+ * et dedoublonnes par le blob store (ContentBlobStore) s'il est actif.
+ * Compteurs : GET /api/ops/audit
+ */
+@Component
+// Colonnes texte historiques relachees en NULL avant le premier lot
+@DependsOn("auditCompressionMigrator")
+public class AuditBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditBatchWriter.class);
+
+    private static final long DROP_LOG_EVERY = 1000;
+
+    private final AgentLogMapper mapper;
+    private final AgentRunRepository runRepository;
+    private final AgentPromptLogRepository promptLogRepository;
+    private final AgentPlanSnapshotRepository planSnapshotRepository;
+    private final ContentBlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final boolean spill;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long shutdownTimeoutMs;
+    private final Path spillFile;
+
+    private final BlockingQueue<AgentRunRecord> queue;
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private BufferedWriter spillWriter;
+
+    private volatile boolean running;
+    private volatile boolean lastFlushOk = true;
+    private volatile Instant lastFlushAt;
+    private Thread writerThread;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder directWrites = new LongAdder();
+    private final LongAdder failedDirectWrites = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator peakQueueDepth = new LongAccumulator(Math::max, 0);
+    private final LatencyTracker flushLatencies = new LatencyTracker(512);
+
+    public AuditBatchWriter(AgentLogMapper mapper,
+                            AgentRunRepository runRepository,
+                            AgentPromptLogRepository promptLogRepository,
+                            AgentPlanSnapshotRepository planSnapshotRepository,
+                            ContentBlobStore blobStore,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper,
+                            @Value("${orwell.audit.enabled:true}") boolean enabled,
+                            @Value("${orwell.audit.overflow:drop}") String overflow,
+                            @Value("${orwell.audit.queue-capacity:10000}") int queueCapacity,
+                            @Value("${orwell.audit.batch-size:50}") int batchSize,
+                            @Value("${orwell.audit.flush-interval-ms:1000}") long flushIntervalMs,
+                            @Value("${orwell.audit.shutdown-timeout-ms:10000}") long shutdownTimeoutMs,
+                            @Value("${orwell.audit.spill-file:data/audit-spill.jsonl}") String spillFile) {
+        this.mapper = mapper;
+        this.runRepository = runRepository;
+        this.promptLogRepository = promptLogRepository;
+        this.planSnapshotRepository = planSnapshotRepository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.spill = "spill".equalsIgnoreCase(overflow == null ? "" : overflow.trim());
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+        this.shutdownTimeoutMs = Math.max(0, shutdownTimeoutMs);
+        this.spillFile = Path.of(spillFile);
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            log.info("[ORWELL][AUDIT] Disabled (orwell.audit.enabled=false).");
+            return;
+        }
+        running = true;
+        writerThread = Thread.ofPlatform()
+                .name("orwell-audit-writer")
+                .daemon(true)
+                .start(this::writeLoop);
+        log.info("[ORWELL][AUDIT] Writer started. queueCapacity={}, batchSize={}, flushIntervalMs={}, overflow={}",
+                queueCapacity, batchSize, flushIntervalMs, spill ? "spill" : "drop");
+    }
+
+    /**
+     * Vide la file avant l'arret (dans la limite de orwell.audit.shutdown-timeout-ms).
+     */
+    @PreDestroy
+    void stop() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warn("[ORWELL][AUDIT] Writer still busy after {} ms, {} records not persisted.",
+                    shutdownTimeoutMs, queue.size());
+        }
+        closeSpillWriter();
+    }
+
+    /**
+     * Non bloquant : n'attend jamais la base.
+     *
+     * @return true si l'enregistrement est en file (ou deverse sur disque)
+     */
+    public boolean offer(AgentRunRecord record) {
+        if (!enabled || record == null) {
+            return false;
+        }
+        if (queue.offer(record)) {
+            enqueued.increment();
+            peakQueueDepth.accumulate(queue.size());
+            return true;
+        }
+        return overflow(List.of(record));
+    }
+
+    /**
+     * Bloquant : ecrit l'enregistrement dans sa propre transaction et ne rend la
+     * main qu'une fois celle-ci validee. Independant de orwell.audit.enabled et
+     * de la file ; rien n'est deverse ni abandonne en silence.
+     *
+     * @throws RuntimeException si la transaction n'est pas validee
+     */
+    public void write(AgentRunRecord record) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(List.of(record)));
+            directWrites.increment();
+        } catch (RuntimeException e) {
+            failedDirectWrites.increment();
+            throw e;
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        long b = batches.sum();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("overflow", spill ? "spill" : "drop");
+        payload.put("queueDepth", queue.size());
+        payload.put("queueCapacity", queueCapacity);
+        payload.put("peakQueueDepth", peakQueueDepth.get());
+        payload.put("batchSize", batchSize);
+        payload.put("flushIntervalMs", flushIntervalMs);
+        payload.put("enqueued", enqueued.sum());
+        payload.put("persisted", persisted.sum());
+        payload.put("dropped", dropped.sum());
+        payload.put("spilled", spilled.sum());
+        payload.put("replayed", replayed.sum());
+        payload.put("batches", b);
+        payload.put("failedBatches", failedBatches.sum());
+        payload.put("directWrites", directWrites.sum());
+        payload.put("failedDirectWrites", failedDirectWrites.sum());
+        payload.put("avgBatchSize", b == 0 ? 0.0 : (double) persisted.sum() / b);
+        payload.put("maxBatchSize", maxBatchSize.get());
+        payload.put("flushP50Ms", flushLatencies.percentile(50));
+        payload.put("flushP90Ms", flushLatencies.percentile(90));
+        payload.put("flushP99Ms", flushLatencies.percentile(99));
+        payload.put("lastFlushAt", lastFlushAt == null ? null : lastFlushAt.toString());
+        // Octets bruts / stockes des colonnes compressees
+        payload.put("compression", TextCompression.snapshot());
+        payload.put("blobs", blobStore.snapshot());
+        return payload;
+    }
+
+    // -------------------------------------------------
+    // Thread d'ecriture
+    // -------------------------------------------------
+
+    private void writeLoop() {
+        List<AgentRunRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AgentRunRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replaySpill();
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("[ORWELL][AUDIT] Writer loop error: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Complete le lot jusqu'a batchSize, sans attendre plus de flushIntervalMs.
+     */
+    private void fill(List<AgentRunRecord> batch) throws InterruptedException {
+        long flushAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long waitNanos = flushAt - System.nanoTime();
+            if (waitNanos <= 0 || !running) {
+                return;
+            }
+            AgentRunRecord next = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<AgentRunRecord> batch) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(batch));
+            long durationMs = (System.nanoTime() - start) / 1_000_000L;
+            flushLatencies.record(durationMs);
+            batches.increment();
+            persisted.add(batch.size());
+            maxBatchSize.accumulate(batch.size());
+            lastFlushAt = Instant.now();
+            lastFlushOk = true;
+            log.debug("[ORWELL][AUDIT] Batch persisted. size={}, durationMs={}, queueDepth={}",
+                    batch.size(), durationMs, queue.size());
+        } catch (RuntimeException e) {
+            failedBatches.increment();
+            lastFlushOk = false;
+            log.warn("[ORWELL][AUDIT] Batch failed. size={}, error={}", batch.size(), e.getMessage());
+            overflow(batch);
+        }
+    }
+
+    private void persist(List<AgentRunRecord> batch) {
+        List<AgentRun> runs = new ArrayList<>(batch.size());
+        List<AgentPromptLog> logs = new ArrayList<>(batch.size() * 3);
+        List<AgentPlanSnapshot> snapshots = new ArrayList<>();
+        ContentBlobStore.Batch texts = blobStore.isEnabled() ? blobStore.newBatch() : null;
+
+        for (AgentRunRecord record : batch) {
+            AgentRun run = mapper.toRun(record);
+            runs.add(run);
+            boolean plan = AgentRunRecord.PLAN.equals(record.kind())
+                    && record.status() == RunStatus.SUCCESS
+                    && record.output() != null;
+
+            if (texts == null) {
+                run.setInputPrompt(record.input());
+                run.setOutputRaw(record.output());
+                if (record.system() != null) {
+                    logs.add(mapper.toSystemPrompt(run, record.system()));
+                }
+                if (record.input() != null) {
+                    logs.add(mapper.toUserPrompt(run, record.input()));
+                }
+                if (record.output() != null) {
+                    logs.add(mapper.toAssistantOutput(run, record.output()));
+                }
+                if (plan) {
+                    AgentPlanSnapshot snapshot = new AgentPlanSnapshot(run, run.getDomain(), record.output());
+                    snapshot.setCacheKey(record.cacheKey());
+                    snapshots.add(snapshot);
+                }
+                continue;
+            }
+
+            // Blob store : un meme texte (system prompt, question du run et du log "user")
+            // n'est ecrit qu'une fois, les lignes ne portent que le hash
+            String inputHash = texts.add(record.input());
+            String outputHash = texts.add(record.output());
+            run.setInputPromptHash(inputHash);
+            run.setOutputRawHash(outputHash);
+            if (record.system() != null) {
+                logs.add(mapper.toPromptLogRef(run, "system", texts.add(record.system()), record.system()));
+            }
+            if (record.input() != null) {
+                logs.add(mapper.toPromptLogRef(run, "user", texts.add(record.input()), record.input()));
+            }
+            if (record.output() != null) {
+                logs.add(mapper.toPromptLogRef(run, "assistant", texts.add(record.output()), record.output()));
+            }
+            if (plan) {
+                AgentPlanSnapshot snapshot = new AgentPlanSnapshot(run, run.getDomain(), null);
+                snapshot.setPlanHash(texts.add(record.output()));
+                snapshot.setCacheKey(record.cacheKey());
+                snapshots.add(snapshot);
+            }
+        }
+
+        if (texts != null) {
+            blobStore.write(texts);
+        }
+        // Parents d'abord : les FK des logs et snapshots pointent sur des ids deja alloues
+        runRepository.saveAll(runs);
+        promptLogRepository.saveAll(logs);
+        if (!snapshots.isEmpty()) {
+            planSnapshotRepository.saveAll(snapshots);
+        }
+    }
+
+    // -------------------------------------------------
+    // Debordement
+    // -------------------------------------------------
+
+    private boolean overflow(List<AgentRunRecord> records) {
+        if (spill && appendToSpill(records)) {
+            spilled.add(records.size());
+            return true;
+        }
+        long before = dropped.sum();
+        dropped.add(records.size());
+        if (before / DROP_LOG_EVERY != (before + records.size()) / DROP_LOG_EVERY || before == 0) {
+            log.warn("[ORWELL][AUDIT] Audit records dropped. total={}, queueDepth={}",
+                    before + records.size(), queue.size());
+        }
+        return false;
+    }
+
+    private boolean appendToSpill(List<AgentRunRecord> records) {
+        spillLock.lock();
+        try {
+            if (spillWriter == null) {
+                Path parent = spillFile.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (AgentRunRecord record : records) {
+                spillWriter.write(objectMapper.writeValueAsString(record));
+                spillWriter.newLine();
+            }
+            spillWriter.flush();
+            return true;
+        } catch (IOException e) {
+            log.warn("[ORWELL][AUDIT] Spill failed. file={}, error={}", spillFile, e.getMessage());
+            return false;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * File vide et derniere ecriture reussie : on rejoue le fichier de debordement.
+     * Le fichier est d'abord renomme, pour que les nouveaux debordements
+     * continuent dans un fichier neuf pendant le rejeu.
+     * Apres chaque lot rejoue, le nombre de lignes traitees est note dans
+     * "<fichier>.replay.pos" : un rejeu interrompu (erreur de lecture, arret)
+     * reprend apres le dernier lot ecrit au lieu de le reinserer.
+     */
+    private void replaySpill() {
+        if (!spill || !lastFlushOk) {
+            return;
+        }
+        Path replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        Path positionFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay.pos");
+        // Un rejeu interrompu reprend meme sans nouveau debordement
+        if (!Files.exists(spillFile) && !Files.exists(replayFile)) {
+            return;
+        }
+        spillLock.lock();
+        try {
+            closeSpillWriter();
+            if (!Files.exists(replayFile)) {
+                // Position d'un rejeu precedent deja termine : sans objet pour ce fichier
+                Files.deleteIfExists(positionFile);
+                Files.move(spillFile, replayFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("[ORWELL][AUDIT] Spill replay skipped. file={}, error={}", spillFile, e.getMessage());
+            return;
+        } finally {
+            spillLock.unlock();
+        }
+
+        long count = 0;
+        List<AgentRunRecord> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            long done = readReplayPosition(positionFile);
+            long lineNo = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (lineNo <= done || line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(objectMapper.readValue(line, AgentRunRecord.class));
+                } catch (JsonProcessingException e) {
+                    // Ligne tronquee (arret brutal pendant l'ecriture) : ignoree, pas de rejeu partiel
+                    dropped.increment();
+                    continue;
+                }
+                if (batch.size() == batchSize) {
+                    count += batch.size();
+                    flush(batch);
+                    batch.clear();
+                    writeReplayPosition(positionFile, lineNo);
+                }
+            }
+            if (!batch.isEmpty()) {
+                count += batch.size();
+                flush(batch);
+            }
+            // Fichier d'abord : un arret entre les deux laisse une position orpheline, ignoree ensuite
+            Files.delete(replayFile);
+            Files.deleteIfExists(positionFile);
+        } catch (IOException e) {
+            log.warn("[ORWELL][AUDIT] Spill replay failed. file={}, error={}", replayFile, e.getMessage());
+            return;
+        }
+        replayed.add(count);
+        log.info("[ORWELL][AUDIT] Spill replayed. records={}", count);
+    }
+
+    /**
+     * Lignes du fichier de rejeu deja ecrites (0 si aucune position ou position illisible).
+     */
+    private static long readReplayPosition(Path positionFile) {
+        try {
+            return Files.exists(positionFile) ? Long.parseLong(Files.readString(positionFile).trim()) : 0L;
+        } catch (IOException | NumberFormatException e) {
+            log.warn("[ORWELL][AUDIT] Spill replay position unreadable, replaying from start. file={}, error={}",
+                    positionFile, e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * Ecriture dans un fichier temporaire puis renommage atomique : jamais de position a moitie ecrite.
+     */
+    private static void writeReplayPosition(Path positionFile, long lines) throws IOException {
+        Path tmp = positionFile.resolveSibling(positionFile.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(lines), StandardCharsets.UTF_8);
+        Files.move(tmp, positionFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void closeSpillWriter() {
+        spillLock.lock();
+        try {
+            if (spillWriter != null) {
+                spillWriter.close();
+            }
+        } catch (IOException e) {
+            log.debug("[ORWELL][AUDIT] Spill writer close failed: {}", e.getMessage());
+        } finally {
+            spillWriter = null;
+            spillLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.ia.robot.service.audit;
+
+import com.ia.robot.util.TextCompression;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Migration des colonnes LONGTEXT de l'audit vers leurs colonnes compressees (*_z).
+ *
+ * 1. a la creation du bean, avant le demarrage d'AuditBatchWriter (@DependsOn) :
+ *    les anciennes colonnes texte passent en NULL autorise
+ *    (ddl-auto=update ajoute les colonnes *_z mais ne relache pas un NOT NULL
+ *    existant ; sans cela, les INSERT qui ne remplissent que *_z echoueraient).
+ *    Synchrone : les premiers lots d'audit (et PlanBatchJob) ecrivent des le demarrage ;
+ * 2. si orwell.audit.compression.migrate-existing=true, apres ApplicationReadyEvent,
+ *    sur un thread a part (le demarrage n'attend pas) : recopie par lots
+ *    (orwell.audit.compression.migrate-batch-size), parcours par id croissant,
+ *    texte compresse dans *_z puis ancienne colonne videe. Reprise possible :
+ *    seules les lignes avec texte et sans *_z sont traitees.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class AuditCompressionMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditCompressionMigrator.class);
+
+    private record LegacyColumn(String table, String column, boolean wasNotNull) {
+
+        String compressedColumn() {
+            return column + "_z";
+        }
+    }
+
+    private static final List<LegacyColumn> COLUMNS = List.of(
+            new LegacyColumn("agent_runs", "input_prompt", false),
+            new LegacyColumn("agent_runs", "output_raw", false),
+            new LegacyColumn("agent_prompt_logs", "content", true),
+            new LegacyColumn("agent_plan_snapshots", "plan_json", true)
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean migrateExisting;
+    private final int batchSize;
+
+    public AuditCompressionMigrator(JdbcTemplate jdbcTemplate,
+                                    @Value("${orwell.audit.compression.migrate-existing:false}") boolean migrateExisting,
+                                    @Value("${orwell.audit.compression.migrate-batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.migrateExisting = migrateExisting;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Apres la mise a jour du schema par Hibernate (entityManagerFactory) :
+     * ALTER des seules colonnes encore NOT NULL.
+     */
+    @PostConstruct
+    void relaxLegacyColumns() {
+        for (LegacyColumn column : COLUMNS) {
+            try {
+                relaxNotNull(column);
+            } catch (RuntimeException e) {
+                log.warn("[ORWELL][AUDIT] Legacy column left as is. table={}, column={}, error={}",
+                        column.table(), column.column(), e.getMessage());
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!migrateExisting) {
+            return;
+        }
+        Thread.ofPlatform()
+                .name("orwell-audit-migrator")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    void run() {
+        for (LegacyColumn column : COLUMNS) {
+            try {
+                migrate(column);
+            } catch (RuntimeException e) {
+                log.warn("[ORWELL][AUDIT] Compression migration skipped. table={}, column={}, error={}",
+                        column.table(), column.column(), e.getMessage());
+            }
+        }
+    }
+
+    private void relaxNotNull(LegacyColumn column) {
+        if (!column.wasNotNull()) {
+            return;
+        }
+        List<String> nullable = jdbcTemplate.queryForList(
+                "SELECT IS_NULLABLE FROM information_schema.COLUMNS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?",
+                String.class, column.table(), column.column());
+        if (!nullable.isEmpty() && "NO".equalsIgnoreCase(nullable.get(0))) {
+            jdbcTemplate.execute("ALTER TABLE " + column.table()
+                    + " MODIFY " + column.column() + " LONGTEXT NULL");
+            log.info("[ORWELL][AUDIT] Legacy column made nullable. table={}, column={}",
+                    column.table(), column.column());
+        }
+    }
+
+    private void migrate(LegacyColumn column) {
+        String select = "SELECT id, " + column.column() + " AS text FROM " + column.table()
+                + " WHERE id > ? AND " + column.column() + " IS NOT NULL AND "
+                + column.compressedColumn() + " IS NULL ORDER BY id LIMIT ?";
+        String update = "UPDATE " + column.table() + " SET " + column.compressedColumn() + " = ?, "
+                + column.column() + " = NULL WHERE id = ?";
+
+        long lastId = 0;
+        long rows = 0;
+        long start = System.nanoTime();
+        while (true) {
+            List<Map<String, Object>> page = jdbcTemplate.queryForList(select, lastId, batchSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Object[]> args = new ArrayList<>(page.size());
+            for (Map<String, Object> row : page) {
+                long id = ((Number) row.get("id")).longValue();
+                args.add(new Object[]{TextCompression.compress((String) row.get("text")), id});
+                lastId = id;
+            }
+            jdbcTemplate.batchUpdate(update, args);
+            rows += page.size();
+        }
+        if (rows > 0) {
+            log.info("[ORWELL][AUDIT] Rows compressed. table={}, column={}, rows={}, durationMs={}",
+                    column.table(), column.column(), rows, (System.nanoTime() - start) / 1_000_000L);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.ia.robot.service.audit;
+
+import com.ia.robot.model.entity.ContentBlob;
+import com.ia.robot.repository.ContentBlobRepository;
+import com.ia.robot.util.HashUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.ia.robot.util.TextCompression;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stockage des textes d'audit adresse par contenu (table content_blobs).
+ *
+ * Chaque texte distinct (system prompt, question, reponse, plan JSON) est
+ * ecrit une seule fois, sous son SHA-256 ; les lignes d'audit ne gardent
+ * que le hash. Un texte deja present ne coute qu'un increment de ref_count.
+ *
+ * Utilisation (AuditBatchWriter, dans la transaction du lot) :
+ *   Batch batch = blobs.newBatch();
+ *   run.setInputPromptHash(batch.add(text));
+ *   ...
+ *   blobs.write(batch);   // 1 SELECT des hash connus, UPDATE ref_count, upsert groupe des nouveaux
+ *
+ * Plusieurs noeuds ecrivent dans la meme table : le SELECT n'est qu'un raccourci
+ * (eviter de renvoyer le texte d'un blob deja connu). Les nouveaux hash passent par
+ * INSERT ... ON DUPLICATE KEY UPDATE ref_count = ref_count + ? (un autre noeud a pu
+ * l'inserer entre-temps), et un UPDATE qui ne touche aucune ligne (blob purge
+ * entre SELECT et UPDATE) est rejoue en upsert : jamais de hash sans blob.
+ * Nettoyage : release(...) decremente, purgeUnreferenced() supprime les blobs a 0.
+ */
+@Component
+public class ContentBlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentBlobStore.class);
+
+    private static final String UPSERT =
+            "INSERT INTO content_blobs (hash, data, raw_size, ref_count, created_at, last_referenced_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE ref_count = ref_count + ?, last_referenced_at = ?";
+
+    private final ContentBlobRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    private final LongAdder references = new LongAdder();
+    private final LongAdder blobsWritten = new LongAdder();
+    private final LongAdder rawBytesReferenced = new LongAdder();
+    private final LongAdder rawBytesWritten = new LongAdder();
+    private final LongAdder storedBytesWritten = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+
+    public ContentBlobStore(ContentBlobRepository repository,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${orwell.audit.blobs.enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+    }
+
+    /**
+     * false : textes stockes dans les colonnes de chaque ligne d'audit (*_z).
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Textes d'un lot d'audit, dedoublonnes en memoire avant tout acces base.
+     */
+    public static final class Batch {
+
+        private final Map<String, Pending> pending = new LinkedHashMap<>();
+
+        /**
+         * @return hash du texte, ou null si le texte est null
+         */
+        public String add(String text) {
+            if (text == null) {
+                return null;
+            }
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            String hash = HashUtils.sha256Hex(utf8);
+            Pending p = pending.get(hash);
+            if (p == null) {
+                pending.put(hash, new Pending(text, utf8.length));
+            } else {
+                p.count++;
+            }
+            return hash;
+        }
+
+        public boolean isEmpty() {
+            return pending.isEmpty();
+        }
+    }
+
+    private static final class Pending {
+        private final String text;
+        private final int rawSize;
+        private long count = 1;
+
+        private Pending(String text, int rawSize) {
+            this.text = text;
+            this.rawSize = rawSize;
+        }
+    }
+
+    /**
+     * A appeler dans la transaction qui ecrit les lignes d'audit du lot.
+     */
+    public void write(Batch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> existing = new HashSet<>(repository.findExistingHashes(batch.pending.keySet()));
+        Instant now = Instant.now();
+        Timestamp at = Timestamp.from(now);
+        List<Object[]> upserts = new ArrayList<>();
+
+        for (Map.Entry<String, Pending> entry : batch.pending.entrySet()) {
+            Pending p = entry.getValue();
+            references.add(p.count);
+            rawBytesReferenced.add(p.rawSize * p.count);
+            if (existing.contains(entry.getKey()) && repository.addReferences(entry.getKey(), p.count, now) == 1) {
+                continue;
+            }
+            // Nouveau hash, ou blob purge depuis le SELECT
+            byte[] data = TextCompression.compress(p.text);
+            upserts.add(new Object[]{entry.getKey(), data, p.rawSize, p.count, at, at, p.count, at});
+            blobsWritten.increment();
+            rawBytesWritten.add(p.rawSize);
+            storedBytesWritten.add(data.length);
+        }
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, upserts);
+        }
+    }
+
+    /**
+     * Une reference de moins par hash (lignes d'audit supprimees ou archivees).
+     */
+    public void release(Iterable<String> hashes) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String hash : hashes) {
+            if (hash != null) {
+                counts.merge(hash, 1L, Long::sum);
+            }
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        transactionTemplate.executeWithoutResult(status ->
+                counts.forEach((hash, n) -> repository.addReferences(hash, -n, now)));
+        counts.values().forEach(released::add);
+    }
+
+    public int purgeUnreferenced() {
+        Integer deleted = transactionTemplate.execute(status -> repository.deleteUnreferenced());
+        int n = deleted == null ? 0 : deleted;
+        purged.add(n);
+        if (n > 0) {
+            log.info("[ORWELL][AUDIT] Unreferenced blobs purged. count={}", n);
+        }
+        return n;
+    }
+
+    /**
+     * Texte d'un hash, ou null s'il n'existe pas (lecture de l'historique).
+     */
+    public String text(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        return repository.findById(hash).map(ContentBlob::getText).orElse(null);
+    }
+
+    /**
+     * Textes de plusieurs hash en une requete ; les hash inconnus sont absents.
+     */
+    public Map<String, String> texts(Collection<String> hashes) {
+        Map<String, String> texts = new HashMap<>();
+        for (ContentBlob blob : repository.findAllById(hashes)) {
+            texts.put(blob.getHash(), blob.getText());
+        }
+        return texts;
+    }
+
+    public Map<String, Object> snapshot() {
+        long refs = references.sum();
+        long written = blobsWritten.sum();
+        long rawRef = rawBytesReferenced.sum();
+        long rawWritten = rawBytesWritten.sum();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("enabled", enabled);
+        payload.put("references", refs);
+        payload.put("blobsWritten", written);
+        payload.put("dedupRate", refs == 0 ? 0.0 : 1.0 - (double) written / refs);
+        payload.put("rawBytesReferenced", rawRef);
+        payload.put("rawBytesWritten", rawWritten);
+        payload.put("storedBytesWritten", storedBytesWritten.sum());
+        payload.put("bytesNotWritten", rawRef - rawWritten);
+        payload.put("released", released.sum());
+        payload.put("purged", purged.sum());
+        return payload;
+    }
+}
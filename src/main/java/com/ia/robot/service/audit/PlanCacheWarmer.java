@@ -0,0 +1,82 @@
+package com.ia.robot.service.audit;
+
+import com.ia.robot.ai.cache.PlanCache;
+import com.ia.robot.model.entity.AgentPlanSnapshot;
+import com.ia.robot.repository.AgentPlanSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Demarrage a chaud du cache de plans depuis agent_plan_snapshots.
+ *
+ * Au demarrage, les plans les plus recents ayant une cle (cache_key) sont
+ * recharges dans PlanCache : un noeud redemarre sert tout de suite les
+ * demandes /plan deja vues. Le plus recent gagne pour une meme cle ;
+ * les plans plus vieux que le TTL du cache sont ignores.
+ *
+ * orwell.cache.plan.warm-start=false pour demarrer a froid.
+ */
+@Component
+public class PlanCacheWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(PlanCacheWarmer.class);
+
+    private final PlanCache planCache;
+    private final AgentPlanSnapshotRepository snapshotRepository;
+    private final ContentBlobStore blobStore;
+    private final boolean warmStart;
+
+    public PlanCacheWarmer(PlanCache planCache,
+                           AgentPlanSnapshotRepository snapshotRepository,
+                           ContentBlobStore blobStore,
+                           @Value("${orwell.cache.plan.warm-start:true}") boolean warmStart) {
+        this.planCache = planCache;
+        this.snapshotRepository = snapshotRepository;
+        this.blobStore = blobStore;
+        this.warmStart = warmStart;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!warmStart || !planCache.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<AgentPlanSnapshot> snapshots = snapshotRepository.findByCacheKeyIsNotNullOrderByCreatedAtDesc(
+                    PageRequest.of(0, planCache.maxEntries()));
+            // Plans du blob store lus en une seule requete
+            Set<String> hashes = new HashSet<>();
+            for (AgentPlanSnapshot snapshot : snapshots) {
+                if (snapshot.getPlanHash() != null) {
+                    hashes.add(snapshot.getPlanHash());
+                }
+            }
+            Map<String, String> blobs = hashes.isEmpty() ? Map.of() : blobStore.texts(hashes);
+
+            int loaded = 0;
+            for (AgentPlanSnapshot snapshot : snapshots) {
+                String plan = snapshot.getPlanHash() != null
+                        ? blobs.get(snapshot.getPlanHash())
+                        : snapshot.getPlanJson();
+                if (planCache.warm(snapshot.getCacheKey(), plan, snapshot.getCreatedAt())) {
+                    loaded++;
+                }
+            }
+            log.info("[ORWELL][PLAN_CACHE] Warm start. snapshots={}, loaded={}, durationMs={}",
+                    snapshots.size(), loaded, (System.nanoTime() - start) / 1_000_000L);
+        } catch (RuntimeException e) {
+            log.warn("[ORWELL][PLAN_CACHE] Warm start skipped: {}", e.getMessage());
+        }
+    }
+}
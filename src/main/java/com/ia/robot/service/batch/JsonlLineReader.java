@@ -0,0 +1,77 @@
+package com.ia.robot.service.batch;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lecture en flux d'un fichier JSON Lines, avec la position en octets de chaque ligne.
+ *
+ * Decoupe sur l'octet '\n' (jamais present dans une sequence UTF-8 multi-octets),
+ * ce qui donne des positions exactes pour le point de reprise (PlanBatchCheckpoint).
+ * Les lignes vides sont sautees ; une ligne trop longue est renvoyee tronquee (truncated).
+ */
+final class JsonlLineReader implements Closeable {
+
+    record Line(long index, long startOffset, long endOffset, String text, boolean truncated) {
+    }
+
+    private final InputStream input;
+    private final int maxLineBytes;
+    private long offset;
+    private long index;
+
+    JsonlLineReader(Path file, long startOffset, long startIndex, int maxLineBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(startOffset);
+        this.input = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024);
+        this.maxLineBytes = maxLineBytes;
+        this.offset = startOffset;
+        this.index = startIndex;
+    }
+
+    /**
+     * Ligne suivante non vide, ou null en fin de fichier.
+     */
+    Line next() throws IOException {
+        while (true) {
+            long start = offset;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            boolean truncated = false;
+            boolean any = false;
+            int b;
+            while ((b = input.read()) != -1) {
+                offset++;
+                any = true;
+                if (b == '\n') {
+                    break;
+                }
+                if (bytes.size() < maxLineBytes) {
+                    bytes.write(b);
+                } else {
+                    truncated = true;
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            String text = bytes.toString(StandardCharsets.UTF_8).strip();
+            if (text.isEmpty()) {
+                continue;
+            }
+            return new Line(index++, start, offset, text, truncated);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,42 @@
+package com.ia.robot.service.batch;
+
+import java.time.Instant;
+
+/**
+ * Point de reprise d'un job de plans (fichier "<entree>.checkpoint.json").
+ *
+ * offset / nextIndex : premiere ligne pas encore traitee avec certitude
+ * (toutes les lignes avant sont terminees, succes ou echec).
+ * Mode provider : providerBatchId != null = lot soumis, en attente de resultat,
+ * couvrant les lignes [offset, chunkEndOffset[.
+ */
+public record PlanBatchCheckpoint(String input,
+                                  String mode,
+                                  long offset,
+                                  long nextIndex,
+                                  long ok,
+                                  long failed,
+                                  String providerBatchId,
+                                  long chunkEndOffset,
+                                  long chunkEndIndex,
+                                  Instant updatedAt) {
+
+    static PlanBatchCheckpoint start(String input, String mode) {
+        return new PlanBatchCheckpoint(input, mode, 0, 0, 0, 0, null, 0, 0, Instant.now());
+    }
+
+    PlanBatchCheckpoint advance(long newOffset, long newNextIndex, long newOk, long newFailed) {
+        if (providerBatchId != null && newNextIndex < chunkEndIndex) {
+            // Lot soumis pas encore entierement releve : la reprise relira son resultat
+            return new PlanBatchCheckpoint(input, mode, newOffset, newNextIndex, newOk, newFailed,
+                    providerBatchId, chunkEndOffset, chunkEndIndex, updatedAt);
+        }
+        return new PlanBatchCheckpoint(input, mode, newOffset, newNextIndex, newOk, newFailed,
+                null, 0, 0, Instant.now());
+    }
+
+    PlanBatchCheckpoint submitted(String batchId, long endOffset, long endIndex) {
+        return new PlanBatchCheckpoint(input, mode, offset, nextIndex, ok, failed,
+                batchId, endOffset, endIndex, Instant.now());
+    }
+}
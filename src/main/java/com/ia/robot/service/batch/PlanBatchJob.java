@@ -0,0 +1,816 @@
+package com.ia.robot.service.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.agent.ArchitectAgent;
+import com.ia.robot.ai.agent.Deadline;
+import com.ia.robot.ai.agent.SimpleAgentRunner;
+import com.ia.robot.ai.cache.PlanCacheKey;
+import com.ia.robot.ai.resilience.AgentScheduler;
+import com.ia.robot.config.ai.AgentExecutorConfig;
+import com.ia.robot.dto.request.AgentPlanRequest;
+import com.ia.robot.exception.BadRequestException;
+import com.ia.robot.exception.RateLimitedException;
+import com.ia.robot.service.ports.AgentPlanService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation de plans hors ligne : une AgentPlanRequest JSON par ligne (JSON Lines).
+ *
+ * Ligne d'entree :
+ *   {"domain": "...", "constraints": ["..."], "mobile": false, "forceRefresh": false, "id": "6e-maths-ch3"}
+ *
+ * Deux modes (orwell.batch.plans.mode) :
+ * - online : chaque ligne passe par AgentPlanService.generatePlanRaw, au plus
+ *   orwell.batch.plans.parallelism lignes en cours et
+ *   orwell.batch.plans.requests-per-minute demarrages par minute, sur le canal
+ *   BATCH (classe la moins prioritaire d'AgentScheduler). Le plan est
+ *   ecrit dans agent_plan_snapshots par l'audit du runner, de facon synchrone
+ *   sur ce canal. Quota atteint (429) : la ligne revient en file et les
+ *   demarrages sont suspendus retryAfterMs, sur le thread du job ;
+ * - provider : lots d'au plus orwell.batch.provider.max-requests lignes soumis a
+ *   l'API batch du fournisseur (ProviderBatchClient), releves toutes les
+ *   orwell.batch.provider.poll-interval-seconds ; chaque plan recu suit la meme
+ *   trace d'audit, ecrite avant de passer a la ligne suivante
+ *   (SimpleAgentRunner.recordOfflinePlan).
+ *
+ * Une ligne n'est terminee qu'une fois son plan en base (ou son erreur notee) :
+ * plan non ecrit = ligne en echec.
+ * Reprise : "<entree>.checkpoint.json" (PlanBatchCheckpoint) garde la position de
+ * la premiere ligne non terminee. Apres un arret brutal, le job reprend la ; les
+ * lignes deja terminees au-dela de ce point sont refaites (au moins une fois).
+ * En mode provider, un lot soumis est note avant d'attendre : la reprise relit
+ * son resultat au lieu de le soumettre a nouveau.
+ * Lignes en echec : "<entree>.errors.jsonl".
+ *
+ * Un seul job a la fois, sur un thread dedie. Lancement au demarrage si
+ * orwell.batch.plans.input est renseigne, ou via POST /api/ops/batch/plans/start.
+ */
+@Component
+public class PlanBatchJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PlanBatchJob.class);
+
+    public static final String ONLINE = "online";
+    public static final String PROVIDER = "provider";
+
+    private static final String ARCHITECT_AGENT_NAME = "ArchitectAgent";
+    private static final String CUSTOM_ID_PREFIX = "plan-";
+    // Ligne pas terminee : remise en file (quota), ou refaite a la reprise
+    private static final String NOT_DONE = "not done";
+
+    private final AgentPlanService planService;
+    private final SimpleAgentRunner agentRunner;
+    private final ProviderBatchClient providerClient;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService agentExecutor;
+
+    private final Path inputDir;
+    private final String startupInput;
+    private final String startupMode;
+    private final int parallelism;
+    private final long intervalNanos;
+    private final long lineTimeoutMs;
+    private final int maxLineBytes;
+    private final long checkpointIntervalMs;
+    private final int providerMaxRequests;
+    private final long pollIntervalMs;
+
+    private volatile Job current;
+
+    public PlanBatchJob(AgentPlanService planService,
+                        SimpleAgentRunner agentRunner,
+                        ProviderBatchClient providerClient,
+                        ObjectMapper objectMapper,
+                        @Qualifier(AgentExecutorConfig.AGENT_EXECUTOR) ExecutorService agentExecutor,
+                        @Value("${orwell.batch.plans.dir:data/batch}") String inputDir,
+                        @Value("${orwell.batch.plans.input:}") String startupInput,
+                        @Value("${orwell.batch.plans.mode:online}") String startupMode,
+                        @Value("${orwell.batch.plans.parallelism:4}") int parallelism,
+                        @Value("${orwell.batch.plans.requests-per-minute:60}") int requestsPerMinute,
+                        @Value("${orwell.batch.plans.line-timeout-ms:120000}") long lineTimeoutMs,
+                        @Value("${orwell.batch.plans.max-line-bytes:20000}") int maxLineBytes,
+                        @Value("${orwell.batch.plans.checkpoint-interval-ms:2000}") long checkpointIntervalMs,
+                        @Value("${orwell.batch.provider.max-requests:500}") int providerMaxRequests,
+                        @Value("${orwell.batch.provider.poll-interval-seconds:60}") long pollIntervalSeconds) {
+        this.planService = planService;
+        this.agentRunner = agentRunner;
+        this.providerClient = providerClient;
+        this.objectMapper = objectMapper;
+        this.agentExecutor = agentExecutor;
+        this.inputDir = Path.of(inputDir == null || inputDir.isBlank() ? "." : inputDir.trim())
+                .toAbsolutePath().normalize();
+        this.startupInput = startupInput == null ? "" : startupInput.trim();
+        this.startupMode = startupMode;
+        this.parallelism = Math.max(1, parallelism);
+        // 0 = pas de limite de debit
+        this.intervalNanos = requestsPerMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / requestsPerMinute : 0;
+        this.lineTimeoutMs = Math.max(1, lineTimeoutMs);
+        this.maxLineBytes = Math.max(1, maxLineBytes);
+        this.checkpointIntervalMs = Math.max(0, checkpointIntervalMs);
+        this.providerMaxRequests = Math.max(1, providerMaxRequests);
+        this.pollIntervalMs = TimeUnit.SECONDS.toMillis(Math.max(1, pollIntervalSeconds));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (startupInput.isEmpty()) {
+            return;
+        }
+        try {
+            start(startupInput, startupMode, false);
+        } catch (RuntimeException e) {
+            log.error("[ORWELL][PLAN_BATCH] Startup job not started. input={}, error={}", startupInput, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Job job = current;
+        if (job != null && job.running) {
+            job.stop.countDown();
+            try {
+                job.thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Lance un job (ou le reprend depuis son point de reprise).
+     *
+     * @param restart true = ignore le point de reprise et repart de la premiere ligne
+     */
+    public synchronized Map<String, Object> start(String input, String mode, boolean restart) {
+        Job running = current;
+        if (running != null && running.running) {
+            throw new BadRequestException("A plan batch job is already running. input=" + running.input);
+        }
+        if (input == null || input.isBlank()) {
+            throw new BadRequestException("Field 'input' is required.");
+        }
+        Path file = resolveInput(input.trim());
+        String effectiveMode = normalizeMode(mode);
+
+        PlanBatchCheckpoint checkpoint;
+        try {
+            checkpoint = restart ? null : loadCheckpoint(file);
+        } catch (IOException e) {
+            throw new BadRequestException("Unreadable checkpoint: " + checkpointPath(file), e);
+        }
+        if (checkpoint != null && !effectiveMode.equals(checkpoint.mode())) {
+            throw new BadRequestException("Checkpoint was written in mode '" + checkpoint.mode()
+                    + "'. Use the same mode or restart=true.");
+        }
+        if (checkpoint == null) {
+            checkpoint = PlanBatchCheckpoint.start(file.toString(), effectiveMode);
+        }
+
+        Job job = new Job(file, checkpoint);
+        job.thread = Thread.ofPlatform()
+                .name("orwell-plan-batch")
+                .daemon(true)
+                .unstarted(() -> run(job));
+        current = job;
+        job.thread.start();
+        log.info("[ORWELL][PLAN_BATCH] Started. input={}, mode={}, resumeAtLine={}, parallelism={}",
+                file, effectiveMode, checkpoint.nextIndex(), parallelism);
+        return snapshot();
+    }
+
+    /**
+     * Demande l'arret : plus de nouvelle ligne, les lignes en cours se terminent,
+     * puis le point de reprise est ecrit.
+     */
+    public boolean stop() {
+        Job job = current;
+        if (job == null || !job.running) {
+            return false;
+        }
+        job.stop.countDown();
+        return true;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("parallelism", parallelism);
+        payload.put("requestsPerMinute", intervalNanos > 0 ? TimeUnit.MINUTES.toNanos(1) / intervalNanos : 0);
+        payload.put("lineTimeoutMs", lineTimeoutMs);
+        payload.put("providerBaseUrl", providerClient.baseUrl());
+        Job job = current;
+        if (job == null) {
+            payload.put("running", false);
+            return payload;
+        }
+        PlanBatchCheckpoint checkpoint = job.checkpoint();
+        payload.put("running", job.running);
+        payload.put("input", job.input.toString());
+        payload.put("mode", checkpoint.mode());
+        payload.put("startedAt", job.startedAt.toString());
+        payload.put("finishedAt", job.finishedAt != null ? job.finishedAt.toString() : null);
+        payload.put("stopRequested", job.stop.getCount() == 0);
+        payload.put("nextLine", checkpoint.nextIndex());
+        payload.put("offset", checkpoint.offset());
+        payload.put("inputBytes", job.inputBytes);
+        payload.put("progress", job.inputBytes > 0
+                ? Math.round(checkpoint.offset() * 1000.0 / job.inputBytes) / 10.0 : 0.0);
+        payload.put("ok", checkpoint.ok());
+        payload.put("failed", checkpoint.failed());
+        payload.put("inFlight", job.inFlight.get());
+        payload.put("rateLimitedWaits", job.rateLimited.get());
+        payload.put("retryQueue", job.retries.size());
+        payload.put("providerBatchId", checkpoint.providerBatchId());
+        payload.put("providerStatus", job.providerStatus);
+        payload.put("lastError", job.lastError);
+        return payload;
+    }
+
+    /**
+     * Chemin d'entree resolu sous orwell.batch.plans.dir : un chemin relatif part de
+     * ce dossier, un chemin absolu doit s'y trouver. Les liens symboliques sont suivis
+     * avant la verification, un lien vers l'exterieur est refuse comme un "../".
+     */
+    private Path resolveInput(String input) {
+        Path file;
+        try {
+            file = inputDir.resolve(input).normalize();
+        } catch (InvalidPathException e) {
+            throw new BadRequestException("Invalid input path: " + input);
+        }
+        if (!file.startsWith(inputDir)) {
+            throw new BadRequestException("Input must be inside orwell.batch.plans.dir: " + input);
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new BadRequestException("Input file not found: " + file);
+        }
+        try {
+            if (!file.toRealPath().startsWith(inputDir.toRealPath())) {
+                throw new BadRequestException("Input must be inside orwell.batch.plans.dir: " + input);
+            }
+        } catch (IOException e) {
+            throw new BadRequestException("Input file not readable: " + file, e);
+        }
+        return file;
+    }
+
+    // -------------------------------------------------
+    // Execution
+    // -------------------------------------------------
+
+    private void run(Job job) {
+        try {
+            job.openErrors();
+            if (PROVIDER.equals(job.checkpoint().mode())) {
+                runProvider(job);
+            } else {
+                runOnline(job);
+            }
+            job.save();
+            PlanBatchCheckpoint done = job.checkpoint();
+            log.info("[ORWELL][PLAN_BATCH] {}. input={}, lines={}, ok={}, failed={}",
+                    job.stop.getCount() == 0 ? "Stopped" : "Finished",
+                    job.input, done.nextIndex(), done.ok(), done.failed());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.saveQuietly();
+        } catch (Exception e) {
+            job.lastError = e.getMessage();
+            job.saveQuietly();
+            log.error("[ORWELL][PLAN_BATCH] Failed. input={}, error={}", job.input, e.getMessage(), e);
+        } finally {
+            job.closeErrors();
+            job.finishedAt = Instant.now();
+            job.running = false;
+        }
+    }
+
+    private void runOnline(Job job) throws IOException, InterruptedException {
+        PlanBatchCheckpoint start = job.checkpoint();
+        Semaphore permits = new Semaphore(parallelism);
+        long nextSlot = System.nanoTime();
+        try (JsonlLineReader reader = new JsonlLineReader(job.input, start.offset(), start.nextIndex(), maxLineBytes)) {
+            boolean inputDone = false;
+            while (!job.stopRequested()) {
+                // Contre-pression : pas de lecture tant que "parallelism" lignes sont en cours
+                if (!permits.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+                    job.maybeSave();
+                    continue;
+                }
+                // Lignes refusees par quota d'abord : le point de reprise les attend
+                PlanLine plan = job.retries.poll();
+                if (plan == null && !inputDone) {
+                    JsonlLineReader.Line line = reader.next();
+                    inputDone = line == null;
+                    plan = inputDone ? null : parse(line);
+                }
+                if (plan == null) {
+                    permits.release();
+                    // Entree lue : les lignes en cours peuvent encore revenir en file
+                    if (permits.tryAcquire(parallelism, 200, TimeUnit.MILLISECONDS)) {
+                        permits.release(parallelism);
+                        if (job.retries.isEmpty()) {
+                            break;
+                        }
+                    }
+                    job.maybeSave();
+                    continue;
+                }
+                if (plan.error() != null) {
+                    permits.release();
+                    job.complete(plan, plan.error());
+                    continue;
+                }
+                // Debit : un demarrage toutes les intervalNanos au plus, rien pendant une pause de quota
+                long now = System.nanoTime();
+                long startAt = Math.max(nextSlot, job.resumeAtNanos.get());
+                if (startAt - now > 0 && job.stop.await(startAt - now, TimeUnit.NANOSECONDS)) {
+                    permits.release();
+                    break;
+                }
+                nextSlot = Math.max(System.nanoTime(), nextSlot) + intervalNanos;
+                submit(job, plan, permits);
+                job.maybeSave();
+            }
+            // Attend la fin des lignes en cours
+            while (!permits.tryAcquire(parallelism, 200, TimeUnit.MILLISECONDS)) {
+                job.maybeSave();
+            }
+            permits.release(parallelism);
+        }
+    }
+
+    private void submit(Job job, PlanLine plan, Semaphore permits) {
+        job.inFlight.incrementAndGet();
+        try {
+            agentExecutor.execute(() -> {
+                try {
+                    String error = generate(job, plan);
+                    if (error != NOT_DONE) {
+                        job.complete(plan, error);
+                    }
+                } finally {
+                    job.inFlight.decrementAndGet();
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            // Executor arrete ou sature : la ligne echoue, le job continue
+            job.inFlight.decrementAndGet();
+            permits.release();
+            job.complete(plan, "Executor rejected the line.");
+        }
+    }
+
+    /**
+     * Une tentative, sans attente sur le thread de l'executor.
+     *
+     * @return null si le plan a ete genere et ecrit, NOT_DONE si un quota l'a
+     *         refuse (ligne remise en file), sinon le message d'erreur
+     */
+    private String generate(Job job, PlanLine plan) {
+        try {
+            String raw = planService.generatePlanRaw(plan.request(),
+                    Deadline.afterMillis(lineTimeoutMs), AgentScheduler.CHANNEL_BATCH);
+            return raw == null || raw.isBlank() ? "Empty plan returned." : null;
+        } catch (RateLimitedException e) {
+            // Quota du tenant atteint : le job attend son tour au lieu d'echouer la ligne
+            job.rateLimited(plan, e.getRetryAfterMs());
+            return NOT_DONE;
+        } catch (RuntimeException e) {
+            log.warn("[ORWELL][PLAN_BATCH] Line failed. index={}, domain={}, error={}",
+                    plan.line().index(), plan.request().domain(), e.getMessage());
+            return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+    }
+
+    private void runProvider(Job job) throws IOException, InterruptedException {
+        while (!job.stopRequested()) {
+            PlanBatchCheckpoint checkpoint = job.checkpoint();
+            List<PlanLine> chunk;
+            if (checkpoint.providerBatchId() == null) {
+                chunk = readChunk(job, checkpoint.offset(), checkpoint.nextIndex(), Long.MAX_VALUE);
+                if (chunk.isEmpty()) {
+                    return;
+                }
+                if (chunk.stream().allMatch(p -> p.error() != null)) {
+                    chunk.forEach(p -> job.complete(p, p.error()));
+                    job.save();
+                    continue;
+                }
+                JsonlLineReader.Line last = chunk.get(chunk.size() - 1).line();
+                String batchId = submitChunk(job, chunk);
+                job.submitted(batchId, last.endOffset(), last.index() + 1);
+                job.save();
+                log.info("[ORWELL][PLAN_BATCH] Provider batch submitted. batchId={}, lines={}..{}",
+                        batchId, chunk.get(0).line().index(), last.index());
+            } else {
+                // Reprise : lot deja soumis, on relit ses lignes sans le soumettre a nouveau
+                chunk = readChunk(job, checkpoint.offset(), checkpoint.nextIndex(), checkpoint.chunkEndIndex());
+                if (chunk.isEmpty()) {
+                    throw new IOException("Input file changed since provider batch "
+                            + checkpoint.providerBatchId() + " was submitted. Use restart=true.");
+                }
+            }
+
+            ProviderBatchClient.BatchStatus status = awaitBatch(job, job.checkpoint().providerBatchId());
+            if (status == null) {
+                // Arret demande : le lot reste note dans le point de reprise
+                return;
+            }
+            collect(job, chunk, status);
+            job.save();
+        }
+    }
+
+    private String submitChunk(Job job, List<PlanLine> chunk) throws IOException, InterruptedException {
+        Path requests = Files.createTempFile("orwell-plan-batch-", ".jsonl");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(requests, StandardCharsets.UTF_8)) {
+                for (PlanLine plan : chunk) {
+                    if (plan.error() != null) {
+                        continue;
+                    }
+                    ArchitectAgent.PlanMessages messages = plan.messages();
+                    writer.write(providerClient.requestLine(CUSTOM_ID_PREFIX + plan.line().index(),
+                            messages.system(), messages.user(), messages.maxOutputTokens()));
+                    writer.newLine();
+                }
+            }
+            String fileId = providerClient.uploadBatchFile(requests);
+            Map<String, String> metadata = new LinkedHashMap<>();
+            metadata.put("job", "orwell-plan-batch");
+            metadata.put("input", job.input.getFileName().toString());
+            metadata.put("firstLine", String.valueOf(chunk.get(0).line().index()));
+            return providerClient.createBatch(fileId, metadata);
+        } finally {
+            Files.deleteIfExists(requests);
+        }
+    }
+
+    /**
+     * Releve l'etat du lot jusqu'a un etat terminal ; null si l'arret est demande.
+     */
+    private ProviderBatchClient.BatchStatus awaitBatch(Job job, String batchId)
+            throws IOException, InterruptedException {
+        while (true) {
+            ProviderBatchClient.BatchStatus status = providerClient.getBatch(batchId);
+            job.providerStatus = status.status();
+            if (status.isTerminal()) {
+                return status;
+            }
+            if (job.stop.await(pollIntervalMs, TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+        }
+    }
+
+    private void collect(Job job, List<PlanLine> chunk, ProviderBatchClient.BatchStatus status)
+            throws IOException, InterruptedException {
+        Map<String, String> plans = new HashMap<>();
+        if (status.outputFileId() != null) {
+            try {
+                providerClient.downloadLines(status.outputFileId(), line -> {
+                    try {
+                        JsonNode result = objectMapper.readTree(line);
+                        plans.put(result.path("custom_id").asText(), providerClient.resultContent(result));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        // Instant de soumission : le point de reprise n'est pas reecrit pendant l'attente
+        Instant submittedAt = job.checkpoint().updatedAt();
+        for (PlanLine plan : chunk) {
+            if (plan.error() != null) {
+                job.complete(plan, plan.error());
+                continue;
+            }
+            String content = plans.get(CUSTOM_ID_PREFIX + plan.line().index());
+            if (content == null || content.isBlank()) {
+                job.complete(plan, "No plan in provider batch result. batchId=" + status.id()
+                        + ", status=" + status.status());
+                continue;
+            }
+            try {
+                agentRunner.recordOfflinePlan(plan.context(), plan.messages().system(), plan.prompt(), content,
+                        cacheKey(plan.request()), submittedAt);
+            } catch (RuntimeException e) {
+                job.complete(plan, "Plan not persisted: " + e.getMessage());
+                continue;
+            }
+            job.complete(plan, null);
+        }
+        log.info("[ORWELL][PLAN_BATCH] Provider batch collected. batchId={}, status={}, plans={}, lines={}",
+                status.id(), status.status(), plans.size(), chunk.size());
+    }
+
+    /**
+     * Lignes [offset, untilIndex[ (au plus providerMaxRequests), prompts prets a soumettre.
+     */
+    private List<PlanLine> readChunk(Job job, long offset, long index, long untilIndex) throws IOException {
+        List<PlanLine> chunk = new ArrayList<>();
+        try (JsonlLineReader reader = new JsonlLineReader(job.input, offset, index, maxLineBytes)) {
+            JsonlLineReader.Line line;
+            while (chunk.size() < providerMaxRequests && (line = reader.next()) != null) {
+                if (line.index() >= untilIndex) {
+                    break;
+                }
+                chunk.add(withMessages(parse(line)));
+            }
+        }
+        return chunk;
+    }
+
+    // -------------------------------------------------
+    // Lignes
+    // -------------------------------------------------
+
+    private record PlanLine(JsonlLineReader.Line line,
+                            String id,
+                            AgentPlanRequest request,
+                            String error,
+                            AgentContext context,
+                            String prompt,
+                            ArchitectAgent.PlanMessages messages) {
+
+        private static PlanLine invalid(JsonlLineReader.Line line, String id, String error) {
+            return new PlanLine(line, id, null, error, null, null, null);
+        }
+    }
+
+    private PlanLine parse(JsonlLineReader.Line line) {
+        if (line.truncated()) {
+            return PlanLine.invalid(line, null, "Line too long (max " + maxLineBytes + " bytes)");
+        }
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line.text());
+        } catch (IOException e) {
+            return PlanLine.invalid(line, null, "Invalid JSON line.");
+        }
+        String id = node.hasNonNull("id") ? node.get("id").asText() : null;
+        String domain = node.path("domain").asText("").trim();
+        if (domain.isEmpty()) {
+            return PlanLine.invalid(line, id, "Missing required field: domain");
+        }
+        List<String> constraints = new ArrayList<>();
+        node.path("constraints").forEach(c -> {
+            if (!c.asText("").isBlank()) {
+                constraints.add(c.asText().trim());
+            }
+        });
+        AgentPlanRequest request = new AgentPlanRequest(domain, constraints,
+                node.path("mobile").asBoolean(false), node.path("forceRefresh").asBoolean(false));
+        return new PlanLine(line, id, request, null, null, null, null);
+    }
+
+    // Meme contexte que AgentPlanServiceImpl : subject = domaine (agent_plan_snapshots.domain)
+    private PlanLine withMessages(PlanLine plan) {
+        if (plan.error() != null) {
+            return plan;
+        }
+        try {
+            AgentContext context = AgentContext.builder()
+                    .agentName(ARCHITECT_AGENT_NAME)
+                    .subject(plan.request().domain())
+                    .build();
+            String prompt = planService.planPrompt(plan.request());
+            return new PlanLine(plan.line(), plan.id(), plan.request(), null, context, prompt,
+                    agentRunner.planMessages(context, prompt));
+        } catch (RuntimeException e) {
+            // Prompt rejete (budget de tokens, validation) : la ligne echoue seule
+            return PlanLine.invalid(plan.line(), plan.id(), e.getMessage());
+        }
+    }
+
+    private static PlanCacheKey cacheKey(AgentPlanRequest request) {
+        return PlanCacheKey.of(request.domain(), request.constraints(), request.mobile());
+    }
+
+    private static String normalizeMode(String mode) {
+        String m = mode == null || mode.isBlank() ? ONLINE : mode.trim().toLowerCase(Locale.ROOT);
+        if (!ONLINE.equals(m) && !PROVIDER.equals(m)) {
+            throw new BadRequestException("Unknown plan batch mode: " + mode + " (online | provider)");
+        }
+        return m;
+    }
+
+    // -------------------------------------------------
+    // Point de reprise
+    // -------------------------------------------------
+
+    private static Path checkpointPath(Path input) {
+        return input.resolveSibling(input.getFileName() + ".checkpoint.json");
+    }
+
+    private static Path errorsPath(Path input) {
+        return input.resolveSibling(input.getFileName() + ".errors.jsonl");
+    }
+
+    private PlanBatchCheckpoint loadCheckpoint(Path input) throws IOException {
+        Path path = checkpointPath(input);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        return objectMapper.readValue(path.toFile(), PlanBatchCheckpoint.class);
+    }
+
+    /**
+     * Etat d'un job : lignes terminees hors ordre, point de reprise, fichier d'erreurs.
+     */
+    private final class Job {
+
+        private final Path input;
+        private final long inputBytes;
+        private final Instant startedAt = Instant.now();
+        private final CountDownLatch stop = new CountDownLatch(1);
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger rateLimited = new AtomicInteger();
+        // Lignes refusees par quota, a relancer ; pas de demarrage avant resumeAtNanos
+        private final Queue<PlanLine> retries = new ConcurrentLinkedQueue<>();
+        private final AtomicLong resumeAtNanos = new AtomicLong(System.nanoTime());
+        // index -> ligne terminee, en attente des lignes precedentes
+        private final TreeMap<Long, Done> done = new TreeMap<>();
+
+        private Thread thread;
+        private PlanBatchCheckpoint checkpoint;
+        private BufferedWriter errors;
+        private long lastSaveNanos = System.nanoTime();
+        private volatile boolean running = true;
+        private volatile Instant finishedAt;
+        private volatile String providerStatus;
+        private volatile String lastError;
+
+        private record Done(long endOffset, boolean ok) {
+        }
+
+        private Job(Path input, PlanBatchCheckpoint checkpoint) {
+            this.input = input;
+            this.checkpoint = checkpoint;
+            long size;
+            try {
+                size = Files.size(input);
+            } catch (IOException e) {
+                size = -1;
+            }
+            this.inputBytes = size;
+        }
+
+        private boolean stopRequested() {
+            return stop.getCount() == 0;
+        }
+
+        private void rateLimited(PlanLine plan, long retryAfterMs) {
+            rateLimited.incrementAndGet();
+            long resumeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, retryAfterMs));
+            resumeAtNanos.accumulateAndGet(resumeAt, (a, b) -> b - a > 0 ? b : a);
+            retries.add(plan);
+        }
+
+        private synchronized PlanBatchCheckpoint checkpoint() {
+            return checkpoint;
+        }
+
+        private synchronized void submitted(String batchId, long endOffset, long endIndex) {
+            checkpoint = checkpoint.submitted(batchId, endOffset, endIndex);
+        }
+
+        /**
+         * Ligne terminee (error null = plan obtenu). Le point de reprise n'avance
+         * que sur la suite continue des lignes terminees.
+         */
+        private synchronized void complete(PlanLine plan, String error) {
+            if (error != null) {
+                writeError(plan, error);
+            }
+            done.put(plan.line().index(), new Done(plan.line().endOffset(), error == null));
+            long offset = checkpoint.offset();
+            long next = checkpoint.nextIndex();
+            long ok = checkpoint.ok();
+            long failed = checkpoint.failed();
+            Done d;
+            while ((d = done.remove(next)) != null) {
+                offset = d.endOffset();
+                next++;
+                if (d.ok()) {
+                    ok++;
+                } else {
+                    failed++;
+                }
+            }
+            if (next != checkpoint.nextIndex()) {
+                checkpoint = checkpoint.advance(offset, next, ok, failed);
+            }
+        }
+
+        private void maybeSave() throws IOException {
+            if (System.nanoTime() - lastSaveNanos >= TimeUnit.MILLISECONDS.toNanos(checkpointIntervalMs)) {
+                save();
+            }
+        }
+
+        /**
+         * Ecriture atomique (fichier temporaire puis renommage) : jamais de point de reprise tronque.
+         */
+        private void save() throws IOException {
+            PlanBatchCheckpoint snapshot = checkpoint();
+            Path target = checkpointPath(input);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            synchronized (this) {
+                if (errors != null) {
+                    errors.flush();
+                }
+            }
+            objectMapper.writeValue(tmp.toFile(), snapshot);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastSaveNanos = System.nanoTime();
+        }
+
+        private void saveQuietly() {
+            try {
+                save();
+            } catch (IOException e) {
+                log.warn("[ORWELL][PLAN_BATCH] Checkpoint not written. input={}, error={}", input, e.getMessage());
+            }
+        }
+
+        private synchronized void openErrors() throws IOException {
+            errors = Files.newBufferedWriter(errorsPath(input), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        private synchronized void closeErrors() {
+            if (errors == null) {
+                return;
+            }
+            try {
+                errors.close();
+            } catch (IOException e) {
+                log.warn("[ORWELL][PLAN_BATCH] Errors file not closed. input={}, error={}", input, e.getMessage());
+            }
+            errors = null;
+        }
+
+        private void writeError(PlanLine plan, String error) {
+            if (errors == null) {
+                return;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("index", plan.line().index());
+            if (plan.id() != null) {
+                entry.put("id", plan.id());
+            }
+            if (plan.request() != null) {
+                entry.put("domain", plan.request().domain());
+            }
+            entry.put("error", error);
+            entry.put("at", Instant.now().toString());
+            try {
+                errors.write(objectMapper.writeValueAsString(entry));
+                errors.newLine();
+            } catch (IOException e) {
+                log.warn("[ORWELL][PLAN_BATCH] Error line not written. index={}, error={}",
+                        plan.line().index(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.ia.robot.service.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.ai.transport.UpstreamHttpTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Client de l'API batch asynchrone du fournisseur (format OpenAI : /files + /batches).
+ *
+ * 1. uploadBatchFile : fichier JSON Lines de requetes /v1/chat/completions (purpose=batch) ;
+ * 2. createBatch : lot traite en differe (completion_window 24h, tarif reduit) ;
+ * 3. getBatch : etat du lot (validating, in_progress, completed, failed, expired, cancelled) ;
+ * 4. downloadLines : fichier de resultats, lu ligne par ligne.
+ *
+ * orwell.batch.provider.base-url permet de viser un bouchon local
+ * (tests : PlanBatchJobProviderTest, BatchApiStubController).
+ */
+@Component
+public class ProviderBatchClient {
+
+    public static final String CHAT_COMPLETIONS = "/v1/chat/completions";
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient http;
+    private final String baseUrl;
+    private final String model;
+    private final String apiKey;
+    private final Duration timeout;
+
+    public ProviderBatchClient(ObjectMapper objectMapper,
+                               UpstreamHttpTransport upstreamHttpTransport,
+                               @Value("${orwell.batch.provider.base-url:https://api.openai.com/v1}") String baseUrl,
+                               @Value("${orwell.batch.provider.model:${spring.ai.openai.chat.options.model:gpt-4o-mini}}") String model,
+                               @Value("${spring.ai.openai.api-key:}") String apiKey,
+                               @Value("${orwell.batch.provider.timeout-seconds:120}") long timeoutSeconds) {
+        this.objectMapper = objectMapper;
+        this.http = upstreamHttpTransport;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.model = model;
+        this.apiKey = apiKey;
+        this.timeout = Duration.ofSeconds(Math.max(1, timeoutSeconds));
+    }
+
+    public record BatchStatus(String id, String status, String outputFileId, String errorFileId,
+                              long completed, long failed) {
+
+        public boolean isTerminal() {
+            return switch (status) {
+                case "completed", "failed", "expired", "cancelled" -> true;
+                default -> false;
+            };
+        }
+    }
+
+    /**
+     * Une ligne du fichier d'entree : requete chat completions en mode JSON.
+     */
+    public String requestLine(String customId, String systemPrompt, String userPrompt, Integer maxTokens)
+            throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", model);
+        // system null = pas de message system (system par defaut du ChatClient absent ici)
+        body.put("messages", systemPrompt != null
+                ? List.of(Map.of("role", "system", "content", systemPrompt),
+                        Map.of("role", "user", "content", userPrompt))
+                : List.of(Map.of("role", "user", "content", userPrompt)));
+        if (maxTokens != null && maxTokens > 0) {
+            body.put("max_tokens", maxTokens);
+        }
+        body.put("response_format", Map.of("type", "json_object"));
+
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("custom_id", customId);
+        line.put("method", "POST");
+        line.put("url", CHAT_COMPLETIONS);
+        line.put("body", body);
+        return objectMapper.writeValueAsString(line);
+    }
+
+    public String uploadBatchFile(Path jsonl) throws IOException, InterruptedException {
+        String boundary = "orwell-" + UUID.randomUUID();
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"purpose\"\r\n\r\nbatch\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + jsonl.getFileName() + "\"\r\n"
+                + "Content-Type: application/jsonl\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+
+        // Fichier envoye en flux, jamais charge en memoire
+        HttpRequest request = authorized("/files")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString(head),
+                        HttpRequest.BodyPublishers.ofFile(jsonl),
+                        HttpRequest.BodyPublishers.ofString(tail)))
+                .build();
+        return json(request).path("id").asText();
+    }
+
+    public String createBatch(String inputFileId, Map<String, String> metadata) throws IOException, InterruptedException {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("input_file_id", inputFileId);
+        payload.put("endpoint", CHAT_COMPLETIONS);
+        payload.put("completion_window", "24h");
+        payload.put("metadata", metadata);
+
+        HttpRequest request = authorized("/batches")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payload)))
+                .build();
+        return json(request).path("id").asText();
+    }
+
+    public BatchStatus getBatch(String batchId) throws IOException, InterruptedException {
+        JsonNode root = json(authorized("/batches/" + batchId).GET().build());
+        JsonNode counts = root.path("request_counts");
+        return new BatchStatus(
+                root.path("id").asText(batchId),
+                root.path("status").asText(""),
+                textOrNull(root.path("output_file_id")),
+                textOrNull(root.path("error_file_id")),
+                counts.path("completed").asLong(),
+                counts.path("failed").asLong());
+    }
+
+    /**
+     * Contenu d'un fichier, ligne par ligne (resultats d'un lot).
+     */
+    public void downloadLines(String fileId, Consumer<String> onLine) throws IOException, InterruptedException {
+        HttpRequest request = authorized("/files/" + fileId + "/content").GET().build();
+        HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Provider file download failed. status=" + response.statusCode());
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    onLine.accept(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Texte de la reponse d'une ligne de resultat (null si la requete a echoue).
+     */
+    public String resultContent(JsonNode resultLine) {
+        JsonNode response = resultLine.path("response");
+        if (response.path("status_code").asInt() != 200) {
+            return null;
+        }
+        JsonNode content = response.path("body").path("choices").path(0).path("message").path("content");
+        return content.isTextual() ? content.asText() : null;
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    // -------------------------------------------------
+    // HTTP
+    // -------------------------------------------------
+
+    private HttpRequest.Builder authorized(String path) {
+        String key = apiKey == null || apiKey.isBlank() ? System.getenv("OPENAI_API_KEY") : apiKey;
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .timeout(timeout);
+        if (key != null && !key.isBlank()) {
+            builder.header("Authorization", "Bearer " + key);
+        }
+        return builder;
+    }
+
+    private JsonNode json(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Provider batch API error. uri=" + request.uri()
+                    + ", status=" + response.statusCode() + ", body=" + abbreviate(response.body()));
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node.isTextual() && !node.asText().isBlank() ? node.asText() : null;
+    }
+
+    private static String abbreviate(String body) {
+        if (body == null) {
+            return "";
+        }
+        return body.length() <= 300 ? body : body.substring(0, 300) + "...";
+    }
+}
@@ -2,6 +2,8 @@ package com.ia.robot.service.impl;
 
 import com.ia.robot.dto.request.AgentAskRequest;
 import com.ia.robot.dto.request.AgentPlanRequest;
+import com.ia.robot.service.audit.AgentRunRecord;
+import com.ia.robot.service.audit.AuditBatchWriter;
 import com.ia.robot.service.ports.AgentAuditService;
 
 import org.slf4j.Logger;
@@ -9,16 +11,23 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 /**
- * Audit V0: log console uniquement.
- *
- * V1:
- * - alimenter AgentRun / AgentPromptLog / AgentPlanSnapshot via repository.
+ * Audit :
+ * - logPlanRequest / logAskRequest : log console (tailles) ;
+ * - recordRun : AgentRun / AgentPromptLog / AgentPlanSnapshot, persistes
+ *   en arriere-plan par lots (AuditBatchWriter), hors du thread de la requete ;
+ * - recordRunDurably : memes tables, ecriture synchrone (AuditBatchWriter.write).
  */
 @Service
 public class AgentAuditServiceImpl implements AgentAuditService {
 
     private static final Logger log = LoggerFactory.getLogger(AgentAuditServiceImpl.class);
 
+    private final AuditBatchWriter batchWriter;
+
+    public AgentAuditServiceImpl(AuditBatchWriter batchWriter) {
+        this.batchWriter = batchWriter;
+    }
+
     @Override
     public void logPlanRequest(AgentPlanRequest request, String rawOutput) {
         log.info("[AGENT_PLAN] domain={}, mobile={}, constraintsCount={}, rawSize={}",
@@ -37,6 +46,16 @@ public class AgentAuditServiceImpl implements AgentAuditService {
         );
     }
 
+    @Override
+    public void recordRun(AgentRunRecord record) {
+        batchWriter.offer(record);
+    }
+
+    @Override
+    public void recordRunDurably(AgentRunRecord record) {
+        batchWriter.write(record);
+    }
+
     private String safe(String s) {
         return s == null ? "" : s;
     }
@@ -0,0 +1,220 @@
+package com.ia.robot.service.impl;
+
+import com.ia.robot.dto.response.AgentPromptLogView;
+import com.ia.robot.dto.response.AgentRunSummary;
+import com.ia.robot.dto.response.AgentRunView;
+import com.ia.robot.dto.response.HistoryPage;
+import com.ia.robot.exception.BadRequestException;
+import com.ia.robot.exception.NotFoundException;
+import com.ia.robot.model.entity.AgentPromptLog;
+import com.ia.robot.model.entity.AgentRun;
+import com.ia.robot.model.enums.AgentType;
+import com.ia.robot.model.enums.OutputFormat;
+import com.ia.robot.model.enums.RunStatus;
+import com.ia.robot.repository.AgentPromptLogRepository;
+import com.ia.robot.repository.AgentRunRepository;
+import com.ia.robot.service.archive.ArchivedRun;
+import com.ia.robot.service.archive.AuditArchive;
+import com.ia.robot.service.audit.ContentBlobStore;
+import com.ia.robot.service.ports.AgentHistoryService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Historique d'audit pagine par cle.
+ *
+ * - runs : tri created_at desc, id desc ; cursor = (created_at, id) de la derniere ligne ;
+ * - prompt logs d'un run : tri id croissant ; cursor = id de la derniere ligne.
+ *
+ * On lit limit + 1 lignes pour savoir s'il existe une page suivante, sans COUNT.
+ * Un run absent de la base est cherche dans l'archive locale (AuditArchive).
+ */
+@Service
+@Transactional(readOnly = true)
+public class AgentHistoryServiceImpl implements AgentHistoryService {
+
+    private final AgentRunRepository runRepository;
+    private final AgentPromptLogRepository promptLogRepository;
+    private final ContentBlobStore blobStore;
+    private final AuditArchive archive;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public AgentHistoryServiceImpl(AgentRunRepository runRepository,
+                                   AgentPromptLogRepository promptLogRepository,
+                                   ContentBlobStore blobStore,
+                                   AuditArchive archive,
+                                   @Value("${orwell.history.page-size:50}") int defaultLimit,
+                                   @Value("${orwell.history.max-page-size:500}") int maxLimit) {
+        this.runRepository = runRepository;
+        this.promptLogRepository = promptLogRepository;
+        this.blobStore = blobStore;
+        this.archive = archive;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.defaultLimit = Math.min(Math.max(1, defaultLimit), this.maxLimit);
+    }
+
+    @Override
+    public HistoryPage<AgentRunSummary> findRuns(String agentName, RunStatus status, Instant from, Instant to,
+                                                 String cursor, Integer limit) {
+        int size = pageSize(limit);
+        Instant seekCreatedAt = null;
+        Long seekId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor).split("\\|", 2);
+            if (parts.length != 2) {
+                throw new BadRequestException("Invalid cursor.");
+            }
+            try {
+                seekCreatedAt = Instant.parse(parts[0]);
+                seekId = Long.parseLong(parts[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor.");
+            }
+        }
+
+        List<AgentRunSummary> rows = runRepository.findSummaries(
+                blankToNull(agentName), status, from, to, seekCreatedAt, seekId, size + 1);
+        if (rows.size() <= size) {
+            return new HistoryPage<>(rows, null);
+        }
+        List<AgentRunSummary> items = rows.subList(0, size);
+        AgentRunSummary last = items.get(size - 1);
+        return new HistoryPage<>(List.copyOf(items), encodeCursor(last.createdAt() + "|" + last.id()));
+    }
+
+    @Override
+    public AgentRunView getRun(Long runId, boolean includeText) {
+        if (!includeText) {
+            Optional<AgentRunSummary> summary = runRepository.findSummaryById(runId);
+            if (summary.isPresent()) {
+                return new AgentRunView(summary.get(), null, null, null, false);
+            }
+        } else {
+            Optional<AgentRun> run = runRepository.findById(runId);
+            if (run.isPresent()) {
+                return withText(run.get());
+            }
+        }
+        return archive.findRun(runId)
+                .map(archived -> fromArchive(archived, includeText))
+                .orElseThrow(() -> new NotFoundException("Run not found: " + runId));
+    }
+
+    @Override
+    public HistoryPage<AgentPromptLogView> findPromptLogs(Long runId, String cursor, Integer limit,
+                                                          boolean includeText) {
+        int size = pageSize(limit);
+        long afterId = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                afterId = Long.parseLong(decodeCursor(cursor));
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor.");
+            }
+        }
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<AgentPromptLogView> rows;
+        if (includeText) {
+            List<AgentPromptLog> logs = promptLogRepository.findByRunIdAfter(runId, afterId, page);
+            Set<String> hashes = new HashSet<>();
+            for (AgentPromptLog log : logs) {
+                if (log.getContentHash() != null) {
+                    hashes.add(log.getContentHash());
+                }
+            }
+            Map<String, String> blobs = hashes.isEmpty() ? Map.of() : blobStore.texts(hashes);
+            rows = new ArrayList<>(logs.size());
+            for (AgentPromptLog log : logs) {
+                String content = log.getContentHash() != null ? blobs.get(log.getContentHash()) : log.getContent();
+                rows.add(new AgentPromptLogView(log.getId(), log.getRole(), log.getTokenEstimate(),
+                        log.getCreatedAt(), content));
+            }
+        } else {
+            rows = promptLogRepository.findViewsByRunId(runId, afterId, page);
+        }
+
+        if (rows.isEmpty()) {
+            // Run archive : journal complet lu dans l'archive, meme curseur (id > afterId), pagine en memoire
+            long after = afterId;
+            Optional<ArchivedRun> archived = archive.findRun(runId);
+            if (archived.isPresent()) {
+                rows = archived.get().promptLogs().stream()
+                        .filter(log -> log.id() > after)
+                        .limit(size + 1L)
+                        .map(log -> new AgentPromptLogView(log.id(), log.role(), log.tokenEstimate(),
+                                log.createdAt(), includeText ? log.content() : null))
+                        .toList();
+            }
+        }
+        if (rows.size() <= size) {
+            return new HistoryPage<>(rows, null);
+        }
+        List<AgentPromptLogView> items = List.copyOf(rows.subList(0, size));
+        return new HistoryPage<>(items, encodeCursor(String.valueOf(items.get(size - 1).id())));
+    }
+
+    // -------------------------------------------------
+    // Internes
+    // -------------------------------------------------
+
+    private AgentRunView withText(AgentRun run) {
+        String input = run.getInputPromptHash() != null ? blobStore.text(run.getInputPromptHash()) : run.getInputPrompt();
+        String output = run.getOutputRawHash() != null ? blobStore.text(run.getOutputRawHash()) : run.getOutputRaw();
+        AgentRunSummary summary = new AgentRunSummary(run.getId(), run.getRequestId(), run.getAgentName(),
+                run.getAgentType(), run.getOutputFormat(), run.getStatus(), run.getDomain(),
+                run.getStartedAt(), run.getFinishedAt(), run.getCreatedAt());
+        return new AgentRunView(summary, input, output, run.getErrorMessage(), false);
+    }
+
+    private static AgentRunView fromArchive(ArchivedRun run, boolean includeText) {
+        AgentRunSummary summary = new AgentRunSummary(run.id(), run.requestId(), run.agentName(),
+                run.agentType() != null ? AgentType.valueOf(run.agentType()) : null,
+                run.outputFormat() != null ? OutputFormat.valueOf(run.outputFormat()) : null,
+                run.status() != null ? RunStatus.valueOf(run.status()) : null,
+                run.domain(), run.startedAt(), run.finishedAt(), run.createdAt());
+        return includeText
+                ? new AgentRunView(summary, run.inputPrompt(), run.outputRaw(), run.errorMessage(), true)
+                : new AgentRunView(summary, null, null, null, true);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit < 1) {
+            throw new BadRequestException("limit must be >= 1.");
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    private static String encodeCursor(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor.");
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -3,10 +3,17 @@ package com.ia.robot.service.impl;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.agent.Deadline;
 import com.ia.robot.ai.agent.SimpleAgentRunner;
+import com.ia.robot.ai.cache.PlanCacheKey;
+import com.ia.robot.ai.prompt.PromptTemplate;
+import com.ia.robot.ai.trace.RequestTrace;
+import com.ia.robot.ai.trace.RequestTracer;
+import com.ia.robot.ai.usage.AgentMetrics;
 import com.ia.robot.dto.request.AgentPlanRequest;
 import com.ia.robot.dto.response.AgentPlanResponse;
 import com.ia.robot.exception.BadRequestException;
+import com.ia.robot.service.audit.AgentRunRecord;
 import com.ia.robot.service.ports.AgentAuditService;
 import com.ia.robot.service.ports.AgentPlanService;
 import org.springframework.stereotype.Service;
@@ -19,32 +26,63 @@ import java.util.Map;
  *
  * Pipeline:
  * - Validate request
- * - Build prompt
+ * - Build prompt (gabarit précompilé)
  * - Run ArchitectAgent via runner
  * - Parse output JSON de manière tolérante
  * - Audit
+ *
+ * generatePlan ouvre la trace de la requete (RequestTracer) avant le runner,
+ * pour que le parsing JSON et l'audit figurent dans son decoupage par etape.
  */
 @Service
 public class AgentPlanServiceImpl implements AgentPlanService {
 
     private static final String ARCHITECT_AGENT_NAME = "ArchitectAgent";
 
+    private static final String DEFAULT_TECHNICAL_CONSTRAINTS = "Java 21, Spring Boot, MySQL, Hibernate";
+
+    private static final String MOBILE_LINE = "Propose aussi les écrans React Native minimaux liés à ce domaine.\n";
+
+    // Prompt compilé une seule fois : seuls domaine, contraintes et option mobile varient
+    private static final PromptTemplate PLAN_PROMPT = PromptTemplate.compile("""
+            Je veux un plan d'architecture Spring Boot pour le domaine suivant : {{domain}}.
+            Contraintes techniques : {{constraints}}.
+            Respecte une architecture propre: controller/api, dto/request, dto/response, service/ports, service/impl, model/entity, repository.
+            {{mobile}}Réponds strictement en JSON conformément au schéma de l'agent.""");
+
     private final SimpleAgentRunner agentRunner;
     private final ObjectMapper objectMapper;
     private final AgentAuditService auditService;
+    private final RequestTracer tracer;
 
     public AgentPlanServiceImpl(SimpleAgentRunner agentRunner,
                                 ObjectMapper objectMapper,
-                                AgentAuditService auditService) {
+                                AgentAuditService auditService,
+                                RequestTracer tracer) {
         this.agentRunner = agentRunner;
         this.objectMapper = objectMapper;
         this.auditService = auditService;
+        this.tracer = tracer;
     }
 
     @Override
     public AgentPlanResponse generatePlan(AgentPlanRequest request) {
-        String raw = generatePlanRaw(request);
+        validate(request);
+
+        AgentContext context = tracer.join(planContext(request, null), AgentRunRecord.PLAN);
+        RequestTrace trace = context.getTrace();
+        String outcome = AgentMetrics.ERROR;
+        try {
+            String raw = runPlan(request, null, context);
+            AgentPlanResponse response = trace.span(RequestTrace.JSON_PARSE, () -> parse(raw));
+            outcome = AgentMetrics.SUCCESS;
+            return response;
+        } finally {
+            tracer.finish(trace, outcome);
+        }
+    }
 
+    private AgentPlanResponse parse(String raw) {
         // Parsing tolérant V0
         try {
             Map<String, Object> root = objectMapper.readValue(raw, new TypeReference<>() {});
@@ -72,22 +110,51 @@ public class AgentPlanServiceImpl implements AgentPlanService {
 
     @Override
     public String generatePlanRaw(AgentPlanRequest request) {
+        return generatePlanRaw(request, null);
+    }
+
+    @Override
+    public String generatePlanRaw(AgentPlanRequest request, Deadline deadline) {
+        return generatePlanRaw(request, deadline, null);
+    }
+
+    @Override
+    public String generatePlanRaw(AgentPlanRequest request, Deadline deadline, String channel) {
         validate(request);
+        return runPlan(request, deadline, planContext(request, channel));
+    }
 
+    private String runPlan(AgentPlanRequest request, Deadline deadline, AgentContext context) {
         String prompt = buildPrompt(request);
 
-        AgentContext context = AgentContext.builder()
-                .agentName(ARCHITECT_AGENT_NAME)
-                .build();
-
-        String raw = agentRunner.runArchitectPlan(context, prompt);
+        String raw = agentRunner.runArchitectPlan(context, prompt, deadline,
+                PlanCacheKey.of(request.domain(), request.constraints(), request.mobile()),
+                request.forceRefresh());
 
         // Audit V0 : no-op possible si impl minimaliste
-        auditService.logPlanRequest(request, raw);
+        context.getTrace().span(RequestTrace.AUDIT, () -> {
+            auditService.logPlanRequest(request, raw);
+            return null;
+        });
 
         return raw;
     }
 
+    private AgentContext planContext(AgentPlanRequest request, String channel) {
+        // subject = domaine : repris dans agent_runs.domain et agent_plan_snapshots.domain
+        return AgentContext.builder()
+                .agentName(ARCHITECT_AGENT_NAME)
+                .subject(request.domain())
+                .channel(channel)
+                .build();
+    }
+
+    @Override
+    public String planPrompt(AgentPlanRequest request) {
+        validate(request);
+        return buildPrompt(request);
+    }
+
     // -------------------------
     // Internal helpers
     // -------------------------
@@ -102,31 +169,12 @@ public class AgentPlanServiceImpl implements AgentPlanService {
     }
 
     private String buildPrompt(AgentPlanRequest request) {
-        String domain = request.domain();
         List<String> constraints = request.constraints();
-        boolean mobile = request.mobile();
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("Je veux un plan d'architecture Spring Boot pour le domaine suivant : ")
-                .append(domain).append(".\n");
-
-        if (constraints != null && !constraints.isEmpty()) {
-            sb.append("Contraintes techniques : ")
-                    .append(String.join(", ", constraints)).append(".\n");
-        } else {
-            sb.append("Contraintes techniques : Java 21, Spring Boot, MySQL, Hibernate.\n");
-        }
-
-        sb.append("Respecte une architecture propre: controller/api, dto/request, dto/response, ")
-                .append("service/ports, service/impl, model/entity, repository.\n");
-
-        if (mobile) {
-            sb.append("Propose aussi les écrans React Native minimaux liés à ce domaine.\n");
-        }
-
-        sb.append("Réponds strictement en JSON conformément au schéma de l'agent.");
+        String technical = constraints != null && !constraints.isEmpty()
+                ? String.join(", ", constraints)
+                : DEFAULT_TECHNICAL_CONSTRAINTS;
 
-        return sb.toString();
+        return PLAN_PROMPT.render(request.domain(), technical, request.mobile() ? MOBILE_LINE : "");
     }
 
     // -------------------------
@@ -2,16 +2,29 @@ package com.ia.robot.service.ports;
 
 import com.ia.robot.dto.request.AgentAskRequest;
 import com.ia.robot.dto.request.AgentPlanRequest;
+import com.ia.robot.service.audit.AgentRunRecord;
 
 /**
  * Contrat d'audit/traçabilité.
  *
  * V0: No-op possible.
- * V1: persistance vers AgentRun/AgentPromptLog.
+ * V1: persistance vers AgentRun/AgentPromptLog (recordRun, asynchrone).
  */
 public interface AgentAuditService {
 
     void logPlanRequest(AgentPlanRequest request, String rawOutput);
 
     void logAskRequest(AgentAskRequest request, String rawOutput);
+
+    /**
+     * Trace d'un appel agent termine (succes ou echec).
+     * Ne doit jamais bloquer l'appelant sur la base.
+     */
+    void recordRun(AgentRunRecord record);
+
+    /**
+     * Trace d'un resultat qui n'existe nulle part ailleurs (jobs hors ligne) :
+     * ecrite avant de rendre la main, exception si elle n'est pas validee.
+     */
+    void recordRunDurably(AgentRunRecord record);
 }
@@ -0,0 +1,26 @@
+package com.ia.robot.service.ports;
+
+import com.ia.robot.dto.response.AgentPromptLogView;
+import com.ia.robot.dto.response.AgentRunSummary;
+import com.ia.robot.dto.response.AgentRunView;
+import com.ia.robot.dto.response.HistoryPage;
+import com.ia.robot.model.enums.RunStatus;
+
+import java.time.Instant;
+
+/**
+ * Lecture de l'historique d'audit (AgentRun / AgentPromptLog).
+ *
+ * Listes paginees par cle (cursor opaque), sans colonne LOB ;
+ * les textes ne sont lus qu'a la demande (includeText).
+ */
+public interface AgentHistoryService {
+
+    HistoryPage<AgentRunSummary> findRuns(String agentName, RunStatus status, Instant from, Instant to,
+                                          String cursor, Integer limit);
+
+    AgentRunView getRun(Long runId, boolean includeText);
+
+    HistoryPage<AgentPromptLogView> findPromptLogs(Long runId, String cursor, Integer limit,
+                                                   boolean includeText);
+}
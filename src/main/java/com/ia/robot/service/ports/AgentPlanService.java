@@ -1,5 +1,6 @@
 package com.ia.robot.service.ports;
 
+import com.ia.robot.ai.agent.Deadline;
 import com.ia.robot.dto.request.AgentPlanRequest;
 import com.ia.robot.dto.response.AgentPlanResponse;
 
@@ -17,4 +18,21 @@ public interface AgentPlanService {
      * Retourne la sortie brute de l'agent (JSON string).
      */
     String generatePlanRaw(AgentPlanRequest request);
+
+    /**
+     * Comme generatePlanRaw(request), borne par deadline (null = sans limite).
+     */
+    String generatePlanRaw(AgentPlanRequest request, Deadline deadline);
+
+    /**
+     * Comme generatePlanRaw(request, deadline), pour un canal donne
+     * (AgentContext.channel, ex: "BATCH" ; null = non precise).
+     */
+    String generatePlanRaw(AgentPlanRequest request, Deadline deadline, String channel);
+
+    /**
+     * Prompt utilisateur envoye a l'agent pour cette demande
+     * (soumission hors ligne via l'API batch du fournisseur).
+     */
+    String planPrompt(AgentPlanRequest request);
 }
@@ -0,0 +1,32 @@
+package com.ia.robot.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Empreintes de contenu (cles de cache, blob store).
+ */
+public final class HashUtils {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private HashUtils() {
+    }
+
+    /**
+     * SHA-256 en hexadecimal minuscule (64 caracteres).
+     */
+    public static String sha256Hex(byte[] data) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available.", e);
+        }
+    }
+
+    public static String sha256Hex(String text) {
+        return sha256Hex(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,222 @@
+package com.ia.robot.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Compression des gros textes d'audit (prompts, reponses, plans JSON) stockes en LONGBLOB.
+ *
+ * Format : 1 octet de codec + donnees. Le codec est lu dans chaque valeur,
+ * pas dans la configuration : changer orwell.audit.compression.codec
+ * n'empeche pas de relire les lignes deja ecrites.
+ *
+ * - Textes courts (< minBytes) ou non compressibles : stockes en UTF-8 brut (codec NONE).
+ * - Codec, niveau et seuil : use(...) au demarrage (AuditCompressionConfig), comme ClockUtils.
+ *
+ * Compteurs (octets bruts / stockes, temps de compression) : snapshot().
+ */
+public final class TextCompression {
+
+    public enum Codec {
+        NONE((byte) 0),
+        DEFLATE((byte) 1),
+        GZIP((byte) 2);
+
+        private final byte tag;
+
+        Codec(byte tag) {
+            this.tag = tag;
+        }
+
+        public static Codec from(String value) {
+            if (value == null || value.isBlank()) {
+                return DEFLATE;
+            }
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+
+        private static Codec fromTag(byte tag) {
+            for (Codec codec : values()) {
+                if (codec.tag == tag) {
+                    return codec;
+                }
+            }
+            throw new IllegalArgumentException("Unknown compression tag: " + tag);
+        }
+    }
+
+    private static volatile Codec codec = Codec.DEFLATE;
+    private static volatile int level = Deflater.DEFAULT_COMPRESSION;
+    private static volatile int minBytes = 256;
+
+    private static final LongAdder compressed = new LongAdder();
+    private static final LongAdder rawBytes = new LongAdder();
+    private static final LongAdder storedBytes = new LongAdder();
+    private static final LongAdder compressNanos = new LongAdder();
+    private static final LongAdder decompressed = new LongAdder();
+    private static final LongAdder decompressNanos = new LongAdder();
+
+    private TextCompression() {
+    }
+
+    public static void use(Codec newCodec, int newLevel, int newMinBytes) {
+        codec = newCodec != null ? newCodec : Codec.DEFLATE;
+        level = newLevel;
+        minBytes = Math.max(0, newMinBytes);
+    }
+
+    public static Codec codec() {
+        return codec;
+    }
+
+    public static byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        Codec c = utf8.length < minBytes ? Codec.NONE : codec;
+
+        byte[] stored = switch (c) {
+            case NONE -> null;
+            case DEFLATE -> deflate(utf8);
+            case GZIP -> gzip(utf8);
+        };
+        // Non compressible (ou NONE) : brut, pour ne jamais stocker plus que le texte
+        if (stored == null || stored.length >= utf8.length + 1) {
+            stored = raw(utf8);
+        }
+
+        compressed.increment();
+        rawBytes.add(utf8.length);
+        storedBytes.add(stored.length);
+        compressNanos.add(System.nanoTime() - start);
+        return stored;
+    }
+
+    public static String decompress(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored.length == 0) {
+            return "";
+        }
+        long start = System.nanoTime();
+        String text = switch (Codec.fromTag(stored[0])) {
+            case NONE -> new String(stored, 1, stored.length - 1, StandardCharsets.UTF_8);
+            case DEFLATE -> new String(inflate(stored), StandardCharsets.UTF_8);
+            case GZIP -> new String(gunzip(stored), StandardCharsets.UTF_8);
+        };
+        decompressed.increment();
+        decompressNanos.add(System.nanoTime() - start);
+        return text;
+    }
+
+    public static Map<String, Object> snapshot() {
+        long n = compressed.sum();
+        long raw = rawBytes.sum();
+        long stored = storedBytes.sum();
+        long d = decompressed.sum();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("codec", codec.name().toLowerCase(Locale.ROOT));
+        payload.put("level", level);
+        payload.put("minBytes", minBytes);
+        payload.put("compressed", n);
+        payload.put("rawBytes", raw);
+        payload.put("storedBytes", stored);
+        payload.put("ratio", raw == 0 ? 0.0 : (double) stored / raw);
+        payload.put("avgCompressMicros", n == 0 ? 0.0 : compressNanos.sum() / 1_000.0 / n);
+        payload.put("decompressed", d);
+        payload.put("avgDecompressMicros", d == 0 ? 0.0 : decompressNanos.sum() / 1_000.0 / d);
+        return payload;
+    }
+
+    // -------------------------------------------------
+    // Codecs
+    // -------------------------------------------------
+
+    private static byte[] deflate(byte[] utf8) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            // Pire cas deflate ~ taille + 5 octets par bloc de 16 Ko
+            byte[] out = new byte[1 + utf8.length + utf8.length / 16_000 * 5 + 64];
+            int n = 1;
+            while (!deflater.finished()) {
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            out[0] = Codec.DEFLATE.tag;
+            return Arrays.copyOf(out, n);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(stored, 1, stored.length - 1);
+            byte[] out = new byte[Math.max(64, stored.length * 4)];
+            int n = 0;
+            while (!inflater.finished()) {
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int read = inflater.inflate(out, n, out.length - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated deflate data.");
+                }
+                n += read;
+            }
+            return Arrays.copyOf(out, n);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted deflate data.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] gzip(byte[] utf8) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(utf8.length / 3 + 32);
+        bytes.write(Codec.GZIP.tag);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            gz.write(utf8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] stored) {
+        try (GZIPInputStream gz = new GZIPInputStream(
+                new ByteArrayInputStream(stored, 1, stored.length - 1))) {
+            return gz.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] raw(byte[] utf8) {
+        byte[] out = new byte[utf8.length + 1];
+        out[0] = Codec.NONE.tag;
+        System.arraycopy(utf8, 0, out, 1, utf8.length);
+        return out;
+    }
+}
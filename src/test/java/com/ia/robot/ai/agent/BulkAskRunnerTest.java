@@ -0,0 +1,88 @@
+package com.ia.robot.ai.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.ai.resilience.AdmissionControl;
+import com.ia.robot.ai.tokens.TokenBudgets;
+import com.ia.robot.ai.tokens.TokenCounter;
+import com.ia.robot.config.ai.AgentExecutorConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BulkAskRunnerTest {
+
+    private final AgentExecutorConfig config = new AgentExecutorConfig();
+    private ExecutorService agentExecutor;
+    private ExecutorService bulkExecutor;
+    private AdmissionControl admission;
+    private BulkAskRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        agentExecutor = config.agentExecutor(false, 2);
+        bulkExecutor = config.bulkExecutor(false, 2);
+        // Seul le seau "user" limite : 1 requete, pas de recharge pendant le test
+        admission = new AdmissionControl(new TokenCounter("gpt-4o-mini", "gpt-4o"), true, 1, 0, 0, 100,
+                List.of("Etablissement non precise"), 0, 0, "", 0, 0, "", 0.001, 0);
+        SimpleAgentRunner agentRunner = mock(SimpleAgentRunner.class);
+        when(agentRunner.runAsk(any(), anyString(), any())).thenAnswer(call -> {
+            AgentContext context = AgentContext.forGabonStudent("Libreville", "Lycee Leon Mba", "Terminale", "maths");
+            admission.admit(context, TokenBudgets.ASK, call.getArgument(1));
+            return "ok";
+        });
+        runner = new BulkAskRunner(agentRunner, new ObjectMapper(), agentExecutor, bulkExecutor,
+                1, 30_000, 20_000, 100, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        agentExecutor.shutdownNow();
+        bulkExecutor.shutdownNow();
+    }
+
+    @Test
+    void bulkLinesConsumeTheUserBucketOfTheCaller() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated("prof.nze", null, List.of()));
+        byte[] input = """
+                {"question":"Theoreme de Pythagore ?"}
+                {"question":"Theoreme de Thales ?"}
+                """.getBytes(StandardCharsets.UTF_8);
+
+        CountDownLatch done = new CountDownLatch(1);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter() {
+            @Override
+            public void complete() {
+                super.complete();
+                done.countDown();
+            }
+        };
+
+        runner.start(new ByteArrayInputStream(input), emitter, Deadline.afterMillis(30_000));
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(runner.snapshot()).containsEntry("ok", 1L).containsEntry("failed", 1L);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> user = (Map<String, Object>) ((Map<String, Object>) admission.snapshot().get("scopes"))
+                .get(AdmissionControl.USER);
+        assertThat(user).containsEntry("admitted", 1L).containsEntry("rejected", 1L);
+    }
+}
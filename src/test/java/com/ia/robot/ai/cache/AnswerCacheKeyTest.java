@@ -0,0 +1,51 @@
+package com.ia.robot.ai.cache;
+
+import com.ia.robot.ai.agent.AgentContext;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Identite d'une question /ask : normalisation et champs ignores.
+ */
+class AnswerCacheKeyTest {
+
+    @Test
+    void questionIsNormalized() {
+        AgentContext ctx = AgentContext.forGabonStudent("Libreville", "Lycee Leon Mba", "Terminale", "Mathematiques");
+
+        AnswerCacheKey key = AnswerCacheKey.of(ctx, "  Qu’est-ce qu'une   FRACTION ?? ");
+
+        assertThat(key.question()).isEqualTo("qu'est-ce qu'une fraction");
+        assertThat(key).isEqualTo(AnswerCacheKey.of(ctx, "qu'est-ce qu'une fraction"));
+        assertThat(AnswerCacheKey.of(ctx, "Équation du second degré"))
+                .isEqualTo(AnswerCacheKey.of(ctx, "equation du second degre."));
+    }
+
+    @Test
+    void cityAndEstablishmentDoNotSplitTheEntry() {
+        AnswerCacheKey libreville = AnswerCacheKey.of(AgentContext.forGabonStudent(
+                "Libreville", "Lycee Leon Mba", "Terminale", "Mathematiques"), "Pythagore");
+        AnswerCacheKey portGentil = AnswerCacheKey.of(AgentContext.forGabonStudent(
+                "Port-Gentil", "Lycee de Mandji", "terminale", "mathématiques"), "Pythagore");
+        AnswerCacheKey premiere = AnswerCacheKey.of(AgentContext.forGabonStudent(
+                "Libreville", "Lycee Leon Mba", "Premiere", "Mathematiques"), "Pythagore");
+
+        assertThat(portGentil).isEqualTo(libreville);
+        assertThat(premiere).isNotEqualTo(libreville);
+    }
+
+    @Test
+    void missingFieldsTakeThePromptDefaults() {
+        AgentContext noProfile = AgentContext.builder().profileType(" ").educationLevel("Terminale")
+                .subject("Physique").build();
+        AgentContext student = AgentContext.builder().profileType("ELEVE").educationLevel("Terminale")
+                .subject("Physique").locale("fr-GA").build();
+
+        assertThat(AnswerCacheKey.of(noProfile, "Loi d'Ohm")).isEqualTo(AnswerCacheKey.of(student, "Loi d'Ohm"));
+        assertThat(AnswerCacheKey.of(null, "Loi d'Ohm").profileType()).isEqualTo("eleve");
+        assertThat(AnswerCacheKey.of(null, "Loi d'Ohm"))
+                .isEqualTo(AnswerCacheKey.of(AgentContext.forGabonStudent("Libreville", "Etablissement non precise",
+                        "niveau non precise", "matiere generale"), "Loi d'Ohm"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.ia.robot.ai.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cache de reponses : admission TinyLFU a capacite pleine, TTL standard et LIVE.
+ */
+class AnswerCacheTest {
+
+    private static AnswerCacheKey key(String question) {
+        return new AnswerCacheKey(question, "eleve", "terminale", "mathematiques", "fr-ga");
+    }
+
+    @Test
+    void rareQuestionDoesNotEvictAFrequentOne() {
+        AnswerCache cache = new AnswerCache(true, 2, 3_600, 900);
+        cache.put(key("a"), "A", false);
+        cache.put(key("b"), "B", false);
+        for (int i = 0; i < 3; i++) {
+            cache.get(key("b"));
+        }
+        // "a" le plus recent : "b" devient la victime LRU
+        cache.get(key("a"));
+
+        cache.get(key("c"));
+        cache.put(key("c"), "C", false);
+        assertThat(cache.get(key("c"))).isNull();
+        assertThat(cache.snapshot()).containsEntry("admissionRejections", 1L);
+
+        // Demandee plus souvent que "b" : "c" prend sa place
+        for (int i = 0; i < 3; i++) {
+            cache.get(key("c"));
+        }
+        cache.put(key("c"), "C", false);
+        assertThat(cache.get(key("c"))).isEqualTo("C");
+        assertThat(cache.get(key("b"))).isNull();
+        assertThat(cache.get(key("a"))).isEqualTo("A");
+        assertThat(cache.snapshot()).containsEntry("evictions", 1L).containsEntry("size", 2);
+    }
+
+    @Test
+    void liveAnswersExpireBeforeStandardOnes() throws Exception {
+        AnswerCache cache = new AnswerCache(true, 10, 3_600, 1);
+        cache.put(key("standard"), "S", false);
+        cache.put(key("live"), "L", true);
+        assertThat(cache.get(key("live"))).isEqualTo("L");
+
+        Thread.sleep(1_100);
+
+        assertThat(cache.get(key("live"))).isNull();
+        assertThat(cache.get(key("standard"))).isEqualTo("S");
+        assertThat(cache.snapshot()).containsEntry("expirations", 1L).containsEntry("size", 1);
+    }
+
+    @Test
+    void zeroTtlDisablesCachingForThatPath() {
+        AnswerCache cache = new AnswerCache(true, 10, 3_600, 0);
+        cache.put(key("live"), "L", true);
+        cache.put(key("blank"), " ", false);
+
+        assertThat(cache.get(key("live"))).isNull();
+        assertThat(cache.get(key("blank"))).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
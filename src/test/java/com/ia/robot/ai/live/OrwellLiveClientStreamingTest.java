@@ -0,0 +1,129 @@
+package com.ia.robot.ai.live;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.ai.transport.UpstreamHttpTransport;
+import com.ia.robot.ai.usage.PromptCacheStats;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Mode LIVE streame contre un serveur HTTP local qui rejoue des flux SSE
+ * enregistres (src/test/resources/live/*.txt). Aucun appel reseau externe.
+ */
+class OrwellLiveClientStreamingTest {
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final AtomicReference<String> recording = new AtomicReference<>();
+    private final AtomicReference<String> lastRequestBody = new AtomicReference<>();
+
+    private PromptCacheStats promptCacheStats;
+    private OrwellLiveClient client;
+
+    @BeforeEach
+    void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/responses", exchange -> {
+            lastRequestBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] body = readRecording(recording.get());
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        executor = Executors.newCachedThreadPool();
+        UpstreamHttpTransport transport = new UpstreamHttpTransport(HttpClient.newBuilder().executor(executor).build());
+        promptCacheStats = new PromptCacheStats("prefix-cache", 0.15, 0.075, 0.60, 2.50, 1.25, 10.00);
+        client = new OrwellLiveClient(new ObjectMapper(), transport, promptCacheStats, 5);
+        ReflectionTestUtils.setField(client, "enabled", true);
+        ReflectionTestUtils.setField(client, "streaming", true);
+        ReflectionTestUtils.setField(client, "model", "gpt-4o");
+        ReflectionTestUtils.setField(client, "reasoningEffort", "low");
+        ReflectionTestUtils.setField(client, "apiKey", "test-key");
+        ReflectionTestUtils.setField(client, "baseUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1");
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void forwardsTextDeltasInOrderAndReturnsFullText() {
+        recording.set("live/responses-stream-web-search.txt");
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        String text = client.streamLive("system", "Quand a lieu le BEPC ?", 5_000, deltas::add);
+
+        assertThat(deltas).containsExactly("Le BEPC ", "se déroule ", "en juin.");
+        assertThat(text).isEqualTo("Le BEPC se déroule en juin.");
+        assertThat(lastRequestBody.get()).contains("\"stream\":true");
+    }
+
+    @Test
+    void blockingAskUsesTheSameStream() {
+        recording.set("live/responses-stream-web-search.txt");
+
+        assertThat(client.askLive("system", "Quand a lieu le BEPC ?")).isEqualTo("Le BEPC se déroule en juin.");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordsCachedInputTokensFromCompletedEvent() {
+        recording.set("live/responses-stream-web-search.txt");
+
+        client.streamLive("system", "Quand a lieu le BEPC ?", 5_000, delta -> { });
+
+        Map<String, Object> endpoints = (Map<String, Object>) promptCacheStats.snapshot().get("endpoints");
+        Map<String, Object> live = (Map<String, Object>) endpoints.get(PromptCacheStats.LIVE);
+        assertThat(live).containsEntry("calls", 1L)
+                .containsEntry("inputTokens", 1312L)
+                .containsEntry("cachedInputTokens", 1152L)
+                .containsEntry("outputTokens", 9L)
+                .containsEntry("cacheHitCallRate", 1.0);
+    }
+
+    @Test
+    void failedResponseSurfacesUpstreamMessage() {
+        recording.set("live/responses-stream-failed.txt");
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        assertThatThrownBy(() -> client.streamLive("system", "question", 5_000, deltas::add))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("The model is overloaded.");
+        assertThat(deltas).isEmpty();
+    }
+
+    private static byte[] readRecording(String resource) throws IOException {
+        try (InputStream in = OrwellLiveClientStreamingTest.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing recording: " + resource);
+            }
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.ia.robot.ai.resilience;
+
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.tokens.TokenBudgets;
+import com.ia.robot.exception.RateLimitedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Files ponderees d'AgentScheduler : une seule place, ordre de passage observe.
+ */
+class AgentSchedulerTest {
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final List<String> served = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void stopCallers() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void classifiesByEndpointProfileAndChannel() {
+        assertThat(AgentScheduler.classify(context("ELEVE", "MOBILE", "Lycee A"), TokenBudgets.ASK))
+                .isEqualTo(AgentScheduler.INTERACTIVE);
+        assertThat(AgentScheduler.classify(context("ADMIN", "BACKEND", null), TokenBudgets.PLAN))
+                .isEqualTo(AgentScheduler.BACKGROUND);
+        assertThat(AgentScheduler.classify(context(null, "BATCH", null), TokenBudgets.PLAN))
+                .isEqualTo(AgentScheduler.BATCH);
+        assertThat(AgentScheduler.classify(context("ENSEIGNANT", "WEB", "Lycee A"), TokenBudgets.PLAN))
+                .isEqualTo(AgentScheduler.STANDARD);
+    }
+
+    @Test
+    void servesWaitingClassesInProportionToTheirWeight() throws Exception {
+        AgentScheduler scheduler = scheduler(1, 5_000, "interactive=3:100;standard=1:100;background=1:100;batch=1:100");
+        AgentScheduler.Ticket running = scheduler.acquire(context("ADMIN", "BACKEND", null), TokenBudgets.PLAN);
+
+        for (int i = 0; i < 6; i++) {
+            enqueue(scheduler, context("ADMIN", "BACKEND", null), TokenBudgets.PLAN, "background");
+            enqueue(scheduler, context("ELEVE", "MOBILE", "Lycee A"), TokenBudgets.ASK, "interactive");
+        }
+        awaitQueued(scheduler, AgentScheduler.BACKGROUND, 6);
+        awaitQueued(scheduler, AgentScheduler.INTERACTIVE, 6);
+
+        running.release();
+        awaitServed(12);
+
+        // Poids 3 contre 1 : 6 questions et 2 plans sur les 8 premieres places
+        assertThat(served.subList(0, 8)).filteredOn("interactive"::equals).hasSize(6);
+        assertThat(classStats(scheduler, AgentScheduler.INTERACTIVE)).containsEntry("queuedCalls", 6L);
+    }
+
+    @Test
+    void takesEstablishmentsInTurnWithinAClass() throws Exception {
+        AgentScheduler scheduler = scheduler(1, 5_000, "interactive=8:100;standard=4:100;background=2:100;batch=1:100");
+        AgentScheduler.Ticket running = scheduler.acquire(context("ELEVE", "MOBILE", "Lycee A"), TokenBudgets.ASK);
+
+        for (int i = 0; i < 3; i++) {
+            enqueue(scheduler, context("ELEVE", "MOBILE", "Lycee A"), TokenBudgets.ASK, "A");
+            awaitQueued(scheduler, AgentScheduler.INTERACTIVE, i + 1);
+        }
+        enqueue(scheduler, context("ELEVE", "MOBILE", "College B"), TokenBudgets.ASK, "B");
+        awaitQueued(scheduler, AgentScheduler.INTERACTIVE, 4);
+
+        running.release();
+        awaitServed(4);
+
+        assertThat(served).containsExactly("A", "B", "A", "A");
+    }
+
+    @Test
+    void capsAClassShareAndRejectsAfterTheQueueWait() {
+        AgentScheduler scheduler = scheduler(4, 200, "interactive=8:100;standard=4:75;background=2:50;batch=1:25");
+        AgentContext admin = context("ADMIN", "BACKEND", null);
+        scheduler.acquire(admin, TokenBudgets.PLAN);
+        scheduler.acquire(admin, TokenBudgets.PLAN);
+
+        // 50 % de 4 places : le troisieme plan attend malgre les places libres
+        assertThatThrownBy(() -> scheduler.acquire(admin, TokenBudgets.PLAN))
+                .isInstanceOfSatisfying(RateLimitedException.class,
+                        e -> assertThat(e.getKey()).isEqualTo(AgentScheduler.BACKGROUND));
+        // ... et les questions des eleves passent toujours
+        AgentScheduler.Ticket ask = scheduler.acquire(context("ELEVE", "MOBILE", "Lycee A"), TokenBudgets.ASK);
+        assertThat(ask.workClass()).isEqualTo(AgentScheduler.INTERACTIVE);
+        assertThat(classStats(scheduler, AgentScheduler.BACKGROUND)).containsEntry("timeouts", 1L);
+    }
+
+    private static AgentScheduler scheduler(int maxConcurrent, long maxQueueWaitMs, String classes) {
+        return new AgentScheduler(true, maxConcurrent, maxQueueWaitMs, 100, classes);
+    }
+
+    private static AgentContext context(String profileType, String channel, String establishment) {
+        return AgentContext.builder()
+                .tenant("GABON_EDU")
+                .profileType(profileType)
+                .channel(channel)
+                .establishment(establishment)
+                .build();
+    }
+
+    // L'appel servi se note puis rend sa place : une place => ordre strict
+    private void enqueue(AgentScheduler scheduler, AgentContext context, String endpoint, String label) {
+        callers.submit(() -> {
+            AgentScheduler.Ticket ticket = scheduler.acquire(context, endpoint);
+            served.add(label);
+            ticket.release();
+        });
+    }
+
+    private static void awaitQueued(AgentScheduler scheduler, String workClass, int queued) throws InterruptedException {
+        for (int i = 0; i < 100 && (int) classStats(scheduler, workClass).get("queued") < queued; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(classStats(scheduler, workClass)).containsEntry("queued", queued);
+    }
+
+    private void awaitServed(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && served.size() < count; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(served).hasSize(count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> classStats(AgentScheduler scheduler, String workClass) {
+        return (Map<String, Object>) ((Map<String, Object>) scheduler.snapshot().get("classes")).get(workClass);
+    }
+}
@@ -0,0 +1,56 @@
+package com.ia.robot.ai.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Permissions du circuit breaker : une permission annulee avant l'appel est rendue.
+ */
+class CircuitBreakerTest {
+
+    @Test
+    void releasedHalfOpenPermissionIsNotLost() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+        TimeUnit.MILLISECONDS.sleep(30);
+
+        CircuitBreaker.Permission cancelled = breaker.tryAcquire();
+        assertThat(cancelled).isNotNull();
+        assertThat(breaker.tryAcquire()).isNull();
+
+        // Appel annule encore en file : rendu, le seul essai HALF_OPEN redevient disponible
+        cancelled.release();
+        CircuitBreaker.Permission trial = breaker.tryAcquire();
+        assertThat(trial).isNotNull();
+
+        trial.onSuccess(5);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void onlyTheFirstSignalOfAPermissionCounts() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+        TimeUnit.MILLISECONDS.sleep(30);
+
+        CircuitBreaker.Permission trial = breaker.tryAcquire();
+        trial.onSuccess(5);
+        // Chemin d'annulation apres un appel abouti : sans effet
+        trial.release();
+        trial.onFailure(5);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.snapshot()).containsEntry("successes", 1L).containsEntry("failures", 1L);
+    }
+
+    /**
+     * Breaker ouvert par un echec, 20 ms d'attente puis un seul essai HALF_OPEN.
+     */
+    private static CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 1, 50.0, 100.0, 1_000, 20, 1);
+        breaker.tryAcquire().onFailure(5);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        return breaker;
+    }
+}
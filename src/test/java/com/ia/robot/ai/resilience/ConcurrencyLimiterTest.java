@@ -0,0 +1,135 @@
+package com.ia.robot.ai.resilience;
+
+import com.ia.robot.exception.RateLimitedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Limite adaptative contre un bouchon amont a "genou" de latence :
+ * KNEE appels servis en parallele en SERVICE_MS, les suivants font la queue.
+ */
+class ConcurrencyLimiterTest {
+
+    private static final int KNEE = 8;
+    private static final long SERVICE_MS = 20;
+    private static final int CLIENTS = 48;
+
+    @Test
+    void convergesNearTheKneeFromAbove() throws Exception {
+        ConcurrencyLimiter limiter = limiter(40);
+
+        Simulation run = simulate(limiter, 1_500);
+
+        assertThat(limiter.limit()).isBetween(KNEE / 2, 3 * KNEE);
+        assertThat(run.rejected.sum()).isPositive();
+        // Une fois convergee : file amont courte, service toujours plein
+        assertThat(run.lateAverageLatencyMs()).isLessThan(3.0 * SERVICE_MS);
+        assertThat(run.lateCalls.sum()).isGreaterThan((long) (0.7 * kneeCallsIn(750)));
+    }
+
+    @Test
+    void growsUpToTheKneeFromBelow() throws Exception {
+        ConcurrencyLimiter limiter = limiter(2);
+
+        Simulation run = simulate(limiter, 1_500);
+
+        assertThat(limiter.limit()).isBetween(KNEE / 2, 3 * KNEE);
+        assertThat(run.lateCalls.sum()).isGreaterThan((long) (0.7 * kneeCallsIn(750)));
+    }
+
+    @Test
+    void queuesBrieflyThenRejects() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", true, 1, 1, 1,
+                2.0, 0.2, 0.9, 2_000, 10, 60_000);
+        ConcurrencyLimiter.Permit first = limiter.acquire(0);
+
+        assertThatThrownBy(() -> limiter.acquire(0))
+                .isInstanceOfSatisfying(RateLimitedException.class, e -> {
+                    assertThat(e.getScope()).isEqualTo("upstream");
+                    assertThat(e.getKey()).isEqualTo("test");
+                });
+
+        CompletableFuture<ConcurrencyLimiter.Permit> queued = CompletableFuture.supplyAsync(() -> limiter.acquire(5_000));
+        Thread.sleep(50);
+        assertThat(queued).isNotDone();
+        first.onSuccess();
+        queued.get(1, TimeUnit.SECONDS).release();
+
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.snapshot()).containsEntry("queuedCalls", 1L).containsEntry("rejected", 1L);
+    }
+
+    // Appels que le bouchon sert au mieux (KNEE en parallele) en ms millisecondes
+    private static double kneeCallsIn(long ms) {
+        return (double) KNEE * ms / SERVICE_MS;
+    }
+
+    private static ConcurrencyLimiter limiter(int initialLimit) {
+        return new ConcurrencyLimiter("sim", true, initialLimit, 1, 200,
+                1.0, 0.2, 0.9, 0, 0, 60_000);
+    }
+
+    /**
+     * CLIENTS boucles fermees (acquire -> appel -> onSuccess) pendant durationMs ;
+     * un client refuse reessaie 1 ms plus tard.
+     */
+    private static Simulation simulate(ConcurrencyLimiter limiter, long durationMs) throws Exception {
+        Semaphore backend = new Semaphore(KNEE, true);
+        Simulation run = new Simulation();
+        AtomicBoolean stop = new AtomicBoolean();
+        long lateFrom = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs / 2);
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.submit(() -> {
+                    while (!stop.get()) {
+                        ConcurrencyLimiter.Permit permit;
+                        try {
+                            permit = limiter.acquire(0);
+                        } catch (RateLimitedException e) {
+                            run.rejected.increment();
+                            Thread.sleep(1);
+                            continue;
+                        }
+                        long start = System.nanoTime();
+                        backend.acquire();
+                        try {
+                            Thread.sleep(SERVICE_MS);
+                        } finally {
+                            backend.release();
+                        }
+                        permit.onSuccess();
+                        if (start >= lateFrom) {
+                            run.lateCalls.increment();
+                            run.lateLatencyNanos.add(System.nanoTime() - start);
+                        }
+                    }
+                    return null;
+                });
+            }
+            Thread.sleep(durationMs);
+            stop.set(true);
+        }
+        return run;
+    }
+
+    private static final class Simulation {
+        final LongAdder rejected = new LongAdder();
+        final LongAdder lateCalls = new LongAdder();
+        final LongAdder lateLatencyNanos = new LongAdder();
+
+        double lateAverageLatencyMs() {
+            return lateLatencyNanos.sum() / 1_000_000d / Math.max(1, lateCalls.sum());
+        }
+    }
+}
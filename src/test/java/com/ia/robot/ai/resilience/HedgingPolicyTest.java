@@ -0,0 +1,34 @@
+package com.ia.robot.ai.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Delai de hedge : percentile des latences LIVE, y compris les LIVE coupes (bornes basses).
+ */
+class HedgingPolicyTest {
+
+    @Test
+    void cancelledLiveCallsKeepTheDelayFromDrifting() {
+        HedgingPolicy policy = new HedgingPolicy(true, 50, 0, 20_000, 5_000, 3, 16);
+        policy.recordLiveLatency(400);
+        policy.recordLiveLatency(500);
+        policy.recordLiveLatency(600);
+        assertThat(policy.hedgeDelayMs()).isEqualTo(500);
+
+        // Le standard gagne quatre fois, LIVE coupe apres 3 s : le delai remonte
+        for (int i = 0; i < 4; i++) {
+            policy.recordCensoredLiveLatency(3_000);
+        }
+        assertThat(policy.hedgeDelayMs()).isEqualTo(3_000);
+        assertThat(policy.snapshot()).containsEntry("liveSamples", 7).containsEntry("censoredLiveSamples", 4L);
+    }
+
+    @Test
+    void defaultDelayUntilEnoughSamples() {
+        HedgingPolicy policy = new HedgingPolicy(true, 90, 500, 20_000, 5_000, 3, 16);
+        policy.recordCensoredLiveLatency(100);
+        assertThat(policy.hedgeDelayMs()).isEqualTo(5_000);
+    }
+}
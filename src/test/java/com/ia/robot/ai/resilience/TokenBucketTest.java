@@ -0,0 +1,51 @@
+package com.ia.robot.ai.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Seau GCRA : rafale, recharge et attente annoncee (Retry-After), a horloge fixe.
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsBurstThenReportsExactWait() {
+        TokenBucket bucket = new TokenBucket(2, 4);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(bucket.tryAcquire(1, now)).isZero();
+        }
+        // 2 jetons / s : le prochain jeton arrive dans 500 ms
+        assertThat(bucket.tryAcquire(1, now)).isEqualTo(SECOND / 2);
+        assertThat(bucket.tryAcquire(1, now + SECOND / 2)).isZero();
+        assertThat(bucket.available(now + SECOND / 2)).isZero();
+    }
+
+    @Test
+    void refillsOverTimeUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 10);
+        long now = System.nanoTime();
+
+        assertThat(bucket.tryAcquire(10, now)).isZero();
+        assertThat(bucket.available(now + SECOND / 2)).isEqualTo(5.0);
+        assertThat(bucket.available(now + 5 * SECOND)).isEqualTo(10.0);
+        assertThat(bucket.isFull(now + SECOND)).isTrue();
+    }
+
+    @Test
+    void refundGivesTokensBack() {
+        TokenBucket bucket = new TokenBucket(1, 100);
+        long now = System.nanoTime();
+
+        assertThat(bucket.tryAcquire(80, now)).isZero();
+        assertThat(bucket.tryAcquire(30, now)).isEqualTo(10 * SECOND);
+        bucket.refund(80);
+        assertThat(bucket.tryAcquire(30, now)).isZero();
+    }
+}
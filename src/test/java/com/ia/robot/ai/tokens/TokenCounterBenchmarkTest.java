@@ -0,0 +1,86 @@
+package com.ia.robot.ai.tokens;
+
+import com.ia.robot.ai.prompt.SystemPrompts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cout du comptage de tokens par taille de prompt (boucle chauffee, un thread).
+ * Hors build par defaut :
+ *   mvn test -Dtest=TokenCounterBenchmarkTest -Dorwell.bench=true
+ *
+ * Mesure : ns/op (System.nanoTime) et B/op (octets alloues par le thread,
+ * com.sun.management.ThreadMXBean) pour count(...) puis, au-dela du budget
+ * /ask, pour truncate(..., 6000) comme TokenBudgets.fitInput.
+ */
+@EnabledIfSystemProperty(named = "orwell.bench", matches = "true")
+class TokenCounterBenchmarkTest {
+
+    private static final int[] SIZES = {200, 2_000, 8_000, 32_000, 128_000};
+    private static final int ASK_MAX_INPUT_TOKENS = 6_000;
+
+    private final TokenCounter counter = new TokenCounter("gpt-4o-mini", "gpt-4o");
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void tokenizeCostPerPromptSize() {
+        System.out.printf("%-8s %8s %12s %12s %10s %14s%n", "bytes", "tokens", "count ns/op", "count B/op",
+                "ns/token", "truncate ns/op");
+        for (int size : SIZES) {
+            String text = frenchText(size);
+            int tokens = counter.count(text);
+            int iterations = Math.max(50, 4_000_000 / size);
+
+            Cost count = measure(iterations, () -> counter.count(text));
+            String truncate = "-";
+            if (tokens > ASK_MAX_INPUT_TOKENS) {
+                Cost cut = measure(Math.max(20, iterations / 4), () -> counter.truncate(text, ASK_MAX_INPUT_TOKENS).length());
+                truncate = String.format("%,d", cut.nanosPerOp());
+            }
+            System.out.printf("%-8d %8d %,12d %,12d %10.1f %14s%n", text.getBytes(StandardCharsets.UTF_8).length,
+                    tokens, count.nanosPerOp(), count.bytesPerOp(), (double) count.nanosPerOp() / tokens, truncate);
+
+            assertThat(tokens).isPositive();
+        }
+    }
+
+    private Cost measure(int iterations, java.util.function.IntSupplier op) {
+        long sink = 0;
+        // Chauffe : JIT et tables de l'encodage chargees
+        for (int i = 0; i < iterations; i++) {
+            sink += op.getAsInt();
+        }
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += op.getAsInt();
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        assertThat(sink).isPositive();
+        return new Cost(nanos / iterations, bytes / iterations);
+    }
+
+    private record Cost(long nanosPerOp, long bytesPerOp) {
+    }
+
+    /**
+     * Prose francaise de la taille demandee (system prompts de l'application, numerotes
+     * pour ne pas repeter exactement le meme texte).
+     */
+    private static String frenchText(int bytes) {
+        String source = SystemPrompts.ARCHITECT_ASK_SYSTEM + "\n" + SystemPrompts.ARCHITECT_PLAN_SYSTEM;
+        StringBuilder sb = new StringBuilder(bytes + source.length());
+        for (int part = 1; sb.length() < bytes; part++) {
+            sb.append("Partie ").append(part).append(" : ").append(source).append('\n');
+        }
+        return sb.substring(0, bytes);
+    }
+}
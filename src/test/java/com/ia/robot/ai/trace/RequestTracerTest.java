@@ -0,0 +1,93 @@
+package com.ia.robot.ai.trace;
+
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.agent.Deadline;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Traces par etape : decoupage d'une requete, appelants imbriques, anneaux.
+ */
+class RequestTracerTest {
+
+    @Test
+    void recordsTheStagesOfARequest() throws Exception {
+        RequestTracer tracer = new RequestTracer(true, 8, 4, 10_000);
+        AgentContext context = tracer.join(context("r-1").withDeadline(Deadline.afterMillis(30_000)), "ask");
+        RequestTrace trace = context.getTrace();
+
+        trace.span(RequestTrace.PROMPT, () -> "prompt");
+        assertThatThrownBy(() -> trace.span(RequestTrace.LIVE, () -> {
+            throw new IllegalStateException("LIVE down");
+        })).isInstanceOf(IllegalStateException.class);
+        long begin = trace.begin();
+        TimeUnit.MILLISECONDS.sleep(20);
+        trace.end(RequestTrace.FALLBACK, begin);
+        tracer.finish(trace, "success");
+
+        Map<String, Object> breakdown = tracer.find("r-1").orElseThrow().toMap();
+        assertThat(breakdown).containsEntry("outcome", "success").containsEntry("finished", true);
+        assertThat(stages(breakdown)).containsExactly(
+                RequestTrace.CONTROLLER, RequestTrace.PROMPT, RequestTrace.LIVE, RequestTrace.FALLBACK);
+        assertThat(trace.summary()).containsPattern("live=\\d+\\(IllegalStateException\\)");
+        assertThat((double) breakdown.get("durationMs")).isGreaterThanOrEqualTo(20.0);
+    }
+
+    @Test
+    void publishesOnlyWhenTheOutermostCallerFinishes() {
+        RequestTracer tracer = new RequestTracer(true, 8, 4, 10_000);
+        AgentContext outer = tracer.join(context("r-2"), "plan");
+        AgentContext inner = tracer.join(outer, "plan");
+        assertThat(inner.getTrace()).isSameAs(outer.getTrace());
+
+        tracer.finish(inner.getTrace(), "rejected");
+        assertThat(tracer.find("r-2")).isEmpty();
+
+        tracer.finish(outer.getTrace(), "error");
+        assertThat(tracer.find("r-2").orElseThrow().toSummaryMap()).containsEntry("outcome", "rejected");
+    }
+
+    @Test
+    void keepsSlowRequestsAfterFastOnesWrapTheRing() throws Exception {
+        RequestTracer tracer = new RequestTracer(true, 4, 4, 30);
+        AgentContext slow = tracer.join(context("slow"), "ask");
+        TimeUnit.MILLISECONDS.sleep(40);
+        tracer.finish(slow.getTrace(), "success");
+        for (int i = 0; i < 10; i++) {
+            tracer.finish(tracer.join(context("fast-" + i), "ask").getTrace(), "success");
+        }
+
+        // Chassee de l'anneau des 4 dernieres, encore dans celui des lentes
+        assertThat(tracer.find("slow")).isPresent();
+        assertThat(tracer.find("fast-5")).isEmpty();
+        assertThat(tracer.find("fast-9")).isPresent();
+        assertThat(tracer.snapshot(10)).containsEntry("finished", 11L).containsEntry("slow", 1L);
+    }
+
+    @Test
+    void recordsNothingWhenDisabled() {
+        RequestTracer tracer = new RequestTracer(false, 8, 4, 0);
+        AgentContext context = tracer.join(context("r-3"), "ask");
+
+        assertThat(context.getTrace().isRecording()).isFalse();
+        tracer.finish(context.getTrace(), "success");
+        assertThat(tracer.find("r-3")).isEmpty();
+    }
+
+    private static AgentContext context(String requestId) {
+        return AgentContext.builder().requestId(requestId).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> stages(Map<String, Object> breakdown) {
+        return ((List<Map<String, Object>>) breakdown.get("spans")).stream()
+                .map(span -> (String) span.get("stage"))
+                .toList();
+    }
+}
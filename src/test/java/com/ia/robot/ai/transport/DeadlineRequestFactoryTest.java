@@ -0,0 +1,101 @@
+package com.ia.robot.ai.transport;
+
+import com.ia.robot.ai.agent.Deadline;
+import com.ia.robot.exception.AgentTimeoutException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.retry.context.RetryContextSupport;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeadlineRequestFactoryTest {
+
+    private HttpServer upstream;
+    private RestClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        upstream.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "late".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        upstream.start();
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        client = RestClient.builder()
+                .baseUrl("http://127.0.0.1:" + upstream.getAddress().getPort())
+                .requestFactory(new DeadlineRequestFactory(httpClient, Duration.ofSeconds(120)))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void readTimeoutIsTheRemainingBudget() {
+        Deadline deadline = Deadline.afterMillis(300);
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> UpstreamDeadline.within(deadline, this::getSlow))
+                .isInstanceOf(ResourceAccessException.class);
+
+        assertThat((System.nanoTime() - start) / 1_000_000L).isLessThan(1_500L);
+        assertThat(UpstreamDeadline.current().isBounded()).isFalse();
+    }
+
+    @Test
+    void noRequestOnceTheBudgetIsSpent() {
+        assertThatThrownBy(() -> UpstreamDeadline.within(Deadline.afterMillis(0), this::getSlow))
+                .isInstanceOf(AgentTimeoutException.class);
+    }
+
+    @Test
+    void retriesStopWhenTheNextBackOffOutlastsTheBudget() {
+        DeadlineRetryListener listener =
+                new DeadlineRetryListener(Duration.ofSeconds(2), 5, Duration.ofSeconds(30));
+
+        assertThat(listener.backOffMs(1)).isEqualTo(2_000L);
+        assertThat(listener.backOffMs(2)).isEqualTo(10_000L);
+        assertThat(listener.backOffMs(4)).isEqualTo(30_000L);
+
+        RetryContextSupport context = new RetryContextSupport(null);
+        context.registerThrowable(new IllegalStateException("503"));
+        UpstreamDeadline.within(Deadline.afterMillis(5_000), () -> {
+            listener.onError(context, null, context.getLastThrowable());
+            return null;
+        });
+        assertThat(context.isExhaustedOnly()).isFalse();
+
+        context.registerThrowable(new IllegalStateException("503"));
+        UpstreamDeadline.within(Deadline.afterMillis(5_000), () -> {
+            listener.onError(context, null, context.getLastThrowable());
+            return null;
+        });
+        assertThat(context.isExhaustedOnly()).isTrue();
+    }
+
+    private String getSlow() {
+        return client.get().uri("/slow").retrieve().body(String.class);
+    }
+}
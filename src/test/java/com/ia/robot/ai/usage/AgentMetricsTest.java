@@ -0,0 +1,50 @@
+package com.ia.robot.ai.usage;
+
+import com.ia.robot.ai.agent.AgentContext;
+import com.ia.robot.ai.agent.AnswerPath;
+import com.ia.robot.exception.AgentTimeoutException;
+import com.ia.robot.exception.RateLimitedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tags d'AgentMetrics : valeurs bornees quel que soit le contexte recu.
+ */
+class AgentMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AgentMetrics metrics = new AgentMetrics(registry);
+
+    @Test
+    void foldsUnknownProfilesIntoOneSeries() {
+        metrics.recordRequest("ask", context("eleve"), AgentMetrics.pathTag(AnswerPath.LIVE), AgentMetrics.SUCCESS,
+                TimeUnit.MILLISECONDS.toNanos(120));
+        metrics.recordRequest("ask", context("Directeur regional"), AgentMetrics.LIVE, AgentMetrics.SUCCESS, 1L);
+        metrics.recordRequest("ask", context("Inspecteur"), AgentMetrics.LIVE, AgentMetrics.SUCCESS, 1L);
+
+        assertThat(registry.get("orwell.agent.requests").tag("profile", "ELEVE").tag("path", "live").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("orwell.agent.requests").tag("profile", "OTHER").timer().count()).isEqualTo(2);
+        assertThat(registry.get("orwell.agent.requests").timers()).hasSize(2);
+    }
+
+    @Test
+    void mapsFailuresToOutcomes() {
+        assertThat(AgentMetrics.outcomeOf(new AgentTimeoutException("late"))).isEqualTo(AgentMetrics.TIMEOUT);
+        assertThat(AgentMetrics.outcomeOf(new RateLimitedException("busy", "upstream", "live", 10L)))
+                .isEqualTo(AgentMetrics.REJECTED);
+        assertThat(AgentMetrics.outcomeOf(new IllegalStateException("boom"))).isEqualTo(AgentMetrics.ERROR);
+
+        metrics.recordUpstreamError(AgentMetrics.LIVE, new IllegalStateException("boom"));
+        assertThat(registry.get("orwell.upstream.errors").tag("exception", "IllegalStateException").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    private static AgentContext context(String profileType) {
+        return AgentContext.builder().tenant("GABON_EDU").profileType(profileType).build();
+    }
+}
@@ -0,0 +1,185 @@
+package com.ia.robot.config.ai;
+
+import com.ia.robot.ai.agent.Deadline;
+import com.ia.robot.ai.transport.DeadlineRequestFactory;
+import com.ia.robot.ai.transport.UpstreamDeadline;
+import com.ia.robot.ai.transport.UpstreamHttpTransport;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.web.client.RestClient;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Appels amont bloquants concurrents, threads plateforme vs threads virtuels.
+ * Hors build par defaut :
+ *   mvn test -Dtest=AgentExecutorBenchmarkTest -Dorwell.bench=true
+ *
+ * Amont simule : HttpServer local, reponse apres LATENCY_MS. REQUESTS requetes
+ * arrivent en meme temps, chacune avec un budget de BUDGET_MS, sur des "threads
+ * de requete" (pool de 200 comme Tomcat en mode plateforme, un thread virtuel
+ * par requete sinon). Deux facons d'appeler :
+ * - hop    : l'appel part sur agentExecutor, le thread de requete l'attend
+ *            au plus le temps restant (ancien ArchitectAgent.callWithin) ;
+ * - inline : l'appel reste sur le thread de requete, timeout HTTP = temps
+ *            restant (UpstreamDeadline + DeadlineRequestFactory).
+ */
+@EnabledIfSystemProperty(named = "orwell.bench", matches = "true")
+class AgentExecutorBenchmarkTest {
+
+    private static final int REQUESTS = 256;
+    private static final long LATENCY_MS = 500;
+    private static final long BUDGET_MS = 2_000;
+    private static final int TOMCAT_THREADS = 200;
+    private static final int PLATFORM_POOL_SIZE = 64;
+
+    private HttpServer upstream;
+
+    @BeforeEach
+    void startUpstream() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1_024);
+        upstream.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        upstream.createContext("/v1/chat/completions", exchange -> {
+            try {
+                Thread.sleep(LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        upstream.start();
+    }
+
+    @AfterEach
+    void stopUpstream() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        System.out.printf("%-9s %-7s %8s %5s %9s %8s %8s%n",
+                "threads", "call", "wall ms", "ok", "timeouts", "p50 ms", "p99 ms");
+        for (boolean virtual : new boolean[]{false, true}) {
+            for (boolean hop : new boolean[]{true, false}) {
+                // Chauffe (connexions, JIT), puis mesure
+                run(virtual, hop);
+                Result result = run(virtual, hop);
+                System.out.printf("%-9s %-7s %,8d %5d %9d %,8d %,8d%n", virtual ? "virtual" : "platform",
+                        hop ? "hop" : "inline", result.wallMs(), result.ok(), result.timeouts(),
+                        result.percentileMs(50), result.percentileMs(99));
+                assertThat(result.ok() + result.timeouts()).isEqualTo(REQUESTS);
+            }
+        }
+    }
+
+    private Result run(boolean virtual, boolean hop) throws Exception {
+        UpstreamHttpConfig http = new UpstreamHttpConfig();
+        ExecutorService httpExecutor = http.upstreamHttpExecutor(virtual, 8);
+        UpstreamHttpTransport transport = http.upstreamHttpTransport(httpExecutor, false, 10);
+        ExecutorService agentExecutor = new AgentExecutorConfig().agentExecutor(virtual, PLATFORM_POOL_SIZE);
+        ExecutorService requestThreads = virtual
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_THREADS);
+        RestClient client = RestClient.builder()
+                .baseUrl("http://127.0.0.1:" + upstream.getAddress().getPort())
+                .requestFactory(new DeadlineRequestFactory(transport, Duration.ofSeconds(120)))
+                .build();
+
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger timeouts = new AtomicInteger();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                // Le budget part a l'arrivee de la requete, pas a sa prise en charge
+                Deadline deadline = Deadline.afterMillis(BUDGET_MS);
+                requestThreads.execute(() -> {
+                    try {
+                        if (hop ? callWithHop(agentExecutor, client, deadline) : callInline(client, deadline)) {
+                            ok.incrementAndGet();
+                            latencies.add(deadline.elapsedNanos() / 1_000_000L);
+                        } else {
+                            timeouts.incrementAndGet();
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+            return new Result((System.nanoTime() - start) / 1_000_000L, ok.get(), timeouts.get(), latencies);
+        } finally {
+            requestThreads.shutdownNow();
+            agentExecutor.shutdownNow();
+            transport.shutdownNow();
+            httpExecutor.shutdownNow();
+        }
+    }
+
+    private static boolean callWithHop(ExecutorService agentExecutor, RestClient client, Deadline deadline) {
+        Future<String> call = agentExecutor.submit(() -> post(client));
+        try {
+            call.get(deadline.remainingMs(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            return false;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean callInline(RestClient client, Deadline deadline) {
+        try {
+            UpstreamDeadline.within(deadline, () -> post(client));
+            return true;
+        } catch (RuntimeException e) {
+            if (deadline.isExpired()) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static String post(RestClient client) {
+        return client.post()
+                .uri("/v1/chat/completions")
+                .body("{}")
+                .retrieve()
+                .body(String.class);
+    }
+
+    private record Result(long wallMs, int ok, int timeouts, List<Long> latencies) {
+
+        long percentileMs(int percentile) {
+            if (latencies.isEmpty()) {
+                return -1;
+            }
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.ia.robot.service.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Archive locale : ecriture, relecture apres redemarrage, index tronque.
+ */
+class AuditArchiveTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasAppended() throws Exception {
+        AuditArchive archive = archive();
+
+        assertThat(archive.append(List.of(run(1, "req-1"), run(2, "req-2")))).isEqualTo(2);
+        // Run deja indexe : pas reecrit
+        assertThat(archive.append(List.of(run(2, "req-2"), run(3, "req-3")))).isEqualTo(1);
+
+        ArchivedRun read = archive.findRun(2).orElseThrow();
+        assertThat(read).isEqualTo(run(2, "req-2"));
+        assertThat(read.promptLogs()).extracting(ArchivedRun.PromptLog::content)
+                .containsExactly("system 2", "question 2");
+        assertThat(archive.findByRequestId("req-3")).map(ArchivedRun::id).contains(3L);
+        assertThat(archive.findByRequestId("req-unknown")).isEmpty();
+        assertThat(archive.findRun(42)).isEmpty();
+        archive.close();
+    }
+
+    @Test
+    void reopensFromIndexAndSegments() throws Exception {
+        AuditArchive first = archive();
+        first.append(List.of(run(1, "req-1"), run(2, "req-2")));
+        first.close();
+
+        AuditArchive reopened = archive();
+        assertThat(reopened.contains(1)).isTrue();
+        assertThat(reopened.findByRequestId("req-2")).contains(run(2, "req-2"));
+
+        // Ajout apres reouverture : meme segment, anciens runs toujours lisibles
+        reopened.append(List.of(run(3, "req-3")));
+        assertThat(reopened.findRun(1)).contains(run(1, "req-1"));
+        assertThat(reopened.findRun(3)).contains(run(3, "req-3"));
+        assertThat(reopened.snapshot()).containsEntry("archivedRuns", 3).containsEntry("segments", 1);
+        reopened.close();
+    }
+
+    @Test
+    void ignoresAndOverwritesATruncatedIndexEntry() throws Exception {
+        AuditArchive first = archive();
+        first.append(List.of(run(1, "req-1"), run(2, "req-2")));
+        first.close();
+        // Arret pendant l'ecriture d'une entree d'index : 32 octets attendus, 11 ecrits
+        Files.write(dir.resolve("archive.idx"), new byte[11], StandardOpenOption.APPEND);
+
+        AuditArchive reopened = archive();
+        assertThat(reopened.snapshot()).containsEntry("archivedRuns", 2);
+        reopened.append(List.of(run(3, "req-3")));
+        reopened.close();
+
+        // L'entree tronquee a ete ecrasee : l'index reste aligne
+        AuditArchive again = archive();
+        assertThat(again.findRun(3)).contains(run(3, "req-3"));
+        assertThat(again.findRun(2)).contains(run(2, "req-2"));
+        again.close();
+    }
+
+    @Test
+    void clampsSegmentSizeBelowTheMappingLimit() {
+        AuditArchive archive = new AuditArchive(objectMapper, dir.toString(), 4096);
+
+        assertThat(archive.snapshot())
+                .containsEntry("segmentMaxBytes", AuditArchive.MAX_SEGMENT_MB * 1024L * 1024L);
+        assertThat(AuditArchive.MAX_SEGMENT_MB * 1024L * 1024L).isLessThan(Integer.MAX_VALUE);
+        archive.close();
+    }
+
+    private AuditArchive archive() {
+        return new AuditArchive(objectMapper, dir.toString(), 64);
+    }
+
+    private static ArchivedRun run(long id, String requestId) {
+        Instant at = Instant.parse("2026-01-15T10:00:00Z").plusSeconds(id);
+        return new ArchivedRun(id, requestId, "ArchitectAgent", "ARCHITECT", "TEXT", "SUCCESS", "EDUCATION",
+                "question " + id, "reponse " + id, null, at, at.plusMillis(800), at,
+                List.of(new ArchivedRun.PromptLog(id * 10, "system", "system " + id, 12, at),
+                        new ArchivedRun.PromptLog(id * 10 + 1, "user", "question " + id, 3, at)),
+                List.of(), at.plusSeconds(86_400));
+    }
+}
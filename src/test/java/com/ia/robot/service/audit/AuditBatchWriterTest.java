@@ -0,0 +1,117 @@
+package com.ia.robot.service.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.mapper.AgentLogMapper;
+import com.ia.robot.model.entity.AgentRun;
+import com.ia.robot.model.enums.RunStatus;
+import com.ia.robot.repository.AgentPlanSnapshotRepository;
+import com.ia.robot.repository.AgentPromptLogRepository;
+import com.ia.robot.repository.AgentRunRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rejeu du fichier de debordement (orwell.audit.overflow=spill), base simulee.
+ */
+class AuditBatchWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private AgentLogMapper mapper;
+    private AgentRunRepository runRepository;
+    private AuditBatchWriter writer;
+    private Path spillFile;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(AgentLogMapper.class);
+        when(mapper.toRun(any(AgentRunRecord.class))).thenAnswer(call -> new AgentRun());
+        runRepository = mock(AgentRunRepository.class);
+        spillFile = dir.resolve("audit-spill.jsonl");
+        writer = new AuditBatchWriter(mapper, runRepository, mock(AgentPromptLogRepository.class),
+                mock(AgentPlanSnapshotRepository.class), mock(ContentBlobStore.class),
+                mock(PlatformTransactionManager.class), objectMapper,
+                true, "spill", 100, 2, 10, 1_000, spillFile.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop();
+    }
+
+    @Test
+    void interruptedReplayResumesAfterTheLastWrittenBatch() throws Exception {
+        // Rejeu precedent arrete apres le premier lot (lignes 1-2)
+        Path replayFile = dir.resolve("audit-spill.jsonl.replay");
+        Path positionFile = dir.resolve("audit-spill.jsonl.replay.pos");
+        Files.write(replayFile, lines("r1", "r2", "r3", "r4", "r5"));
+        Files.writeString(positionFile, "2");
+
+        writer.start();
+        awaitTrue(() -> Long.valueOf(3L).equals(writer.snapshot().get("replayed")));
+
+        ArgumentCaptor<AgentRunRecord> written = ArgumentCaptor.forClass(AgentRunRecord.class);
+        verify(mapper, atLeastOnce()).toRun(written.capture());
+        assertThat(written.getAllValues()).extracting(AgentRunRecord::requestId).containsExactly("r3", "r4", "r5");
+        assertThat(positionFile).doesNotExist();
+        assertThat(writer.snapshot()).containsEntry("replayed", 3L).containsEntry("batches", 2L);
+    }
+
+    @Test
+    void failedFlushDuringReplaySpillsTheRecordsAgain() throws Exception {
+        Files.write(spillFile, lines("r1", "r2"));
+        when(runRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"));
+
+        writer.start();
+        Path replayFile = dir.resolve("audit-spill.jsonl.replay");
+        // Le fichier de depart existe deja : attendre l'echec du lot rejoue
+        awaitTrue(() -> Long.valueOf(1L).equals(writer.snapshot().get("failedBatches"))
+                && !Files.exists(replayFile) && Files.exists(spillFile));
+
+        List<String> respilled = new ArrayList<>();
+        for (String line : Files.readAllLines(spillFile)) {
+            respilled.add(objectMapper.readValue(line, AgentRunRecord.class).requestId());
+        }
+        assertThat(respilled).containsExactly("r1", "r2");
+        assertThat(writer.snapshot()).containsEntry("failedBatches", 1L).containsEntry("spilled", 2L)
+                .containsEntry("persisted", 0L).containsEntry("dropped", 0L);
+    }
+
+    private List<String> lines(String... requestIds) throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (String requestId : requestIds) {
+            lines.add(objectMapper.writeValueAsString(new AgentRunRecord(requestId, "ArchitectAgent",
+                    AgentRunRecord.ASK, "maths", RunStatus.SUCCESS, null, "question", "reponse", null,
+                    Instant.now(), Instant.now(), null)));
+        }
+        return lines;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(25);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
@@ -0,0 +1,97 @@
+package com.ia.robot.service.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.ai.agent.SimpleAgentRunner;
+import com.ia.robot.exception.BadRequestException;
+import com.ia.robot.exception.RateLimitedException;
+import com.ia.robot.service.ports.AgentPlanService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mode online de PlanBatchJob : quota atteint (429) sans attente sur l'executor.
+ */
+class PlanBatchJobOnlineTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private ExecutorService executor;
+    private AgentPlanService planService;
+    private PlanBatchJob job;
+
+    @BeforeEach
+    void setUp() {
+        // Un seul thread : une attente de quota dessus bloquerait toutes les lignes
+        executor = Executors.newSingleThreadExecutor();
+        planService = mock(AgentPlanService.class);
+        job = new PlanBatchJob(planService, mock(SimpleAgentRunner.class), mock(ProviderBatchClient.class),
+                objectMapper, executor, dir.toString(), "", PlanBatchJob.ONLINE, 2, 0, 5_000, 20_000, 0, 100, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void rateLimitedLineIsRequeuedAndRetriedAfterThePause() throws Exception {
+        Path input = dir.resolve("plans.jsonl");
+        Files.writeString(input, """
+                {"domain":"Gestion des notes"}
+                {"domain":"Emplois du temps"}
+                """);
+        when(planService.generatePlanRaw(any(), any(), anyString()))
+                .thenThrow(new RateLimitedException("quota", "tenant", "GABON_EDU", 300))
+                .thenReturn("{\"architecture\":{}}");
+
+        job.start(input.toString(), PlanBatchJob.ONLINE, false);
+        for (int i = 0; i < 100 && Boolean.TRUE.equals(job.snapshot().get("running")); i++) {
+            Thread.sleep(100);
+        }
+
+        Map<String, Object> snapshot = job.snapshot();
+        assertThat(snapshot.get("running")).isEqualTo(false);
+        assertThat(snapshot).containsEntry("rateLimitedWaits", 1).containsEntry("retryQueue", 0);
+        verify(planService, times(3)).generatePlanRaw(any(), any(), anyString());
+
+        JsonNode checkpoint = objectMapper.readTree(dir.resolve("plans.jsonl.checkpoint.json").toFile());
+        assertThat(checkpoint.path("nextIndex").asLong()).isEqualTo(2);
+        assertThat(checkpoint.path("ok").asLong()).isEqualTo(2);
+        assertThat(checkpoint.path("failed").asLong()).isZero();
+    }
+
+    @Test
+    void inputOutsideTheBatchDirectoryIsRejected() throws Exception {
+        Path outside = Files.createTempFile("plans", ".jsonl");
+        try {
+            assertThatThrownBy(() -> job.start(outside.toString(), PlanBatchJob.ONLINE, false))
+                    .isInstanceOf(BadRequestException.class);
+            assertThatThrownBy(() -> job.start("../" + outside.getFileName(), PlanBatchJob.ONLINE, false))
+                    .isInstanceOf(BadRequestException.class);
+        } finally {
+            Files.deleteIfExists(outside);
+        }
+        verifyNoInteractions(planService);
+    }
+}
@@ -0,0 +1,205 @@
+package com.ia.robot.service.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ia.robot.ai.agent.ArchitectAgent;
+import com.ia.robot.ai.agent.SimpleAgentRunner;
+import com.ia.robot.ai.transport.UpstreamHttpTransport;
+import com.ia.robot.dto.request.AgentPlanRequest;
+import com.ia.robot.service.ports.AgentPlanService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mode provider de PlanBatchJob contre un bouchon local de l'API batch
+ * (/files, /batches). Aucun appel reseau externe.
+ */
+class PlanBatchJobProviderTest {
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<String> uploadedRequests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger createdBatches = new AtomicInteger();
+
+    private AgentPlanService planService;
+    private SimpleAgentRunner agentRunner;
+    private PlanBatchJob job;
+
+    @BeforeEach
+    void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/files", exchange -> {
+            if ("POST".equals(exchange.getRequestMethod())) {
+                // Corps multipart : on garde les lignes JSON de la partie "file"
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                body.lines().filter(l -> l.startsWith("{")).forEach(uploadedRequests::add);
+                respond(exchange, "{\"id\":\"file-in\"}");
+            } else {
+                respond(exchange, results());
+            }
+        });
+        server.createContext("/v1/batches", exchange -> {
+            if ("POST".equals(exchange.getRequestMethod())) {
+                createdBatches.incrementAndGet();
+                respond(exchange, "{\"id\":\"batch_1\",\"status\":\"validating\"}");
+            } else {
+                respond(exchange, """
+                        {"id":"batch_1","status":"completed","output_file_id":"file-out",
+                         "request_counts":{"total":2,"completed":1,"failed":1}}""");
+            }
+        });
+        server.start();
+
+        executor = Executors.newSingleThreadExecutor();
+        UpstreamHttpTransport transport = new UpstreamHttpTransport(HttpClient.newBuilder().executor(executor).build());
+        ProviderBatchClient client = new ProviderBatchClient(objectMapper, transport,
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1", "gpt-4o-mini", "test-key", 5);
+
+        planService = mock(AgentPlanService.class);
+        when(planService.planPrompt(any())).thenAnswer(inv -> "Plan pour " + inv.getArgument(0, AgentPlanRequest.class).domain());
+        agentRunner = mock(SimpleAgentRunner.class);
+        when(agentRunner.planMessages(any(), anyString())).thenAnswer(inv ->
+                new ArchitectAgent.PlanMessages("system", inv.getArgument(1), 3000));
+
+        job = new PlanBatchJob(planService, agentRunner, client, objectMapper, executor,
+                dir.toString(), "", PlanBatchJob.PROVIDER, 2, 0, 5_000, 20_000, 0, 100, 1);
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void submitsOneBatchRecordsPlansAndCheckpointsEveryLine() throws Exception {
+        Path input = dir.resolve("plans.jsonl");
+        Files.writeString(input, """
+                {"id":"a","domain":"Gestion des notes","constraints":["MySQL"]}
+
+                {"id":"b","domain":"Suivi STUB_FAIL"}
+                {"id":"c","constraints":["sans domaine"]}
+                """);
+
+        job.start(input.toString(), PlanBatchJob.PROVIDER, false);
+        awaitFinished();
+
+        assertThat(createdBatches.get()).isEqualTo(1);
+        // La ligne sans domaine n'est pas soumise
+        assertThat(uploadedRequests).hasSize(2);
+        assertThat(uploadedRequests.get(0)).contains("\"custom_id\":\"plan-0\"", "\"max_tokens\":3000");
+
+        verify(agentRunner, times(1)).recordOfflinePlan(any(), eq("system"), eq("Plan pour Gestion des notes"),
+                contains("architecture"), any(), any());
+
+        JsonNode checkpoint = objectMapper.readTree(dir.resolve("plans.jsonl.checkpoint.json").toFile());
+        assertThat(checkpoint.path("nextIndex").asLong()).isEqualTo(3);
+        assertThat(checkpoint.path("offset").asLong()).isEqualTo(Files.size(input));
+        assertThat(checkpoint.path("ok").asLong()).isEqualTo(1);
+        assertThat(checkpoint.path("failed").asLong()).isEqualTo(2);
+        assertThat(checkpoint.path("providerBatchId").isNull()).isTrue();
+
+        List<String> errors = Files.readAllLines(dir.resolve("plans.jsonl.errors.jsonl"));
+        assertThat(errors).hasSize(2);
+        assertThat(errors.get(1)).contains("\"id\":\"c\"", "domain");
+    }
+
+    @Test
+    void resumesFromCheckpointWithoutResubmittingFinishedLines() throws Exception {
+        Path input = dir.resolve("plans.jsonl");
+        Files.writeString(input, "{\"domain\":\"Emplois du temps\"}\n");
+
+        job.start(input.toString(), PlanBatchJob.PROVIDER, false);
+        awaitFinished();
+        job.start(input.toString(), PlanBatchJob.PROVIDER, false);
+        awaitFinished();
+
+        assertThat(createdBatches.get()).isEqualTo(1);
+        verify(agentRunner, times(1)).recordOfflinePlan(any(), any(), any(), any(), any(), any());
+        assertThat(job.snapshot()).containsEntry("nextLine", 1L);
+    }
+
+    @Test
+    void lineFailsWhenThePlanIsNotPersisted() throws Exception {
+        Path input = dir.resolve("plans.jsonl");
+        Files.writeString(input, "{\"id\":\"a\",\"domain\":\"Emplois du temps\"}\n");
+        doThrow(new IllegalStateException("database down")).when(agentRunner)
+                .recordOfflinePlan(any(), any(), any(), any(), any(), any());
+
+        job.start(input.toString(), PlanBatchJob.PROVIDER, false);
+        awaitFinished();
+
+        JsonNode checkpoint = objectMapper.readTree(dir.resolve("plans.jsonl.checkpoint.json").toFile());
+        assertThat(checkpoint.path("ok").asLong()).isZero();
+        assertThat(checkpoint.path("failed").asLong()).isEqualTo(1);
+        assertThat(Files.readString(dir.resolve("plans.jsonl.errors.jsonl"))).contains("Plan not persisted: database down");
+    }
+
+    private void awaitFinished() throws InterruptedException {
+        for (int i = 0; i < 100 && Boolean.TRUE.equals(job.snapshot().get("running")); i++) {
+            Thread.sleep(100);
+        }
+        Map<String, Object> snapshot = job.snapshot();
+        assertThat(snapshot.get("running")).isEqualTo(false);
+        assertThat(snapshot.get("lastError")).isNull();
+    }
+
+    // Une ligne de resultat par requete recue ; "STUB_FAIL" -> erreur 500
+    private String results() throws IOException {
+        StringBuilder out = new StringBuilder();
+        for (String line : uploadedRequests) {
+            JsonNode request = objectMapper.readTree(line);
+            boolean fail = line.contains("STUB_FAIL");
+            Map<String, Object> response = fail
+                    ? Map.<String, Object>of("status_code", 500, "body", Map.of())
+                    : Map.<String, Object>of("status_code", 200, "body", Map.of("choices", List.of(Map.of(
+                    "message", Map.of("content", "{\"architecture\":{},\"checklist\":[]}")))));
+            out.append(objectMapper.writeValueAsString(Map.of(
+                    "custom_id", request.path("custom_id").asText(),
+                    "response", response))).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}